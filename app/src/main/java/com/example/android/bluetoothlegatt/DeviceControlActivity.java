@@ -35,6 +35,7 @@ import retrotooth.Callback;
 import retrotooth.Response;
 import retrotooth.ResponseData;
 import retrotooth.Retrotooth;
+import retrotooth.profile.ProfileConverterFactory;
 
 /**
  * For a given BLE device, this Activity provides the user interface to connect, display data,
@@ -144,7 +145,8 @@ public class DeviceControlActivity extends Activity {
 
             @Override
             public void onClick(View view) {
-                Call<Void> call = service.setHeartRateControlPoint();
+                Call<Void> call = service.setHeartRateControlPoint(
+                        HeartRateService.RESET_ENERGY_EXPENDED);
                 call.enqueue(new Callback<Void>() {
                     @Override
                     public void onResponse(Response<Void> response) {
@@ -166,7 +168,11 @@ public class DeviceControlActivity extends Activity {
     @Override
     protected void onResume() {
         super.onResume();
-        mRetrotooth = new Retrotooth.Builder().with(this).device(mDeviceAddress).build();
+        mRetrotooth = new Retrotooth.Builder()
+                .with(this)
+                .device(mDeviceAddress)
+                .addConverterFactory(ProfileConverterFactory.create())
+                .build();
         mRetrotooth.connect();
         service = mRetrotooth.create(HeartRateService.class);
     }
@@ -38,7 +38,8 @@ import android.widget.Toast;
 
 import com.github.ayvazj.retrotooth.sample.R;
 
-import java.util.ArrayList;
+import retrotooth.scan.DeviceTable;
+import retrotooth.scan.ScanManager;
 
 /**
  * Activity for scanning and displaying available Bluetooth LE devices.
@@ -46,12 +47,17 @@ import java.util.ArrayList;
 public class DeviceScanActivity extends ListActivity {
     private LeDeviceListAdapter mLeDeviceListAdapter;
     private BluetoothAdapter mBluetoothAdapter;
+    private ScanManager mScanManager;
+    private ScanManager.Registration mScanRegistration;
     private boolean mScanning;
     private Handler mHandler;
 
     private static final int REQUEST_ENABLE_BT = 1;
     // Stops scanning after 10 seconds.
     private static final long SCAN_PERIOD = 10000;
+    // Devices tracked, of which the strongest are listed.
+    private static final int MAX_DEVICES = 5000;
+    private static final int MAX_LISTED_DEVICES = 100;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -78,6 +84,7 @@ public class DeviceScanActivity extends ListActivity {
             finish();
             return;
         }
+        mScanManager = ScanManager.create(mBluetoothAdapter);
     }
 
     @Override
@@ -154,7 +161,7 @@ public class DeviceScanActivity extends ListActivity {
         intent.putExtra(DeviceControlActivity.EXTRAS_DEVICE_NAME, device.getName());
         intent.putExtra(DeviceControlActivity.EXTRAS_DEVICE_ADDRESS, device.getAddress());
         if (mScanning) {
-            mBluetoothAdapter.stopLeScan(mLeScanCallback);
+            mScanRegistration.unregister();
             mScanning = false;
         }
         startActivity(intent);
@@ -166,54 +173,71 @@ public class DeviceScanActivity extends ListActivity {
             mHandler.postDelayed(new Runnable() {
                 @Override
                 public void run() {
-                    mScanning = false;
-                    mBluetoothAdapter.stopLeScan(mLeScanCallback);
+                    if (mScanning) {
+                        mScanning = false;
+                        mScanRegistration.unregister();
+                    }
                     invalidateOptionsMenu();
                 }
             }, SCAN_PERIOD);
 
-            mScanning = true;
-            mBluetoothAdapter.startLeScan(mLeScanCallback);
-        } else {
+            if (!mScanning) {
+                mScanning = true;
+                mScanRegistration = mScanManager.register(null, ScanManager.Mode.LOW_LATENCY,
+                        mScanConsumer);
+            }
+        } else if (mScanning) {
             mScanning = false;
-            mBluetoothAdapter.stopLeScan(mLeScanCallback);
+            mScanRegistration.unregister();
         }
         invalidateOptionsMenu();
     }
 
     // Adapter for holding devices found through scanning.
     private class LeDeviceListAdapter extends BaseAdapter {
-        private ArrayList<BluetoothDevice> mLeDevices;
+        private DeviceTable mDeviceTable;
+        private int[] mListedSlots;
+        private int mListedCount;
         private LayoutInflater mInflator;
 
         public LeDeviceListAdapter() {
             super();
-            mLeDevices = new ArrayList<BluetoothDevice>();
+            mDeviceTable = new DeviceTable(MAX_DEVICES);
+            mListedSlots = new int[MAX_LISTED_DEVICES];
             mInflator = DeviceScanActivity.this.getLayoutInflater();
         }
 
-        public void addDevice(BluetoothDevice device) {
-            if(!mLeDevices.contains(device)) {
-                mLeDevices.add(device);
+        /**
+         * Returns true if the device is new or its advertisement changed visibly.
+         */
+        public boolean addDevice(long address, int rssi, byte[] scanRecord) {
+            int changes = mDeviceTable.update(address, rssi, scanRecord,
+                    System.currentTimeMillis());
+            if (changes == DeviceTable.CHANGE_NONE) {
+                return false;
             }
+            mListedCount = mDeviceTable.topByRssi(mListedSlots);
+            return true;
         }
 
         public BluetoothDevice getDevice(int position) {
-            return mLeDevices.get(position);
+            long address = mDeviceTable.address(mListedSlots[position]);
+            return mBluetoothAdapter.getRemoteDevice(DeviceTable.formatAddress(address));
         }
 
         public void clear() {
-            mLeDevices.clear();
+            mDeviceTable.clear();
+            mListedCount = 0;
         }
 
         @Override
         public int getCount() {
-            return mLeDevices.size();
+            return mListedCount;
         }
 
         @Override
         public Object getItem(int i) {
-            return mLeDevices.get(i);
+            return getDevice(i);
         }
 
         @Override
@@ -235,7 +259,7 @@ public class DeviceScanActivity extends ListActivity {
                 viewHolder = (ViewHolder) view.getTag();
             }
 
-            BluetoothDevice device = mLeDevices.get(i);
+            BluetoothDevice device = getDevice(i);
             final String deviceName = device.getName();
             if (deviceName != null && deviceName.length() > 0)
                 viewHolder.deviceName.setText(deviceName);
@@ -248,16 +272,16 @@ public class DeviceScanActivity extends ListActivity {
     }
 
     // Device scan callback.
-    private BluetoothAdapter.LeScanCallback mLeScanCallback =
-            new BluetoothAdapter.LeScanCallback() {
+    private ScanManager.Consumer mScanConsumer = new ScanManager.Consumer() {
 
         @Override
-        public void onLeScan(final BluetoothDevice device, int rssi, byte[] scanRecord) {
+        public void onScanResult(final long address, final int rssi, final byte[] scanRecord) {
             runOnUiThread(new Runnable() {
                 @Override
                 public void run() {
-                    mLeDeviceListAdapter.addDevice(device);
-                    mLeDeviceListAdapter.notifyDataSetChanged();
+                    if (mLeDeviceListAdapter.addDevice(address, rssi, scanRecord)) {
+                        mLeDeviceListAdapter.notifyDataSetChanged();
+                    }
                 }
             });
         }
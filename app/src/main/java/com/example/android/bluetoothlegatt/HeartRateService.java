@@ -2,18 +2,24 @@ package com.example.android.bluetoothlegatt;
 
 
 import retrotooth.Call;
+import retrotooth.GattFormat;
 import retrotooth.ResponseData;
+import retrotooth.annotations.Format;
 import retrotooth.annotations.NOTIFY;
 import retrotooth.annotations.READ;
 import retrotooth.annotations.WRITE;
+import retrotooth.profile.HeartRateMeasurement;
 
 public interface HeartRateService {
+    /** The Heart Rate Control Point command which resets the accumulated energy expended. */
+    int RESET_ENERGY_EXPENDED = 0x01;
+
     @READ(service = "180d", characteristic = "2a38")
     Call<ResponseData> getBodySensorLocation();
 
     @NOTIFY(service = "180d", characteristic = "2a37")
-    Call<String> getHeartRateMeasurement();
+    Call<HeartRateMeasurement> getHeartRateMeasurement();
 
     @WRITE(service = "180d", characteristic = "2a39")
-    Call<Void> setHeartRateControlPoint();
+    Call<Void> setHeartRateControlPoint(@Format(GattFormat.UINT8) int command);
 }
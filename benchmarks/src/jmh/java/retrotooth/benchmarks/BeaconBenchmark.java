@@ -0,0 +1,160 @@
+package retrotooth.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.UUID;
+
+import retrotooth.beacon.AltBeacon;
+import retrotooth.beacon.EddystoneFrame;
+import retrotooth.beacon.IBeacon;
+import retrotooth.model.ScanRecordView;
+
+/**
+ * Compares the beacon decoders, which read straight from the advertisement into reused frames,
+ * against what app code does with {@code ScanRecord}: copy out the manufacturer or service data
+ * and parse the copy.
+ * <p/>
+ * Run with the gc profiler: the decoders should report no allocation per frame.
+ */
+@State(Scope.Thread)
+public class BeaconBenchmark {
+    private static final byte[] IBEACON = {
+            0x02, 0x01, 0x06,
+            0x1A, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15,
+            (byte) 0xF7, (byte) 0x82, 0x6D, (byte) 0xA6, 0x4F, (byte) 0xA2, 0x4E, (byte) 0x98,
+            (byte) 0x80, 0x24, (byte) 0xBC, 0x5B, 0x71, (byte) 0xE0, (byte) 0x89, 0x3E,
+            0x00, 0x01, 0x00, 0x02, (byte) 0xC5
+    };
+    private static final byte[] ALTBEACON = {
+            0x02, 0x01, 0x06,
+            0x1B, (byte) 0xFF, 0x18, 0x01, (byte) 0xBE, (byte) 0xAC,
+            (byte) 0xF7, (byte) 0x82, 0x6D, (byte) 0xA6, 0x4F, (byte) 0xA2, 0x4E, (byte) 0x98,
+            (byte) 0x80, 0x24, (byte) 0xBC, 0x5B, 0x71, (byte) 0xE0, (byte) 0x89, 0x3E,
+            0x00, 0x01, 0x00, 0x02, (byte) 0xC5, 0x00
+    };
+    private static final byte[] EDDYSTONE_UID = {
+            0x02, 0x01, 0x06,
+            0x03, 0x03, (byte) 0xAA, (byte) 0xFE,
+            0x17, 0x16, (byte) 0xAA, (byte) 0xFE, 0x00, (byte) 0xEE,
+            (byte) 0x8B, 0x0C, (byte) 0xE7, 0x45, (byte) 0xEC, 0x51, 0x32, (byte) 0x99, 0x3C, 0x4E,
+            0x01, 0x02, 0x03, 0x04, 0x05, 0x06, 0x00, 0x00
+    };
+    private static final byte[] EDDYSTONE_URL = {
+            0x02, 0x01, 0x06,
+            0x03, 0x03, (byte) 0xAA, (byte) 0xFE,
+            0x10, 0x16, (byte) 0xAA, (byte) 0xFE, 0x10, (byte) 0xEE, 0x03,
+            'g', 'o', 'o', '.', 'g', 'l', '/', 'a', 'b', 'c'
+    };
+    private static final byte[] EDDYSTONE_TLM = {
+            0x02, 0x01, 0x06,
+            0x03, 0x03, (byte) 0xAA, (byte) 0xFE,
+            0x11, 0x16, (byte) 0xAA, (byte) 0xFE, 0x20, 0x00,
+            0x0B, (byte) 0xB8, 0x18, (byte) 0x80, 0x00, 0x00, 0x12, 0x34, 0x00, 0x01, 0x23, 0x45
+    };
+
+    @Param({"ibeacon", "altbeacon", "eddystone-uid", "eddystone-url", "eddystone-tlm"})
+    public String frame;
+
+    private byte[] record;
+    private final ScanRecordView view = new ScanRecordView();
+    private final IBeacon iBeacon = new IBeacon();
+    private final AltBeacon altBeacon = new AltBeacon();
+    private final EddystoneFrame eddystone = new EddystoneFrame();
+    private final StringBuilder url = new StringBuilder(64);
+
+    @Setup
+    public void setUp() {
+        switch (frame) {
+            case "ibeacon":
+                record = IBEACON;
+                break;
+            case "altbeacon":
+                record = ALTBEACON;
+                break;
+            case "eddystone-uid":
+                record = EDDYSTONE_UID;
+                break;
+            case "eddystone-url":
+                record = EDDYSTONE_URL;
+                break;
+            case "eddystone-tlm":
+                record = EDDYSTONE_TLM;
+                break;
+            default:
+                throw new IllegalArgumentException(frame);
+        }
+    }
+
+    @Benchmark
+    public long decoder() {
+        view.wrap(record);
+        if (iBeacon.parse(view)) {
+            return iBeacon.major() + iBeacon.minor() + iBeacon.proximityUuidLeastSignificantBits();
+        }
+        if (altBeacon.parse(view)) {
+            return altBeacon.id2() + altBeacon.id3() + altBeacon.id1LeastSignificantBits();
+        }
+        if (eddystone.parse(view)) {
+            switch (eddystone.frameType()) {
+                case EddystoneFrame.TYPE_URL:
+                    url.setLength(0);
+                    return eddystone.appendUrl(url).length();
+                case EddystoneFrame.TYPE_TLM:
+                    return eddystone.batteryVoltage() + eddystone.advertisementCount();
+                default:
+                    return eddystone.instanceId();
+            }
+        }
+        return -1;
+    }
+
+    @Benchmark
+    public Object copying() {
+        // As ScanRecord.getManufacturerSpecificData and getServiceData do: one copy per field.
+        byte[] apple = null;
+        byte[] other = null;
+        byte[] eddystoneData = null;
+        for (int pos = 0; pos < record.length; ) {
+            int length = record[pos] & 0xFF;
+            int type = record[pos + 1] & 0xFF;
+            if (type == 0xFF) {
+                int id = (record[pos + 2] & 0xFF) | (record[pos + 3] & 0xFF) << 8;
+                byte[] data = Arrays.copyOfRange(record, pos + 4, pos + 1 + length);
+                if (id == 0x004C) {
+                    apple = data;
+                } else {
+                    other = data;
+                }
+            } else if (type == 0x16) {
+                eddystoneData = Arrays.copyOfRange(record, pos + 4, pos + 1 + length);
+            }
+            pos += 1 + length;
+        }
+        if (apple != null && apple[0] == 0x02) {
+            ByteBuffer buffer = ByteBuffer.wrap(apple);
+            return new UUID(buffer.getLong(2), buffer.getLong(10));
+        }
+        if (other != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(other);
+            return new UUID(buffer.getLong(2), buffer.getLong(10));
+        }
+        if (eddystoneData != null) {
+            ByteBuffer buffer = ByteBuffer.wrap(eddystoneData);
+            switch (buffer.get(0)) {
+                case 0x10:
+                    return new String(eddystoneData, 3, eddystoneData.length - 3);
+                case 0x20:
+                    return buffer.getShort(2) + buffer.getInt(6);
+                default:
+                    return Arrays.copyOfRange(eddystoneData, 12, 18);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,132 @@
+package retrotooth.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import retrotooth.Callback;
+import retrotooth.Response;
+import retrotooth.Retrotooth;
+import retrotooth.Transport;
+import retrotooth.profile.HeartRateMeasurement;
+
+/**
+ * The steady-state cost of a call once its method has been seen: the proxy, the method handler,
+ * the call and its GATT operation, conversion of the response and delivery to the caller. The
+ * transport answers at once, so what is measured is the library's own overhead per call.
+ * <p/>
+ * Reported as throughput and as sampled latency, whose percentiles show the tail. The gc
+ * profiler's {@code gc.alloc.rate.norm} is the bytes allocated per call.
+ */
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class CallPathBenchmark {
+    /**
+     * {@code loopback} isolates the library; {@code simulated} adds the simulated peripheral.
+     */
+    @Param({"loopback", "simulated"})
+    public String transport;
+
+    private SensorService service;
+    private SensorService decodingService;
+    private final LastResponse<HeartRateMeasurement> callback = new LastResponse<>();
+
+    @Setup
+    public void setUp() throws IOException {
+        Transport transport = SensorService.Peripherals.create(this.transport);
+        service = SensorService.Peripherals.retrotooth(transport).create(SensorService.class);
+
+        // Hands conversion to a decode executor, which here runs it at once on the same thread:
+        // the cost measured is the per-characteristic ordering.
+        decodingService = SensorService.Peripherals.retrotooth(transport).newBuilder()
+                .transport(transport)
+                .decodeExecutor(new Executor() {
+                    @Override
+                    public void execute(Runnable command) {
+                        command.run();
+                    }
+                })
+                .build()
+                .create(SensorService.class);
+
+        // Create each method's handler, so first-call costs stay out of the measurement.
+        service.bodySensorLocation().execute();
+        service.heartRateMeasurement().execute();
+        service.manufacturerName().execute();
+        service.resetEnergyExpended().execute();
+        decodingService.heartRateMeasurement().execute();
+    }
+
+    @Benchmark
+    public byte[] executeBytes() throws IOException {
+        return service.bodySensorLocation().execute().data();
+    }
+
+    @Benchmark
+    public String executeString() throws IOException {
+        return service.manufacturerName().execute().data();
+    }
+
+    @Benchmark
+    public HeartRateMeasurement executeProfile() throws IOException {
+        return service.heartRateMeasurement().execute().data();
+    }
+
+    @Benchmark
+    public Response<Void> executeWrite() throws IOException {
+        return service.resetEnergyExpended().execute();
+    }
+
+    @Benchmark
+    public HeartRateMeasurement enqueueProfile() {
+        service.heartRateMeasurement().enqueue(callback);
+        return callback.take();
+    }
+
+    @Benchmark
+    public HeartRateMeasurement enqueueProfileOnDecodeExecutor() {
+        decodingService.heartRateMeasurement().enqueue(callback);
+        return callback.take();
+    }
+
+    /**
+     * Holds the response delivered, which with these transports and executors arrives before
+     * {@code enqueue} returns.
+     */
+    static final class LastResponse<T> implements Callback<T> {
+        private T data;
+        private Throwable failure;
+
+        @Override
+        public void onResponse(Response<T> response) {
+            data = response.data();
+        }
+
+        @Override
+        public void onFailure(Throwable t) {
+            failure = t;
+        }
+
+        T take() {
+            if (failure != null) {
+                throw new IllegalStateException(failure);
+            }
+            T data = this.data;
+            if (data == null) {
+                throw new IllegalStateException("No response delivered");
+            }
+            this.data = null;
+            return data;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package retrotooth.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Callers sharing one service proxy, and so one {@link retrotooth.Retrotooth} and its method
+ * handler cache, from 1 to 64 threads. The transport is the lock-free loopback, so throughput
+ * short of scaling with the threads, up to the cores available, is contention in the library.
+ * <p/>
+ * Calls read the body sensor location as a {@code byte[]}, whose converter keeps no state. The
+ * profile measurement converters decode into an instance shared by every call of their method,
+ * and so serialize concurrent calls by design.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class ContentionBenchmark {
+    private SensorService service;
+
+    @Setup
+    public void setUp() throws IOException {
+        service = SensorService.Peripherals.retrotooth(SensorService.Peripherals.create("loopback"))
+                .create(SensorService.class);
+        service.bodySensorLocation().execute();
+    }
+
+    private byte[] call() throws IOException {
+        return service.bodySensorLocation().execute().data();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public byte[] callers01() throws IOException {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] callers04() throws IOException {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(16)
+    public byte[] callers16() throws IOException {
+        return call();
+    }
+
+    @Benchmark
+    @Threads(64)
+    public byte[] callers64() throws IOException {
+        return call();
+    }
+}
@@ -0,0 +1,147 @@
+package retrotooth.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import retrotooth.Converter;
+import retrotooth.GsonConverterFactory;
+import retrotooth.JacksonConverterFactory;
+import retrotooth.MoshiConverterFactory;
+import retrotooth.ProtoConverterFactory;
+import retrotooth.RequestData;
+import retrotooth.ResponseData;
+import retrotooth.WireConverterFactory;
+
+/**
+ * Encodes and decodes the {@link Payloads benchmark payloads} with each converter module, through
+ * the converters its {@link Converter.Factory} returns and the {@link RequestData} and
+ * {@link ResponseData} a call would use. Encoding includes writing the request data out, as a
+ * call does before sending it.
+ * <p/>
+ * The score is the time per payload and the gc profiler's {@code gc.alloc.rate.norm} the bytes
+ * allocated per payload. {@code encode} also counts the bytes it produces in {@link Output}, which
+ * JMH reports as the {@code encode:bytes} secondary result: the time per byte encoded, or bytes per
+ * unit of time when run in throughput mode. Run {@link #main} to print the encoded size of every
+ * payload with each converter.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ConverterBenchmark {
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    @Param({"gson", "jackson", "moshi", "protobuf", "wire"})
+    public String converter;
+
+    @Param({"telemetry", "config"})
+    public String shape;
+
+    @Param({"20", "244", "2048"})
+    public int size;
+
+    private final Buffer buffer = new Buffer();
+    private Object payload;
+    private byte[] encoded;
+    private Converter<Object, RequestData> requestConverter;
+    private Converter<ResponseData, Object> responseConverter;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() throws IOException {
+        Converter.Factory factory = factory(converter);
+        Class<?> type = Payloads.type(converter, shape);
+        requestConverter = (Converter<Object, RequestData>)
+                factory.toRequestBody(type, NO_ANNOTATIONS);
+        responseConverter = (Converter<ResponseData, Object>)
+                factory.fromResponseBody(type, NO_ANNOTATIONS);
+        payload = Payloads.create(converter, shape, size);
+
+        requestConverter.convert(payload).writeTo(buffer);
+        encoded = buffer.readByteArray();
+        Object decoded = decode();
+        if (!type.isInstance(decoded)) {
+            throw new IllegalStateException(converter + " decoded " + decoded);
+        }
+    }
+
+    private static Converter.Factory factory(String converter) {
+        switch (converter) {
+            case "gson":
+                return GsonConverterFactory.create();
+            case "jackson":
+                return JacksonConverterFactory.create();
+            case "moshi":
+                return MoshiConverterFactory.create();
+            case "protobuf":
+                return ProtoConverterFactory.create();
+            case "wire":
+                return WireConverterFactory.create();
+            default:
+                throw new IllegalArgumentException("Unknown converter: " + converter);
+        }
+    }
+
+    /**
+     * Counts what {@link #encode} produces. JMH reports the count with the results, relative to
+     * the time measured, but this version does not reset it between iterations.
+     */
+    @AuxCounters
+    @State(Scope.Thread)
+    public static class Output {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void encode(Output output) throws IOException {
+        requestConverter.convert(payload).writeTo(buffer);
+        output.bytes += buffer.size();
+        buffer.clear();
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        buffer.write(encoded);
+        return responseConverter.convert(ResponseData.create(null, encoded.length, buffer));
+    }
+
+    public static void main(String[] args) throws IOException {
+        String[] converters = {"gson", "jackson", "moshi", "protobuf", "wire"};
+        System.out.printf("%-10s %-6s", "shape", "size");
+        for (String converter : converters) {
+            System.out.printf(" %9s", converter);
+        }
+        System.out.println();
+        for (String shape : new String[]{"telemetry", "config"}) {
+            for (int size : new int[]{20, 244, 2048}) {
+                System.out.printf("%-10s %-6d", shape, size);
+                for (String converter : converters) {
+                    ConverterBenchmark benchmark = new ConverterBenchmark();
+                    benchmark.converter = converter;
+                    benchmark.shape = shape;
+                    benchmark.size = size;
+                    benchmark.setUp();
+                    System.out.printf(" %9d", benchmark.encoded.length);
+                }
+                System.out.println();
+            }
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package retrotooth.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import okio.Buffer;
+import retrotooth.Converter;
+import retrotooth.ResponseData;
+import retrotooth.profile.HeartRateMeasurement;
+import retrotooth.profile.ProfileConverterFactory;
+
+/**
+ * Compares the dedicated Heart Rate Measurement decoder against the generic paths an app would
+ * otherwise take: a {@code String} body, or copying the bytes out and parsing them by hand.
+ * <p/>
+ * Every benchmark reads from the same reused {@link Buffer}, so the allocation reported by the gc
+ * profiler is the decoder's own.
+ */
+@State(Scope.Thread)
+public class HeartRateMeasurementBenchmark {
+    // Flags: uint8 BPM, contact detected, energy expended and four RR-intervals.
+    private static final byte[] NOTIFICATION = {
+            0x1E, 72, (byte) 0xE8, 0x03,
+            0x52, 0x03, 0x48, 0x03, 0x61, 0x03, 0x3D, 0x03
+    };
+
+    private final Buffer buffer = new Buffer();
+    private final ResponseData body = ResponseData.create(null, NOTIFICATION.length, buffer);
+    private Converter<ResponseData, HeartRateMeasurement> converter;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() {
+        converter = (Converter<ResponseData, HeartRateMeasurement>) ProfileConverterFactory.create()
+                .fromResponseBody(HeartRateMeasurement.class, new Annotation[0]);
+    }
+
+    private ResponseData notification() {
+        buffer.write(NOTIFICATION);
+        return body;
+    }
+
+    @Benchmark
+    public int profileConverter() throws IOException {
+        return converter.convert(notification()).heartRate();
+    }
+
+    @Benchmark
+    public String genericString() throws IOException {
+        return notification().string();
+    }
+
+    @Benchmark
+    public int genericBytes() throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(notification().bytes()).order(ByteOrder.LITTLE_ENDIAN);
+        int flags = bytes.get() & 0xFF;
+        int heartRate = (flags & 0x01) != 0 ? bytes.getShort() & 0xFFFF : bytes.get() & 0xFF;
+        if ((flags & 0x08) != 0) {
+            bytes.getShort();
+        }
+        int[] rrIntervals = new int[bytes.remaining() / 2];
+        for (int i = 0; i < rrIntervals.length; i++) {
+            rrIntervals[i] = bytes.getShort() & 0xFFFF;
+        }
+        return heartRate + rrIntervals.length;
+    }
+}
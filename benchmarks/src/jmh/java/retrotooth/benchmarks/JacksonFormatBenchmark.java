@@ -0,0 +1,118 @@
+package retrotooth.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.List;
+
+import okio.Buffer;
+import retrotooth.Converter;
+import retrotooth.JacksonConverterFactory;
+import retrotooth.RequestData;
+import retrotooth.ResponseData;
+
+/**
+ * Compares encoding and decoding a typical configuration payload with the Jackson converter in
+ * text JSON and in the binary CBOR and Smile formats. Run {@link #main} to print the encoded size
+ * of the payload in each format.
+ */
+@State(Scope.Thread)
+public class JacksonFormatBenchmark {
+    public static class SensorConfig {
+        public String name;
+        public boolean enabled;
+        public int sampleRateHz;
+        public int reportIntervalMs;
+        public double lowThreshold;
+        public double highThreshold;
+        public List<String> channels;
+        public int[] calibration;
+    }
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private final Buffer buffer = new Buffer();
+    private SensorConfig config;
+    private byte[] encoded;
+    private Converter<SensorConfig, RequestData> requestConverter;
+    private Converter<ResponseData, SensorConfig> responseConverter;
+
+    @SuppressWarnings("unchecked")
+    @Setup
+    public void setUp() throws IOException {
+        JacksonConverterFactory factory = JacksonConverterFactory.create(mapper(format));
+        requestConverter = (Converter<SensorConfig, RequestData>)
+                factory.toRequestBody(SensorConfig.class, new Annotation[0]);
+        responseConverter = (Converter<ResponseData, SensorConfig>)
+                factory.fromResponseBody(SensorConfig.class, new Annotation[0]);
+        config = config();
+        encoded = encode(requestConverter, config);
+    }
+
+    @Benchmark
+    public RequestData encode() throws IOException {
+        return requestConverter.convert(config);
+    }
+
+    @Benchmark
+    public SensorConfig decode() throws IOException {
+        buffer.write(encoded);
+        return responseConverter.convert(ResponseData.create(null, encoded.length, buffer));
+    }
+
+    private static ObjectMapper mapper(String format) {
+        switch (format) {
+            case "cbor":
+                return new ObjectMapper(new CBORFactory());
+            case "smile":
+                return new ObjectMapper(new SmileFactory());
+            default:
+                return new ObjectMapper();
+        }
+    }
+
+    private static SensorConfig config() {
+        SensorConfig config = new SensorConfig();
+        config.name = "accelerometer-left";
+        config.enabled = true;
+        config.sampleRateHz = 100;
+        config.reportIntervalMs = 250;
+        config.lowThreshold = -1.5;
+        config.highThreshold = 2.25;
+        config.channels = Arrays.asList("x", "y", "z");
+        config.calibration = new int[]{12, -3, 7, 1024, 1019, 1031};
+        return config;
+    }
+
+    private static byte[] encode(Converter<SensorConfig, RequestData> converter,
+                                 SensorConfig config) throws IOException {
+        Buffer sink = new Buffer();
+        converter.convert(config).writeTo(sink);
+        return sink.readByteArray();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int json = 0;
+        for (String format : new String[]{"json", "cbor", "smile"}) {
+            JacksonFormatBenchmark benchmark = new JacksonFormatBenchmark();
+            benchmark.format = format;
+            benchmark.setUp();
+            int size = benchmark.encoded.length;
+            if (json == 0) {
+                json = size;
+            }
+            System.out.printf("%-6s %4d bytes (%d%% of JSON)%n", format, size, 100 * size / json);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package retrotooth.benchmarks;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import retrotooth.Transport;
+
+/**
+ * A transport which completes every operation at once from memory on the calling thread, so a
+ * benchmark measures the library rather than the radio or its simulation. Holds one value per
+ * characteristic, fixed at construction, and takes no locks: any number of callers run in
+ * parallel.
+ */
+final class LoopbackTransport implements Transport {
+    private final Map<UUID, byte[]> values;
+
+    LoopbackTransport(Map<UUID, byte[]> values) {
+        this.values = new HashMap<>(values);
+    }
+
+    @Override
+    public void read(UUID service, UUID characteristic, Callback callback) {
+        byte[] value = values.get(characteristic);
+        if (value == null) {
+            callback.onFailure(new IOException("characteristic(" + characteristic + ") not found"));
+            return;
+        }
+        callback.onSuccess(value);
+    }
+
+    @Override
+    public void write(UUID service, UUID characteristic, byte[] value, Callback callback) {
+        if (value != null) {
+            callback.onSuccess(value);
+        } else {
+            read(service, characteristic, callback);
+        }
+    }
+
+    @Override
+    public void readDescriptor(UUID service, UUID characteristic, UUID descriptor,
+            Callback callback) {
+        callback.onSuccess(null);
+    }
+
+    @Override
+    public String model() {
+        return "Loopback";
+    }
+}
@@ -0,0 +1,143 @@
+package retrotooth.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * The payloads the converter benchmarks encode and decode, in two shapes: telemetry, a sample
+ * batch which is mostly small integers, and config, a device configuration which is mostly
+ * strings. Each is built to a target size, the size of its protocol buffers encoding: 20 bytes
+ * fills a packet at the default MTU, 244 bytes one at the largest data length, and 2 KB takes a
+ * long write. The same values are held in a plain class for the JSON converters, a
+ * {@link ProtoPayloads protobuf message} and a {@link WirePayloads Wire message}.
+ */
+final class Payloads {
+    static final int SEQUENCE = 1000;
+    static final long TIMESTAMP = 1446000000000L;
+    static final int BATTERY = 87;
+    static final String NAME = "hr";
+    static final boolean ENABLED = true;
+    static final int SAMPLE_RATE_HZ = 100;
+    static final int REPORT_INTERVAL_MS = 1000;
+
+    public static class Telemetry {
+        public int sequence;
+        public long timestamp;
+        public int battery;
+        public int[] samples;
+    }
+
+    public static class DeviceConfig {
+        public String name;
+        public boolean enabled;
+        public int sampleRateHz;
+        public int reportIntervalMs;
+        public List<String> channels;
+    }
+
+    private Payloads() {
+        // No instances.
+    }
+
+    /**
+     * Returns the class which {@code converter} converts payloads of {@code shape} to and from.
+     */
+    static Class<?> type(String converter, String shape) {
+        boolean telemetry = isTelemetry(shape);
+        switch (converter) {
+            case "protobuf":
+                return telemetry ? ProtoPayloads.Telemetry.class : ProtoPayloads.DeviceConfig.class;
+            case "wire":
+                return telemetry ? WirePayloads.Telemetry.class : WirePayloads.DeviceConfig.class;
+            default:
+                return telemetry ? Telemetry.class : DeviceConfig.class;
+        }
+    }
+
+    /**
+     * Returns a payload of {@code shape} whose protocol buffers encoding is at most
+     * {@code size} bytes, as converted by {@code converter}.
+     */
+    static Object create(String converter, String shape, int size) {
+        if (isTelemetry(shape)) {
+            int[] samples = samples(size);
+            switch (converter) {
+                case "protobuf":
+                    return new ProtoPayloads.Telemetry(SEQUENCE, TIMESTAMP, BATTERY, samples);
+                case "wire":
+                    return WirePayloads.telemetry(samples);
+                default:
+                    Telemetry telemetry = new Telemetry();
+                    telemetry.sequence = SEQUENCE;
+                    telemetry.timestamp = TIMESTAMP;
+                    telemetry.battery = BATTERY;
+                    telemetry.samples = samples;
+                    return telemetry;
+            }
+        }
+        List<String> channels = channels(size);
+        switch (converter) {
+            case "protobuf":
+                return new ProtoPayloads.DeviceConfig(NAME, ENABLED, SAMPLE_RATE_HZ,
+                        REPORT_INTERVAL_MS, channels);
+            case "wire":
+                return WirePayloads.config(channels);
+            default:
+                DeviceConfig config = new DeviceConfig();
+                config.name = NAME;
+                config.enabled = ENABLED;
+                config.sampleRateHz = SAMPLE_RATE_HZ;
+                config.reportIntervalMs = REPORT_INTERVAL_MS;
+                config.channels = channels;
+                return config;
+        }
+    }
+
+    private static boolean isTelemetry(String shape) {
+        switch (shape) {
+            case "telemetry":
+                return true;
+            case "config":
+                return false;
+            default:
+                throw new IllegalArgumentException("Unknown shape: " + shape);
+        }
+    }
+
+    /**
+     * Returns as many samples, each a small signed value, as fit in {@code size} bytes.
+     */
+    private static int[] samples(int size) {
+        Random random = new Random(42L);
+        int[] samples = new int[size];
+        int count = 0;
+        while (count < samples.length) {
+            samples[count] = random.nextInt(121) - 60;
+            ProtoPayloads.Telemetry telemetry = new ProtoPayloads.Telemetry(SEQUENCE, TIMESTAMP,
+                    BATTERY, Arrays.copyOf(samples, count + 1));
+            if (telemetry.getSerializedSize() > size) {
+                break;
+            }
+            count++;
+        }
+        return Arrays.copyOf(samples, count);
+    }
+
+    /**
+     * Returns as many channel names as fit in {@code size} bytes.
+     */
+    private static List<String> channels(int size) {
+        List<String> channels = new ArrayList<>();
+        while (true) {
+            channels.add(String.format("c%03d", channels.size() % 1000));
+            ProtoPayloads.DeviceConfig config = new ProtoPayloads.DeviceConfig(NAME, ENABLED,
+                    SAMPLE_RATE_HZ, REPORT_INTERVAL_MS, channels);
+            if (config.getSerializedSize() > size) {
+                channels.remove(channels.size() - 1);
+                return channels;
+            }
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package retrotooth.benchmarks;
+
+import com.google.protobuf.AbstractMessageLite;
+import com.google.protobuf.AbstractParser;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The benchmark payloads as protocol buffers messages, for the protobuf converter. These are
+ * written by hand to do what {@code protoc} generates for the lite runtime from:
+ * <pre>
+ * message Telemetry {
+ *   optional int32 sequence = 1;
+ *   optional int64 timestamp = 2;
+ *   optional int32 battery = 3;
+ *   repeated sint32 samples = 4 [packed = true];
+ * }
+ * message DeviceConfig {
+ *   optional string name = 1;
+ *   optional bool enabled = 2;
+ *   optional int32 sample_rate_hz = 3;
+ *   optional int32 report_interval_ms = 4;
+ *   repeated string channels = 5;
+ * }
+ * </pre>
+ * so the module needs no code generation step. Builders are not needed by the converter and
+ * are not supported.
+ */
+final class ProtoPayloads {
+    private ProtoPayloads() {
+        // No instances.
+    }
+
+    public static final class Telemetry extends AbstractMessageLite {
+        public static final Parser<Telemetry> PARSER = new AbstractParser<Telemetry>() {
+            @Override
+            public Telemetry parsePartialFrom(CodedInputStream input,
+                    ExtensionRegistryLite extensionRegistry)
+                    throws InvalidProtocolBufferException {
+                try {
+                    return read(input);
+                } catch (InvalidProtocolBufferException e) {
+                    throw e;
+                } catch (IOException e) {
+                    throw new InvalidProtocolBufferException(e.getMessage());
+                }
+            }
+        };
+
+        private static final Telemetry DEFAULT_INSTANCE = new Telemetry(0, 0, 0, new int[0]);
+
+        private final int sequence;
+        private final long timestamp;
+        private final int battery;
+        private final int[] samples;
+        private int memoizedSamplesSize = -1;
+        private int memoizedSerializedSize = -1;
+
+        Telemetry(int sequence, long timestamp, int battery, int[] samples) {
+            this.sequence = sequence;
+            this.timestamp = timestamp;
+            this.battery = battery;
+            this.samples = samples;
+        }
+
+        public int sequence() {
+            return sequence;
+        }
+
+        public long timestamp() {
+            return timestamp;
+        }
+
+        public int battery() {
+            return battery;
+        }
+
+        public int[] samples() {
+            return samples.clone();
+        }
+
+        private static Telemetry read(CodedInputStream input) throws IOException {
+            int sequence = 0;
+            long timestamp = 0;
+            int battery = 0;
+            int[] samples = new int[16];
+            int sampleCount = 0;
+            while (true) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        return new Telemetry(sequence, timestamp, battery,
+                                Arrays.copyOf(samples, sampleCount));
+                    case 8:
+                        sequence = input.readInt32();
+                        break;
+                    case 16:
+                        timestamp = input.readInt64();
+                        break;
+                    case 24:
+                        battery = input.readInt32();
+                        break;
+                    case 32:
+                        if (sampleCount == samples.length) {
+                            samples = Arrays.copyOf(samples, sampleCount * 2);
+                        }
+                        samples[sampleCount++] = input.readSInt32();
+                        break;
+                    case 34:
+                        int limit = input.pushLimit(input.readRawVarint32());
+                        while (input.getBytesUntilLimit() > 0) {
+                            if (sampleCount == samples.length) {
+                                samples = Arrays.copyOf(samples, sampleCount * 2);
+                            }
+                            samples[sampleCount++] = input.readSInt32();
+                        }
+                        input.popLimit(limit);
+                        break;
+                    default:
+                        if (!input.skipField(tag)) {
+                            return new Telemetry(sequence, timestamp, battery,
+                                    Arrays.copyOf(samples, sampleCount));
+                        }
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(CodedOutputStream output) throws IOException {
+            getSerializedSize();
+            if (sequence != 0) {
+                output.writeInt32(1, sequence);
+            }
+            if (timestamp != 0) {
+                output.writeInt64(2, timestamp);
+            }
+            if (battery != 0) {
+                output.writeInt32(3, battery);
+            }
+            if (samples.length > 0) {
+                output.writeRawVarint32(34);
+                output.writeRawVarint32(memoizedSamplesSize);
+                for (int sample : samples) {
+                    output.writeSInt32NoTag(sample);
+                }
+            }
+        }
+
+        @Override
+        public int getSerializedSize() {
+            int size = memoizedSerializedSize;
+            if (size != -1) {
+                return size;
+            }
+            size = 0;
+            if (sequence != 0) {
+                size += CodedOutputStream.computeInt32Size(1, sequence);
+            }
+            if (timestamp != 0) {
+                size += CodedOutputStream.computeInt64Size(2, timestamp);
+            }
+            if (battery != 0) {
+                size += CodedOutputStream.computeInt32Size(3, battery);
+            }
+            int samplesSize = 0;
+            for (int sample : samples) {
+                samplesSize += CodedOutputStream.computeSInt32SizeNoTag(sample);
+            }
+            memoizedSamplesSize = samplesSize;
+            if (samples.length > 0) {
+                size += 1 + CodedOutputStream.computeRawVarint32Size(samplesSize) + samplesSize;
+            }
+            memoizedSerializedSize = size;
+            return size;
+        }
+
+        @Override
+        public Parser<Telemetry> getParserForType() {
+            return PARSER;
+        }
+
+        @Override
+        public Telemetry getDefaultInstanceForType() {
+            return DEFAULT_INSTANCE;
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return true;
+        }
+
+        @Override
+        public MessageLite.Builder newBuilderForType() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MessageLite.Builder toBuilder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    public static final class DeviceConfig extends AbstractMessageLite {
+        public static final Parser<DeviceConfig> PARSER = new AbstractParser<DeviceConfig>() {
+            @Override
+            public DeviceConfig parsePartialFrom(CodedInputStream input,
+                    ExtensionRegistryLite extensionRegistry)
+                    throws InvalidProtocolBufferException {
+                try {
+                    return read(input);
+                } catch (InvalidProtocolBufferException e) {
+                    throw e;
+                } catch (IOException e) {
+                    throw new InvalidProtocolBufferException(e.getMessage());
+                }
+            }
+        };
+
+        private static final DeviceConfig DEFAULT_INSTANCE =
+                new DeviceConfig("", false, 0, 0, Collections.<String>emptyList());
+
+        private final String name;
+        private final boolean enabled;
+        private final int sampleRateHz;
+        private final int reportIntervalMs;
+        private final List<String> channels;
+        private int memoizedSerializedSize = -1;
+
+        DeviceConfig(String name, boolean enabled, int sampleRateHz, int reportIntervalMs,
+                List<String> channels) {
+            this.name = name;
+            this.enabled = enabled;
+            this.sampleRateHz = sampleRateHz;
+            this.reportIntervalMs = reportIntervalMs;
+            this.channels = Collections.unmodifiableList(new ArrayList<>(channels));
+        }
+
+        public String name() {
+            return name;
+        }
+
+        public boolean enabled() {
+            return enabled;
+        }
+
+        public int sampleRateHz() {
+            return sampleRateHz;
+        }
+
+        public int reportIntervalMs() {
+            return reportIntervalMs;
+        }
+
+        public List<String> channels() {
+            return channels;
+        }
+
+        private static DeviceConfig read(CodedInputStream input) throws IOException {
+            String name = "";
+            boolean enabled = false;
+            int sampleRateHz = 0;
+            int reportIntervalMs = 0;
+            List<String> channels = new ArrayList<>();
+            while (true) {
+                int tag = input.readTag();
+                switch (tag) {
+                    case 0:
+                        return new DeviceConfig(name, enabled, sampleRateHz, reportIntervalMs,
+                                channels);
+                    case 10:
+                        name = input.readString();
+                        break;
+                    case 16:
+                        enabled = input.readBool();
+                        break;
+                    case 24:
+                        sampleRateHz = input.readInt32();
+                        break;
+                    case 32:
+                        reportIntervalMs = input.readInt32();
+                        break;
+                    case 42:
+                        channels.add(input.readString());
+                        break;
+                    default:
+                        if (!input.skipField(tag)) {
+                            return new DeviceConfig(name, enabled, sampleRateHz,
+                                    reportIntervalMs, channels);
+                        }
+                        break;
+                }
+            }
+        }
+
+        @Override
+        public void writeTo(CodedOutputStream output) throws IOException {
+            if (!name.isEmpty()) {
+                output.writeString(1, name);
+            }
+            if (enabled) {
+                output.writeBool(2, enabled);
+            }
+            if (sampleRateHz != 0) {
+                output.writeInt32(3, sampleRateHz);
+            }
+            if (reportIntervalMs != 0) {
+                output.writeInt32(4, reportIntervalMs);
+            }
+            for (String channel : channels) {
+                output.writeString(5, channel);
+            }
+        }
+
+        @Override
+        public int getSerializedSize() {
+            int size = memoizedSerializedSize;
+            if (size != -1) {
+                return size;
+            }
+            size = 0;
+            if (!name.isEmpty()) {
+                size += CodedOutputStream.computeStringSize(1, name);
+            }
+            if (enabled) {
+                size += CodedOutputStream.computeBoolSize(2, enabled);
+            }
+            if (sampleRateHz != 0) {
+                size += CodedOutputStream.computeInt32Size(3, sampleRateHz);
+            }
+            if (reportIntervalMs != 0) {
+                size += CodedOutputStream.computeInt32Size(4, reportIntervalMs);
+            }
+            for (String channel : channels) {
+                size += CodedOutputStream.computeStringSize(5, channel);
+            }
+            memoizedSerializedSize = size;
+            return size;
+        }
+
+        @Override
+        public Parser<DeviceConfig> getParserForType() {
+            return PARSER;
+        }
+
+        @Override
+        public DeviceConfig getDefaultInstanceForType() {
+            return DEFAULT_INSTANCE;
+        }
+
+        @Override
+        public boolean isInitialized() {
+            return true;
+        }
+
+        @Override
+        public MessageLite.Builder newBuilderForType() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public MessageLite.Builder toBuilder() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
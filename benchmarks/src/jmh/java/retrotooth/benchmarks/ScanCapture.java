@@ -0,0 +1,210 @@
+package retrotooth.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+import retrotooth.scan.BtsnoopReader;
+import retrotooth.scan.ScanBatchReader;
+import retrotooth.scan.ScanBatchWriter;
+
+/**
+ * A recorded stream of advertisements held in memory, for replaying through the scan path. A
+ * capture is read from a spool of {@link ScanBatchWriter batches}, from a btsnoop HCI log, or
+ * generated.
+ */
+final class ScanCapture {
+    private static final ByteString BTSNOOP_MAGIC = ByteString.encodeUtf8("btsnoop\0");
+
+    /**
+     * Converts a capture, such as a btsnoop log, to a batch spool, which loads faster:
+     * {@code ScanCapture <capture> <spool>}.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: ScanCapture <capture> <spool>");
+            System.exit(1);
+        }
+        ScanCapture capture = load(args[0]);
+        BufferedSink sink = Okio.buffer(Okio.sink(new File(args[1])));
+        try {
+            capture.writeTo(sink, 4096);
+        } finally {
+            sink.close();
+        }
+        System.out.println(capture.size + " advertisements written to " + args[1]);
+    }
+
+    int size;
+    long[] times = new long[1024];
+    long[] addresses = new long[1024];
+    int[] rssis = new int[1024];
+    byte[][] records = new byte[1024][];
+
+    /**
+     * Returns the capture named {@code name}: {@code synthetic}, or the path of a batch spool or
+     * btsnoop log.
+     */
+    static ScanCapture load(String name) throws IOException {
+        if ("synthetic".equals(name)) {
+            return synthetic(100000, 500, 42L);
+        }
+        return read(new File(name));
+    }
+
+    static ScanCapture read(File file) throws IOException {
+        ScanCapture capture = new ScanCapture();
+        BufferedSource source = Okio.buffer(Okio.source(file));
+        try {
+            if (isBtsnoop(source)) {
+                BtsnoopReader reader = new BtsnoopReader(source);
+                while (reader.next()) {
+                    int offset = reader.dataOffset();
+                    capture.add(reader.timeMillis(), reader.address(), reader.rssi(),
+                            Arrays.copyOfRange(reader.dataArray(), offset,
+                                    offset + reader.dataLength()));
+                }
+            } else {
+                ScanBatchReader reader = new ScanBatchReader(source);
+                while (reader.next()) {
+                    for (int i = 0; i < reader.count(); i++) {
+                        capture.add(reader.timeMillis(i), reader.address(i), reader.rssi(i),
+                                reader.payload(i));
+                    }
+                }
+            }
+        } finally {
+            source.close();
+        }
+        if (capture.size == 0) {
+            throw new IOException("No advertisements in " + file);
+        }
+        return capture;
+    }
+
+    private static boolean isBtsnoop(BufferedSource source) throws IOException {
+        if (!source.request(BTSNOOP_MAGIC.size())) {
+            return false;
+        }
+        for (int i = 0; i < BTSNOOP_MAGIC.size(); i++) {
+            if (source.buffer().getByte(i) != BTSNOOP_MAGIC.getByte(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Generates {@code count} advertisements from {@code devices} devices, in the proportions of
+     * a busy public space: iBeacons, Eddystone beacons, and peripherals advertising service
+     * UUIDs, a name and manufacturer data. Records are padded to 62 bytes, as
+     * {@code BluetoothAdapter.LeScanCallback} delivers them.
+     */
+    static ScanCapture synthetic(int count, int devices, long seed) {
+        Random random = new Random(seed);
+        long[] deviceAddresses = new long[devices];
+        byte[][] deviceRecords = new byte[devices][];
+        for (int i = 0; i < devices; i++) {
+            deviceAddresses[i] = random.nextLong() & 0xFFFFFFFFFFFFL;
+            deviceRecords[i] = Arrays.copyOf(advertisement(random), 62);
+        }
+        ScanCapture capture = new ScanCapture();
+        long time = 1446000000000L;
+        for (int i = 0; i < count; i++) {
+            int device = random.nextInt(devices);
+            time += random.nextInt(3);
+            capture.add(time, deviceAddresses[device], -40 - random.nextInt(60),
+                    deviceRecords[device]);
+        }
+        return capture;
+    }
+
+    private static byte[] advertisement(Random random) {
+        int kind = random.nextInt(10);
+        if (kind < 4) {
+            // iBeacon.
+            byte[] record = {
+                    0x02, 0x01, 0x06,
+                    0x1A, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15,
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                    0, 0, 0, 0, (byte) 0xC5
+            };
+            fill(random, record, 9, 20);
+            return record;
+        }
+        if (kind < 6) {
+            // Eddystone UID.
+            byte[] record = {
+                    0x02, 0x01, 0x06,
+                    0x03, 0x03, (byte) 0xAA, (byte) 0xFE,
+                    0x17, 0x16, (byte) 0xAA, (byte) 0xFE, 0x00, (byte) 0xEE,
+                    0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0x00, 0x00
+            };
+            fill(random, record, 13, 16);
+            return record;
+        }
+        if (kind < 9) {
+            // A peripheral: two 16-bit services, TX power, a name and manufacturer data.
+            byte[] record = {
+                    0x02, 0x01, 0x06,
+                    0x05, 0x03, 0x0D, 0x18, 0x0F, 0x18,
+                    0x02, 0x0A, (byte) 0xF4,
+                    0x09, 0x09, 'P', 'e', 'r', 'i', 'p', 'h', '0', '0',
+                    0x07, (byte) 0xFF, 0x59, 0x00, 0, 0, 0, 0
+            };
+            record[20] = (byte) ('0' + random.nextInt(10));
+            record[21] = (byte) ('0' + random.nextInt(10));
+            fill(random, record, 26, 4);
+            return record;
+        }
+        // A 128-bit service with service data.
+        byte[] record = {
+                0x02, 0x01, 0x06,
+                0x11, 0x07, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+                0x05, 0x16, 0x0A, 0x18, 0, 0
+        };
+        fill(random, record, 5, 16);
+        fill(random, record, 25, 2);
+        return record;
+    }
+
+    private static void fill(Random random, byte[] record, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            record[i] = (byte) random.nextInt();
+        }
+    }
+
+    /**
+     * Write the capture to {@code sink} as batches of {@code batchSize} advertisements.
+     */
+    void writeTo(BufferedSink sink, int batchSize) throws IOException {
+        ScanBatchWriter writer = new ScanBatchWriter();
+        for (int i = 0; i < size; i++) {
+            writer.add(times[i], addresses[i], rssis[i], records[i]);
+            if (writer.count() == batchSize) {
+                writer.writeTo(sink);
+            }
+        }
+        writer.writeTo(sink);
+    }
+
+    private void add(long time, long address, int rssi, byte[] record) {
+        if (size == times.length) {
+            int capacity = size * 2;
+            times = Arrays.copyOf(times, capacity);
+            addresses = Arrays.copyOf(addresses, capacity);
+            rssis = Arrays.copyOf(rssis, capacity);
+            records = Arrays.copyOf(records, capacity);
+        }
+        times[size] = time;
+        addresses[size] = address;
+        rssis[size] = rssi;
+        records[size] = record;
+        size++;
+    }
+}
@@ -0,0 +1,168 @@
+package retrotooth.benchmarks;
+
+import android.os.ParcelUuid;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import retrotooth.model.AdvertisementFilter;
+import retrotooth.model.BluetoothUuid;
+import retrotooth.model.ScanRecord;
+import retrotooth.model.ScanRecordView;
+import retrotooth.scan.DeviceTable;
+
+/**
+ * Replays a capture through each stage of the scan path. Every operation handles the next
+ * advertisement of the capture, so the score is the time per advertisement and the gc
+ * profiler's {@code gc.alloc.rate.norm} the bytes allocated per advertisement; only
+ * {@link #parseUuidFrom} works per UUID instead.
+ * <p/>
+ * The capture is generated unless one is given:
+ * {@code -p capture=/path/to/btsnoop_hci.log} replays a btsnoop HCI log, or any other path a
+ * spool of scan batches.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class ScanPathBenchmark {
+    @Param({"synthetic"})
+    public String capture;
+
+    private ScanCapture adverts;
+    private int next;
+
+    // Every UUID in the capture: service UUID lists and service data.
+    private byte[][] uuidRecords;
+    private int[] uuidOffsets;
+    private int[] uuidLengths;
+    private int uuidCount;
+    private int nextUuid;
+
+    private final ScanRecordView view = new ScanRecordView();
+    private AdvertisementFilter filter;
+    private DeviceTable table;
+
+    @Setup
+    public void setUp() throws IOException {
+        adverts = ScanCapture.load(capture);
+        filter = new AdvertisementFilter.Builder()
+                .manufacturerData(0x004C, new byte[] { 0x02, 0x15 })
+                .minRssi(-80)
+                .or()
+                .serviceUuid(0xFEAA)
+                .build();
+        table = new DeviceTable(4096);
+
+        uuidRecords = new byte[64][];
+        uuidOffsets = new int[64];
+        uuidLengths = new int[64];
+        for (int i = 0; i < adverts.size; i++) {
+            byte[] record = adverts.records[i];
+            view.wrap(record);
+            for (int field = 0; field < view.fieldCount(); field++) {
+                int offset = view.fieldOffset(field);
+                int length = view.fieldLength(field);
+                switch (view.fieldType(field)) {
+                    case ScanRecordView.DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+                    case ScanRecordView.DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+                        addUuids(record, offset, length, BluetoothUuid.UUID_BYTES_16_BIT);
+                        break;
+                    case ScanRecordView.DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+                    case ScanRecordView.DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+                        addUuids(record, offset, length, BluetoothUuid.UUID_BYTES_32_BIT);
+                        break;
+                    case ScanRecordView.DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+                    case ScanRecordView.DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+                        addUuids(record, offset, length, BluetoothUuid.UUID_BYTES_128_BIT);
+                        break;
+                    case ScanRecordView.DATA_TYPE_SERVICE_DATA:
+                        addUuids(record, offset, Math.min(length, 2),
+                                BluetoothUuid.UUID_BYTES_16_BIT);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+        if (uuidCount == 0) {
+            throw new IllegalStateException("No UUIDs in capture " + capture);
+        }
+    }
+
+    private void addUuids(byte[] record, int offset, int length, int uuidLength) {
+        for (int end = offset + length; offset + uuidLength <= end; offset += uuidLength) {
+            if (uuidCount == uuidRecords.length) {
+                uuidRecords = Arrays.copyOf(uuidRecords, uuidCount * 2);
+                uuidOffsets = Arrays.copyOf(uuidOffsets, uuidCount * 2);
+                uuidLengths = Arrays.copyOf(uuidLengths, uuidCount * 2);
+            }
+            uuidRecords[uuidCount] = record;
+            uuidOffsets[uuidCount] = offset;
+            uuidLengths[uuidCount] = uuidLength;
+            uuidCount++;
+        }
+    }
+
+    private int nextAdvert() {
+        int i = next;
+        next = i + 1 == adverts.size ? 0 : i + 1;
+        return i;
+    }
+
+    @Benchmark
+    public ScanRecord parseFromBytes() {
+        return ScanRecord.parseFromBytes(adverts.records[nextAdvert()]);
+    }
+
+    @Benchmark
+    public ParcelUuid parseUuidFrom() {
+        int i = nextUuid;
+        nextUuid = i + 1 == uuidCount ? 0 : i + 1;
+        return BluetoothUuid.parseUuidFrom(uuidRecords[i], uuidOffsets[i], uuidLengths[i]);
+    }
+
+    @Benchmark
+    public int scanRecordView() {
+        view.wrap(adverts.records[nextAdvert()]);
+        return view.serviceUuidCount() + view.txPowerLevel() + view.advertiseFlags();
+    }
+
+    @Benchmark
+    public boolean filter() {
+        int i = nextAdvert();
+        return filter.matches(adverts.records[i], adverts.rssis[i]);
+    }
+
+    @Benchmark
+    public int aggregate() {
+        int i = nextAdvert();
+        return table.update(adverts.addresses[i], adverts.rssis[i], adverts.records[i],
+                adverts.times[i]);
+    }
+
+    /**
+     * Filter, then aggregate and parse only the advertisements which matched, as an app
+     * listing nearby beacons would.
+     */
+    @Benchmark
+    public Object filterAggregateParse() {
+        int i = nextAdvert();
+        byte[] record = adverts.records[i];
+        if (!filter.matches(record, adverts.rssis[i])) {
+            return null;
+        }
+        int changes = table.update(adverts.addresses[i], adverts.rssis[i], record,
+                adverts.times[i]);
+        return changes != DeviceTable.CHANGE_NONE ? ScanRecord.parseFromBytes(record) : null;
+    }
+}
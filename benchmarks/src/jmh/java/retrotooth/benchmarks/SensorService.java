@@ -0,0 +1,101 @@
+package retrotooth.benchmarks;
+
+import java.io.UnsupportedEncodingException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import retrotooth.Call;
+import retrotooth.Retrotooth;
+import retrotooth.Transport;
+import retrotooth.annotations.READ;
+import retrotooth.annotations.WRITE;
+import retrotooth.profile.HeartRateMeasurement;
+import retrotooth.profile.ProfileConverterFactory;
+import retrotooth.sim.SimulatedPeripheral;
+import retrotooth.util.BleUtils;
+
+/**
+ * The API the call path benchmarks exercise: a heart rate sensor, with one method per kind of
+ * response conversion.
+ */
+public interface SensorService {
+    @READ(service = "180d", characteristic = "2a38")
+    Call<byte[]> bodySensorLocation();
+
+    @READ(service = "180d", characteristic = "2a37")
+    Call<HeartRateMeasurement> heartRateMeasurement();
+
+    @READ(service = "180a", characteristic = "2a29")
+    Call<String> manufacturerName();
+
+    @WRITE(service = "180d", characteristic = "2a39")
+    Call<Void> resetEnergyExpended();
+
+    /**
+     * Stand-ins for the sensor: zero-latency transports serving fixed values.
+     */
+    final class Peripherals {
+        static final UUID HEART_RATE = BleUtils.getUUID("180d");
+        static final UUID DEVICE_INFORMATION = BleUtils.getUUID("180a");
+        static final UUID BODY_SENSOR_LOCATION = BleUtils.getUUID("2a38");
+        static final UUID HEART_RATE_MEASUREMENT = BleUtils.getUUID("2a37");
+        static final UUID MANUFACTURER_NAME = BleUtils.getUUID("2a29");
+        static final UUID HEART_RATE_CONTROL_POINT = BleUtils.getUUID("2a39");
+
+        // Flags: uint8 BPM, contact detected, energy expended and two RR-intervals.
+        static final byte[] MEASUREMENT = {
+                0x1E, 72, (byte) 0xE8, 0x03, 0x52, 0x03, 0x48, 0x03
+        };
+
+        private Peripherals() {
+            // No instances.
+        }
+
+        /**
+         * Returns {@code loopback}, a {@link LoopbackTransport}, or {@code simulated}, a
+         * {@link SimulatedPeripheral} with free connection events and no faults, which adds the
+         * cost of the simulation itself.
+         */
+        static Transport create(String kind) {
+            if ("loopback".equals(kind)) {
+                Map<UUID, byte[]> values = new LinkedHashMap<>();
+                values.put(BODY_SENSOR_LOCATION, new byte[] { 0x01 });
+                values.put(HEART_RATE_MEASUREMENT, MEASUREMENT);
+                values.put(MANUFACTURER_NAME, manufacturerName());
+                values.put(HEART_RATE_CONTROL_POINT, new byte[] { 0x01 });
+                return new LoopbackTransport(values);
+            }
+            if ("simulated".equals(kind)) {
+                return new SimulatedPeripheral.Builder()
+                        .characteristic(HEART_RATE, BODY_SENSOR_LOCATION,
+                                SimulatedPeripheral.PROPERTY_READ, new byte[] { 0x01 })
+                        .characteristic(HEART_RATE, HEART_RATE_MEASUREMENT,
+                                SimulatedPeripheral.PROPERTY_READ, MEASUREMENT)
+                        .characteristic(DEVICE_INFORMATION, MANUFACTURER_NAME,
+                                SimulatedPeripheral.PROPERTY_READ, manufacturerName())
+                        .characteristic(HEART_RATE, HEART_RATE_CONTROL_POINT,
+                                SimulatedPeripheral.PROPERTY_WRITE, new byte[] { 0x01 })
+                        .connectionInterval(0, TimeUnit.MILLISECONDS)
+                        .build();
+            }
+            throw new IllegalArgumentException("Unknown transport: " + kind);
+        }
+
+        static Retrotooth retrotooth(Transport transport) {
+            return new Retrotooth.Builder()
+                    .transport(transport)
+                    .addConverterFactory(ProfileConverterFactory.create())
+                    .build();
+        }
+
+        private static byte[] manufacturerName() {
+            try {
+                return "Retrotooth Labs".getBytes("UTF-8");
+            } catch (UnsupportedEncodingException e) {
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
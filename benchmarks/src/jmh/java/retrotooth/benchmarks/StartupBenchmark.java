@@ -0,0 +1,52 @@
+package retrotooth.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import retrotooth.Retrotooth;
+import retrotooth.Transport;
+import retrotooth.profile.HeartRateMeasurement;
+
+/**
+ * What an app pays before its first response: building a {@link Retrotooth}, creating the service
+ * proxy, and a first call, which parses the method's annotations and looks up its call adapter
+ * and converter. Each operation starts from a new instance, so nothing is cached between them but
+ * what the JVM itself caches. For the cost in a cold JVM, run in single shot mode across many
+ * forks: {@code -bm ss -f 20}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class StartupBenchmark {
+    private Transport transport;
+
+    @Setup
+    public void setUp() {
+        transport = SensorService.Peripherals.create("loopback");
+    }
+
+    @Benchmark
+    public Retrotooth build() {
+        return SensorService.Peripherals.retrotooth(transport);
+    }
+
+    @Benchmark
+    public SensorService create() {
+        return SensorService.Peripherals.retrotooth(transport).create(SensorService.class);
+    }
+
+    @Benchmark
+    public HeartRateMeasurement firstCall() throws IOException {
+        SensorService service =
+                SensorService.Peripherals.retrotooth(transport).create(SensorService.class);
+        return service.heartRateMeasurement().execute().data();
+    }
+}
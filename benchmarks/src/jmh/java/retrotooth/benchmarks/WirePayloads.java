@@ -0,0 +1,242 @@
+package retrotooth.benchmarks;
+
+import com.squareup.wire.Message;
+import com.squareup.wire.ProtoField;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.squareup.wire.Message.Datatype.BOOL;
+import static com.squareup.wire.Message.Datatype.INT32;
+import static com.squareup.wire.Message.Datatype.INT64;
+import static com.squareup.wire.Message.Datatype.SINT32;
+import static com.squareup.wire.Message.Datatype.STRING;
+import static com.squareup.wire.Message.Label.PACKED;
+import static com.squareup.wire.Message.Label.REPEATED;
+
+/**
+ * The benchmark payloads as Wire messages, for the Wire converter: the messages described by
+ * {@link ProtoPayloads}, in the form the Wire compiler generates.
+ */
+final class WirePayloads {
+    private WirePayloads() {
+        // No instances.
+    }
+
+    static Telemetry telemetry(int[] samples) {
+        List<Integer> values = new ArrayList<>(samples.length);
+        for (int sample : samples) {
+            values.add(sample);
+        }
+        return new Telemetry.Builder()
+                .sequence(Payloads.SEQUENCE)
+                .timestamp(Payloads.TIMESTAMP)
+                .battery(Payloads.BATTERY)
+                .samples(values)
+                .build();
+    }
+
+    static DeviceConfig config(List<String> channels) {
+        return new DeviceConfig.Builder()
+                .name(Payloads.NAME)
+                .enabled(Payloads.ENABLED)
+                .sample_rate_hz(Payloads.SAMPLE_RATE_HZ)
+                .report_interval_ms(Payloads.REPORT_INTERVAL_MS)
+                .channels(channels)
+                .build();
+    }
+
+    public static final class Telemetry extends Message {
+        @ProtoField(tag = 1, type = INT32)
+        public final Integer sequence;
+
+        @ProtoField(tag = 2, type = INT64)
+        public final Long timestamp;
+
+        @ProtoField(tag = 3, type = INT32)
+        public final Integer battery;
+
+        @ProtoField(tag = 4, type = SINT32, label = PACKED)
+        public final List<Integer> samples;
+
+        private Telemetry(Builder builder) {
+            this.sequence = builder.sequence;
+            this.timestamp = builder.timestamp;
+            this.battery = builder.battery;
+            this.samples = immutableCopyOf(builder.samples);
+            setBuilder(builder);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) return true;
+            if (!(other instanceof Telemetry)) return false;
+            Telemetry o = (Telemetry) other;
+            return equals(sequence, o.sequence)
+                    && equals(timestamp, o.timestamp)
+                    && equals(battery, o.battery)
+                    && equals(samples, o.samples);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = hashCode;
+            if (result == 0) {
+                result = sequence != null ? sequence.hashCode() : 0;
+                result = result * 37 + (timestamp != null ? timestamp.hashCode() : 0);
+                result = result * 37 + (battery != null ? battery.hashCode() : 0);
+                result = result * 37 + (samples != null ? samples.hashCode() : 1);
+                hashCode = result;
+            }
+            return result;
+        }
+
+        public static final class Builder extends Message.Builder<Telemetry> {
+            public Integer sequence;
+            public Long timestamp;
+            public Integer battery;
+            public List<Integer> samples;
+
+            public Builder() {
+            }
+
+            public Builder(Telemetry message) {
+                super(message);
+                if (message == null) return;
+                this.sequence = message.sequence;
+                this.timestamp = message.timestamp;
+                this.battery = message.battery;
+                this.samples = copyOf(message.samples);
+            }
+
+            public Builder sequence(Integer sequence) {
+                this.sequence = sequence;
+                return this;
+            }
+
+            public Builder timestamp(Long timestamp) {
+                this.timestamp = timestamp;
+                return this;
+            }
+
+            public Builder battery(Integer battery) {
+                this.battery = battery;
+                return this;
+            }
+
+            public Builder samples(List<Integer> samples) {
+                this.samples = checkForNulls(samples);
+                return this;
+            }
+
+            @Override
+            public Telemetry build() {
+                return new Telemetry(this);
+            }
+        }
+    }
+
+    public static final class DeviceConfig extends Message {
+        @ProtoField(tag = 1, type = STRING)
+        public final String name;
+
+        @ProtoField(tag = 2, type = BOOL)
+        public final Boolean enabled;
+
+        @ProtoField(tag = 3, type = INT32)
+        public final Integer sample_rate_hz;
+
+        @ProtoField(tag = 4, type = INT32)
+        public final Integer report_interval_ms;
+
+        @ProtoField(tag = 5, type = STRING, label = REPEATED)
+        public final List<String> channels;
+
+        private DeviceConfig(Builder builder) {
+            this.name = builder.name;
+            this.enabled = builder.enabled;
+            this.sample_rate_hz = builder.sample_rate_hz;
+            this.report_interval_ms = builder.report_interval_ms;
+            this.channels = immutableCopyOf(builder.channels);
+            setBuilder(builder);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) return true;
+            if (!(other instanceof DeviceConfig)) return false;
+            DeviceConfig o = (DeviceConfig) other;
+            return equals(name, o.name)
+                    && equals(enabled, o.enabled)
+                    && equals(sample_rate_hz, o.sample_rate_hz)
+                    && equals(report_interval_ms, o.report_interval_ms)
+                    && equals(channels, o.channels);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = hashCode;
+            if (result == 0) {
+                result = name != null ? name.hashCode() : 0;
+                result = result * 37 + (enabled != null ? enabled.hashCode() : 0);
+                result = result * 37 + (sample_rate_hz != null ? sample_rate_hz.hashCode() : 0);
+                result = result * 37
+                        + (report_interval_ms != null ? report_interval_ms.hashCode() : 0);
+                result = result * 37 + (channels != null ? channels.hashCode() : 1);
+                hashCode = result;
+            }
+            return result;
+        }
+
+        public static final class Builder extends Message.Builder<DeviceConfig> {
+            public String name;
+            public Boolean enabled;
+            public Integer sample_rate_hz;
+            public Integer report_interval_ms;
+            public List<String> channels;
+
+            public Builder() {
+            }
+
+            public Builder(DeviceConfig message) {
+                super(message);
+                if (message == null) return;
+                this.name = message.name;
+                this.enabled = message.enabled;
+                this.sample_rate_hz = message.sample_rate_hz;
+                this.report_interval_ms = message.report_interval_ms;
+                this.channels = copyOf(message.channels);
+            }
+
+            public Builder name(String name) {
+                this.name = name;
+                return this;
+            }
+
+            public Builder enabled(Boolean enabled) {
+                this.enabled = enabled;
+                return this;
+            }
+
+            public Builder sample_rate_hz(Integer sample_rate_hz) {
+                this.sample_rate_hz = sample_rate_hz;
+                return this;
+            }
+
+            public Builder report_interval_ms(Integer report_interval_ms) {
+                this.report_interval_ms = report_interval_ms;
+                return this;
+            }
+
+            public Builder channels(List<String> channels) {
+                this.channels = checkForNulls(channels);
+                return this;
+            }
+
+            @Override
+            public DeviceConfig build() {
+                return new DeviceConfig(this);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package android.bluetooth;
+
+import android.bluetooth.le.BluetoothLeScanner;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM. There is
+ * no adapter on the JVM: benchmarks talk to a simulated peripheral instead.
+ */
+public final class BluetoothAdapter {
+    public interface LeScanCallback {
+        void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord);
+    }
+
+    private BluetoothAdapter() {
+        // No instances.
+    }
+
+    public BluetoothDevice getRemoteDevice(String address) {
+        throw new UnsupportedOperationException();
+    }
+
+    public BluetoothLeScanner getBluetoothLeScanner() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Deprecated
+    public boolean startLeScan(LeScanCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Deprecated
+    public void stopLeScan(LeScanCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+}
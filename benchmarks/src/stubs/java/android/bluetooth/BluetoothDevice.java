@@ -0,0 +1,25 @@
+package android.bluetooth;
+
+import android.content.Context;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class BluetoothDevice {
+    private BluetoothDevice() {
+        // No instances.
+    }
+
+    public String getAddress() {
+        throw new UnsupportedOperationException();
+    }
+
+    public String getName() {
+        throw new UnsupportedOperationException();
+    }
+
+    public BluetoothGatt connectGatt(Context context, boolean autoConnect,
+            BluetoothGattCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,51 @@
+package android.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class BluetoothGatt implements BluetoothProfile {
+    public static final int GATT_SUCCESS = 0;
+
+    private BluetoothGatt() {
+        // No instances.
+    }
+
+    public BluetoothDevice getDevice() {
+        throw new UnsupportedOperationException();
+    }
+
+    public BluetoothGattService getService(UUID uuid) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean discoverServices() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean setCharacteristicNotification(BluetoothGattCharacteristic characteristic,
+            boolean enable) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean readCharacteristic(BluetoothGattCharacteristic characteristic) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean writeCharacteristic(BluetoothGattCharacteristic characteristic) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean readDescriptor(BluetoothGattDescriptor descriptor) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void disconnect() {
+        throw new UnsupportedOperationException();
+    }
+
+    public void close() {
+        throw new UnsupportedOperationException();
+    }
+}
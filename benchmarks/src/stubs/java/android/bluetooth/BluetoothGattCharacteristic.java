@@ -0,0 +1,24 @@
+package android.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public class BluetoothGattCharacteristic {
+    public UUID getUuid() {
+        throw new UnsupportedOperationException();
+    }
+
+    public byte[] getValue() {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean setValue(byte[] value) {
+        throw new UnsupportedOperationException();
+    }
+
+    public BluetoothGattDescriptor getDescriptor(UUID uuid) {
+        throw new UnsupportedOperationException();
+    }
+}
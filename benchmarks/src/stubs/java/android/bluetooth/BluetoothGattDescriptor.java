@@ -0,0 +1,10 @@
+package android.bluetooth;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public class BluetoothGattDescriptor {
+    public byte[] getValue() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,12 @@
+package android.bluetooth;
+
+import java.util.UUID;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public class BluetoothGattService {
+    public BluetoothGattCharacteristic getCharacteristic(UUID uuid) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,14 @@
+package android.bluetooth;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class BluetoothManager {
+    private BluetoothManager() {
+        // No instances.
+    }
+
+    public BluetoothAdapter getAdapter() {
+        throw new UnsupportedOperationException();
+    }
+}
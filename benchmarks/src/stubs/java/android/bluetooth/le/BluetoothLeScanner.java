@@ -0,0 +1,21 @@
+package android.bluetooth.le;
+
+import java.util.List;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class BluetoothLeScanner {
+    private BluetoothLeScanner() {
+        // No instances.
+    }
+
+    public void startScan(List<ScanFilter> filters, ScanSettings settings,
+            ScanCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+
+    public void stopScan(ScanCallback callback) {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,17 @@
+package android.bluetooth.le;
+
+import java.util.List;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public abstract class ScanCallback {
+    public void onScanResult(int callbackType, ScanResult result) {
+    }
+
+    public void onBatchScanResults(List<ScanResult> results) {
+    }
+
+    public void onScanFailed(int errorCode) {
+    }
+}
@@ -0,0 +1,10 @@
+package android.bluetooth.le;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class ScanFilter {
+    private ScanFilter() {
+        // No instances.
+    }
+}
@@ -0,0 +1,14 @@
+package android.bluetooth.le;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class ScanRecord {
+    private ScanRecord() {
+        // No instances.
+    }
+
+    public byte[] getBytes() {
+        throw new UnsupportedOperationException();
+    }
+}
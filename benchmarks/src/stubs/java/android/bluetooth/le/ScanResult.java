@@ -0,0 +1,24 @@
+package android.bluetooth.le;
+
+import android.bluetooth.BluetoothDevice;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class ScanResult {
+    private ScanResult() {
+        // No instances.
+    }
+
+    public BluetoothDevice getDevice() {
+        throw new UnsupportedOperationException();
+    }
+
+    public int getRssi() {
+        throw new UnsupportedOperationException();
+    }
+
+    public ScanRecord getScanRecord() {
+        throw new UnsupportedOperationException();
+    }
+}
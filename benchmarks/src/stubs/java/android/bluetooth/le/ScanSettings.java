@@ -0,0 +1,22 @@
+package android.bluetooth.le;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class ScanSettings {
+    public static final int SCAN_MODE_LOW_LATENCY = 2;
+
+    private ScanSettings() {
+        // No instances.
+    }
+
+    public static final class Builder {
+        public Builder setScanMode(int scanMode) {
+            throw new UnsupportedOperationException();
+        }
+
+        public ScanSettings build() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
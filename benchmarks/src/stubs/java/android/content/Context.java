@@ -0,0 +1,10 @@
+package android.content;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public abstract class Context {
+    public static final String BLUETOOTH_SERVICE = "bluetooth";
+
+    public abstract Object getSystemService(String name);
+}
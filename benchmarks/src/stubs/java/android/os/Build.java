@@ -0,0 +1,27 @@
+package android.os;
+
+/**
+ * The parts of the framework class the library uses, so it compiles for the JVM. The SDK version
+ * is 0, as the platform detection expects off a device, so calls get the JVM's defaults.
+ */
+public final class Build {
+    private Build() {
+        // No instances.
+    }
+
+    public static final class VERSION {
+        public static final int SDK_INT = 0;
+
+        private VERSION() {
+            // No instances.
+        }
+    }
+
+    public static final class VERSION_CODES {
+        public static final int LOLLIPOP = 21;
+
+        private VERSION_CODES() {
+            // No instances.
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package android.os;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM. Never
+ * constructed there: the platform detection only posts to the main thread on a device.
+ */
+public class Handler {
+    public Handler(Looper looper) {
+        throw new UnsupportedOperationException();
+    }
+
+    public final boolean post(Runnable r) {
+        throw new UnsupportedOperationException();
+    }
+}
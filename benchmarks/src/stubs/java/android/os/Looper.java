@@ -0,0 +1,14 @@
+package android.os;
+
+/**
+ * The signatures of the framework class the library uses, so it compiles for the JVM.
+ */
+public final class Looper {
+    private Looper() {
+        // No instances.
+    }
+
+    public static Looper getMainLooper() {
+        throw new UnsupportedOperationException();
+    }
+}
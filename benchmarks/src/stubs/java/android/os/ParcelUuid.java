@@ -0,0 +1,38 @@
+package android.os;
+
+import java.util.UUID;
+
+/**
+ * The parts of the framework class the scan path uses, so it runs on the JVM. Like the original,
+ * this is an immutable wrapper around a {@link UUID}.
+ */
+public final class ParcelUuid {
+    private final UUID uuid;
+
+    public ParcelUuid(UUID uuid) {
+        this.uuid = uuid;
+    }
+
+    public static ParcelUuid fromString(String uuid) {
+        return new ParcelUuid(UUID.fromString(uuid));
+    }
+
+    public UUID getUuid() {
+        return uuid;
+    }
+
+    @Override
+    public boolean equals(Object object) {
+        return object instanceof ParcelUuid && uuid.equals(((ParcelUuid) object).uuid);
+    }
+
+    @Override
+    public int hashCode() {
+        return uuid.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return uuid.toString();
+    }
+}
@@ -0,0 +1,14 @@
+package android.support.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * Stands in for the support annotation so the scan path compiles on the JVM.
+ */
+@Documented
+@Retention(CLASS)
+public @interface Nullable {
+}
@@ -0,0 +1,134 @@
+package android.support.v4.util;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The parts of the support library class the scan path uses, so it runs on the JVM. Like the
+ * original, entries live in an array of hash codes kept sorted for binary search and a parallel
+ * array of keys and values, so allocation matches a device.
+ */
+public class ArrayMap<K, V> extends AbstractMap<K, V> {
+    private int[] hashes = new int[0];
+    private Object[] array = new Object[0];
+    private int size;
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return indexOf(key) >= 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V get(Object key) {
+        int i = indexOf(key);
+        return i >= 0 ? (V) array[2 * i + 1] : null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V put(K key, V value) {
+        int i = indexOf(key);
+        if (i >= 0) {
+            V old = (V) array[2 * i + 1];
+            array[2 * i + 1] = value;
+            return old;
+        }
+        i = ~i;
+        if (size == hashes.length) {
+            int capacity = size < 4 ? 4 : size < 8 ? 8 : size + (size >> 1);
+            hashes = Arrays.copyOf(hashes, capacity);
+            array = Arrays.copyOf(array, capacity * 2);
+        }
+        System.arraycopy(hashes, i, hashes, i + 1, size - i);
+        System.arraycopy(array, 2 * i, array, 2 * i + 2, 2 * (size - i));
+        hashes[i] = hash(key);
+        array[2 * i] = key;
+        array[2 * i + 1] = value;
+        size++;
+        return null;
+    }
+
+    @Override
+    public Set<Entry<K, V>> entrySet() {
+        return new AbstractSet<Entry<K, V>>() {
+            @Override
+            public Iterator<Entry<K, V>> iterator() {
+                return new Iterator<Entry<K, V>>() {
+                    int index;
+
+                    @Override
+                    public boolean hasNext() {
+                        return index < size;
+                    }
+
+                    @SuppressWarnings("unchecked")
+                    @Override
+                    public Entry<K, V> next() {
+                        if (index >= size) {
+                            throw new NoSuchElementException();
+                        }
+                        int i = index++;
+                        return new SimpleImmutableEntry<K, V>((K) array[2 * i],
+                                (V) array[2 * i + 1]);
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    /**
+     * Returns the index of {@code key}, or the bitwise complement of where it would be inserted.
+     */
+    private int indexOf(Object key) {
+        int hash = hash(key);
+        int i = Arrays.binarySearch(hashes, 0, size, hash);
+        if (i < 0) {
+            return i;
+        }
+        // Several keys may share a hash: search either side of the match.
+        for (int j = i; j < size && hashes[j] == hash; j++) {
+            if (equal(array[2 * j], key)) {
+                return j;
+            }
+        }
+        for (int j = i - 1; j >= 0 && hashes[j] == hash; j--) {
+            if (equal(array[2 * j], key)) {
+                return j;
+            }
+        }
+        int end = i;
+        while (end < size && hashes[end] == hash) {
+            end++;
+        }
+        return ~end;
+    }
+
+    private static int hash(Object key) {
+        return key != null ? key.hashCode() : 0;
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+}
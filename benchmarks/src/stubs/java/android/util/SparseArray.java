@@ -0,0 +1,64 @@
+package android.util;
+
+import java.util.Arrays;
+
+/**
+ * The parts of the framework class the scan path uses, so it runs on the JVM. Like the original,
+ * keys and values live in parallel arrays kept sorted by key, so allocation matches a device.
+ */
+public class SparseArray<E> {
+    private int[] keys;
+    private Object[] values;
+    private int size;
+
+    public SparseArray() {
+        this(10);
+    }
+
+    public SparseArray(int initialCapacity) {
+        keys = new int[initialCapacity];
+        values = new Object[initialCapacity];
+    }
+
+    public E get(int key) {
+        return get(key, null);
+    }
+
+    @SuppressWarnings("unchecked")
+    public E get(int key, E valueIfKeyNotFound) {
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        return i < 0 ? valueIfKeyNotFound : (E) values[i];
+    }
+
+    public void put(int key, E value) {
+        int i = Arrays.binarySearch(keys, 0, size, key);
+        if (i >= 0) {
+            values[i] = value;
+            return;
+        }
+        i = ~i;
+        if (size == keys.length) {
+            int capacity = Math.max(4, size * 2);
+            keys = Arrays.copyOf(keys, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        System.arraycopy(keys, i, keys, i + 1, size - i);
+        System.arraycopy(values, i, values, i + 1, size - i);
+        keys[i] = key;
+        values[i] = value;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int keyAt(int index) {
+        return keys[index];
+    }
+
+    @SuppressWarnings("unchecked")
+    public E valueAt(int index) {
+        return (E) values[index];
+    }
+}
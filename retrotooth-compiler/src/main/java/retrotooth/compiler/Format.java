@@ -0,0 +1,191 @@
+package retrotooth.compiler;
+
+import java.util.Locale;
+
+import javax.lang.model.type.TypeKind;
+
+/**
+ * Mirrors {@code retrotooth.GattFormat}, producing the source for reading a value from
+ * {@code data[pos]} and for writing one to an okio {@code sink}.
+ */
+enum Format {
+    UINT8(1, false, false),
+    UINT16(2, false, false),
+    UINT24(3, false, false),
+    UINT32(4, false, false),
+    SINT8(1, true, false),
+    SINT16(2, true, false),
+    SINT24(3, true, false),
+    SINT32(4, true, false),
+    FLOAT32(4, true, true),
+    FLOAT64(8, true, true),
+    SFLOAT(2, false, true),
+    FLOAT(4, true, true);
+
+    final int size;
+    final boolean signed;
+    final boolean floatingPoint;
+
+    Format(int size, boolean signed, boolean floatingPoint) {
+        this.size = size;
+        this.signed = signed;
+        this.floatingPoint = floatingPoint;
+    }
+
+    /**
+     * Returns the type of the expression returned by {@link #read}.
+     */
+    TypeKind readKind() {
+        switch (this) {
+            case FLOAT32:
+                return TypeKind.FLOAT;
+            case FLOAT64:
+            case SFLOAT:
+            case FLOAT:
+                return TypeKind.DOUBLE;
+            case SINT8:
+                return TypeKind.BYTE;
+            default:
+                return size == 4 && !signed ? TypeKind.LONG : TypeKind.INT;
+        }
+    }
+
+    String read(boolean bigEndian) {
+        switch (this) {
+            case FLOAT32:
+                return "Float.intBitsToFloat(" + integer(4, true, bigEndian) + ")";
+            case FLOAT64:
+                return "Double.longBitsToDouble(" + integer(8, true, bigEndian) + ")";
+            case SFLOAT:
+                return "BleUtils.sfloat(" + integer(2, false, bigEndian) + ")";
+            case FLOAT:
+                return "BleUtils.ieeeFloat(" + integer(4, true, bigEndian) + ")";
+            default:
+                return integer(size, signed, bigEndian);
+        }
+    }
+
+    /**
+     * Returns the statements writing {@code value}, an expression of type {@code kind}.
+     */
+    String[] write(String value, TypeKind kind, boolean bigEndian) {
+        String suffix = bigEndian ? "" : "Le";
+        switch (this) {
+            case FLOAT32:
+                return new String[]{"sink.writeInt" + suffix + "(Float.floatToIntBits("
+                        + convert(value, kind, TypeKind.FLOAT) + "))"};
+            case FLOAT64:
+                return new String[]{"sink.writeLong" + suffix + "(Double.doubleToLongBits("
+                        + convert(value, kind, TypeKind.DOUBLE) + "))"};
+            case SFLOAT:
+                return new String[]{"sink.writeShort" + suffix + "(BleUtils.toSfloat("
+                        + convert(value, kind, TypeKind.DOUBLE) + "))"};
+            case FLOAT:
+                return new String[]{"sink.writeInt" + suffix + "(BleUtils.toIeeeFloat("
+                        + convert(value, kind, TypeKind.DOUBLE) + "))"};
+            default:
+                break;
+        }
+        String intValue = convert(value, kind, TypeKind.INT);
+        switch (size) {
+            case 1:
+                return new String[]{"sink.writeByte(" + intValue + ")"};
+            case 2:
+                return new String[]{"sink.writeShort" + suffix + "(" + intValue + ")"};
+            case 3:
+                String low = "sink.writeByte(" + intValue + ")";
+                String high = "sink.writeShort" + suffix + "(" + primary(intValue) + " >> 8)";
+                return bigEndian ? new String[]{high, low} : new String[]{low, high};
+            default:
+                return new String[]{"sink.writeInt" + suffix + "(" + intValue + ")"};
+        }
+    }
+
+    /**
+     * Returns {@code expression}, of numeric type {@code from}, as a {@code to}: unchanged where
+     * Java widens it implicitly, else cast.
+     */
+    static String convert(String expression, TypeKind from, TypeKind to) {
+        if (rank(from) <= rank(to)) {
+            return expression;
+        }
+        return "(" + to.name().toLowerCase(Locale.US) + ") " + primary(expression);
+    }
+
+    /**
+     * Returns {@code expression} parenthesized, unless it already binds as tightly as a cast:
+     * a name, a method call, or a parenthesized expression.
+     */
+    static String primary(String expression) {
+        int i = 0;
+        while (i < expression.length()
+                && (Character.isJavaIdentifierPart(expression.charAt(i))
+                || expression.charAt(i) == '.')) {
+            i++;
+        }
+        int end = expression.length();
+        if (i == end || expression.charAt(i) == '(' && closing(expression, i) == end - 1) {
+            return expression;
+        }
+        return "(" + expression + ")";
+    }
+
+    private static int closing(String expression, int open) {
+        int depth = 0;
+        for (int i = open; i < expression.length(); i++) {
+            char c = expression.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int rank(TypeKind kind) {
+        switch (kind) {
+            case BYTE:
+                return 0;
+            case SHORT:
+                return 1;
+            case INT:
+                return 2;
+            case LONG:
+                return 3;
+            case FLOAT:
+                return 4;
+            case DOUBLE:
+                return 5;
+            default:
+                throw new IllegalArgumentException("Not numeric: " + kind);
+        }
+    }
+
+    /**
+     * Assembles {@code size} bytes into an int, or a long for unsigned 32-bit and 64-bit values.
+     */
+    private static String integer(int size, boolean signed, boolean bigEndian) {
+        boolean wide = size == 8;
+        StringBuilder expression = new StringBuilder();
+        for (int i = 0; i < size; i++) {
+            int shift = 8 * (bigEndian ? size - 1 - i : i);
+            boolean mostSignificant = shift == 8 * (size - 1);
+            if (i > 0) {
+                expression.append(" | ");
+            }
+            String b = i == 0 ? "data[pos]" : "data[pos + " + i + "]";
+            if (!(mostSignificant && signed && !wide)) {
+                b = "(" + b + " & 0xFF)";
+            }
+            if (wide) {
+                b = "(long) " + b;
+            }
+            expression.append(shift == 0 ? b : "(" + b + " << " + shift + ")");
+        }
+        if (size == 4 && !signed) {
+            return "((" + expression + ") & 0xFFFFFFFFL)";
+        }
+        return size == 1 ? expression.toString() : "(" + expression + ")";
+    }
+}
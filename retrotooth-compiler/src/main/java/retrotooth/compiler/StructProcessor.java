@@ -0,0 +1,503 @@
+package retrotooth.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.annotation.processing.ProcessingEnvironment;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a {@code StructCodec} for every class annotated with {@code @Struct}.
+ * <p/>
+ * The library is an Android module, so its annotations are matched by name rather than by class.
+ */
+public final class StructProcessor extends AbstractProcessor {
+    static final String STRUCT = "retrotooth.annotations.Struct";
+    static final String STRUCT_FIELD = "retrotooth.annotations.StructField";
+    static final String BIT_FIELD = "retrotooth.annotations.BitField";
+    static final String CODEC_SUFFIX = "$$StructCodec";
+
+    private Elements elements;
+    private Filer filer;
+    private Messager messager;
+
+    @Override
+    public synchronized void init(ProcessingEnvironment env) {
+        super.init(env);
+        elements = env.getElementUtils();
+        filer = env.getFiler();
+        messager = env.getMessager();
+    }
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return new LinkedHashSet<>(Arrays.asList(STRUCT, BIT_FIELD, STRUCT_FIELD));
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment env) {
+        TypeElement struct = elements.getTypeElement(STRUCT);
+        if (struct == null) {
+            return false;
+        }
+        for (Element element : env.getElementsAnnotatedWith(struct)) {
+            if (element.getKind() != ElementKind.CLASS) {
+                error(element, "@Struct may only be applied to classes.");
+                continue;
+            }
+            TypeElement type = (TypeElement) element;
+            List<StructFieldModel> fields = parseFields(type);
+            if (fields == null || !checkConstructor(type)) {
+                continue;
+            }
+            try {
+                write(type, fields);
+            } catch (IOException e) {
+                error(type, "Unable to write codec for %s: %s", type, e.getMessage());
+            }
+        }
+        return true;
+    }
+
+    private boolean checkConstructor(TypeElement type) {
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            error(type, "@Struct classes must not be abstract.");
+            return false;
+        }
+        if (type.getNestingKind().isNested() && !type.getModifiers().contains(Modifier.STATIC)) {
+            error(type, "Nested @Struct classes must be static.");
+            return false;
+        }
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getParameters().isEmpty()
+                    && !constructor.getModifiers().contains(Modifier.PRIVATE)) {
+                return true;
+            }
+        }
+        error(type, "@Struct classes need a non-private no-arg constructor.");
+        return false;
+    }
+
+    /**
+     * Returns the annotated fields in declaration order, or null if any are invalid.
+     */
+    private List<StructFieldModel> parseFields(TypeElement type) {
+        Map<String, StructFieldModel> byName = new LinkedHashMap<>();
+        boolean valid = true;
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements())) {
+            AnnotationMirror structField = findAnnotation(field, STRUCT_FIELD);
+            AnnotationMirror bitField = findAnnotation(field, BIT_FIELD);
+            if (structField == null && bitField == null) {
+                continue;
+            }
+            Set<Modifier> modifiers = field.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || modifiers.contains(Modifier.STATIC)
+                    || modifiers.contains(Modifier.FINAL)) {
+                error(field, "@Struct fields must not be private, static or final.");
+                valid = false;
+                continue;
+            }
+            TypeKind kind = field.asType().getKind();
+            if (!kind.isPrimitive() || kind == TypeKind.CHAR) {
+                error(field, "@Struct fields must be boolean, byte, short, int, long, float or double.");
+                valid = false;
+                continue;
+            }
+            String name = field.getSimpleName().toString();
+            StructFieldModel model = new StructFieldModel(name, kind);
+            if (structField != null && bitField != null) {
+                error(field, "A field cannot be both a @StructField and a @BitField.");
+                valid = false;
+                continue;
+            } else if (structField != null) {
+                model.format = Format.valueOf(enumValue(structField, "value"));
+                model.offset = intValue(structField, "offset", -1);
+                model.bigEndian = booleanValue(structField, "bigEndian");
+                model.flags = stringValue(structField, "flags");
+                model.mask = intValue(structField, "mask", 0);
+                if (!model.flags.isEmpty() && !checkSource(field, byName, model.flags)) {
+                    valid = false;
+                    continue;
+                }
+            } else {
+                model.source = stringValue(bitField, "source");
+                model.shift = intValue(bitField, "shift", 0);
+                model.width = intValue(bitField, "width", 1);
+                if (model.width < 1 || model.shift < 0 || model.shift + model.width > 64) {
+                    error(field, "@BitField bits must lie within 64 bits.");
+                    valid = false;
+                    continue;
+                }
+                if (!checkSource(field, byName, model.source)) {
+                    valid = false;
+                    continue;
+                }
+                int sourceBits = bits(byName.get(model.source).kind);
+                if (model.shift + model.width > sourceBits) {
+                    error(field, "@BitField bits must lie within the %d bits of \"%s\".",
+                            sourceBits, model.source);
+                    valid = false;
+                    continue;
+                }
+            }
+            byName.put(name, model);
+        }
+        return valid ? new ArrayList<>(byName.values()) : null;
+    }
+
+    private boolean checkSource(Element field, Map<String, StructFieldModel> earlier, String name) {
+        StructFieldModel source = earlier.get(name);
+        if (source == null || source.format == null) {
+            error(field, "\"%s\" must name an earlier @StructField.", name);
+            return false;
+        }
+        if (source.format.floatingPoint || bits(source.kind) == 0) {
+            error(field, "\"%s\" must be an integer field to take bits from.", name);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the width of an integer field of type {@code kind}, or 0 for other types.
+     */
+    private static int bits(TypeKind kind) {
+        switch (kind) {
+            case BYTE:
+                return 8;
+            case SHORT:
+                return 16;
+            case INT:
+                return 32;
+            case LONG:
+                return 64;
+            default:
+                return 0;
+        }
+    }
+
+    private void write(TypeElement type, List<StructFieldModel> fields) throws IOException {
+        String packageName = elements.getPackageOf(type).getQualifiedName().toString();
+        String typeName = type.getQualifiedName().toString();
+        String codecName = binaryName(type) + CODEC_SUFFIX;
+
+        StringBuilder out = new StringBuilder();
+        out.append("// Generated code from Retrotooth. Do not modify!\n");
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("import java.io.EOFException;\n")
+                .append("import java.io.IOException;\n\n")
+                .append("import okio.Buffer;\n")
+                .append("import retrotooth.StructCodec;\n")
+                .append("import retrotooth.util.BleUtils;\n\n");
+        out.append("public final class ").append(codecName)
+                .append(" implements StructCodec<").append(typeName).append("> {\n");
+
+        out.append("    @Override\n")
+                .append("    public ").append(typeName).append(" newInstance() {\n")
+                .append("        return new ").append(typeName).append("();\n")
+                .append("    }\n\n");
+
+        writeDecode(out, typeName, fields);
+        out.append('\n');
+        writeEncode(out, typeName, fields);
+        out.append("}\n");
+
+        String sourceName = packageName.isEmpty() ? codecName : packageName + "." + codecName;
+        JavaFileObject file = filer.createSourceFile(sourceName, type);
+        Writer writer = file.openWriter();
+        try {
+            writer.write(out.toString());
+        } finally {
+            writer.close();
+        }
+    }
+
+    private static void writeDecode(StringBuilder out, String typeName, List<StructFieldModel> fields) {
+        Map<String, StructFieldModel> byName = new LinkedHashMap<>();
+        for (StructFieldModel field : fields) {
+            byName.put(field.name, field);
+        }
+        out.append("    @Override\n")
+                .append("    public ").append(typeName).append(" decode(byte[] data, int offset, int length, ")
+                .append(typeName).append(" target) throws IOException {\n")
+                .append("        int end = offset + length;\n")
+                .append("        int pos = offset;\n");
+        for (StructFieldModel field : fields) {
+            String target = "target." + field.name;
+            if (field.format == null) {
+                TypeKind sourceKind = arithmeticKind(byName.get(field.source).kind);
+                String bits = extract("target." + field.source, sourceKind, field.shift,
+                        field.width);
+                out.append("        ").append(target).append(" = ")
+                        .append(assign(field.kind, bits, sourceKind)).append(";\n");
+                continue;
+            }
+            String indent = "        ";
+            if (!field.flags.isEmpty()) {
+                out.append(indent).append("if ((target.").append(field.flags).append(" & ")
+                        .append(field.mask).append(") != 0) {\n");
+                indent += "    ";
+            }
+            if (field.offset >= 0) {
+                out.append(indent).append("pos = offset + ").append(field.offset).append(";\n");
+            }
+            int size = field.format.size;
+            out.append(indent).append("if (pos + ").append(size).append(" > end) throw new EOFException(\"")
+                    .append(field.name).append(" needs ").append(size)
+                    .append(" bytes at \" + (pos - offset) + \" of \" + length);\n");
+            out.append(indent).append(target).append(" = ")
+                    .append(assign(field.kind, field.format.read(field.bigEndian),
+                            field.format.readKind()))
+                    .append(";\n");
+            out.append(indent).append("pos += ").append(size).append(";\n");
+            if (!field.flags.isEmpty()) {
+                out.append("        }\n");
+            }
+        }
+        out.append("        return target;\n")
+                .append("    }\n");
+    }
+
+    private static void writeEncode(StringBuilder out, String typeName, List<StructFieldModel> fields) {
+        out.append("    @Override\n")
+                .append("    public void encode(").append(typeName)
+                .append(" value, Buffer sink) throws IOException {\n");
+
+        // Bit fields are merged into their source before anything is written, in a local of the
+        // type its bits are computed in.
+        Map<String, StructFieldModel> byName = new LinkedHashMap<>();
+        Map<String, String> merged = new LinkedHashMap<>();
+        Map<String, TypeKind> mergedKinds = new LinkedHashMap<>();
+        for (StructFieldModel field : fields) {
+            byName.put(field.name, field);
+            if (field.format != null) {
+                continue;
+            }
+            TypeKind localKind = arithmeticKind(byName.get(field.source).kind);
+            String local = merged.get(field.source);
+            if (local == null) {
+                local = field.source + "Bits";
+                merged.put(field.source, local);
+                mergedKinds.put(field.source, localKind);
+                out.append("        ").append(javaType(localKind)).append(' ').append(local)
+                        .append(" = value.").append(field.source).append(";\n");
+            }
+            boolean wide = localKind == TypeKind.LONG;
+            String bits;
+            if (field.kind == TypeKind.BOOLEAN) {
+                bits = wide ? "(value." + field.name + " ? 1L : 0L)"
+                        : "(value." + field.name + " ? 1 : 0)";
+            } else {
+                bits = "(" + Format.convert("value." + field.name, field.kind, localKind) + " & "
+                        + mask(field.width, wide) + ")";
+            }
+            long clear = ~(maskValue(field.width) << field.shift);
+            if (!wide) {
+                clear = (int) clear;
+            }
+            out.append("        ").append(local).append(" = (").append(local).append(" & ")
+                    .append(literal(clear, wide)).append(") | ")
+                    .append(field.shift == 0 ? bits : "(" + bits + " << " + field.shift + ")")
+                    .append(";\n");
+        }
+
+        out.append("        int pos = 0;\n");
+        for (StructFieldModel field : fields) {
+            if (field.format == null) {
+                continue;
+            }
+            String indent = "        ";
+            if (!field.flags.isEmpty()) {
+                String flags = merged.containsKey(field.flags)
+                        ? merged.get(field.flags) : "value." + field.flags;
+                out.append(indent).append("if ((").append(flags).append(" & ")
+                        .append(field.mask).append(") != 0) {\n");
+                indent += "    ";
+            }
+            if (field.offset >= 0) {
+                out.append(indent).append("if (pos > ").append(field.offset)
+                        .append(") throw new IllegalStateException(\"").append(field.name)
+                        .append(" overlaps the previous field\");\n");
+                out.append(indent).append("for (; pos < ").append(field.offset)
+                        .append("; pos++) sink.writeByte(0);\n");
+            }
+            String value;
+            TypeKind kind;
+            if (merged.containsKey(field.name)) {
+                value = merged.get(field.name);
+                kind = mergedKinds.get(field.name);
+            } else if (field.kind == TypeKind.BOOLEAN) {
+                value = "(value." + field.name + " ? 1 : 0)";
+                kind = TypeKind.INT;
+            } else {
+                value = "value." + field.name;
+                kind = field.kind;
+            }
+            for (String statement : field.format.write(value, kind, field.bigEndian)) {
+                out.append(indent).append(statement).append(";\n");
+            }
+            out.append(indent).append("pos += ").append(field.format.size).append(";\n");
+            if (!field.flags.isEmpty()) {
+                out.append("        }\n");
+            }
+        }
+        out.append("    }\n");
+    }
+
+    /**
+     * Returns {@code expression}, of type {@code from}, assigned to a field of type {@code to}.
+     */
+    private static String assign(TypeKind to, String expression, TypeKind from) {
+        if (to == TypeKind.BOOLEAN) {
+            return Format.primary(expression) + " != 0";
+        }
+        return Format.convert(expression, from, to);
+    }
+
+    /**
+     * Returns an expression for {@code width} bits at {@code shift} of {@code source}, computed in
+     * {@code kind}: an int, or a long for long sources.
+     */
+    private static String extract(String source, TypeKind kind, int shift, int width) {
+        int bits = kind == TypeKind.LONG ? 64 : 32;
+        String expression = shift == 0 ? source : "(" + source + " >>> " + shift + ")";
+        if (shift + width == bits) {
+            // The shift already cleared the bits above.
+            return expression;
+        }
+        return expression + " & " + mask(width, kind == TypeKind.LONG);
+    }
+
+    /**
+     * Returns the type Java computes bitwise operations on {@code kind} in.
+     */
+    private static TypeKind arithmeticKind(TypeKind kind) {
+        switch (kind) {
+            case LONG:
+            case FLOAT:
+            case DOUBLE:
+                return TypeKind.LONG;
+            default:
+                return TypeKind.INT;
+        }
+    }
+
+    private static String javaType(TypeKind kind) {
+        return kind == TypeKind.LONG ? "long" : "int";
+    }
+
+    private static String mask(int width, boolean wide) {
+        return literal(maskValue(width), wide);
+    }
+
+    private static long maskValue(int width) {
+        return width == 64 ? -1L : (1L << width) - 1;
+    }
+
+    private static String literal(long value, boolean wide) {
+        return wide ? "0x" + Long.toHexString(value) + "L"
+                : "0x" + Integer.toHexString((int) value);
+    }
+
+    private String binaryName(TypeElement type) {
+        String name = elements.getBinaryName(type).toString();
+        PackageElement pkg = elements.getPackageOf(type);
+        return pkg.isUnnamed() ? name : name.substring(pkg.getQualifiedName().length() + 1);
+    }
+
+    private static AnnotationMirror findAnnotation(Element element, String name) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            if (mirror.getAnnotationType().toString().equals(name)) {
+                return mirror;
+            }
+        }
+        return null;
+    }
+
+    private static Object value(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return entry.getValue().getValue();
+            }
+        }
+        return null;
+    }
+
+    private static String enumValue(AnnotationMirror mirror, String name) {
+        return ((VariableElement) value(mirror, name)).getSimpleName().toString();
+    }
+
+    private static int intValue(AnnotationMirror mirror, String name, int defaultValue) {
+        Object value = value(mirror, name);
+        return value != null ? (Integer) value : defaultValue;
+    }
+
+    private static boolean booleanValue(AnnotationMirror mirror, String name) {
+        Object value = value(mirror, name);
+        return value != null && (Boolean) value;
+    }
+
+    private static String stringValue(AnnotationMirror mirror, String name) {
+        Object value = value(mirror, name);
+        return value != null ? (String) value : "";
+    }
+
+    private void error(Element element, String message, Object... args) {
+        messager.printMessage(Diagnostic.Kind.ERROR, String.format(message, args), element);
+    }
+
+    static final class StructFieldModel {
+        final String name;
+        final TypeKind kind;
+
+        // @StructField
+        Format format;
+        int offset = -1;
+        boolean bigEndian;
+        String flags = "";
+        int mask;
+
+        // @BitField
+        String source;
+        int shift;
+        int width;
+
+        StructFieldModel(String name, TypeKind kind) {
+            this.name = name;
+            this.kind = kind;
+        }
+    }
+}
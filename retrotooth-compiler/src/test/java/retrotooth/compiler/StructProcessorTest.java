@@ -0,0 +1,273 @@
+package retrotooth.compiler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import okio.Buffer;
+import retrotooth.StructCodec;
+import retrotooth.annotations.Struct;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class StructProcessorTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void supportedAnnotationTypes() {
+        assertEquals(new LinkedHashSet<>(Arrays.asList("retrotooth.annotations.Struct",
+                        "retrotooth.annotations.BitField", "retrotooth.annotations.StructField")),
+                new StructProcessor().getSupportedAnnotationTypes());
+    }
+
+    @Test
+    public void byteOrder() throws Exception {
+        StructCodec<Object> codec = codec("test.Sample", "test.Sample",
+                "package test;",
+                "import retrotooth.GattFormat;",
+                "import retrotooth.annotations.Struct;",
+                "import retrotooth.annotations.StructField;",
+                "@Struct",
+                "public class Sample {",
+                "  @StructField(GattFormat.UINT16) public int little;",
+                "  @StructField(value = GattFormat.UINT16, bigEndian = true) public int big;",
+                "  @StructField(value = GattFormat.SINT24, bigEndian = true) public int signed24;",
+                "  @StructField(GattFormat.UINT32) public long unsigned32;",
+                "  @StructField(GattFormat.SINT8) public byte signed8;",
+                "  @StructField(value = GattFormat.SINT16, bigEndian = true) public short signed16;",
+                "  @StructField(GattFormat.FLOAT32) public float float32;",
+                "}");
+        byte[] data = bytes(0x34, 0x12, 0x12, 0x34, 0xFF, 0xFF, 0xFE, 0x98, 0xBA, 0xDC, 0xFE,
+                0xFB, 0xFE, 0xD4, 0x00, 0x00, 0xC0, 0x3F);
+        Object value = codec.decode(data, 0, data.length, codec.newInstance());
+        assertEquals(0x1234, field(value, "little"));
+        assertEquals(0x1234, field(value, "big"));
+        assertEquals(-2, field(value, "signed24"));
+        assertEquals(0xFEDCBA98L, field(value, "unsigned32"));
+        assertEquals((byte) -5, field(value, "signed8"));
+        assertEquals((short) -300, field(value, "signed16"));
+        assertEquals(1.5f, field(value, "float32"));
+        assertArrayEquals(data, encode(codec, value));
+    }
+
+    @Test
+    public void bitFields() throws Exception {
+        StructCodec<Object> codec = codec("test.Flags", "test.Flags",
+                "package test;",
+                "import retrotooth.GattFormat;",
+                "import retrotooth.annotations.BitField;",
+                "import retrotooth.annotations.Struct;",
+                "import retrotooth.annotations.StructField;",
+                "@Struct",
+                "public class Flags {",
+                "  @StructField(GattFormat.UINT8) public int flags;",
+                "  @BitField(source = \"flags\", shift = 0) public boolean present;",
+                "  @BitField(source = \"flags\", shift = 1, width = 3) public int mode;",
+                "  @StructField(value = GattFormat.UINT16, flags = \"flags\", mask = 0x01)",
+                "  public int optional;",
+                "  @StructField(GattFormat.UINT32) public long word;",
+                "  @BitField(source = \"word\", shift = 28, width = 4) public int top;",
+                "  @StructField(GattFormat.UINT8) public byte small;",
+                "  @BitField(source = \"small\", shift = 4, width = 4) public int high;",
+                "}");
+        byte[] data = bytes(0x0B, 0x02, 0x01, 0x01, 0x00, 0x00, 0xA0, 0xC3);
+        Object value = codec.decode(data, 0, data.length, codec.newInstance());
+        assertEquals(true, field(value, "present"));
+        assertEquals(5, field(value, "mode"));
+        assertEquals(0x0102, field(value, "optional"));
+        assertEquals(0xA, field(value, "top"));
+        assertEquals(0xC, field(value, "high"));
+        assertArrayEquals(data, encode(codec, value));
+
+        // Without its flag the optional field is neither read nor written.
+        data = bytes(0x0A, 0x01, 0x00, 0x00, 0xA0, 0xC3);
+        value = codec.decode(data, 0, data.length, codec.newInstance());
+        assertEquals(false, field(value, "present"));
+        assertEquals(0, field(value, "optional"));
+        assertArrayEquals(data, encode(codec, value));
+
+        // Bit fields are merged into their source on encode.
+        set(value, "mode", 2);
+        set(value, "present", true);
+        set(value, "optional", 0x0304);
+        set(value, "top", 0x3);
+        assertArrayEquals(bytes(0x05, 0x04, 0x03, 0x01, 0x00, 0x00, 0x30, 0xC3),
+                encode(codec, value));
+    }
+
+    @Test
+    public void nestedStruct() throws Exception {
+        StructCodec<Object> codec = codec("test.Outer", "test.Outer$Inner",
+                "package test;",
+                "import retrotooth.GattFormat;",
+                "import retrotooth.annotations.Struct;",
+                "import retrotooth.annotations.StructField;",
+                "public class Outer {",
+                "  @Struct",
+                "  public static class Inner {",
+                "    @StructField(GattFormat.UINT8) public int value;",
+                "  }",
+                "}");
+        byte[] data = bytes(0x2A);
+        Object value = codec.decode(data, 0, data.length, codec.newInstance());
+        assertEquals("test.Outer$Inner", value.getClass().getName());
+        assertEquals(0x2A, field(value, "value"));
+        assertArrayEquals(data, encode(codec, value));
+    }
+
+    @Test
+    public void bitFieldBeyondIntSource() throws Exception {
+        List<String> errors = compileWithErrors("test.Wide",
+                "package test;",
+                "import retrotooth.GattFormat;",
+                "import retrotooth.annotations.BitField;",
+                "import retrotooth.annotations.Struct;",
+                "import retrotooth.annotations.StructField;",
+                "@Struct",
+                "public class Wide {",
+                "  @StructField(GattFormat.UINT32) public int word;",
+                "  @BitField(source = \"word\", shift = 32) public boolean beyond;",
+                "}");
+        assertEquals(Collections.singletonList(
+                "@BitField bits must lie within the 32 bits of \"word\"."), errors);
+    }
+
+    @Test
+    public void bitFieldOfFloatingPointSource() throws Exception {
+        List<String> errors = compileWithErrors("test.Real",
+                "package test;",
+                "import retrotooth.GattFormat;",
+                "import retrotooth.annotations.BitField;",
+                "import retrotooth.annotations.Struct;",
+                "import retrotooth.annotations.StructField;",
+                "@Struct",
+                "public class Real {",
+                "  @StructField(GattFormat.UINT8) public double level;",
+                "  @BitField(source = \"level\", shift = 0) public boolean low;",
+                "}");
+        assertEquals(Collections.singletonList(
+                "\"level\" must be an integer field to take bits from."), errors);
+    }
+
+    /**
+     * Compiles {@code source} with the processor and returns a codec for {@code structName}.
+     * Generated code must compile without warnings, including for redundant casts.
+     */
+    @SuppressWarnings("unchecked")
+    private StructCodec<Object> codec(String className, String structName, String... source)
+            throws Exception {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        File out = compile(className, diagnostics, source);
+        assertEquals(Collections.emptyList(), messages(diagnostics, null));
+        assertTrue(new File(out, structName.replace('.', '/') + "$$StructCodec.java").exists());
+        ClassLoader loader = new URLClassLoader(new URL[]{out.toURI().toURL()},
+                getClass().getClassLoader());
+        return (StructCodec<Object>) loader.loadClass(structName + "$$StructCodec").newInstance();
+    }
+
+    private List<String> compileWithErrors(String className, String... source)
+            throws IOException, URISyntaxException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        File out = compile(className, diagnostics, source);
+        assertFalse(new File(out, className.replace('.', '/') + "$$StructCodec.java").exists());
+        return messages(diagnostics, Diagnostic.Kind.ERROR);
+    }
+
+    private File compile(String className, DiagnosticCollector<JavaFileObject> diagnostics,
+            String... lines) throws IOException, URISyntaxException {
+        final StringBuilder source = new StringBuilder();
+        for (String line : lines) {
+            source.append(line).append('\n');
+        }
+        JavaFileObject file = new SimpleJavaFileObject(
+                URI.create("string:///" + className.replace('.', '/') + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(diagnostics, null, UTF_8);
+        File out = temporaryFolder.newFolder();
+        files.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singleton(out));
+        files.setLocation(StandardLocation.SOURCE_OUTPUT, Collections.singleton(out));
+        files.setLocation(StandardLocation.CLASS_PATH,
+                Arrays.asList(location(Struct.class), location(Buffer.class)));
+        JavaCompiler.CompilationTask task = compiler.getTask(null, files, diagnostics,
+                Collections.singletonList("-Xlint:cast"), null, Collections.singleton(file));
+        task.setProcessors(Collections.singleton(new StructProcessor()));
+        task.call();
+        files.close();
+        return out;
+    }
+
+    /**
+     * Returns the messages of the given kind, or of every kind if {@code kind} is null.
+     */
+    private static List<String> messages(DiagnosticCollector<JavaFileObject> diagnostics,
+            Diagnostic.Kind kind) {
+        List<String> messages = new ArrayList<>();
+        for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+            if (kind == null || diagnostic.getKind() == kind) {
+                messages.add(diagnostic.getMessage(null));
+            }
+        }
+        return messages;
+    }
+
+    private static File location(Class<?> type) throws URISyntaxException {
+        return new File(type.getProtectionDomain().getCodeSource().getLocation().toURI());
+    }
+
+    private static byte[] encode(StructCodec<Object> codec, Object value) throws IOException {
+        Buffer sink = new Buffer();
+        codec.encode(value, sink);
+        return sink.readByteArray();
+    }
+
+    private static Object field(Object value, String name) throws ReflectiveOperationException {
+        return value.getClass().getField(name).get(value);
+    }
+
+    private static void set(Object value, String name, Object fieldValue)
+            throws ReflectiveOperationException {
+        value.getClass().getField(name).set(value, fieldValue);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+}
@@ -65,5 +65,23 @@ public final class GsonConverterFactory extends Converter.Factory {
         TypeAdapter<?> adapter = gson.getAdapter(TypeToken.get(type));
         return new GsonRequestBodyConverter<>(adapter);
     }
+
+    /**
+     * Create a decoder for a stream of {@code type} documents which arrive in fragments. See
+     * {@link FragmentDecoder}.
+     */
+    public <T> FragmentDecoder<T> newFragmentDecoder(Type type) {
+        return newFragmentDecoder(type, FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a decoder for a stream of {@code type} documents which arrive in fragments, holding
+     * at most {@code maxBufferSize} bytes that have not been parsed yet.
+     */
+    @SuppressWarnings("unchecked") // Type and T are tied together by the caller.
+    public <T> FragmentDecoder<T> newFragmentDecoder(Type type, long maxBufferSize) {
+        TypeAdapter<T> adapter = (TypeAdapter<T>) gson.getAdapter(TypeToken.get(type));
+        return new GsonFragmentDecoder<>(adapter, maxBufferSize);
+    }
 }
 
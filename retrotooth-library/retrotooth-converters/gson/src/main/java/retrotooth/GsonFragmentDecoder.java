@@ -0,0 +1,43 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrotooth;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+final class GsonFragmentDecoder<T> extends FragmentDecoder<T> {
+    private final TypeAdapter<T> adapter;
+
+    GsonFragmentDecoder(TypeAdapter<T> adapter, long maxBufferSize) {
+        super(maxBufferSize);
+        this.adapter = adapter;
+    }
+
+    @Override
+    protected void decode(BufferedSource source, Listener<T> listener) throws IOException {
+        JsonReader reader = new JsonReader(new Utf8Reader(source));
+        // Lenient readers accept consecutive top-level documents.
+        reader.setLenient(true);
+        while (reader.peek() != JsonToken.END_DOCUMENT) {
+            listener.onDocument(adapter.read(reader));
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package retrotooth;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.ObjectReader;
@@ -22,6 +23,9 @@ import com.fasterxml.jackson.databind.ObjectWriter;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+
+import retrotooth.ok.MediaType;
 
 /**
  * A {@linkplain Converter.Factory converter} which uses Jackson.
@@ -30,6 +34,9 @@ import java.lang.reflect.Type;
  * handle all types. If you are mixing JSON serialization with something else (such as protocol
  * buffers), you must {@linkplain Retrofit.Builder#addConverterFactory(Converter.Factory) add this
  * instance} last to allow the other converters a chance to see their types.
+ * <p/>
+ * A mapper for a binary format such as CBOR or Smile can be used to reduce the number of bytes
+ * sent over the air. Messages are then read as bytes and tagged with the format's media type.
  */
 public final class JacksonConverterFactory extends Converter.Factory {
     /**
@@ -43,27 +50,91 @@ public final class JacksonConverterFactory extends Converter.Factory {
      * Create an instance using {@code mapper} for conversion.
      */
     public static JacksonConverterFactory create(ObjectMapper mapper) {
-        return new JacksonConverterFactory(mapper);
+        if (mapper == null) throw new NullPointerException("mapper == null");
+        return create(mapper, mediaType(mapper.getFactory()));
+    }
+
+    /**
+     * Create an instance using {@code mapper} for conversion, tagging request bodies with
+     * {@code mediaType}.
+     */
+    public static JacksonConverterFactory create(ObjectMapper mapper, MediaType mediaType) {
+        return new JacksonConverterFactory(mapper, mediaType);
+    }
+
+    private static MediaType mediaType(JsonFactory factory) {
+        switch (factory.getFormatName()) {
+            case "CBOR":
+                return MediaType.parse("application/cbor");
+            case "Smile":
+                return MediaType.parse("application/x-jackson-smile");
+            default:
+                return MediaType.parse("application/json; charset=UTF-8");
+        }
     }
 
     private final ObjectMapper mapper;
+    private final MediaType mediaType;
+    private final boolean binary;
+    // ObjectReader and ObjectWriter are immutable and thread safe, so one per type is enough.
+    private final ConcurrentHashMap<Type, JacksonResponseBodyConverter<?>> responseConverters =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Type, JacksonRequestBodyConverter<?>> requestConverters =
+            new ConcurrentHashMap<>();
 
-    private JacksonConverterFactory(ObjectMapper mapper) {
+    private JacksonConverterFactory(ObjectMapper mapper, MediaType mediaType) {
         if (mapper == null) throw new NullPointerException("mapper == null");
+        if (mediaType == null) throw new NullPointerException("mediaType == null");
         this.mapper = mapper;
+        this.mediaType = mediaType;
+        // Binary formats such as CBOR and Smile can only be parsed from bytes.
+        this.binary = mapper.getFactory().canHandleBinaryNatively();
     }
 
     @Override
     public Converter<ResponseData, ?> fromResponseBody(Type type, Annotation[] annotations) {
-        JavaType javaType = mapper.getTypeFactory().constructType(type);
-        ObjectReader reader = mapper.reader(javaType);
-        return new JacksonResponseBodyConverter<>(reader);
+        JacksonResponseBodyConverter<?> converter = responseConverters.get(type);
+        if (converter == null) {
+            JavaType javaType = mapper.getTypeFactory().constructType(type);
+            ObjectReader reader = mapper.readerFor(javaType);
+            converter = new JacksonResponseBodyConverter<>(reader, binary);
+            JacksonResponseBodyConverter<?> existing = responseConverters.putIfAbsent(type, converter);
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+        return converter;
     }
 
     @Override
     public Converter<?, RequestData> toRequestBody(Type type, Annotation[] annotations) {
+        JacksonRequestBodyConverter<?> converter = requestConverters.get(type);
+        if (converter == null) {
+            JavaType javaType = mapper.getTypeFactory().constructType(type);
+            ObjectWriter writer = mapper.writerFor(javaType);
+            converter = new JacksonRequestBodyConverter<>(writer, mediaType);
+            JacksonRequestBodyConverter<?> existing = requestConverters.putIfAbsent(type, converter);
+            if (existing != null) {
+                converter = existing;
+            }
+        }
+        return converter;
+    }
+
+    /**
+     * Create a decoder for a stream of {@code type} documents which arrive in fragments. See
+     * {@link FragmentDecoder}.
+     */
+    public <T> FragmentDecoder<T> newFragmentDecoder(Type type) {
+        return newFragmentDecoder(type, FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a decoder for a stream of {@code type} documents which arrive in fragments, holding
+     * at most {@code maxBufferSize} bytes that have not been parsed yet.
+     */
+    public <T> FragmentDecoder<T> newFragmentDecoder(Type type, long maxBufferSize) {
         JavaType javaType = mapper.getTypeFactory().constructType(type);
-        ObjectWriter writer = mapper.writerWithType(javaType);
-        return new JacksonRequestBodyConverter<>(writer);
+        return new JacksonFragmentDecoder<>(mapper.readerFor(javaType), maxBufferSize);
     }
 }
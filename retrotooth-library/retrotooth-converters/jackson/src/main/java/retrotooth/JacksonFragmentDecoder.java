@@ -0,0 +1,44 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrotooth;
+
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+final class JacksonFragmentDecoder<T> extends FragmentDecoder<T> {
+    private final ObjectReader adapter;
+
+    JacksonFragmentDecoder(ObjectReader adapter, long maxBufferSize) {
+        super(maxBufferSize);
+        this.adapter = adapter;
+    }
+
+    @Override
+    protected void decode(BufferedSource source, Listener<T> listener) throws IOException {
+        MappingIterator<T> documents = adapter.readValues(source.inputStream());
+        try {
+            while (documents.hasNextValue()) {
+                listener.onDocument(documents.nextValue());
+            }
+        } finally {
+            documents.close();
+        }
+    }
+}
@@ -22,17 +22,17 @@ import java.io.IOException;
 import retrotooth.ok.MediaType;
 
 final class JacksonRequestBodyConverter<T> implements Converter<T, RequestData> {
-    private static final MediaType MEDIA_TYPE = MediaType.parse("application/json; charset=UTF-8");
-
     private final ObjectWriter adapter;
+    private final MediaType mediaType;
 
-    JacksonRequestBodyConverter(ObjectWriter adapter) {
+    JacksonRequestBodyConverter(ObjectWriter adapter, MediaType mediaType) {
         this.adapter = adapter;
+        this.mediaType = mediaType;
     }
 
     @Override
     public RequestData convert(T value) throws IOException {
         byte[] bytes = adapter.writeValueAsBytes(value);
-        return RequestData.create(MEDIA_TYPE, bytes);
+        return RequestData.create(mediaType, bytes);
     }
 }
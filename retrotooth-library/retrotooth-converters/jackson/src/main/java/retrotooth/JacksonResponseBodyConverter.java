@@ -18,17 +18,28 @@ package retrotooth;
 import com.fasterxml.jackson.databind.ObjectReader;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 
 final class JacksonResponseBodyConverter<T> implements Converter<ResponseData, T> {
     private final ObjectReader adapter;
+    private final boolean binary;
 
-    JacksonResponseBodyConverter(ObjectReader adapter) {
+    JacksonResponseBodyConverter(ObjectReader adapter, boolean binary) {
         this.adapter = adapter;
+        this.binary = binary;
     }
 
     @Override
     public T convert(ResponseData value) throws IOException {
+        if (binary) {
+            InputStream is = value.byteStream();
+            try {
+                return adapter.readValue(is);
+            } finally {
+                Utils.closeQuietly(is);
+            }
+        }
         Reader reader = value.charStream();
         try {
             return adapter.readValue(reader);
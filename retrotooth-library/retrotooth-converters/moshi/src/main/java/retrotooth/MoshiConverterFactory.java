@@ -62,4 +62,21 @@ public final class MoshiConverterFactory extends Converter.Factory {
         JsonAdapter<?> adapter = moshi.adapter(type);
         return new MoshiRequestBodyConverter<>(adapter);
     }
+
+    /**
+     * Create a decoder for a stream of {@code type} documents which arrive in fragments. See
+     * {@link FragmentDecoder}.
+     */
+    public <T> FragmentDecoder<T> newFragmentDecoder(Type type) {
+        return newFragmentDecoder(type, FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+    }
+
+    /**
+     * Create a decoder for a stream of {@code type} documents which arrive in fragments, holding
+     * at most {@code maxBufferSize} bytes that have not been parsed yet.
+     */
+    public <T> FragmentDecoder<T> newFragmentDecoder(Type type, long maxBufferSize) {
+        JsonAdapter<T> adapter = moshi.adapter(type);
+        return new MoshiFragmentDecoder<>(adapter, maxBufferSize);
+    }
 }
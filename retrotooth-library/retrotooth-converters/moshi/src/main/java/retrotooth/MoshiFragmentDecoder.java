@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrotooth;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonReader;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+final class MoshiFragmentDecoder<T> extends FragmentDecoder<T> {
+    private final JsonAdapter<T> adapter;
+
+    MoshiFragmentDecoder(JsonAdapter<T> adapter, long maxBufferSize) {
+        super(maxBufferSize);
+        this.adapter = adapter;
+    }
+
+    @Override
+    protected void decode(BufferedSource source, Listener<T> listener) throws IOException {
+        JsonReader reader = new JsonReader(source);
+        // Lenient readers accept consecutive top-level documents.
+        reader.setLenient(true);
+        while (reader.peek() != JsonReader.Token.END_DOCUMENT) {
+            listener.onDocument(adapter.fromJson(reader));
+        }
+    }
+}
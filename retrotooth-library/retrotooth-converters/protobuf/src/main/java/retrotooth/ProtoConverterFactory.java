@@ -21,6 +21,7 @@ import com.google.protobuf.Parser;
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A {@linkplain Converter.Factory converter} which uses Protocol Buffers.
@@ -33,6 +34,13 @@ public final class ProtoConverterFactory extends Converter.Factory {
         return new ProtoConverterFactory();
     }
 
+    // Parsers and converters by message class, so the PARSER field is only looked up
+    // reflectively once.
+    private final ConcurrentHashMap<Class<?>, Parser<MessageLite>> parsers =
+            new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Class<?>, ProtoResponseBodyConverter<?>> responseConverters =
+            new ConcurrentHashMap<>();
+
     @Override
     public Converter<ResponseData, ?> fromResponseBody(Type type, Annotation[] annotations) {
         if (!(type instanceof Class<?>)) {
@@ -42,17 +50,14 @@ public final class ProtoConverterFactory extends Converter.Factory {
         if (!MessageLite.class.isAssignableFrom(c)) {
             return null;
         }
-
-        Parser<MessageLite> parser;
-        try {
-            Field field = c.getDeclaredField("PARSER");
-            //noinspection unchecked
-            parser = (Parser<MessageLite>) field.get(null);
-        } catch (NoSuchFieldException | IllegalAccessException e) {
-            throw new IllegalArgumentException(
-                    "Found a protobuf message but " + c.getName() + " had no PARSER field.");
+        ProtoResponseBodyConverter<?> converter = responseConverters.get(c);
+        if (converter != null) {
+            return converter;
         }
-        return new ProtoResponseBodyConverter<>(parser);
+
+        converter = new ProtoResponseBodyConverter<>(parser(c));
+        ProtoResponseBodyConverter<?> existing = responseConverters.putIfAbsent(c, converter);
+        return existing != null ? existing : converter;
     }
 
     @Override
@@ -65,4 +70,41 @@ public final class ProtoConverterFactory extends Converter.Factory {
         }
         return new ProtoRequestBodyConverter<>();
     }
+
+    /**
+     * Create a decoder for a stream of varint length-delimited {@code type} messages, as written
+     * by {@link MessageLite#writeDelimitedTo}. See {@link DelimitedMessageDecoder}.
+     */
+    public <T extends MessageLite> DelimitedMessageDecoder<T> newDelimitedMessageDecoder(
+            Class<T> type) {
+        return newDelimitedMessageDecoder(type, DelimitedMessageDecoder.DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Create a decoder for a stream of varint length-delimited {@code type} messages which are
+     * each at most {@code maxMessageSize} bytes.
+     */
+    public <T extends MessageLite> DelimitedMessageDecoder<T> newDelimitedMessageDecoder(
+            Class<T> type, long maxMessageSize) {
+        @SuppressWarnings("unchecked") // The PARSER field of type parses type.
+        Parser<T> parser = (Parser<T>) parser(type);
+        return new ProtoDelimitedMessageDecoder<>(parser, maxMessageSize);
+    }
+
+    @SuppressWarnings("unchecked") // Generated messages declare PARSER as a Parser of their type.
+    private Parser<MessageLite> parser(Class<?> c) {
+        Parser<MessageLite> parser = parsers.get(c);
+        if (parser != null) {
+            return parser;
+        }
+        try {
+            Field field = c.getDeclaredField("PARSER");
+            parser = (Parser<MessageLite>) field.get(null);
+        } catch (NoSuchFieldException | IllegalAccessException e) {
+            throw new IllegalArgumentException(
+                    "Found a protobuf message but " + c.getName() + " had no PARSER field.");
+        }
+        Parser<MessageLite> existing = parsers.putIfAbsent(c, parser);
+        return existing != null ? existing : parser;
+    }
 }
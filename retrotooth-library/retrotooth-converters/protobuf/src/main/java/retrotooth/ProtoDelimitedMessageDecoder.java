@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrotooth;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import com.google.protobuf.MessageLite;
+import com.google.protobuf.Parser;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+final class ProtoDelimitedMessageDecoder<T extends MessageLite>
+    extends DelimitedMessageDecoder<T> {
+  private final Parser<T> parser;
+
+  ProtoDelimitedMessageDecoder(Parser<T> parser, long maxMessageSize) {
+    super(maxMessageSize);
+    this.parser = parser;
+  }
+
+  @Override protected T decode(BufferedSource frame) throws IOException {
+    try {
+      return parser.parseFrom(frame.inputStream());
+    } catch (InvalidProtocolBufferException e) {
+      throw new RuntimeException(e); // Despite extending IOException, this is data mismatch.
+    }
+  }
+}
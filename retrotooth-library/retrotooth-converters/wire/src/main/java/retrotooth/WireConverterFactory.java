@@ -75,4 +75,22 @@ public final class WireConverterFactory extends Converter.Factory {
         }
         return new WireRequestBodyConverter<>();
     }
+
+    /**
+     * Create a decoder for a stream of varint length-delimited {@code type} messages. See
+     * {@link DelimitedMessageDecoder}. Message adapters are cached by the {@link Wire} instance.
+     */
+    public <T extends Message> DelimitedMessageDecoder<T> newDelimitedMessageDecoder(
+            Class<T> type) {
+        return newDelimitedMessageDecoder(type, DelimitedMessageDecoder.DEFAULT_MAX_MESSAGE_SIZE);
+    }
+
+    /**
+     * Create a decoder for a stream of varint length-delimited {@code type} messages which are
+     * each at most {@code maxMessageSize} bytes.
+     */
+    public <T extends Message> DelimitedMessageDecoder<T> newDelimitedMessageDecoder(
+            Class<T> type, long maxMessageSize) {
+        return new WireDelimitedMessageDecoder<>(wire, type, maxMessageSize);
+    }
 }
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2015 Square, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package retrotooth;
+
+import com.squareup.wire.Message;
+import com.squareup.wire.Wire;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+final class WireDelimitedMessageDecoder<T extends Message> extends DelimitedMessageDecoder<T> {
+    private final Wire wire;
+    private final Class<T> cls;
+
+    WireDelimitedMessageDecoder(Wire wire, Class<T> cls, long maxMessageSize) {
+        super(maxMessageSize);
+        this.wire = wire;
+        this.cls = cls;
+    }
+
+    @Override
+    protected T decode(BufferedSource frame) throws IOException {
+        return wire.parseFrom(frame, cls);
+    }
+}
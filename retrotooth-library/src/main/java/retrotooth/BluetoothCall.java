@@ -1,27 +1,35 @@
 package retrotooth;
 
 
-import android.bluetooth.BluetoothGatt;
-
 import java.io.IOException;
 
 final class BluetoothCall<T> implements Call<T> {
-    private final BluetoothGatt client;
+    private final Transport transport;
     private final RequestFactory requestFactory;
     private final Converter<ResponseData, T> responseConverter;
-    private final RetrotoothGattCallback retrotoothGattCallback;
+    // The response converter, or what it wraps when responses are compressed.
+    private final Converter<ResponseData, T> bodyConverter;
+    private final CompressedResponseDataConverter<T> decompressor;
+    private final KeyedSerialExecutor decodeExecutor;
+    private final PresentationFormatCache presentationFormats;
     private final Object[] args;
 
     private boolean executed; // Guarded by this.
     private volatile boolean canceled;
     private GattCall rawCall;
 
-    BluetoothCall(BluetoothGatt client, RequestFactory requestFactory, Converter<ResponseData, T> responseConverter,
-                  RetrotoothGattCallback retrotoothGattCallback, Object[] args) {
-        this.client = client;
+    BluetoothCall(Transport transport, RequestFactory requestFactory, Converter<ResponseData, T> responseConverter,
+                  KeyedSerialExecutor decodeExecutor, PresentationFormatCache presentationFormats,
+                  Object[] args) {
+        this.transport = transport;
         this.requestFactory = requestFactory;
         this.responseConverter = responseConverter;
-        this.retrotoothGattCallback = retrotoothGattCallback;
+        this.decompressor = responseConverter instanceof CompressedResponseDataConverter
+                ? (CompressedResponseDataConverter<T>) responseConverter
+                : null;
+        this.bodyConverter = decompressor != null ? decompressor.delegate() : responseConverter;
+        this.decodeExecutor = decodeExecutor;
+        this.presentationFormats = presentationFormats;
         this.args = args;
     }
 
@@ -29,7 +37,8 @@ final class BluetoothCall<T> implements Call<T> {
     // We are a final type & this saves clearing state.
     @Override
     public BluetoothCall<T> clone() {
-        return new BluetoothCall<>(client, requestFactory, responseConverter, retrotoothGattCallback, args);
+        return new BluetoothCall<>(transport, requestFactory, responseConverter, decodeExecutor,
+                presentationFormats, args);
     }
 
     @Override
@@ -45,7 +54,7 @@ final class BluetoothCall<T> implements Call<T> {
         }
         this.rawCall = rawCall;
 
-        return parseResponse(rawCall.execute());
+        return parseResponse(rawCall.execute(), rawCall.presentationFormat);
     }
 
     public void enqueue(final Callback<T> callback) {
@@ -65,6 +74,9 @@ final class BluetoothCall<T> implements Call<T> {
             rawCall.cancel();
         }
         this.rawCall = rawCall;
+        // Responses for one characteristic are decoded in order; others may run alongside.
+        final Object streamKey = rawCall.originalRequest.characteristic();
+        final GattCall call = rawCall;
 
         rawCall.enqueue(new GattCallback() {
             private void callFailure(Throwable e) {
@@ -84,15 +96,38 @@ final class BluetoothCall<T> implements Call<T> {
             }
 
             @Override
-            public void onFailure(Request request, IOException e) {
-                callFailure(e);
+            public void onFailure(Request request, final IOException e) {
+                if (decodeExecutor == null) {
+                    callFailure(e);
+                    return;
+                }
+                // Keep failures behind responses already queued for this characteristic.
+                decodeExecutor.execute(streamKey, new Runnable() {
+                    @Override
+                    public void run() {
+                        callFailure(e);
+                    }
+                });
             }
 
             @Override
-            public void onResponse(byte[] rawResponse) {
+            public void onResponse(final byte[] rawResponse) {
+                if (decodeExecutor == null) {
+                    deliver(rawResponse);
+                    return;
+                }
+                decodeExecutor.execute(streamKey, new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(rawResponse);
+                    }
+                });
+            }
+
+            private void deliver(byte[] rawResponse) {
                 Response<T> response;
                 try {
-                    response = parseResponse(rawResponse);
+                    response = parseResponse(rawResponse, call.presentationFormat);
                 } catch (Throwable e) {
                     callFailure(e);
                     return;
@@ -103,14 +138,20 @@ final class BluetoothCall<T> implements Call<T> {
     }
 
 
-    private GattCall createRawCall() {
-        return new GattCall(client, requestFactory.create(args), this.retrotoothGattCallback);
+    private GattCall createRawCall() throws IOException {
+        // Only read the presentation format descriptor when the converter needs it.
+        PresentationFormatCache presentationFormats =
+                bodyConverter instanceof PresentationConverter ? this.presentationFormats : null;
+        return new GattCall(transport, requestFactory.create(args), presentationFormats);
     }
 
-    private Response<T> parseResponse(byte[] data) throws IOException {
+    private Response<T> parseResponse(byte[] data, PresentationFormat presentationFormat) throws IOException {
         ExceptionCatchingRequestBody catchingBody = new ExceptionCatchingRequestBody(ResponseData.create(null, data));
         try {
-            T resp = responseConverter.convert(catchingBody);
+            ResponseData body = decompressor != null ? decompressor.decompress(catchingBody) : catchingBody;
+            T resp = bodyConverter instanceof PresentationConverter
+                    ? ((PresentationConverter<T>) bodyConverter).convert(body, presentationFormat)
+                    : bodyConverter.convert(body);
             return Response.success(resp, data);
         } catch (RuntimeException e) {
             // If the underlying source threw an exception, propagate that rather than indicating it was
@@ -3,6 +3,11 @@ package retrotooth;
 
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+
+import okio.ByteString;
+import retrotooth.annotations.Format;
+import retrotooth.annotations.Presentation;
 
 public class BuiltInConverterFactory extends Converter.Factory {
     @Override
@@ -11,11 +16,28 @@ public class BuiltInConverterFactory extends Converter.Factory {
             return new BuiltInResponseDataConverter();
         }
         if (String.class.equals(type)) {
-            return new BuiltInResponseDataConverter();
+            return StringConverter.INSTANCE;
         }
         if (Void.class.equals(type)) {
             return new VoidConverter();
         }
+        if (byte[].class.equals(type)) {
+            return ByteArrayConverter.INSTANCE;
+        }
+        if (ByteString.class.equals(type)) {
+            return ByteStringConverter.INSTANCE;
+        }
+        if (ByteBuffer.class.equals(type)) {
+            return ByteBufferConverter.INSTANCE;
+        }
+        Format format = findFormat(annotations);
+        if (format != null && type instanceof Class && GattFormatConverter.isSupported((Class<?>) type)) {
+            return new GattFormatConverter<>(format.value(), (Class<?>) type);
+        }
+        if (isPresentation(annotations) && type instanceof Class
+                && GattFormatConverter.isSupported((Class<?>) type)) {
+            return new PresentationConverter<>((Class<?>) type);
+        }
         return null;
     }
 
@@ -23,6 +45,40 @@ public class BuiltInConverterFactory extends Converter.Factory {
         if (type instanceof Class && RequestData.class.isAssignableFrom((Class<?>) type)) {
             return new BuiltInRequestDataConverter();
         }
+        if (String.class.equals(type)) {
+            return StringRequestDataConverter.INSTANCE;
+        }
+        if (byte[].class.equals(type)) {
+            return ByteArrayRequestDataConverter.INSTANCE;
+        }
+        if (ByteString.class.equals(type)) {
+            return ByteStringRequestDataConverter.INSTANCE;
+        }
+        if (ByteBuffer.class.equals(type)) {
+            return ByteBufferRequestDataConverter.INSTANCE;
+        }
+        Format format = findFormat(annotations);
+        if (format != null && type instanceof Class && GattFormatConverter.isSupported((Class<?>) type)) {
+            return new GattFormatRequestDataConverter(format.value());
+        }
+        return null;
+    }
+
+    private static boolean isPresentation(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Presentation) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static Format findFormat(Annotation[] annotations) {
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Format) {
+                return (Format) annotation;
+            }
+        }
         return null;
     }
 }
@@ -0,0 +1,16 @@
+package retrotooth;
+
+import java.io.IOException;
+
+final class ByteArrayConverter implements Converter<ResponseData, byte[]> {
+    static final ByteArrayConverter INSTANCE = new ByteArrayConverter();
+
+    @Override
+    public byte[] convert(ResponseData value) throws IOException {
+        try {
+            return value.bytes();
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+}
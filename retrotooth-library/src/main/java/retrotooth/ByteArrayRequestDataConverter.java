@@ -0,0 +1,12 @@
+package retrotooth;
+
+import java.io.IOException;
+
+final class ByteArrayRequestDataConverter implements Converter<byte[], RequestData> {
+    static final ByteArrayRequestDataConverter INSTANCE = new ByteArrayRequestDataConverter();
+
+    @Override
+    public RequestData convert(byte[] value) throws IOException {
+        return RequestData.create(null, value);
+    }
+}
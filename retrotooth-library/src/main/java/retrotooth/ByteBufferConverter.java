@@ -0,0 +1,22 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Wraps the value in a {@link ByteBuffer} ordered {@linkplain ByteOrder#LITTLE_ENDIAN
+ * little-endian}, the byte order used by GATT.
+ */
+final class ByteBufferConverter implements Converter<ResponseData, ByteBuffer> {
+    static final ByteBufferConverter INSTANCE = new ByteBufferConverter();
+
+    @Override
+    public ByteBuffer convert(ResponseData value) throws IOException {
+        try {
+            return ByteBuffer.wrap(value.bytes()).order(ByteOrder.LITTLE_ENDIAN);
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Sends the remaining bytes of a {@link ByteBuffer} without changing its position.
+ */
+final class ByteBufferRequestDataConverter implements Converter<ByteBuffer, RequestData> {
+    static final ByteBufferRequestDataConverter INSTANCE = new ByteBufferRequestDataConverter();
+
+    @Override
+    public RequestData convert(ByteBuffer value) throws IOException {
+        if (value.hasArray()) {
+            return RequestData.create(null, value.array(), value.arrayOffset() + value.position(),
+                    value.remaining());
+        }
+        byte[] bytes = new byte[value.remaining()];
+        value.duplicate().get(bytes);
+        return RequestData.create(null, bytes);
+    }
+}
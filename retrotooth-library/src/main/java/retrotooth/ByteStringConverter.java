@@ -0,0 +1,18 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.ByteString;
+
+final class ByteStringConverter implements Converter<ResponseData, ByteString> {
+    static final ByteStringConverter INSTANCE = new ByteStringConverter();
+
+    @Override
+    public ByteString convert(ResponseData value) throws IOException {
+        try {
+            return value.source().readByteString();
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.ByteString;
+
+final class ByteStringRequestDataConverter implements Converter<ByteString, RequestData> {
+    static final ByteStringRequestDataConverter INSTANCE = new ByteStringRequestDataConverter();
+
+    @Override
+    public RequestData convert(ByteString value) throws IOException {
+        return RequestData.create(null, value);
+    }
+}
@@ -0,0 +1,42 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+/**
+ * Prefixes the wrapped converter's body with a {@link Compression} header, compressing it if it
+ * is large enough and compresses well enough to be worth it.
+ */
+final class CompressedRequestDataConverter<T> implements Converter<T, RequestData> {
+    private final Converter<T, RequestData> delegate;
+    private final Compression compression;
+    private final long threshold;
+
+    CompressedRequestDataConverter(Converter<T, RequestData> delegate, Compression compression,
+                                   long threshold) {
+        if (compression == null) throw new NullPointerException("compression == null");
+        this.delegate = delegate;
+        this.compression = compression;
+        this.threshold = threshold;
+    }
+
+    @Override
+    public RequestData convert(T value) throws IOException {
+        RequestData data = delegate.convert(value);
+        Buffer body = new Buffer();
+        data.writeTo(body);
+
+        Buffer framed = new Buffer();
+        if (body.size() >= threshold) {
+            framed.writeByte(compression.code());
+            compression.compress(body.clone(), framed);
+        }
+        if (framed.size() == 0 || framed.size() > body.size()) {
+            framed.clear();
+            framed.writeByte(Compression.STORED);
+            framed.writeAll(body);
+        }
+        return RequestData.create(data.contentType(), framed.readByteString());
+    }
+}
@@ -0,0 +1,58 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Strips the {@link Compression} header from a body, decompressing it if needed, and passes the
+ * result on to the wrapped converter.
+ * <p/>
+ * Calls look through this converter to the {@linkplain #delegate wrapped one}, so that a
+ * {@link PresentationConverter} still receives the characteristic's presentation format.
+ */
+final class CompressedResponseDataConverter<T> implements Converter<ResponseData, T> {
+    private final Converter<ResponseData, T> delegate;
+    private final long maxSize;
+
+    CompressedResponseDataConverter(Converter<ResponseData, T> delegate, long maxSize) {
+        this.delegate = delegate;
+        this.maxSize = maxSize;
+    }
+
+    Converter<ResponseData, T> delegate() {
+        return delegate;
+    }
+
+    @Override
+    public T convert(ResponseData value) throws IOException {
+        return delegate.convert(decompress(value));
+    }
+
+    /**
+     * Returns the body of {@code value} without its header, decompressed.
+     */
+    ResponseData decompress(ResponseData value) throws IOException {
+        Buffer body = new Buffer();
+        BufferedSource source = value.source();
+        try {
+            int code = source.readByte() & 0xFF;
+            if (code == Compression.STORED) {
+                // Copy no more than one byte past the limit, however long the body is.
+                while (source.read(body, Math.min(8191L, maxSize - body.size()) + 1L) != -1L) {
+                    Compression.checkSize(body.size(), maxSize);
+                }
+            } else {
+                Compression compression = Compression.fromCode(code);
+                if (compression == null) {
+                    throw new IOException("Unknown compression: " + code);
+                }
+                compression.decompress(source, body, maxSize);
+            }
+        } finally {
+            Utils.closeQuietly(source);
+        }
+        return ResponseData.create(value.contentType(), body.size(), body);
+    }
+}
@@ -0,0 +1,263 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import retrotooth.util.Lzf;
+
+/**
+ * Codecs for compressing bodies before they go over the air. Bluetooth LE throughput is low
+ * enough that spending some CPU to send fewer packets is almost always worthwhile.
+ * <p/>
+ * A compressed body starts with a one byte header naming its codec, or {@link #STORED} for
+ * bodies sent as is because they are too small or do not compress, so the receiving side needs
+ * no configuration. Each thread reuses one deflater, inflater and set of scratch buffers.
+ *
+ * @see retrotooth.annotations.Compressed
+ */
+public enum Compression {
+    /**
+     * Raw deflate (RFC 1951) at the best compression level.
+     */
+    DEFLATE(1) {
+        @Override
+        void compress(BufferedSource source, BufferedSink sink, Scratch scratch) throws IOException {
+            Deflater deflater = scratch.deflater;
+            deflater.reset();
+            byte[] input = scratch.input;
+            for (int read; (read = source.read(input)) != -1; ) {
+                deflater.setInput(input, 0, read);
+                deflate(deflater, sink, scratch.output);
+            }
+            deflater.finish();
+            deflate(deflater, sink, scratch.output);
+        }
+
+        private void deflate(Deflater deflater, BufferedSink sink, byte[] output)
+                throws IOException {
+            for (int count; (count = deflater.deflate(output)) > 0; ) {
+                sink.write(output, 0, count);
+            }
+        }
+
+        @Override
+        void decompress(BufferedSource source, BufferedSink sink, long maxSize, Scratch scratch)
+                throws IOException {
+            Inflater inflater = scratch.inflater;
+            inflater.reset();
+            byte[] input = scratch.input;
+            byte[] output = scratch.output;
+            long size = 0;
+            try {
+                while (!inflater.finished()) {
+                    if (inflater.needsInput()) {
+                        int read = source.read(input);
+                        if (read == -1) {
+                            throw new IOException("Truncated deflate stream");
+                        }
+                        inflater.setInput(input, 0, read);
+                    }
+                    int count = inflater.inflate(output);
+                    if (count == 0 && inflater.needsDictionary()) {
+                        throw new IOException("Deflate stream needs a dictionary");
+                    }
+                    size = checkSize(size + count, maxSize);
+                    sink.write(output, 0, count);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(e.getMessage());
+            }
+        }
+    },
+
+    /**
+     * LZF blocks of up to 8 KiB. Several times faster than deflate with a lower ratio.
+     */
+    LZF(2) {
+        @Override
+        void compress(BufferedSource source, BufferedSink sink, Scratch scratch) throws IOException {
+            byte[] input = scratch.input;
+            byte[] output = scratch.output;
+            while (!source.exhausted()) {
+                source.request(Lzf.MAX_BLOCK_SIZE);
+                int length = (int) Math.min(Lzf.MAX_BLOCK_SIZE, source.buffer().size());
+                readFully(source, input, length);
+                // Blocks which would not shrink are stored, flagged by equal lengths.
+                int compressed = Lzf.compress(input, length, output, length - 1,
+                        scratch.hashTable);
+                sink.writeShortLe(length);
+                if (compressed == -1) {
+                    sink.writeShortLe(length);
+                    sink.write(input, 0, length);
+                } else {
+                    sink.writeShortLe(compressed);
+                    sink.write(output, 0, compressed);
+                }
+            }
+        }
+
+        @Override
+        void decompress(BufferedSource source, BufferedSink sink, long maxSize, Scratch scratch)
+                throws IOException {
+            byte[] input = scratch.input;
+            byte[] output = scratch.output;
+            long size = 0;
+            while (!source.exhausted()) {
+                int length = source.readShortLe() & 0xFFFF;
+                int stored = source.readShortLe() & 0xFFFF;
+                if (length > Lzf.MAX_BLOCK_SIZE || stored > length) {
+                    throw new IOException("Corrupt LZF stream");
+                }
+                size = checkSize(size + length, maxSize);
+                if (stored == length) {
+                    readFully(source, input, length);
+                    sink.write(input, 0, length);
+                } else {
+                    readFully(source, input, stored);
+                    if (Lzf.decompress(input, stored, output) != length) {
+                        throw new IOException("Corrupt LZF stream");
+                    }
+                    sink.write(output, 0, length);
+                }
+            }
+        }
+    };
+
+    /**
+     * Header of a body which was sent uncompressed.
+     */
+    public static final int STORED = 0;
+
+    /**
+     * The default limit on the size of a decompressed body, well above anything sent over
+     * Bluetooth LE, so that a corrupt or hostile body cannot exhaust memory.
+     */
+    public static final long DEFAULT_MAX_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+        @Override
+        protected Scratch initialValue() {
+            return new Scratch();
+        }
+    };
+
+    private final int code;
+
+    Compression(int code) {
+        this.code = code;
+    }
+
+    /**
+     * The header byte identifying this codec.
+     */
+    public int code() {
+        return code;
+    }
+
+    /**
+     * Returns the codec for a header byte, or null for {@link #STORED} or an unknown codec.
+     */
+    public static Compression fromCode(int code) {
+        for (Compression compression : values()) {
+            if (compression.code == code) {
+                return compression;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Compress all of {@code source} to {@code sink}, without a header.
+     */
+    public final void compress(BufferedSource source, BufferedSink sink) throws IOException {
+        compress(source, sink, SCRATCH.get());
+    }
+
+    /**
+     * Decompress all of {@code source}, which has no header, to {@code sink}, failing if it
+     * inflates to more than {@link #DEFAULT_MAX_SIZE} bytes.
+     */
+    public final void decompress(BufferedSource source, BufferedSink sink) throws IOException {
+        decompress(source, sink, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Decompress all of {@code source}, which has no header, to {@code sink}, failing once more
+     * than {@code maxSize} bytes have been produced.
+     */
+    public final void decompress(BufferedSource source, BufferedSink sink, long maxSize)
+            throws IOException {
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0: " + maxSize);
+        }
+        decompress(source, sink, maxSize, SCRATCH.get());
+    }
+
+    abstract void compress(BufferedSource source, BufferedSink sink, Scratch scratch)
+            throws IOException;
+
+    abstract void decompress(BufferedSource source, BufferedSink sink, long maxSize,
+            Scratch scratch) throws IOException;
+
+    static long checkSize(long size, long maxSize) throws IOException {
+        if (size > maxSize) {
+            throw new IOException("Decompressed body exceeds " + maxSize + " bytes");
+        }
+        return size;
+    }
+
+    /**
+     * Returns a converter that writes {@code delegate}'s bodies with this codec once they are at
+     * least {@code threshold} bytes, and stored otherwise.
+     */
+    public final <T> Converter<T, RequestData> compressing(Converter<T, RequestData> delegate,
+                                                         long threshold) {
+        return new CompressedRequestDataConverter<>(delegate, this, threshold);
+    }
+
+    /**
+     * Returns a converter that decompresses bodies with any codec before passing them to
+     * {@code delegate}, failing for bodies which inflate to more than {@link #DEFAULT_MAX_SIZE}
+     * bytes.
+     */
+    public static <T> Converter<ResponseData, T> decompressing(
+            Converter<ResponseData, T> delegate) {
+        return decompressing(delegate, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Returns a converter that decompresses bodies with any codec before passing them to
+     * {@code delegate}, failing for bodies which inflate to more than {@code maxSize} bytes.
+     */
+    public static <T> Converter<ResponseData, T> decompressing(
+            Converter<ResponseData, T> delegate, long maxSize) {
+        if (delegate == null) throw new NullPointerException("delegate == null");
+        if (maxSize < 0) {
+            throw new IllegalArgumentException("maxSize < 0: " + maxSize);
+        }
+        return new CompressedResponseDataConverter<>(delegate, maxSize);
+    }
+
+    // BufferedSource in this version of okio cannot fill part of an array.
+    static void readFully(BufferedSource source, byte[] sink, int byteCount) throws IOException {
+        source.require(byteCount);
+        for (int offset = 0; offset < byteCount; ) {
+            offset += source.read(sink, offset, byteCount - offset);
+        }
+    }
+
+    /**
+     * Per-thread codec state, reused across bodies.
+     */
+    static final class Scratch {
+        final Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        final Inflater inflater = new Inflater(true);
+        final byte[] input = new byte[Lzf.MAX_BLOCK_SIZE];
+        final byte[] output = new byte[Lzf.MAX_BLOCK_SIZE];
+        final int[] hashTable = Lzf.newHashTable();
+    }
+}
@@ -0,0 +1,153 @@
+package retrotooth;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import retrotooth.annotations.INDICATE;
+import retrotooth.annotations.NOTIFY;
+import retrotooth.annotations.READ;
+import retrotooth.annotations.WRITE;
+
+/**
+ * Memoizes converter resolution by type and the annotations relevant to conversion, so each
+ * distinct converter is created once rather than once per service method. Response and request
+ * converters are cached apart, each keyed and bounded alike. A cache is shared by
+ * every {@link Retrotooth} built from the same base configuration (see
+ * {@link Retrotooth#newBuilder()}), as they resolve against the same converter factories.
+ * <p/>
+ * The BLE operation annotations only route a call and are left out of the key. Each cache is
+ * bounded; once full the oldest entries are evicted first. {@link StatefulConverter}s are never
+ * cached.
+ */
+final class ConverterCache {
+    static final int DEFAULT_MAX_SIZE = 512;
+
+    private final int maxSize;
+    private final ConcurrentHashMap<Key, Converter<ResponseData, ?>> responseConverters =
+            new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Key> responseOrder = new ConcurrentLinkedQueue<>();
+    private final ConcurrentHashMap<Key, Converter<?, RequestData>> requestConverters =
+            new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Key> requestOrder = new ConcurrentLinkedQueue<>();
+
+    ConverterCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    ConverterCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize <= 0");
+        }
+        this.maxSize = maxSize;
+    }
+
+    Converter<ResponseData, ?> responseBodyConverter(List<Converter.Factory> converterFactories,
+                                                     Type type, Annotation[] annotations) {
+        Key key = new Key(type, relevantAnnotations(annotations));
+        Converter<ResponseData, ?> converter = responseConverters.get(key);
+        if (converter != null) {
+            return converter;
+        }
+
+        converter = Utils.resolveResponseBodyConverter(converterFactories, type, annotations);
+        return put(responseConverters, responseOrder, key, converter);
+    }
+
+    Converter<?, RequestData> requestBodyConverter(List<Converter.Factory> converterFactories,
+                                                   Type type, Annotation[] annotations) {
+        Key key = new Key(type, relevantAnnotations(annotations));
+        Converter<?, RequestData> converter = requestConverters.get(key);
+        if (converter != null) {
+            return converter;
+        }
+
+        converter = Utils.resolveRequestBodyConverter(converterFactories, type, annotations);
+        return put(requestConverters, requestOrder, key, converter);
+    }
+
+    /**
+     * Returns the number of cached response converters.
+     */
+    int size() {
+        return responseConverters.size();
+    }
+
+    int requestSize() {
+        return requestConverters.size();
+    }
+
+    /**
+     * Caches {@code converter} unless it is stateful, returning the one cached first if another
+     * thread raced to resolve the same key.
+     */
+    private <C extends Converter<?, ?>> C put(ConcurrentHashMap<Key, C> converters,
+                                              ConcurrentLinkedQueue<Key> insertionOrder, Key key,
+                                              C converter) {
+        if (converter instanceof StatefulConverter) {
+            return converter;
+        }
+        C existing = converters.putIfAbsent(key, converter);
+        if (existing != null) {
+            return existing;
+        }
+        insertionOrder.add(key);
+        while (converters.size() > maxSize) {
+            Key eldest = insertionOrder.poll();
+            if (eldest == null) {
+                break;
+            }
+            converters.remove(eldest);
+        }
+        return converter;
+    }
+
+    private static Annotation[] relevantAnnotations(Annotation[] annotations) {
+        List<Annotation> relevant = null;
+        for (int i = 0; i < annotations.length; i++) {
+            Annotation annotation = annotations[i];
+            boolean operation = annotation instanceof READ || annotation instanceof WRITE
+                    || annotation instanceof NOTIFY || annotation instanceof INDICATE;
+            if (operation && relevant == null) {
+                relevant = new ArrayList<>(Arrays.asList(annotations).subList(0, i));
+            } else if (!operation && relevant != null) {
+                relevant.add(annotation);
+            }
+        }
+        return relevant == null ? annotations : relevant.toArray(new Annotation[relevant.size()]);
+    }
+
+    static final class Key {
+        private final Type type;
+        private final Annotation[] annotations;
+        private final int hashCode;
+
+        Key(Type type, Annotation[] annotations) {
+            this.type = type;
+            this.annotations = annotations;
+            this.hashCode = 31 * type.hashCode() + Arrays.hashCode(annotations);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return hashCode == other.hashCode && type.equals(other.type)
+                    && Arrays.equals(annotations, other.annotations);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+}
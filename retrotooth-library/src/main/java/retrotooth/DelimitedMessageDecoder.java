@@ -0,0 +1,115 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Reassembles a stream of varint length-delimited messages which arrive split across
+ * notifications. Fragments are {@linkplain #feed(ResponseData) fed} as they are received and each
+ * message is available from {@link #next()} as soon as its last byte has been fed:
+ * <pre>
+ * decoder.feed(characteristic.getValue());
+ * for (T message; (message = decoder.next()) != null; ) {
+ *     ...
+ * }
+ * </pre>
+ * Fragment bytes are moved into a reused buffer by segment rather than copied into a new array,
+ * and each frame is handed to the parser without being copied again. Instances are not thread
+ * safe.
+ */
+public abstract class DelimitedMessageDecoder<T> {
+    public static final long DEFAULT_MAX_MESSAGE_SIZE = 64 * 1024;
+
+    private final long maxMessageSize;
+    private final Buffer buffer = new Buffer();
+    private final Buffer frame = new Buffer();
+
+    protected DelimitedMessageDecoder(long maxMessageSize) {
+        if (maxMessageSize < 1L) {
+            throw new IllegalArgumentException("maxMessageSize < 1: " + maxMessageSize);
+        }
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Append the contents of {@code fragment} to the stream and close it.
+     */
+    public final void feed(ResponseData fragment) throws IOException {
+        BufferedSource source = fragment.source();
+        try {
+            source.readAll(buffer);
+        } finally {
+            Utils.closeQuietly(source);
+        }
+    }
+
+    /**
+     * Append {@code fragment} to the stream.
+     */
+    public final void feed(byte[] fragment) {
+        buffer.write(fragment);
+    }
+
+    /**
+     * Returns the next complete message, or null until more fragments have been fed.
+     *
+     * @throws ProtocolException if a length prefix is malformed or exceeds the maximum message
+     * size. The stream cannot be resynchronized afterwards; {@link #reset()} it.
+     */
+    public final T next() throws IOException {
+        long size = buffer.size();
+        long length = 0;
+        int headerLength = 0;
+        while (true) {
+            if (headerLength == 5) {
+                throw new ProtocolException("Malformed length prefix");
+            }
+            if (headerLength == size) {
+                return null;
+            }
+            byte b = buffer.getByte(headerLength);
+            length |= (long) (b & 0x7F) << (7 * headerLength);
+            headerLength++;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length > maxMessageSize) {
+            throw new ProtocolException(
+                    "Message of " + length + " bytes exceeds maximum of " + maxMessageSize);
+        }
+        if (size - headerLength < length) {
+            return null;
+        }
+
+        buffer.skip(headerLength);
+        frame.write(buffer, length);
+        try {
+            return decode(frame);
+        } finally {
+            frame.clear();
+        }
+    }
+
+    /**
+     * The number of bytes fed which have not been returned as a message yet.
+     */
+    public final long buffered() {
+        return buffer.size();
+    }
+
+    /**
+     * Discard any partially received message.
+     */
+    public final void reset() {
+        buffer.clear();
+    }
+
+    /**
+     * Decode one message from {@code frame}, which holds exactly its encoded bytes.
+     */
+    protected abstract T decode(BufferedSource frame) throws IOException;
+}
@@ -0,0 +1,117 @@
+package retrotooth;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * Decodes a stream of documents that arrive split across notifications or long-read chunks.
+ * Fragments are {@linkplain #feed(ResponseData) fed} as they are received and parsed on an
+ * executor in the same pass, so a document never has to be reassembled in memory first.
+ * <p/>
+ * At most {@code maxBufferSize} bytes are held between the feeding and parsing threads; feeding
+ * blocks while the parser catches up. Call {@link #close()} once the last fragment has been fed.
+ */
+public abstract class FragmentDecoder<T> implements Closeable {
+    public static final long DEFAULT_MAX_BUFFER_SIZE = 4096L;
+
+    public interface Listener<T> {
+        /**
+         * Invoked on the decoding executor for each complete document, in stream order.
+         */
+        void onDocument(T document);
+
+        /**
+         * Invoked once the stream has been {@linkplain #close() closed} and fully decoded.
+         */
+        void onComplete();
+
+        /**
+         * Invoked when the stream is malformed or decoding fails. No further callbacks follow.
+         */
+        void onFailure(Throwable t);
+    }
+
+    private final FragmentPipe pipe;
+    private final BufferedSink sink;
+    private boolean started;
+
+    protected FragmentDecoder(long maxBufferSize) {
+        this.pipe = new FragmentPipe(maxBufferSize);
+        this.sink = Okio.buffer(pipe.sink);
+    }
+
+    /**
+     * Begin decoding on {@code executor}. The executor's thread is occupied until the stream is
+     * closed or cancelled.
+     */
+    public final synchronized void start(Executor executor, final Listener<T> listener) {
+        if (executor == null) throw new NullPointerException("executor == null");
+        if (listener == null) throw new NullPointerException("listener == null");
+        if (started) throw new IllegalStateException("Already started.");
+        started = true;
+
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                BufferedSource source = Okio.buffer(pipe.source);
+                try {
+                    decode(source, listener);
+                } catch (Throwable t) {
+                    listener.onFailure(t);
+                    return;
+                } finally {
+                    Utils.closeQuietly(source);
+                }
+                listener.onComplete();
+            }
+        });
+    }
+
+    /**
+     * Append the contents of {@code fragment} to the stream and close it.
+     */
+    public final void feed(ResponseData fragment) throws IOException {
+        BufferedSource source = fragment.source();
+        try {
+            sink.writeAll(source);
+            sink.flush();
+        } finally {
+            Utils.closeQuietly(source);
+        }
+    }
+
+    /**
+     * Append {@code fragment} to the stream.
+     */
+    public final void feed(byte[] fragment) throws IOException {
+        sink.write(fragment);
+        sink.flush();
+    }
+
+    /**
+     * Signal that no more fragments will be fed. Documents already fed are still decoded.
+     */
+    @Override
+    public final void close() throws IOException {
+        sink.close();
+    }
+
+    /**
+     * Stop decoding and discard any bytes that have not been parsed yet. A blocked or later
+     * {@code feed} fails with an {@link IOException}.
+     */
+    public final void cancel() {
+        Utils.closeQuietly(pipe.source);
+    }
+
+    /**
+     * Decode consecutive documents from {@code source} until it is exhausted, passing each one to
+     * {@link Listener#onDocument}. Reads block until the next fragment is fed.
+     */
+    protected abstract void decode(BufferedSource source, Listener<T> listener) throws IOException;
+}
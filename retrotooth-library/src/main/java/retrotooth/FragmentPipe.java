@@ -0,0 +1,112 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import okio.Buffer;
+import okio.Sink;
+import okio.Source;
+import okio.Timeout;
+
+/**
+ * A bounded in-memory pipe joining the thread that receives fragments to the thread that parses
+ * them. Writes block while {@code maxBufferSize} bytes are waiting to be read, and reads block
+ * until bytes arrive or the sink is closed. Segments are moved from writer to reader, not copied.
+ */
+final class FragmentPipe {
+    private final long maxBufferSize;
+    private final Buffer buffer = new Buffer();
+    private boolean sinkClosed;
+    private boolean sourceClosed;
+
+    FragmentPipe(long maxBufferSize) {
+        if (maxBufferSize < 1L) {
+            throw new IllegalArgumentException("maxBufferSize < 1: " + maxBufferSize);
+        }
+        this.maxBufferSize = maxBufferSize;
+    }
+
+    final Sink sink = new Sink() {
+        @Override
+        public void write(Buffer source, long byteCount) throws IOException {
+            synchronized (buffer) {
+                if (sinkClosed) throw new IllegalStateException("closed");
+
+                while (byteCount > 0) {
+                    if (sourceClosed) throw new IOException("source is closed");
+
+                    long bufferSpaceAvailable = maxBufferSize - buffer.size();
+                    if (bufferSpaceAvailable == 0) {
+                        awaitSignal();
+                        continue;
+                    }
+
+                    long bytesToWrite = Math.min(bufferSpaceAvailable, byteCount);
+                    buffer.write(source, bytesToWrite);
+                    byteCount -= bytesToWrite;
+                    buffer.notifyAll();
+                }
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            synchronized (buffer) {
+                if (sinkClosed) throw new IllegalStateException("closed");
+            }
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (buffer) {
+                sinkClosed = true;
+                buffer.notifyAll();
+            }
+        }
+    };
+
+    final Source source = new Source() {
+        @Override
+        public long read(Buffer sink, long byteCount) throws IOException {
+            synchronized (buffer) {
+                while (buffer.size() == 0) {
+                    if (sourceClosed) throw new IOException("canceled");
+                    if (sinkClosed) return -1L;
+                    awaitSignal();
+                }
+
+                long result = buffer.read(sink, byteCount);
+                buffer.notifyAll();
+                return result;
+            }
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() throws IOException {
+            synchronized (buffer) {
+                sourceClosed = true;
+                buffer.clear();
+                buffer.notifyAll();
+            }
+        }
+    };
+
+    private void awaitSignal() throws InterruptedIOException {
+        try {
+            buffer.wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted");
+        }
+    }
+}
@@ -1,22 +1,20 @@
 package retrotooth;
 
 
-import android.bluetooth.BluetoothGatt;
-import android.bluetooth.BluetoothGattCallback;
-import android.bluetooth.BluetoothGattCharacteristic;
-import android.bluetooth.BluetoothGattService;
-
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 import java.util.logging.Level;
 
+import okio.Buffer;
+
 public class GattCall {
-    private final BluetoothGatt client;
-    private final RetrotoothGattCallback retrotoothGattCallback;
+    private final Transport transport;
+    /**
+     * Non-null when the response is decoded by its presentation format.
+     */
+    private final PresentationFormatCache presentationFormats;
 
     // Guarded by this.
     private boolean executed;
@@ -27,10 +25,20 @@ public class GattCall {
      */
     Request originalRequest;
 
-    protected GattCall(BluetoothGatt client, Request originalRequest, RetrotoothGattCallback retrotoothGattCallback) {
-        this.client = client;
+    /**
+     * The characteristic's presentation format, once read.
+     */
+    volatile PresentationFormat presentationFormat;
+
+    protected GattCall(Transport transport, Request originalRequest) {
+        this(transport, originalRequest, null);
+    }
+
+    GattCall(Transport transport, Request originalRequest,
+             PresentationFormatCache presentationFormats) {
+        this.transport = transport;
         this.originalRequest = originalRequest;
-        this.retrotoothGattCallback = retrotoothGattCallback;
+        this.presentationFormats = presentationFormats;
     }
 
     Object tag() {
@@ -46,39 +54,72 @@ public class GattCall {
     }
 
     /**
-     * Schedules the request to be executed at some point in the future.
+     * Schedules the request to be executed at some point in the future. Returns immediately; the
+     * callback is invoked on the thread which delivers the transport's result.
      * <p/>
      *
      * @throws IllegalStateException when the call has already been executed.
      */
-    public void enqueue(GattCallback responseCallback) {
+    public void enqueue(final GattCallback responseCallback) {
         synchronized (this) {
             if (executed) throw new IllegalStateException("Already Executed");
             executed = true;
         }
 
-        boolean signalledCallback = false;
-        try {
-            byte[] resp = getResponse(originalRequest);
-            if (canceled) {
-                signalledCallback = true;
-                responseCallback.onFailure(originalRequest, new IOException("Canceled"));
-            } else {
-                signalledCallback = true;
-                responseCallback.onResponse(resp);
+        final Request request = originalRequest;
+        Transport.Callback callback = new Transport.Callback() {
+            @Override
+            public void onSuccess(final byte[] value) {
+                if (request.bluetoothOperation() != BluetoothOperation.READ
+                        || presentationFormats == null) {
+                    deliver(responseCallback, value);
+                    return;
+                }
+                enqueuePresentationFormat(request, new Runnable() {
+                    @Override
+                    public void run() {
+                        deliver(responseCallback, value);
+                    }
+                });
             }
-        } catch (IOException e) {
-            if (signalledCallback) {
-                // Do not signal the callback twice!
-                Internal.logger.log(Level.INFO, "Callback failure for " + toLoggableString(), e);
-            } else {
-                responseCallback.onFailure(originalRequest, e);
+
+            @Override
+            public void onFailure(IOException e) {
+                responseCallback.onFailure(request, e);
             }
-        } finally {
-            // TODO
+        };
+        switch (request.bluetoothOperation()) {
+            case READ:
+                transport.read(request.service(), request.characteristic(), callback);
+                break;
+            case WRITE:
+                byte[] data;
+                try {
+                    data = toByteArray(request.data());
+                } catch (IOException e) {
+                    responseCallback.onFailure(request, e);
+                    return;
+                }
+                transport.write(request.service(), request.characteristic(), data, callback);
+                break;
+            default:
+                callback.onSuccess(null);
+                break;
         }
     }
 
+    private void deliver(GattCallback responseCallback, byte[] value) {
+        if (canceled) {
+            responseCallback.onFailure(originalRequest, new IOException("Canceled"));
+            return;
+        }
+        try {
+            responseCallback.onResponse(value);
+        } catch (IOException e) {
+            // Do not signal the callback twice!
+            Internal.logger.log(Level.INFO, "Callback failure for " + toLoggableString(), e);
+        }
+    }
 
     /**
      * Cancels the request, if possible. Requests that are already complete
@@ -103,198 +144,138 @@ public class GattCall {
 
 
     /**
-     * Performs the request and returns the response. May return null if this
-     * call was canceled.
+     * Performs the request and returns the response.
      */
-    byte[] getResponse(final Request request) {
+    byte[] getResponse(final Request request) throws IOException {
         switch (request.bluetoothOperation()) {
             case READ:
-                return doRead(request);
+                TransportResult read = new TransportResult();
+                transport.read(request.service(), request.characteristic(), read);
+                byte[] value = read.get();
+                if (presentationFormats != null) {
+                    presentationFormat = readPresentationFormat(request);
+                }
+                return value;
             case WRITE:
-                return doWrite(request);
+                TransportResult write = new TransportResult();
+                transport.write(request.service(), request.characteristic(),
+                        toByteArray(request.data()), write);
+                return write.get();
             default:
                 break;
         }
         return null;
     }
 
-    private byte[] doRead(final Request request) {
-        final RetrotoothFuture future = new RetrotoothFuture();
-        retrotoothGattCallback.setPassthruListener(new BluetoothGattCallback() {
-            @Override
-            public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-                super.onServicesDiscovered(gatt, status);
-                if (BluetoothGatt.GATT_SUCCESS == status) {
-                    BluetoothGattService service = gatt.getService(request.service());
-                    if (service == null) {
-                        throw new IllegalStateException("service(" + request.service() + ") not found");
-                    }
-                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(request.characteristic());
-                    if (characteristic == null) {
-                        throw new IllegalStateException("characteristic(" + request.characteristic() + ") not found on service(" + request.service() + ")");
-                    }
-                    gatt.setCharacteristicNotification(characteristic, true);
-                    gatt.readCharacteristic(characteristic);
-                }
-            }
-
-            @Override
-            public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-                super.onCharacteristicRead(gatt, characteristic, status);
-                if (BluetoothGatt.GATT_SUCCESS == status && characteristic.getUuid().equals(request.characteristic())) {
-                    future.onCharacteristicRead(characteristic);
-                }
-            }
-        });
-        BluetoothGattService service = client.getService(request.service());
-        if (service == null) {
-            if (!client.discoverServices()) {
-                throw new IllegalStateException("discover services failed");
-            }
-        } else {
-            BluetoothGattCharacteristic characteristic = service.getCharacteristic(request.characteristic());
-            if (characteristic == null) {
-                throw new IllegalStateException("characteristic(" + request.characteristic() + ") not found on service(" + request.service() + ")");
-            }
-            client.setCharacteristicNotification(characteristic, true);
-            client.readCharacteristic(characteristic);
+    private static byte[] toByteArray(RequestData data) throws IOException {
+        if (data == null) {
+            return null;
         }
-
-        try {
-            BluetoothGattCharacteristic characteristic = future.get();
-            if (characteristic == null) {
-                throw new IllegalStateException("characteristic(" + request.characteristic() + ") is null.  Try resetting your bluetooth adapter");
-            }
-            if (characteristic.getValue() == null || characteristic.getValue().length == 0) {
-                // empty response, this can happen if the charactersitic has no value
-                return new byte[]{};
-            }
-            Internal.logger.log(Level.INFO, "characteristic.getValue() " + characteristic.getValue()[0]);
-            return characteristic.getValue();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (ExecutionException e) {
-            e.printStackTrace();
-        }
-        return null;
+        Buffer buffer = new Buffer();
+        data.writeTo(buffer);
+        return buffer.readByteArray();
     }
 
-    private byte[] doWrite(final Request request) {
-        final RetrotoothFuture future = new RetrotoothFuture();
-        retrotoothGattCallback.setPassthruListener(new BluetoothGattCallback() {
-            @Override
-            public void onServicesDiscovered(BluetoothGatt gatt, int status) {
-                super.onServicesDiscovered(gatt, status);
-                if (BluetoothGatt.GATT_SUCCESS == status) {
-                    BluetoothGattService service = gatt.getService(request.service());
-                    if (service == null) {
-                        throw new IllegalStateException("service(" + request.service() + ") not found");
-                    }
-                    BluetoothGattCharacteristic characteristic = service.getCharacteristic(request.characteristic());
-                    if (characteristic == null) {
-                        throw new IllegalStateException("characteristic(" + request.characteristic() + ") not found on service(" + request.service() + ")");
-                    }
-                    gatt.setCharacteristicNotification(characteristic, true);
-                    characteristic.setValue(new byte[] { 0x04 });
-                    gatt.writeCharacteristic(characteristic);
-                }
-            }
-
-            @Override
-            public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic, int status) {
-                super.onCharacteristicWrite(gatt, characteristic, status);
-                if (BluetoothGatt.GATT_SUCCESS == status && characteristic.getUuid().equals(request.characteristic())) {
-                    future.onCharacteristicWrite(characteristic);
-                }
-            }
-        });
-        BluetoothGattService service = client.getService(request.service());
-        if (service == null) {
-            if (!client.discoverServices()) {
-                throw new IllegalStateException("discover services failed");
-            }
-        } else {
-            BluetoothGattCharacteristic characteristic = service.getCharacteristic(request.characteristic());
-            if (characteristic == null) {
-                throw new IllegalStateException("characteristic(" + request.characteristic() + ") not found on service(" + request.service() + ")");
-            }
-            client.setCharacteristicNotification(characteristic, true);
-            client.writeCharacteristic(characteristic);
+    /**
+     * Returns the characteristic's presentation format from the cache, reading its 0x2904
+     * descriptor the first time a device of this model is seen. Null if it has none.
+     */
+    private PresentationFormat readPresentationFormat(Request request) throws IOException {
+        String model = transport.model();
+        PresentationFormat format = presentationFormats.get(model, request.characteristic());
+        if (format != null || presentationFormats.contains(model, request.characteristic())) {
+            return format;
         }
 
+        TransportResult descriptor = new TransportResult();
+        transport.readDescriptor(request.service(), request.characteristic(),
+                PresentationFormat.DESCRIPTOR_UUID, descriptor);
+        byte[] value;
         try {
-            BluetoothGattCharacteristic characteristic = future.get();
-            if (characteristic == null) {
-                throw new IllegalStateException("characteristic(" + request.characteristic() + ") is null.  Try resetting your bluetooth adapter");
-            }
-            if (characteristic.getValue() == null || characteristic.getValue().length == 0) {
-                // empty response, this can happen if the charactersitic has no value
-                return new byte[]{};
-            }
-            Internal.logger.log(Level.INFO, "characteristic.getValue() " + characteristic.getValue()[0]);
-            return characteristic.getValue();
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        } catch (ExecutionException e) {
-            e.printStackTrace();
+            value = descriptor.get();
+        } catch (InterruptedIOException e) {
+            throw e;
+        } catch (IOException e) {
+            // Decode without the format rather than fail the call.
+            return null;
         }
-        return null;
+        return parsePresentationFormat(model, request, value);
     }
 
-    class RetrotoothFuture implements Future<BluetoothGattCharacteristic> {
+    /**
+     * Sets {@link #presentationFormat} as {@link #readPresentationFormat} returns it, without
+     * blocking, then runs {@code then}.
+     */
+    private void enqueuePresentationFormat(final Request request, final Runnable then) {
+        final String model = transport.model();
+        PresentationFormat format = presentationFormats.get(model, request.characteristic());
+        if (format != null || presentationFormats.contains(model, request.characteristic())) {
+            presentationFormat = format;
+            then.run();
+            return;
+        }
 
-        private volatile BluetoothGattCharacteristic characteristic = null;
-        private volatile boolean cancelled = false;
-        private final CountDownLatch countDownLatch;
-        private final int TIMEOUT = 4;
+        transport.readDescriptor(request.service(), request.characteristic(),
+                PresentationFormat.DESCRIPTOR_UUID, new Transport.Callback() {
+                    @Override
+                    public void onSuccess(byte[] value) {
+                        presentationFormat = parsePresentationFormat(model, request, value);
+                        then.run();
+                    }
 
-        public RetrotoothFuture() {
-            countDownLatch = new CountDownLatch(1);
-        }
+                    @Override
+                    public void onFailure(IOException e) {
+                        // Decode without the format rather than fail the call.
+                        then.run();
+                    }
+                });
+    }
 
-        @Override
-        public boolean cancel(final boolean mayInterruptIfRunning) {
-            if (isDone()) {
-                return false;
-            } else {
-                countDownLatch.countDown();
-                cancelled = true;
-                return !isDone();
-            }
-        }
+    /**
+     * Parses and caches the descriptor {@code value}. A missing or unsupported descriptor is
+     * cached as absent; failures to read it are not, so it is read again on the next call.
+     */
+    private PresentationFormat parsePresentationFormat(String model, Request request,
+            byte[] value) {
+        PresentationFormat format = PresentationFormat.parse(value);
+        presentationFormats.put(model, request.characteristic(), format);
+        return format;
+    }
 
-        @Override
-        public BluetoothGattCharacteristic get() throws InterruptedException, ExecutionException {
-            countDownLatch.await(TIMEOUT, TimeUnit.SECONDS);
-            return characteristic;
-        }
+    /**
+     * Waits for a transport operation to complete.
+     */
+    static final class TransportResult implements Transport.Callback {
+        private static final int TIMEOUT_SECONDS = 4;
 
-        @Override
-        public BluetoothGattCharacteristic get(final long timeout, final TimeUnit unit)
-                throws InterruptedException, ExecutionException, TimeoutException {
-            countDownLatch.await(timeout, unit);
-            return characteristic;
-        }
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private volatile byte[] value;
+        private volatile IOException failure;
 
         @Override
-        public boolean isCancelled() {
-            return cancelled;
+        public void onSuccess(byte[] value) {
+            this.value = value;
+            latch.countDown();
         }
 
         @Override
-        public boolean isDone() {
-            return countDownLatch.getCount() == 0;
+        public void onFailure(IOException e) {
+            this.failure = e;
+            latch.countDown();
         }
 
-        public void onCharacteristicRead(final BluetoothGattCharacteristic characteristic) {
-            this.characteristic = characteristic;
-            countDownLatch.countDown();
-        }
-
-        public void onCharacteristicWrite(final BluetoothGattCharacteristic characteristic) {
-            this.characteristic = characteristic;
-            countDownLatch.countDown();
+        byte[] get() throws IOException {
+            try {
+                if (!latch.await(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                    throw new InterruptedIOException("Timed out");
+                }
+            } catch (InterruptedException e) {
+                throw new InterruptedIOException("Interrupted");
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return value;
         }
     }
 }
-
@@ -0,0 +1,208 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import retrotooth.util.BleUtils;
+
+/**
+ * Numeric value formats from the GATT Characteristic Presentation Format descriptor (0x2904).
+ * All multi-byte values are little-endian.
+ */
+public enum GattFormat {
+    UINT8(0x04, 1),
+    UINT16(0x06, 2),
+    UINT24(0x07, 3),
+    UINT32(0x08, 4),
+    SINT8(0x0C, 1),
+    SINT16(0x0E, 2),
+    SINT24(0x0F, 3),
+    SINT32(0x10, 4),
+    FLOAT32(0x14, 4),
+    FLOAT64(0x15, 8),
+    SFLOAT(0x16, 2),
+    FLOAT(0x17, 4);
+
+    private static final GattFormat[] BY_CODE = new GattFormat[0x20];
+
+    static {
+        for (GattFormat format : values()) {
+            BY_CODE[format.code] = format;
+        }
+    }
+
+    private final int code;
+    private final int size;
+
+    GattFormat(int code, int size) {
+        this.code = code;
+        this.size = size;
+    }
+
+    /**
+     * The format value used by the Characteristic Presentation Format descriptor.
+     */
+    public int code() {
+        return code;
+    }
+
+    /**
+     * The encoded size in bytes.
+     */
+    public int size() {
+        return size;
+    }
+
+    public boolean isFloatingPoint() {
+        return code >= FLOAT32.code;
+    }
+
+    /**
+     * Returns the format for a Characteristic Presentation Format value, or null if it is not a
+     * supported numeric format.
+     */
+    public static GattFormat fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * Reads an integer format from {@code source}. Floating point formats are truncated.
+     */
+    public long readLong(BufferedSource source) throws IOException {
+        switch (this) {
+            case UINT8:
+                return source.readByte() & 0xFF;
+            case UINT16:
+                return source.readShortLe() & 0xFFFF;
+            case UINT24:
+                return (source.readByte() & 0xFF) | (source.readShortLe() & 0xFFFF) << 8;
+            case UINT32:
+                return source.readIntLe() & 0xFFFFFFFFL;
+            case SINT8:
+                return source.readByte();
+            case SINT16:
+                return source.readShortLe();
+            case SINT24:
+                return (source.readByte() & 0xFF) | source.readShortLe() << 8;
+            case SINT32:
+                return source.readIntLe();
+            default:
+                return (long) readDouble(source);
+        }
+    }
+
+    /**
+     * Reads any format from {@code source} as a double.
+     */
+    public double readDouble(BufferedSource source) throws IOException {
+        switch (this) {
+            case FLOAT32:
+                return Float.intBitsToFloat(source.readIntLe());
+            case FLOAT64:
+                return Double.longBitsToDouble(source.readLongLe());
+            case SFLOAT:
+                return BleUtils.sfloat(source.readShortLe() & 0xFFFF);
+            case FLOAT:
+                return BleUtils.ieeeFloat(source.readIntLe());
+            default:
+                return readLong(source);
+        }
+    }
+
+    /**
+     * Reads an integer format from {@code data} at {@code offset}. Floating point formats are
+     * truncated.
+     */
+    public long getLong(byte[] data, int offset) {
+        switch (this) {
+            case UINT8:
+                return BleUtils.uint8(data, offset);
+            case UINT16:
+                return BleUtils.uint16(data, offset);
+            case UINT24:
+                return BleUtils.uint24(data, offset);
+            case UINT32:
+                return BleUtils.uint32(data, offset);
+            case SINT8:
+                return BleUtils.sint8(data, offset);
+            case SINT16:
+                return BleUtils.sint16(data, offset);
+            case SINT24:
+                return BleUtils.sint24(data, offset);
+            case SINT32:
+                return BleUtils.sint32(data, offset);
+            default:
+                return (long) getDouble(data, offset);
+        }
+    }
+
+    /**
+     * Reads any format from {@code data} at {@code offset} as a double.
+     */
+    public double getDouble(byte[] data, int offset) {
+        switch (this) {
+            case FLOAT32:
+                return Float.intBitsToFloat(BleUtils.sint32(data, offset));
+            case FLOAT64:
+                return Double.longBitsToDouble(BleUtils.sint64(data, offset));
+            case SFLOAT:
+                return BleUtils.sfloat(BleUtils.uint16(data, offset));
+            case FLOAT:
+                return BleUtils.ieeeFloat(BleUtils.sint32(data, offset));
+            default:
+                return getLong(data, offset);
+        }
+    }
+
+    /**
+     * Writes {@code value} to {@code sink} in this format. Out of range values are truncated.
+     */
+    public void write(BufferedSink sink, long value) throws IOException {
+        switch (this) {
+            case UINT8:
+            case SINT8:
+                sink.writeByte((int) value);
+                break;
+            case UINT16:
+            case SINT16:
+                sink.writeShortLe((int) value);
+                break;
+            case UINT24:
+            case SINT24:
+                sink.writeByte((int) value);
+                sink.writeShortLe((int) (value >> 8));
+                break;
+            case UINT32:
+            case SINT32:
+                sink.writeIntLe((int) value);
+                break;
+            default:
+                write(sink, (double) value);
+                break;
+        }
+    }
+
+    /**
+     * Writes {@code value} to {@code sink} in this format. Integer formats are rounded.
+     */
+    public void write(BufferedSink sink, double value) throws IOException {
+        switch (this) {
+            case FLOAT32:
+                sink.writeIntLe(Float.floatToIntBits((float) value));
+                break;
+            case FLOAT64:
+                sink.writeLongLe(Double.doubleToLongBits(value));
+                break;
+            case SFLOAT:
+                sink.writeShortLe(BleUtils.toSfloat(value));
+                break;
+            case FLOAT:
+                sink.writeIntLe(BleUtils.toIeeeFloat(value));
+                break;
+            default:
+                write(sink, Math.round(value));
+                break;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+/**
+ * Decodes a little-endian {@link GattFormat} value straight from the response source.
+ */
+final class GattFormatConverter<T> implements Converter<ResponseData, T> {
+    private final GattFormat format;
+    private final Class<?> boxType;
+
+    GattFormatConverter(GattFormat format, Class<?> boxType) {
+        this.format = format;
+        this.boxType = boxType;
+    }
+
+    private long convertToLong(ResponseData value) throws IOException {
+        BufferedSource source = value.source();
+        try {
+            return format.readLong(source);
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+
+    private double convertToDouble(ResponseData value) throws IOException {
+        BufferedSource source = value.source();
+        try {
+            return format.readDouble(source);
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+
+    @SuppressWarnings("unchecked") // boxType is the converter's T, checked by the factory.
+    @Override
+    public T convert(ResponseData value) throws IOException {
+        Object result;
+        if (boxType == Float.class) {
+            result = (float) convertToDouble(value);
+        } else if (boxType == Double.class) {
+            result = convertToDouble(value);
+        } else {
+            long l = convertToLong(value);
+            if (boxType == Long.class) {
+                result = l;
+            } else if (boxType == Integer.class) {
+                result = (int) l;
+            } else if (boxType == Short.class) {
+                result = (short) l;
+            } else {
+                result = (byte) l;
+            }
+        }
+        return (T) result;
+    }
+
+    static boolean isSupported(Class<?> type) {
+        return type == Integer.class || type == Long.class || type == Float.class
+                || type == Double.class || type == Short.class || type == Byte.class;
+    }
+}
@@ -0,0 +1,27 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+/**
+ * Encodes a {@link Number} as a little-endian {@link GattFormat} value.
+ */
+final class GattFormatRequestDataConverter implements Converter<Number, RequestData> {
+    private final GattFormat format;
+
+    GattFormatRequestDataConverter(GattFormat format) {
+        this.format = format;
+    }
+
+    @Override
+    public RequestData convert(Number value) throws IOException {
+        Buffer buffer = new Buffer();
+        if (value instanceof Float || value instanceof Double) {
+            format.write(buffer, value.doubleValue());
+        } else {
+            format.write(buffer, value.longValue());
+        }
+        return RequestData.create(null, buffer.readByteString());
+    }
+}
@@ -0,0 +1,305 @@
+package retrotooth;
+
+
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.BluetoothGatt;
+import android.bluetooth.BluetoothGattCallback;
+import android.bluetooth.BluetoothGattCharacteristic;
+import android.bluetooth.BluetoothGattDescriptor;
+import android.bluetooth.BluetoothGattService;
+import android.bluetooth.BluetoothProfile;
+import android.content.Context;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * The transport to a real peripheral: a {@link BluetoothGatt} connection, whose results arrive
+ * through the {@link RetrotoothGattCallback} it was connected with. Services are discovered
+ * before the first operation which needs them.
+ * <p/>
+ * A connection runs one GATT operation at a time, and its callbacks do not say which request
+ * they answer, so operations run through an {@link OperationQueue}. The callback is set once
+ * and routes each result to the operation in flight. An operation whose callback never arrives
+ * times out, and pending operations fail when the connection drops or is closed.
+ * <p/>
+ * Everything which touches the Android Bluetooth classes lives here, so that {@link Retrotooth}
+ * loads on the JVM when given another transport.
+ */
+final class GattTransport implements Transport {
+    // Marks a write of the characteristic's current value, and the value of an empty one.
+    private static final byte[] NO_VALUE = new byte[0];
+
+    private final RetrotoothGattCallback retrotoothGattCallback = new RetrotoothGattCallback();
+    private final OperationQueue operations = new OperationQueue();
+    private volatile BluetoothGatt client;
+
+    GattTransport() {
+        retrotoothGattCallback.setPassthruListener(new BluetoothGattCallback() {
+            @Override
+            public void onConnectionStateChange(BluetoothGatt gatt, int status, int newState) {
+                if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                    operations.failAll(new IOException("Disconnected"));
+                }
+            }
+
+            @Override
+            public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+                Operation operation = current();
+                if (operation != null) {
+                    operation.onServicesDiscovered(gatt, status);
+                }
+            }
+
+            @Override
+            public void onCharacteristicRead(BluetoothGatt gatt,
+                    BluetoothGattCharacteristic characteristic, int status) {
+                Operation operation = current();
+                if (operation != null) {
+                    operation.onCharacteristicRead(gatt, characteristic, status);
+                }
+            }
+
+            @Override
+            public void onCharacteristicWrite(BluetoothGatt gatt,
+                    BluetoothGattCharacteristic characteristic, int status) {
+                Operation operation = current();
+                if (operation != null) {
+                    operation.onCharacteristicWrite(gatt, characteristic, status);
+                }
+            }
+
+            @Override
+            public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor descriptor,
+                    int status) {
+                Operation operation = current();
+                if (operation != null) {
+                    operation.onDescriptorRead(gatt, descriptor, status);
+                }
+            }
+        });
+    }
+
+    BluetoothGatt connect(Context context, BluetoothDevice device) {
+        BluetoothGatt client = device.connectGatt(context, false, retrotoothGattCallback);
+        this.client = client;
+        return client;
+    }
+
+    BluetoothGatt client() {
+        return client;
+    }
+
+    void client(BluetoothGatt client) {
+        this.client = client;
+        if (client == null) {
+            operations.failAll(new IOException("Not connected"));
+        }
+    }
+
+    @Override
+    public void read(UUID service, UUID characteristic, Callback callback) {
+        operations.enqueue(new CharacteristicOperation(service, characteristic, null, callback));
+    }
+
+    @Override
+    public void write(UUID service, UUID characteristic, byte[] value, Callback callback) {
+        operations.enqueue(new CharacteristicOperation(service, characteristic,
+                value != null ? value : NO_VALUE, callback));
+    }
+
+    @Override
+    public void readDescriptor(final UUID service, final UUID characteristic,
+            final UUID descriptorUuid, Callback callback) {
+        operations.enqueue(new Operation(callback) {
+            private volatile BluetoothGattDescriptor descriptor;
+
+            @Override
+            void start(BluetoothGatt client) {
+                BluetoothGattCharacteristic c = find(client, service, characteristic, this);
+                if (c == null) {
+                    return;
+                }
+                descriptor = c.getDescriptor(descriptorUuid);
+                if (descriptor == null || descriptor.getValue() != null) {
+                    onSuccess(descriptor != null ? descriptor.getValue() : null);
+                    return;
+                }
+                if (!client.readDescriptor(descriptor)) {
+                    onFailure(new IOException("Descriptor read failed to start"));
+                }
+            }
+
+            @Override
+            public void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor d,
+                    int status) {
+                if (d != descriptor) {
+                    return;
+                }
+                if (status == BluetoothGatt.GATT_SUCCESS) {
+                    onSuccess(d.getValue());
+                } else {
+                    onFailure(new IOException("GATT status " + status));
+                }
+            }
+        });
+    }
+
+    @Override
+    public String model() {
+        BluetoothGatt client = this.client;
+        if (client == null) {
+            return null;
+        }
+        BluetoothDevice device = client.getDevice();
+        return device.getName() != null ? device.getName() : device.getAddress();
+    }
+
+    private Operation current() {
+        return (Operation) operations.current();
+    }
+
+    /**
+     * A queued GATT operation, which receives the connection's callbacks while in flight.
+     */
+    private abstract class Operation extends OperationQueue.Operation {
+        Operation(Callback callback) {
+            super(callback);
+        }
+
+        @Override
+        protected final void start() {
+            BluetoothGatt client = GattTransport.this.client;
+            if (client == null) {
+                onFailure(new IOException("Not connected"));
+                return;
+            }
+            start(client);
+        }
+
+        abstract void start(BluetoothGatt client);
+
+        void onServicesDiscovered(BluetoothGatt gatt, int status) {
+        }
+
+        void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic c,
+                int status) {
+        }
+
+        void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic c,
+                int status) {
+        }
+
+        void onDescriptorRead(BluetoothGatt gatt, BluetoothGattDescriptor d, int status) {
+        }
+    }
+
+    /**
+     * Reads the characteristic, or writes {@code value} to it if it is non-null, discovering
+     * services first if need be.
+     */
+    private final class CharacteristicOperation extends Operation {
+        private final UUID service;
+        private final UUID characteristic;
+        private final byte[] value;
+        private volatile boolean discovering;
+
+        CharacteristicOperation(UUID service, UUID characteristic, byte[] value,
+                Callback callback) {
+            super(callback);
+            this.service = service;
+            this.characteristic = characteristic;
+            this.value = value;
+        }
+
+        @Override
+        void start(BluetoothGatt client) {
+            if (client.getService(service) == null) {
+                discovering = true;
+                if (!client.discoverServices()) {
+                    onFailure(new IOException("Service discovery failed to start"));
+                }
+                return;
+            }
+            BluetoothGattCharacteristic c = find(client, service, characteristic, this);
+            if (c != null) {
+                GattTransport.start(client, c, value, this);
+            }
+        }
+
+        @Override
+        public void onServicesDiscovered(BluetoothGatt gatt, int status) {
+            if (!discovering) {
+                // Discovery started on connecting, not by this operation.
+                return;
+            }
+            discovering = false;
+            if (BluetoothGatt.GATT_SUCCESS != status) {
+                onFailure(new IOException("Service discovery failed: " + status));
+                return;
+            }
+            BluetoothGattCharacteristic c = find(gatt, service, characteristic, this);
+            if (c != null) {
+                GattTransport.start(gatt, c, value, this);
+            }
+        }
+
+        @Override
+        public void onCharacteristicRead(BluetoothGatt gatt, BluetoothGattCharacteristic c,
+                int status) {
+            if (value == null && c.getUuid().equals(characteristic)) {
+                complete(this, c, status);
+            }
+        }
+
+        @Override
+        public void onCharacteristicWrite(BluetoothGatt gatt, BluetoothGattCharacteristic c,
+                int status) {
+            if (value != null && c.getUuid().equals(characteristic)) {
+                complete(this, c, status);
+            }
+        }
+    }
+
+    private static void start(BluetoothGatt gatt, BluetoothGattCharacteristic characteristic,
+            byte[] value, Callback callback) {
+        gatt.setCharacteristicNotification(characteristic, true);
+        boolean started;
+        if (value == null) {
+            started = gatt.readCharacteristic(characteristic);
+        } else {
+            if (value != NO_VALUE) {
+                characteristic.setValue(value);
+            }
+            started = gatt.writeCharacteristic(characteristic);
+        }
+        if (!started) {
+            callback.onFailure(new IOException("GATT operation failed to start"));
+        }
+    }
+
+    private static BluetoothGattCharacteristic find(BluetoothGatt gatt, UUID service,
+            UUID characteristic, Callback callback) {
+        BluetoothGattService s = gatt.getService(service);
+        if (s == null) {
+            callback.onFailure(new IOException("service(" + service + ") not found"));
+            return null;
+        }
+        BluetoothGattCharacteristic c = s.getCharacteristic(characteristic);
+        if (c == null) {
+            callback.onFailure(new IOException("characteristic(" + characteristic
+                    + ") not found on service(" + service + ")"));
+        }
+        return c;
+    }
+
+    private static void complete(Callback callback, BluetoothGattCharacteristic characteristic,
+            int status) {
+        if (status != BluetoothGatt.GATT_SUCCESS) {
+            callback.onFailure(new IOException("GATT status " + status));
+            return;
+        }
+        byte[] value = characteristic.getValue();
+        callback.onSuccess(value != null ? value : NO_VALUE);
+    }
+}
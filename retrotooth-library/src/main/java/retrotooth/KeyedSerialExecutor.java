@@ -0,0 +1,107 @@
+package retrotooth;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+/**
+ * Runs tasks on a shared executor such that tasks submitted with the same key run one at a time,
+ * in submission order, while tasks for different keys run in parallel. There is no global lock:
+ * each key has its own lock-free queue, which is dropped once it drains.
+ */
+final class KeyedSerialExecutor {
+    private final Executor executor;
+    private final ConcurrentHashMap<Object, SerialQueue> queues = new ConcurrentHashMap<>();
+
+    KeyedSerialExecutor(Executor executor) {
+        if (executor == null) throw new NullPointerException("executor == null");
+        this.executor = executor;
+    }
+
+    Executor delegate() {
+        return executor;
+    }
+
+    void execute(Object key, Runnable task) {
+        while (true) {
+            SerialQueue queue = queues.get(key);
+            if (queue == null) {
+                SerialQueue created = new SerialQueue(key);
+                queue = queues.putIfAbsent(key, created);
+                if (queue == null) {
+                    queue = created;
+                }
+            }
+            if (queue.offer(task)) {
+                return;
+            }
+            // The queue drained and retired after we looked it up; replace it.
+            queues.remove(key, queue);
+        }
+    }
+
+    private final class SerialQueue implements Runnable {
+        private final Object key;
+        private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+        /**
+         * Tasks offered but not yet run, or -1 once the queue has retired.
+         */
+        private final AtomicInteger pending = new AtomicInteger();
+
+        SerialQueue(Object key) {
+            this.key = key;
+        }
+
+        boolean offer(Runnable task) {
+            int count;
+            do {
+                count = pending.get();
+                if (count < 0) {
+                    return false;
+                }
+            } while (!pending.compareAndSet(count, count + 1));
+
+            tasks.add(task);
+            // Only the submission that found the queue idle schedules a drain.
+            if (count == 0) {
+                executor.execute(this);
+            }
+            return true;
+        }
+
+        @Override
+        public void run() {
+            do {
+                Runnable task;
+                // A task is counted before it is added, so it may not be visible yet.
+                while ((task = tasks.poll()) == null) {
+                    Thread.yield();
+                }
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    Internal.logger.log(Level.WARNING, "Task for " + key + " failed", e);
+                } catch (Error e) {
+                    // Hand the tasks behind this one to a new drain before the error propagates,
+                    // rather than leave the key marked as running with nobody draining it.
+                    if (pending.decrementAndGet() != 0) {
+                        executor.execute(this);
+                    } else {
+                        retire();
+                    }
+                    throw e;
+                }
+            } while (pending.decrementAndGet() != 0);
+            retire();
+        }
+
+        private void retire() {
+            // Idle: retire unless a submitter got in first, in which case it scheduled a drain.
+            if (pending.compareAndSet(0, -1)) {
+                queues.remove(key, this);
+            }
+        }
+    }
+}
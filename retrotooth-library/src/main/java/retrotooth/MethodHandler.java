@@ -1,25 +1,29 @@
 package retrotooth;
 
-import android.bluetooth.BluetoothGatt;
-
 import java.lang.annotation.Annotation;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
 import java.util.List;
 
+import retrotooth.annotations.Compressed;
+
 import static retrotooth.Utils.methodError;
 
 final class MethodHandler<T> {
     @SuppressWarnings("unchecked")
-    static MethodHandler<?> create(Method method, BluetoothGatt client,
-                                   List<CallAdapter.Factory> callAdapterFactories, List<Converter.Factory> converterFactories, RetrotoothGattCallback retrotoothGattCallback) {
+    static MethodHandler<?> create(Method method, Transport transport,
+                                   List<CallAdapter.Factory> callAdapterFactories, List<Converter.Factory> converterFactories,
+                                   ConverterCache converterCache, KeyedSerialExecutor decodeExecutor,
+                                   PresentationFormatCache presentationFormats) {
         CallAdapter<Object> callAdapter =
                 (CallAdapter<Object>) createCallAdapter(method, callAdapterFactories);
         Converter<ResponseData, Object> responseConverter =
                 (Converter<ResponseData, Object>) createResponseConverter(method, callAdapter.responseType(),
-                        converterFactories);
-        RequestFactory requestFactory = RequestFactoryParser.parse(method, converterFactories);
-        return new MethodHandler<>(client, requestFactory, callAdapter, responseConverter, retrotoothGattCallback);
+                        converterFactories, converterCache);
+        RequestFactory requestFactory =
+                RequestFactoryParser.parse(method, converterFactories, converterCache);
+        return new MethodHandler<>(transport, requestFactory, callAdapter, responseConverter, decodeExecutor,
+                presentationFormats);
     }
 
     private static CallAdapter<?> createCallAdapter(Method method,
@@ -43,31 +47,42 @@ final class MethodHandler<T> {
     }
 
     private static Converter<ResponseData, ?> createResponseConverter(Method method,
-                                                                      Type responseType, List<Converter.Factory> converterFactories) {
+                                                                      Type responseType, List<Converter.Factory> converterFactories,
+                                                                      ConverterCache converterCache) {
         Annotation[] annotations = method.getAnnotations();
         try {
-            return Utils.resolveResponseBodyConverter(converterFactories, responseType, annotations);
+            Converter<ResponseData, ?> converter =
+                    converterCache.responseBodyConverter(converterFactories, responseType, annotations);
+            Compressed compressed = method.getAnnotation(Compressed.class);
+            if (compressed != null) {
+                converter = Compression.decompressing(converter, compressed.maxSize());
+            }
+            return converter;
         } catch (RuntimeException e) { // Wide exception range because factories are user code.
             throw Utils.methodError(e, method, "Unable to create converter for %s", responseType);
         }
     }
 
-    private final BluetoothGatt client;
+    private final Transport transport;
     private final RequestFactory requestFactory;
     private final CallAdapter<T> callAdapter;
     private final Converter<ResponseData, T> responseConverter;
-    private final RetrotoothGattCallback retrotoothGattCallback;
+    private final KeyedSerialExecutor decodeExecutor;
+    private final PresentationFormatCache presentationFormats;
 
-    private MethodHandler(BluetoothGatt client, RequestFactory requestFactory,
-                          CallAdapter<T> callAdapter, Converter<ResponseData, T> responseConverter, RetrotoothGattCallback retrotoothGattCallback) {
-        this.client = client;
+    private MethodHandler(Transport transport, RequestFactory requestFactory,
+                          CallAdapter<T> callAdapter, Converter<ResponseData, T> responseConverter,
+                          KeyedSerialExecutor decodeExecutor, PresentationFormatCache presentationFormats) {
+        this.transport = transport;
         this.requestFactory = requestFactory;
         this.callAdapter = callAdapter;
         this.responseConverter = responseConverter;
-        this.retrotoothGattCallback = retrotoothGattCallback;
+        this.decodeExecutor = decodeExecutor;
+        this.presentationFormats = presentationFormats;
     }
 
     Object invoke(Object... args) {
-        return callAdapter.adapt(new BluetoothCall<>(client, requestFactory, responseConverter, retrotoothGattCallback, args));
+        return callAdapter.adapt(new BluetoothCall<>(transport, requestFactory, responseConverter, decodeExecutor,
+                presentationFormats, args));
     }
 }
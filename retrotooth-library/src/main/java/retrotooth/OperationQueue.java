@@ -0,0 +1,210 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a connection's operations one at a time, for {@link Transport} implementations: a GATT
+ * client must not start an operation before the one in flight has completed. Operations are
+ * started in the order they were {@linkplain #enqueue enqueued}, each once the one before it
+ * completes.
+ * <p/>
+ * Each operation has a deadline. One which has not completed by then fails with an
+ * {@link InterruptedIOException}, and the next one starts, so a callback that never arrives
+ * does not stall the connection. Operations which complete before {@link Operation#start}
+ * returns never arm a deadline.
+ */
+public final class OperationQueue {
+    /**
+     * As long as a call made with {@link Call#execute} waits for its operation.
+     */
+    public static final long DEFAULT_TIMEOUT_MILLIS = 4000L;
+
+    private static final ScheduledExecutorService TIMER = newTimer();
+
+    private final long timeoutNanos;
+    private final Deque<Operation> operations = new ArrayDeque<>(); // Guarded by this.
+    private Operation current; // Guarded by this.
+    // True while an operation is being started. Guarded by this.
+    private boolean starting;
+
+    public OperationQueue() {
+        this(DEFAULT_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public OperationQueue(long timeout, TimeUnit unit) {
+        if (unit == null) throw new NullPointerException("unit == null");
+        if (timeout <= 0) {
+            throw new IllegalArgumentException("timeout <= 0: " + timeout);
+        }
+        this.timeoutNanos = unit.toNanos(timeout);
+    }
+
+    /**
+     * Start {@code operation} once those enqueued before it have completed.
+     */
+    public void enqueue(Operation operation) {
+        if (operation == null) throw new NullPointerException("operation == null");
+        synchronized (this) {
+            if (operation.queue != null) {
+                throw new IllegalStateException("operation already enqueued");
+            }
+            operation.queue = this;
+            operations.add(operation);
+        }
+        next();
+    }
+
+    /**
+     * Returns the operation in flight, or null if there is none.
+     */
+    public synchronized Operation current() {
+        return current;
+    }
+
+    /**
+     * Fail the operation in flight and every queued operation with {@code e}.
+     */
+    public void failAll(IOException e) {
+        List<Operation> failed;
+        synchronized (this) {
+            failed = new ArrayList<>(operations.size() + 1);
+            if (current != null) {
+                cancelDeadline(current);
+                failed.add(current);
+                current = null;
+            }
+            failed.addAll(operations);
+            operations.clear();
+        }
+        for (Operation operation : failed) {
+            operation.callback.onFailure(e);
+        }
+    }
+
+    /**
+     * Start queued operations until one is left in flight. Operations which complete while
+     * being started are followed by a loop here rather than by recursion through their
+     * completion, which would deepen the stack with every one.
+     */
+    private void next() {
+        while (true) {
+            Operation operation;
+            synchronized (this) {
+                if (current != null || starting || operations.isEmpty()) {
+                    return;
+                }
+                operation = operations.poll();
+                current = operation;
+                starting = true;
+            }
+            boolean inFlight;
+            try {
+                operation.start();
+            } finally {
+                synchronized (this) {
+                    starting = false;
+                    inFlight = current == operation;
+                    if (inFlight) {
+                        operation.deadline = TIMER.schedule(operation, timeoutNanos,
+                                TimeUnit.NANOSECONDS);
+                    }
+                }
+            }
+            if (inFlight) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Returns true if {@code operation} was in flight. The caller reports its result and then
+     * calls {@link #next}, so callbacks run in the order operations complete.
+     */
+    private synchronized boolean finish(Operation operation) {
+        if (current != operation) {
+            return false;
+        }
+        cancelDeadline(operation);
+        current = null;
+        return true;
+    }
+
+    private static void cancelDeadline(Operation operation) {
+        if (operation.deadline != null) {
+            operation.deadline.cancel(false);
+            operation.deadline = null;
+        }
+    }
+
+    private static ScheduledExecutorService newTimer() {
+        return new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "Retrotooth operation timeout");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * A queued operation. It is started when the one before it completes, and completes
+     * through {@link #onSuccess} or {@link #onFailure}, which report to its callback. Only the
+     * first completion, or the deadline, counts; later ones are ignored.
+     */
+    public abstract static class Operation implements Transport.Callback, Runnable {
+        final Transport.Callback callback;
+        OperationQueue queue; // Guarded by queue.
+        ScheduledFuture<?> deadline; // Guarded by queue.
+
+        protected Operation(Transport.Callback callback) {
+            if (callback == null) throw new NullPointerException("callback == null");
+            this.callback = callback;
+        }
+
+        /**
+         * Start the operation. It may complete before this returns.
+         */
+        protected abstract void start();
+
+        @Override
+        public final void onSuccess(byte[] value) {
+            if (queue.finish(this)) {
+                try {
+                    callback.onSuccess(value);
+                } finally {
+                    queue.next();
+                }
+            }
+        }
+
+        @Override
+        public final void onFailure(IOException e) {
+            if (queue.finish(this)) {
+                try {
+                    callback.onFailure(e);
+                } finally {
+                    queue.next();
+                }
+            }
+        }
+
+        /**
+         * Runs at the deadline.
+         */
+        @Override
+        public final void run() {
+            onFailure(new InterruptedIOException("Timed out"));
+        }
+    }
+}
@@ -26,8 +26,20 @@ class Platform {
         return new Platform();
     }
 
+    /**
+     * Off Android, such as against a simulated peripheral, callbacks run on the thread which
+     * completed the call unless an executor is given.
+     */
     CallAdapter.Factory defaultCallAdapterFactory(Executor callbackExecutor) {
-        throw new UnsupportedOperationException("not implemented");
+        if (callbackExecutor == null) {
+            callbackExecutor = new Executor() {
+                @Override
+                public void execute(Runnable r) {
+                    r.run();
+                }
+            };
+        }
+        return new ExecutorCallAdapterFactory(callbackExecutor);
     }
 
 
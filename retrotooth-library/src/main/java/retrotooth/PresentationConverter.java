@@ -0,0 +1,51 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+
+/**
+ * Decodes a numeric value using the {@link PresentationFormat} read from the characteristic.
+ */
+final class PresentationConverter<T> implements Converter<ResponseData, T> {
+    private final Class<?> boxType;
+
+    PresentationConverter(Class<?> boxType) {
+        this.boxType = boxType;
+    }
+
+    @Override
+    public T convert(ResponseData value) throws IOException {
+        return convert(value, null);
+    }
+
+    @SuppressWarnings("unchecked") // boxType is the converter's T, checked by the factory.
+    T convert(ResponseData value, PresentationFormat format) throws IOException {
+        if (format == null) {
+            throw new IOException("Characteristic has no supported presentation format descriptor");
+        }
+        BufferedSource source = value.source();
+        try {
+            Object result;
+            if (boxType == Double.class) {
+                result = format.decode(source);
+            } else if (boxType == Float.class) {
+                result = (float) format.decode(source);
+            } else {
+                long l = format.decodeLong(source);
+                if (boxType == Long.class) {
+                    result = l;
+                } else if (boxType == Integer.class) {
+                    result = (int) l;
+                } else if (boxType == Short.class) {
+                    result = (short) l;
+                } else {
+                    result = (byte) l;
+                }
+            }
+            return (T) result;
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.util.UUID;
+
+import okio.BufferedSource;
+import retrotooth.util.BleUtils;
+
+/**
+ * A parsed Characteristic Presentation Format descriptor (0x2904): how a characteristic's value
+ * is encoded, the power of ten to scale it by, and its unit.
+ */
+public final class PresentationFormat {
+    public static final UUID DESCRIPTOR_UUID =
+            UUID.fromString("00002904-0000-1000-8000-00805f9b34fb");
+
+    private final GattFormat format;
+    private final int exponent;
+    private final int unit;
+    private final int namespace;
+    private final int description;
+
+    private PresentationFormat(GattFormat format, int exponent, int unit, int namespace,
+                               int description) {
+        this.format = format;
+        this.exponent = exponent;
+        this.unit = unit;
+        this.namespace = namespace;
+        this.description = description;
+    }
+
+    /**
+     * Parses a 7 byte descriptor value. Returns null if it is too short or describes a format
+     * other than the numeric ones in {@link GattFormat}.
+     */
+    public static PresentationFormat parse(byte[] value) {
+        if (value == null || value.length < 7) {
+            return null;
+        }
+        GattFormat format = GattFormat.fromCode(value[0] & 0xFF);
+        if (format == null) {
+            return null;
+        }
+        return new PresentationFormat(format, BleUtils.sint8(value, 1), BleUtils.uint16(value, 2),
+                BleUtils.uint8(value, 4), BleUtils.uint16(value, 5));
+    }
+
+    public GattFormat format() {
+        return format;
+    }
+
+    /**
+     * The power of ten the encoded value is multiplied by.
+     */
+    public int exponent() {
+        return exponent;
+    }
+
+    /**
+     * The assigned number of the unit, such as 0x272F for degrees Celsius.
+     */
+    public int unit() {
+        return unit;
+    }
+
+    public int namespace() {
+        return namespace;
+    }
+
+    public int description() {
+        return description;
+    }
+
+    /**
+     * Decodes and scales the value at {@code offset} in {@code data}.
+     */
+    public double decode(byte[] data, int offset) {
+        if (format.isFloatingPoint()) {
+            return BleUtils.scale(format.getDouble(data, offset), exponent);
+        }
+        return BleUtils.scale(format.getLong(data, offset), exponent);
+    }
+
+    /**
+     * Decodes and scales a value from {@code source}.
+     */
+    public double decode(BufferedSource source) throws IOException {
+        if (format.isFloatingPoint()) {
+            return BleUtils.scale(format.readDouble(source), exponent);
+        }
+        return BleUtils.scale(format.readLong(source), exponent);
+    }
+
+    /**
+     * Decodes and scales a value from {@code source}, rounding it to a whole number. Values with a
+     * non-negative exponent are scaled exactly. Values out of the range of a long saturate at
+     * {@link Long#MIN_VALUE} or {@link Long#MAX_VALUE}.
+     */
+    public long decodeLong(BufferedSource source) throws IOException {
+        if (!format.isFloatingPoint() && exponent >= 0) {
+            long value = format.readLong(source);
+            for (int i = 0; i < exponent && value != 0; i++) {
+                if (value > Long.MAX_VALUE / 10) {
+                    return Long.MAX_VALUE;
+                }
+                if (value < Long.MIN_VALUE / 10) {
+                    return Long.MIN_VALUE;
+                }
+                value *= 10;
+            }
+            return value;
+        }
+        return Math.round(decode(source));
+    }
+
+    @Override
+    public String toString() {
+        return "PresentationFormat{format=" + format + ", exponent=" + exponent
+                + ", unit=0x" + Integer.toHexString(unit) + '}';
+    }
+}
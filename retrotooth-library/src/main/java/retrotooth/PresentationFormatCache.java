@@ -0,0 +1,68 @@
+package retrotooth;
+
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the presentation format of each characteristic by device model, so the 0x2904
+ * descriptor is read once per model rather than once per call. Devices are assumed to be the
+ * same model when they advertise the same name.
+ * <p/>
+ * Characteristics without a usable descriptor are remembered too, so that it is not read again
+ * on every call.
+ */
+final class PresentationFormatCache {
+    // Stands in for characteristics with no usable descriptor.
+    private static final Object NONE = new Object();
+
+    private final ConcurrentHashMap<Key, Object> formats = new ConcurrentHashMap<>();
+
+    /**
+     * Returns true if the characteristic's format is known, including known to be absent.
+     */
+    boolean contains(String model, UUID characteristic) {
+        return formats.containsKey(new Key(model, characteristic));
+    }
+
+    /**
+     * Returns the characteristic's format, or null if it has none or is not known yet.
+     */
+    PresentationFormat get(String model, UUID characteristic) {
+        Object format = formats.get(new Key(model, characteristic));
+        return format != NONE ? (PresentationFormat) format : null;
+    }
+
+    /**
+     * Remembers the characteristic's format, or that it has none if {@code format} is null.
+     */
+    void put(String model, UUID characteristic, PresentationFormat format) {
+        formats.put(new Key(model, characteristic), format != null ? format : NONE);
+    }
+
+    private static final class Key {
+        private final String model;
+        private final UUID characteristic;
+
+        Key(String model, UUID characteristic) {
+            this.model = model != null ? model : "";
+            this.characteristic = characteristic;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return model.equals(other.model) && characteristic.equals(other.characteristic);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * model.hashCode() + characteristic.hashCode();
+        }
+    }
+}
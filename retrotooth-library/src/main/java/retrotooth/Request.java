@@ -7,12 +7,14 @@ public class Request {
     private final UUID characteristicUuid;
     private final UUID serviceUuid;
     private final BluetoothOperation bluetoothOperation;
+    private final RequestData data;
     private final Object tag;
 
     private Request(Request.Builder builder) {
         this.characteristicUuid = builder.characteristicUuid;
         this.serviceUuid = builder.serviceUuid;
         this.bluetoothOperation = builder.bluetoothOperation;
+        this.data = builder.data;
         this.tag = builder.tag != null ? builder.tag : this;
     }
 
@@ -28,6 +30,14 @@ public class Request {
         return this.bluetoothOperation;
     }
 
+    /**
+     * The value to write, or null to write the characteristic's current value. Always null for
+     * reads.
+     */
+    public RequestData data() {
+        return this.data;
+    }
+
     public Object tag() {
         return this.tag;
     }
@@ -40,6 +50,7 @@ public class Request {
         private UUID serviceUuid;
         private UUID characteristicUuid;
         private BluetoothOperation bluetoothOperation;
+        private RequestData data;
         private Object tag;
 
         public Builder() {
@@ -49,6 +60,7 @@ public class Request {
             this.serviceUuid = request.serviceUuid;
             this.characteristicUuid = request.characteristicUuid;
             this.bluetoothOperation = request.bluetoothOperation;
+            this.data = request.data;
             this.tag = request.tag;
         }
 
@@ -67,6 +79,11 @@ public class Request {
             return this;
         }
 
+        public Request.Builder data(RequestData data) {
+            this.data = data;
+            return this;
+        }
+
         public Request build() {
             if (this.serviceUuid == null) {
                 throw new IllegalStateException("service == null");
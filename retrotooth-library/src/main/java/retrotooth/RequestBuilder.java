@@ -64,6 +64,7 @@ final class RequestBuilder {
                 .characteristic(characteristic)
                 .service(service)
                 .bluetoothOperation(bluetoothOperation)
+                .data(body)
                 .build();
     }
 }
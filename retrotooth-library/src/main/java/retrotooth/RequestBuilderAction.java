@@ -1,5 +1,27 @@
 package retrotooth;
 
+import java.io.IOException;
 
-public class RequestBuilderAction {
+abstract class RequestBuilderAction {
+    abstract void perform(RequestBuilder builder, Object value) throws IOException;
+
+    /**
+     * Converts the argument to the value written to the characteristic.
+     */
+    static final class Data<T> extends RequestBuilderAction {
+        private final Converter<T, RequestData> converter;
+
+        Data(Converter<T, RequestData> converter) {
+            this.converter = converter;
+        }
+
+        @SuppressWarnings("unchecked") // The parser resolved the converter for the parameter type.
+        @Override
+        void perform(RequestBuilder builder, Object value) throws IOException {
+            if (value == null) {
+                throw new IllegalArgumentException("Data parameter value must not be null.");
+            }
+            builder.setData(converter.convert((T) value));
+        }
+    }
 }
@@ -11,7 +11,13 @@ import okio.Okio;
 import okio.Source;
 import retrotooth.ok.MediaType;
 
-public class RequestData {
+public abstract class RequestData {
+    public abstract MediaType contentType();
+
+    public abstract long contentLength() throws IOException;
+
+    public abstract void writeTo(BufferedSink sink) throws IOException;
+
     public static RequestData create(MediaType contentType, String content) {
         Charset charset = Utils.UTF_8;
         if (contentType != null) {
@@ -1,5 +1,6 @@
 package retrotooth;
 
+import java.io.IOException;
 import java.util.UUID;
 
 final class RequestFactory {
@@ -7,7 +8,7 @@ final class RequestFactory {
     private final UUID characteristicUuid;
     private final BluetoothOperation bluetoothOperation;
     private final boolean hasBody;
-//    private final RequestBuilderAction[] requestBuilderActions;
+    private final RequestBuilderAction[] requestBuilderActions;
 
     RequestFactory(UUID serviceUuid, UUID characteristicUuid, BluetoothOperation bluetoothOperation, boolean hasBody,
                    RequestBuilderAction[] requestBuilderActions) {
@@ -15,25 +16,24 @@ final class RequestFactory {
         this.bluetoothOperation = bluetoothOperation;
         this.characteristicUuid = characteristicUuid;
         this.hasBody = hasBody;
-//        this.requestBuilderActions = requestBuilderActions;
+        this.requestBuilderActions = requestBuilderActions;
     }
 
-    Request create(Object... args) {
+    Request create(Object... args) throws IOException {
         RequestBuilder requestBuilder =
                 new RequestBuilder(this.serviceUuid, this.characteristicUuid, this.bluetoothOperation, this.hasBody);
 
-        if (args != null) {
-//            RequestBuilderAction[] actions = requestBuilderActions;
-//            if (actions.length != args.length) {
-//                throw new IllegalArgumentException("Argument count ("
-//                        + args.length
-//                        + ") doesn't match action count ("
-//                        + actions.length
-//                        + ")");
-//            }
-//            for (int i = 0, count = args.length; i < count; i++) {
-//                actions[i].perform(requestBuilder, args[i]);
-//            }
+        RequestBuilderAction[] actions = requestBuilderActions;
+        int argumentCount = args != null ? args.length : 0;
+        if (actions.length != argumentCount) {
+            throw new IllegalArgumentException("Argument count ("
+                    + argumentCount
+                    + ") doesn't match action count ("
+                    + actions.length
+                    + ")");
+        }
+        for (int i = 0; i < argumentCount; i++) {
+            actions[i].perform(requestBuilder, args[i]);
         }
 
         return requestBuilder.build();
@@ -7,6 +7,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.regex.Pattern;
 
+import retrotooth.annotations.Compressed;
 import retrotooth.annotations.READ;
 import retrotooth.annotations.WRITE;
 import retrotooth.util.BleUtils;
@@ -19,10 +20,11 @@ final class RequestFactoryParser {
     private static final Pattern PARAM_NAME_REGEX = Pattern.compile(PARAM);
     private static final Pattern PARAM_URL_REGEX = Pattern.compile("\\{(" + PARAM + ")\\}");
 
-    static RequestFactory parse(Method method, List<Converter.Factory> converterFactories) {
+    static RequestFactory parse(Method method, List<Converter.Factory> converterFactories,
+                                ConverterCache converterCache) {
         RequestFactoryParser parser = new RequestFactoryParser(method);
         parser.parseMethodAnnotations();
-        parser.parseParameters(converterFactories);
+        parser.parseParameters(converterFactories, converterCache);
         return parser.toRequestFactory();
     }
 
@@ -112,10 +114,61 @@ final class RequestFactoryParser {
         this.characteristicUuid = BleUtils.getUUID(write.characteristic());
     }
 
-    private void parseParameters(List<Converter.Factory> converterFactories) {
+    /**
+     * A {@link WRITE} method may take one parameter, the value to write, converted by the first
+     * converter factory which handles its type and annotations. Without one, the characteristic's
+     * current value is written.
+     */
+    @SuppressWarnings("unchecked") // Compression preserves the converter's parameter type.
+    private void parseParameters(List<Converter.Factory> converterFactories,
+                                 ConverterCache converterCache) {
         Type[] methodParameterTypes = method.getGenericParameterTypes();
         Annotation[][] methodParameterAnnotationArrays = method.getParameterAnnotations();
 
-        // TODO add additional param parsing here if we need it
+        int count = methodParameterTypes.length;
+        requestBuilderActions = new RequestBuilderAction[count];
+        if (count == 0) {
+            return;
+        }
+        if (bluetoothOperation != BluetoothOperation.WRITE) {
+            throw parameterError(0, "Only @WRITE methods may have a parameter.");
+        }
+        if (count > 1) {
+            throw parameterError(1, "@WRITE methods may have at most one parameter.");
+        }
+
+        Type type = boxIfPrimitive(methodParameterTypes[0]);
+        if (Utils.hasUnresolvableType(type)) {
+            throw parameterError(0, "Parameter type must not include a type variable or wildcard: %s",
+                    type);
+        }
+        Annotation[] annotations = methodParameterAnnotationArrays[0];
+        Converter<Object, RequestData> converter;
+        try {
+            converter = (Converter<Object, RequestData>)
+                    converterCache.requestBodyConverter(converterFactories, type, annotations);
+        } catch (RuntimeException e) { // Wide exception range because factories are user code.
+            throw methodError(e, method, "Unable to create converter for %s (parameter #1)", type);
+        }
+        for (Annotation annotation : annotations) {
+            if (annotation instanceof Compressed) {
+                Compressed compressed = (Compressed) annotation;
+                converter = compressed.value().compressing(converter, compressed.threshold());
+            }
+        }
+        requestBuilderActions[0] = new RequestBuilderAction.Data<>(converter);
+        hasBody = true;
+    }
+
+    private static Type boxIfPrimitive(Type type) {
+        if (type == int.class) return Integer.class;
+        if (type == long.class) return Long.class;
+        if (type == float.class) return Float.class;
+        if (type == double.class) return Double.class;
+        if (type == short.class) return Short.class;
+        if (type == byte.class) return Byte.class;
+        if (type == boolean.class) return Boolean.class;
+        if (type == char.class) return Character.class;
+        return type;
     }
 }
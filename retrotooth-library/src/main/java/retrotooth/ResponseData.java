@@ -51,14 +51,27 @@ public abstract class ResponseData implements Closeable {
 
     public final Reader charStream() throws IOException {
         Reader r = this.reader;
-        return r != null ? r : (this.reader = new InputStreamReader(this.byteStream(), this.charset()));
+        if (r != null) {
+            return r;
+        }
+        Charset charset = this.charset();
+        return this.reader = Utils.UTF_8.equals(charset)
+                ? new Utf8Reader(this.source())
+                : new InputStreamReader(this.byteStream(), charset);
     }
 
     public final String string() throws IOException {
-        return new String(this.bytes(), this.charset().name());
+        Charset charset = this.charset();
+        BufferedSource source = this.source();
+        try {
+            // Decode straight from the source's segments rather than via a copied byte array.
+            return Utils.UTF_8.equals(charset) ? source.readUtf8() : source.readString(charset);
+        } finally {
+            Utils.closeQuietly(source);
+        }
     }
 
-    private Charset charset() {
+    Charset charset() {
         MediaType contentType = this.contentType();
         return contentType != null ? contentType.charset(Utils.UTF_8) : Utils.UTF_8;
     }
@@ -33,23 +33,29 @@ public final class Retrotooth {
     private final Context context;
     private final BluetoothManager bluetoothManager;
     private final BluetoothAdapter bluetoothAdapter;
-    private BluetoothGatt client;
     private final BluetoothDevice bluetoothDevice;
+    private final Transport transport;
     private final List<Converter.Factory> converterFactories;
+    private final ConverterCache converterCache;
     private final List<CallAdapter.Factory> adapterFactories;
     private final Executor callbackExecutor;
-    private final RetrotoothGattCallback retrotoothGattCallback;
+    private final KeyedSerialExecutor decodeExecutor;
+    private final PresentationFormatCache presentationFormats;
 
-    private Retrotooth(Context context, BluetoothManager bluetoothManager, BluetoothAdapter bluetoothAdapter, BluetoothDevice bluetoothDevice, List<Converter.Factory> converterFactories,
-                       List<CallAdapter.Factory> adapterFactories, Executor callbackExecutor) {
+    private Retrotooth(Context context, BluetoothManager bluetoothManager, BluetoothAdapter bluetoothAdapter, BluetoothDevice bluetoothDevice, Transport transport, List<Converter.Factory> converterFactories,
+                       ConverterCache converterCache, List<CallAdapter.Factory> adapterFactories, Executor callbackExecutor,
+                       KeyedSerialExecutor decodeExecutor, PresentationFormatCache presentationFormats) {
         this.context = context;
         this.bluetoothManager = bluetoothManager;
         this.bluetoothAdapter = bluetoothAdapter;
         this.bluetoothDevice = bluetoothDevice;
         this.converterFactories = converterFactories;
+        this.converterCache = converterCache;
         this.adapterFactories = adapterFactories;
         this.callbackExecutor = callbackExecutor;
-        this.retrotoothGattCallback = new RetrotoothGattCallback();
+        this.decodeExecutor = decodeExecutor;
+        this.presentationFormats = presentationFormats;
+        this.transport = transport != null ? transport : new GattTransport();
     }
 
     //region Inspect interface using reflection
@@ -80,7 +86,8 @@ public final class Retrotooth {
         synchronized (methodHandlerCache) {
             handler = methodHandlerCache.get(method);
             if (handler == null) {
-                handler = MethodHandler.create(method, client, adapterFactories, converterFactories, retrotoothGattCallback);
+                handler = MethodHandler.create(method, transport, adapterFactories, converterFactories, converterCache,
+                        decodeExecutor, presentationFormats);
                 methodHandlerCache.put(method, handler);
             }
         }
@@ -88,34 +95,53 @@ public final class Retrotooth {
     }
     //endregion
 
+    /**
+     * Connect to the device. Not needed, and returns null, when calls go through a
+     * {@linkplain Builder#transport transport} that was supplied.
+     */
     public BluetoothGatt connect() {
-        this.client = bluetoothDevice.connectGatt(this.context, false, this.retrotoothGattCallback);
-        return this.client;
+        if (!(transport instanceof GattTransport)) {
+            return null;
+        }
+        return ((GattTransport) transport).connect(context, bluetoothDevice);
     }
 
-
+    /**
+     * Disconnect from the device. Does nothing when not connected, including when calls go
+     * through a {@linkplain Builder#transport transport} that was supplied.
+     */
     public void disconnect() {
-        if (bluetoothAdapter == null || client == null) {
-            throw new RuntimeException("BluetoothAdapter not initialized");
+        BluetoothGatt client = client();
+        if (client != null) {
+            client.disconnect();
         }
-        client.disconnect();
     }
 
     /**
      * After using a given BLE device, the app must call this method to ensure resources are
-     * released properly.
+     * released properly. Calls still pending fail. Does nothing when calls go through a
+     * {@linkplain Builder#transport transport} that was supplied: its owner closes it.
      */
     public void close() {
         disconnect();
+        BluetoothGatt client = client();
         if (client == null) {
             return;
         }
         client.close();
-        client = null;
+        ((GattTransport) transport).client(null);
     }
 
+    /**
+     * May be null: before {@link #connect}, after {@link #close}, and when calls go through a
+     * {@linkplain Builder#transport transport} that was supplied.
+     */
     public BluetoothGatt client() {
-        return client;
+        return transport instanceof GattTransport ? ((GattTransport) transport).client() : null;
+    }
+
+    public Transport transport() {
+        return transport;
     }
 
     public BluetoothDevice bluetoothDevice() {
@@ -141,22 +167,42 @@ public final class Retrotooth {
         return callbackExecutor;
     }
 
+    /**
+     * May be null, in which case responses are converted on the thread that received them.
+     */
+    public Executor decodeExecutor() {
+        return decodeExecutor != null ? decodeExecutor.delegate() : null;
+    }
+
+    /**
+     * Returns a builder initialized with this instance's context, converters, call adapters and
+     * callback executor, for talking to another device with the same configuration. Instances
+     * built from it share this instance's converter cache, unless more converter factories are
+     * added, and the presentation formats it has read.
+     */
+    public Builder newBuilder() {
+        return new Builder(this);
+    }
+
     /**
      * Build a new {@link Retrotooth}.
      * <p/>
-     * Calling {@link #bluetoothDevice} is required before calling {@link #build()}. All other methods
-     * are optional.
+     * Calling {@link #device} or {@link #transport} is required before calling {@link #build()}.
+     * All other methods are optional.
      */
     public static final class Builder {
-        private BluetoothGatt client;
         private Context context;
         private BluetoothManager bluetoothManager;
         private BluetoothAdapter bluetoothAdapter;
         private String bluetoothDeviceAddress;
         private BluetoothDevice bluetoothDevice;
+        private Transport transport;
         private List<Converter.Factory> converterFactories = new ArrayList<>();
         private List<CallAdapter.Factory> adapterFactories = new ArrayList<>();
         private Executor callbackExecutor;
+        private Executor decodeExecutor;
+        private ConverterCache converterCache;
+        private PresentationFormatCache presentationFormats;
 
         public Builder() {
             // Add the built-in converter factory first. This prevents overriding its behavior but also
@@ -164,6 +210,20 @@ public final class Retrotooth {
             converterFactories.add(new BuiltInConverterFactory());
         }
 
+        Builder(Retrotooth retrotooth) {
+            context = retrotooth.context;
+            bluetoothManager = retrotooth.bluetoothManager;
+            bluetoothAdapter = retrotooth.bluetoothAdapter;
+            converterFactories.addAll(retrotooth.converterFactories);
+            converterCache = retrotooth.converterCache;
+            adapterFactories.addAll(retrotooth.adapterFactories);
+            // Remove the default, platform-aware call adapter added by build().
+            adapterFactories.remove(adapterFactories.size() - 1);
+            callbackExecutor = retrotooth.callbackExecutor;
+            decodeExecutor = retrotooth.decodeExecutor();
+            presentationFormats = retrotooth.presentationFormats;
+        }
+
         public Builder device(String address) {
             if (bluetoothAdapter == null) {
                 throw new NullPointerException("bluetoothAdapter == null");
@@ -199,9 +259,21 @@ public final class Retrotooth {
             return this;
         }
 
+        /**
+         * Send calls through {@code transport} instead of a {@code BluetoothGatt} connection to the
+         * {@linkplain #device device}, such as to a simulated peripheral. No device or context is
+         * needed then.
+         */
+        public Builder transport(Transport transport) {
+            this.transport = checkNotNull(transport, "transport == null");
+            return this;
+        }
+
         /** Add converter factory for serialization and deserialization of objects. */
         public Builder addConverterFactory(Converter.Factory converterFactory) {
             converterFactories.add(checkNotNull(converterFactory, "converterFactory == null"));
+            // Converters resolve differently now, so stop sharing the base configuration's cache.
+            converterCache = null;
             return this;
         }
 
@@ -223,16 +295,30 @@ public final class Retrotooth {
             return this;
         }
 
+        /**
+         * The executor on which responses are converted for calls made with
+         * {@link Call#enqueue}, instead of the Bluetooth binder thread that delivered them. Heavy
+         * decoding then no longer delays the next GATT callback. Responses for different
+         * characteristics are converted in parallel; those for the same characteristic are
+         * converted and delivered in order.
+         */
+        public Builder decodeExecutor(Executor decodeExecutor) {
+            this.decodeExecutor = checkNotNull(decodeExecutor, "decodeExecutor == null");
+            return this;
+        }
+
         /**
          * Create the {@link Retrotooth} instances.
          */
         public Retrotooth build() {
-            if (bluetoothDevice == null) {
-                throw new IllegalStateException("Bluetooth device required.");
-            }
-
-            if (context == null) {
-                throw new IllegalStateException("context required.");
+            if (transport == null) {
+                if (bluetoothDevice == null) {
+                    throw new IllegalStateException("Bluetooth device required.");
+                }
+
+                if (context == null) {
+                    throw new IllegalStateException("context required.");
+                }
             }
 
             // Make a defensive copy of the adapters and add the default Call adapter.
@@ -242,7 +328,22 @@ public final class Retrotooth {
             // Make a defensive copy of the converters.
             List<Converter.Factory> converterFactories = new ArrayList<>(this.converterFactories);
 
-            return new Retrotooth(context, bluetoothManager, bluetoothAdapter, bluetoothDevice, converterFactories, adapterFactories, callbackExecutor);
+            ConverterCache converterCache = this.converterCache;
+            if (converterCache == null) {
+                converterCache = new ConverterCache();
+            }
+
+            PresentationFormatCache presentationFormats = this.presentationFormats;
+            if (presentationFormats == null) {
+                presentationFormats = new PresentationFormatCache();
+            }
+
+            KeyedSerialExecutor decodeExecutor = this.decodeExecutor != null
+                    ? new KeyedSerialExecutor(this.decodeExecutor)
+                    : null;
+
+            return new Retrotooth(context, bluetoothManager, bluetoothAdapter, bluetoothDevice, transport, converterFactories, converterCache,
+                    adapterFactories, callbackExecutor, decodeExecutor, presentationFormats);
         }
     }
 }
\ No newline at end of file
@@ -0,0 +1,9 @@
+package retrotooth;
+
+/**
+ * A {@link Converter} holding state for the calls of a single service method, such as the previous
+ * notification of a subscription. Stateful converters are created per method and never shared
+ * through the {@link Retrotooth} converter cache.
+ */
+public interface StatefulConverter<F, T> extends Converter<F, T> {
+}
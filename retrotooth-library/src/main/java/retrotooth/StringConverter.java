@@ -0,0 +1,35 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+import retrotooth.util.Utf8StringCache;
+
+final class StringConverter implements Converter<ResponseData, String> {
+    static final StringConverter INSTANCE = new StringConverter();
+
+    // Names, serial numbers and revision strings repeat, so short values are shared.
+    private final Utf8StringCache cache = new Utf8StringCache(256);
+
+    @Override
+    public String convert(ResponseData value) throws IOException {
+        try {
+            if (!Utils.UTF_8.equals(value.charset())) {
+                return value.string();
+            }
+            BufferedSource source = value.source();
+            try {
+                long byteCount = value.contentLength();
+                if (byteCount == -1) {
+                    source.request(Long.MAX_VALUE);
+                    byteCount = source.buffer().size();
+                }
+                return cache.readUtf8(source, byteCount);
+            } finally {
+                Utils.closeQuietly(source);
+            }
+        } finally {
+            Utils.closeQuietly(value);
+        }
+    }
+}
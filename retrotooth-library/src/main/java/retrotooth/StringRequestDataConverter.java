@@ -0,0 +1,12 @@
+package retrotooth;
+
+import java.io.IOException;
+
+final class StringRequestDataConverter implements Converter<String, RequestData> {
+    static final StringRequestDataConverter INSTANCE = new StringRequestDataConverter();
+
+    @Override
+    public RequestData convert(String value) throws IOException {
+        return RequestData.create(null, value);
+    }
+}
@@ -0,0 +1,22 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+/**
+ * Decodes and encodes a {@link retrotooth.annotations.Struct} class. Implementations are generated
+ * by the retrotooth compiler as {@code <ClassName>$$StructCodec}.
+ */
+public interface StructCodec<T> {
+    T newInstance();
+
+    /**
+     * Decodes {@code length} bytes of {@code data} starting at {@code offset} into {@code target}.
+     *
+     * @throws java.io.EOFException if the data is shorter than the fields it declares.
+     */
+    T decode(byte[] data, int offset, int length, T target) throws IOException;
+
+    void encode(T value, Buffer sink) throws IOException;
+}
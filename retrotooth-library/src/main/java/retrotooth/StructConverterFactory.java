@@ -0,0 +1,53 @@
+package retrotooth;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import retrotooth.annotations.Struct;
+
+/**
+ * A {@linkplain Converter.Factory converter} for {@link Struct} classes using the codecs generated
+ * by the retrotooth compiler. The codec class is looked up once per type; decoding and encoding
+ * run the generated code without reflection.
+ */
+public final class StructConverterFactory extends Converter.Factory {
+    static final String CODEC_SUFFIX = "$$StructCodec";
+
+    public static StructConverterFactory create() {
+        return new StructConverterFactory();
+    }
+
+    private StructConverterFactory() {
+    }
+
+    @Override
+    public Converter<ResponseData, ?> fromResponseBody(Type type, Annotation[] annotations) {
+        StructCodec<?> codec = findCodec(type);
+        return codec != null ? new StructResponseDataConverter<>(codec) : null;
+    }
+
+    @Override
+    public Converter<?, RequestData> toRequestBody(Type type, Annotation[] annotations) {
+        StructCodec<?> codec = findCodec(type);
+        return codec != null ? new StructRequestDataConverter<>(codec) : null;
+    }
+
+    private static StructCodec<?> findCodec(Type type) {
+        if (!(type instanceof Class<?>)) {
+            return null;
+        }
+        Class<?> c = (Class<?>) type;
+        if (!c.isAnnotationPresent(Struct.class)) {
+            return null;
+        }
+        try {
+            Class<?> codecClass = Class.forName(c.getName() + CODEC_SUFFIX, true, c.getClassLoader());
+            return (StructCodec<?>) codecClass.newInstance();
+        } catch (ClassNotFoundException e) {
+            throw new IllegalArgumentException("No generated codec for " + c.getName()
+                    + ". Is the retrotooth compiler on the annotation processor path?", e);
+        } catch (InstantiationException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Unable to create codec for " + c.getName(), e);
+        }
+    }
+}
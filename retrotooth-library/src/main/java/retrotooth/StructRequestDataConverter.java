@@ -0,0 +1,20 @@
+package retrotooth;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+final class StructRequestDataConverter<T> implements Converter<T, RequestData> {
+    private final StructCodec<T> codec;
+
+    StructRequestDataConverter(StructCodec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public RequestData convert(T value) throws IOException {
+        Buffer buffer = new Buffer();
+        codec.encode(value, buffer);
+        return RequestData.create(null, buffer.readByteString());
+    }
+}
@@ -0,0 +1,22 @@
+package retrotooth;
+
+import java.io.IOException;
+
+final class StructResponseDataConverter<T> implements Converter<ResponseData, T> {
+    private final StructCodec<T> codec;
+
+    StructResponseDataConverter(StructCodec<T> codec) {
+        this.codec = codec;
+    }
+
+    @Override
+    public T convert(ResponseData value) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = value.bytes();
+        } finally {
+            Utils.closeQuietly(value);
+        }
+        return codec.decode(bytes, 0, bytes.length, codec.newInstance());
+    }
+}
@@ -0,0 +1,48 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Carries GATT operations to a peripheral. Calls reach the device only through this interface,
+ * so the library runs against a connected {@code BluetoothGatt} on Android or, in tests and
+ * benchmarks, against a simulated peripheral on the JVM. Supply one with
+ * {@link Retrotooth.Builder#transport}.
+ * <p/>
+ * Operations are asynchronous: each completes by calling its {@link Callback} exactly once, on
+ * any thread, possibly before the method returns. Implementations must be safe for use by
+ * multiple threads.
+ */
+public interface Transport {
+    interface Callback {
+        /**
+         * The operation succeeded with {@code value}: the value read, or the value written.
+         */
+        void onSuccess(byte[] value);
+
+        void onFailure(IOException e);
+    }
+
+    /**
+     * Read the value of {@code characteristic}.
+     */
+    void read(UUID service, UUID characteristic, Callback callback);
+
+    /**
+     * Write {@code value} to {@code characteristic}, or its current value if {@code value} is
+     * null.
+     */
+    void write(UUID service, UUID characteristic, byte[] value, Callback callback);
+
+    /**
+     * Read the value of {@code descriptor}. Succeeds with null if the characteristic has no such
+     * descriptor.
+     */
+    void readDescriptor(UUID service, UUID characteristic, UUID descriptor, Callback callback);
+
+    /**
+     * Identifies the peripheral's model, such as its advertised name, so that what is learned
+     * about one device can be reused for others of the same model.
+     */
+    String model();
+}
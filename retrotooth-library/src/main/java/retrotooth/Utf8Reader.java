@@ -0,0 +1,105 @@
+package retrotooth;
+
+import java.io.IOException;
+import java.io.Reader;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * A {@link Reader} that decodes UTF-8 straight from a source's segments, without the byte and
+ * char arrays an {@link java.io.InputStreamReader} allocates. Malformed input, including a
+ * sequence cut short by the end of the stream, decodes to U+FFFD.
+ * <p/>
+ * A read blocks only until one character is available, then returns what is already buffered,
+ * stopping short of a sequence whose bytes have not all arrived.
+ */
+final class Utf8Reader extends Reader {
+    private final BufferedSource source;
+    private int pendingLowSurrogate = -1;
+
+    Utf8Reader(BufferedSource source) {
+        this.source = source;
+    }
+
+    @Override
+    public int read(char[] buffer, int offset, int count) throws IOException {
+        Utils.checkOffsetAndCount(buffer.length, offset, count);
+        if (count == 0) {
+            return 0;
+        }
+        int read = 0;
+        if (pendingLowSurrogate != -1) {
+            buffer[offset + read++] = (char) pendingLowSurrogate;
+            pendingLowSurrogate = -1;
+        }
+        Buffer buffered = source.buffer();
+        // Block for the first character only, then take what is already buffered.
+        while (read < count && (read == 0 ? source.request(1) : buffered.size() > 0)) {
+            int length = sequenceLength(buffered.getByte(0));
+            if (buffered.size() < length) {
+                if (read > 0) {
+                    break;
+                }
+                if (!source.request(length)) {
+                    skipTruncatedSequence(buffered);
+                    buffer[offset + read++] = '\ufffd';
+                    continue;
+                }
+            }
+            int codePoint = source.readUtf8CodePoint();
+            if (codePoint < 0x10000) {
+                buffer[offset + read++] = (char) codePoint;
+            } else {
+                buffer[offset + read++] = Character.highSurrogate(codePoint);
+                char low = Character.lowSurrogate(codePoint);
+                if (read < count) {
+                    buffer[offset + read++] = low;
+                } else {
+                    pendingLowSurrogate = low;
+                }
+            }
+        }
+        return read == 0 ? -1 : read;
+    }
+
+    /**
+     * Returns the length of the sequence {@code lead} starts, or 1 if it cannot start one.
+     */
+    private static int sequenceLength(byte lead) {
+        if ((lead & 0xE0) == 0xC0) {
+            return 2;
+        } else if ((lead & 0xF0) == 0xE0) {
+            return 3;
+        } else if ((lead & 0xF8) == 0xF0) {
+            return 4;
+        }
+        return 1;
+    }
+
+    /**
+     * Skips what the stream holds of a sequence it ends in the middle of: the lead byte and the
+     * continuation bytes after it.
+     */
+    private void skipTruncatedSequence(Buffer buffered) throws IOException {
+        long size = 1;
+        while (size < buffered.size() && (buffered.getByte(size) & 0xC0) == 0x80) {
+            size++;
+        }
+        source.skip(size);
+    }
+
+    @Override
+    public boolean ready() throws IOException {
+        if (pendingLowSurrogate != -1) {
+            return true;
+        }
+        Buffer buffered = source.buffer();
+        return buffered.size() > 0 && buffered.size() >= sequenceLength(buffered.getByte(0));
+    }
+
+    @Override
+    public void close() throws IOException {
+        source.close();
+    }
+}
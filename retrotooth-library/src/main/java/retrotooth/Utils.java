@@ -72,6 +72,25 @@ final public class Utils {
         throw new IllegalArgumentException(builder.toString());
     }
 
+    static Converter<?, RequestData> resolveRequestBodyConverter(
+            List<Converter.Factory> converterFactories, Type type, Annotation[] annotations) {
+        for (int i = 0, count = converterFactories.size(); i < count; i++) {
+            Converter<?, RequestData> converter =
+                    converterFactories.get(i).toRequestBody(type, annotations);
+            if (converter != null) {
+                return converter;
+            }
+        }
+
+        StringBuilder builder =
+                new StringBuilder("Could not locate RequestData converter for ").append(type)
+                        .append(". Tried:");
+        for (Converter.Factory converterFactory : converterFactories) {
+            builder.append("\n * ").append(converterFactory.getClass().getName());
+        }
+        throw new IllegalArgumentException(builder.toString());
+    }
+
     static Converter<ResponseData, ?> resolveResponseBodyConverter(
             List<Converter.Factory> converterFactories, Type type, Annotation[] annotations) {
         for (int i = 0, count = converterFactories.size(); i < count; i++) {
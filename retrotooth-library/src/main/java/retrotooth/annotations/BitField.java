@@ -0,0 +1,28 @@
+package retrotooth.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * A field of a {@link Struct} holding {@link #width} bits of another, earlier field starting at
+ * bit {@link #shift}. Bit fields occupy no bytes of their own; on encode they are merged back into
+ * their source field.
+ */
+@Documented
+@Target(FIELD)
+@Retention(CLASS)
+public @interface BitField {
+    /**
+     * Name of the {@link StructField} the bits are taken from. It must be a {@code byte},
+     * {@code short}, {@code int} or {@code long} field, and the bits must lie within its width.
+     */
+    String source();
+
+    int shift();
+
+    int width() default 1;
+}
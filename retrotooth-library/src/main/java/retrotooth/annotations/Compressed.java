@@ -0,0 +1,35 @@
+package retrotooth.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import retrotooth.Compression;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Compress the value on the wire. On a method, responses are decompressed before they reach the
+ * converter for the return type. On a parameter, bodies of at least {@link #threshold()} bytes are
+ * compressed with {@link #value()}; smaller ones are sent stored.
+ * <p/>
+ * Both ends must agree on the framing described by {@link Compression}.
+ */
+@Documented
+@Target({METHOD, PARAMETER})
+@Retention(RUNTIME)
+public @interface Compressed {
+    Compression value() default Compression.DEFLATE;
+
+    /**
+     * The smallest body, in bytes, worth compressing.
+     */
+    int threshold() default 64;
+
+    /**
+     * The largest response, in bytes, to decompress. Responses which inflate beyond it fail.
+     */
+    long maxSize() default Compression.DEFAULT_MAX_SIZE;
+}
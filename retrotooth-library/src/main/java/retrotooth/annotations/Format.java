@@ -0,0 +1,25 @@
+package retrotooth.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import retrotooth.GattFormat;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.ElementType.PARAMETER;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Decode or encode a numeric characteristic value using a GATT presentation format.
+ * <p/>
+ * Applies to service methods returning {@code Call<Integer>}, {@code Call<Long>},
+ * {@code Call<Float>} or {@code Call<Double>} (and their {@code Short}/{@code Byte} variants),
+ * and to the value parameter of {@code @WRITE} methods of those types or their primitives.
+ */
+@Documented
+@Target({METHOD, PARAMETER})
+@Retention(RUNTIME)
+public @interface Format {
+    GattFormat value();
+}
@@ -0,0 +1,23 @@
+package retrotooth.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.METHOD;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Decode a numeric characteristic value as described by its Characteristic Presentation Format
+ * descriptor (0x2904), scaled by the descriptor's exponent.
+ * <p/>
+ * The descriptor is read the first time the characteristic is read and remembered for every
+ * device with the same name. Applies to service methods returning {@code Call<Double>},
+ * {@code Call<Float>}, {@code Call<Long>} or {@code Call<Integer>} (and their
+ * {@code Short}/{@code Byte} variants).
+ */
+@Documented
+@Target(METHOD)
+@Retention(RUNTIME)
+public @interface Presentation {
+}
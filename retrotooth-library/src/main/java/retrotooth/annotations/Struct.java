@@ -0,0 +1,21 @@
+package retrotooth.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import static java.lang.annotation.ElementType.TYPE;
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+
+/**
+ * Marks a class whose {@link StructField} and {@link BitField} fields describe a packed binary
+ * characteristic value. The retrotooth compiler generates a {@code StructCodec} for the class at
+ * build time; use {@code StructConverterFactory} to decode and encode it.
+ * <p/>
+ * Annotated classes need a non-private no-arg constructor and non-private, non-final fields.
+ */
+@Documented
+@Target(TYPE)
+@Retention(RUNTIME)
+public @interface Struct {
+}
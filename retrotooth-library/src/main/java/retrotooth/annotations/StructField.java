@@ -0,0 +1,39 @@
+package retrotooth.annotations;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.Retention;
+import java.lang.annotation.Target;
+
+import retrotooth.GattFormat;
+
+import static java.lang.annotation.ElementType.FIELD;
+import static java.lang.annotation.RetentionPolicy.CLASS;
+
+/**
+ * A numeric field of a {@link Struct}. Fields are laid out in declaration order unless an explicit
+ * {@link #offset} is given.
+ */
+@Documented
+@Target(FIELD)
+@Retention(CLASS)
+public @interface StructField {
+    /**
+     * The width and signedness of the encoded value.
+     */
+    GattFormat value();
+
+    /**
+     * Byte offset from the start of the value, or -1 to follow the previous field.
+     */
+    int offset() default -1;
+
+    boolean bigEndian() default false;
+
+    /**
+     * Name of an earlier field holding presence flags. When set, this field is only present if
+     * {@code (flags & mask) != 0}.
+     */
+    String flags() default "";
+
+    int mask() default 0;
+}
@@ -0,0 +1,103 @@
+package retrotooth.beacon;
+
+import java.util.UUID;
+
+import retrotooth.model.ScanRecordView;
+import retrotooth.model.UuidRegistry;
+
+/**
+ * A decoded AltBeacon advertisement: manufacturer specific data from any manufacturer which
+ * starts with the beacon code 0xBEAC.
+ * <p/>
+ * Instances are mutable and reused: {@link #parse} decodes straight from the advertisement bytes
+ * into this instance without allocating, so its values are only valid until the next parse.
+ */
+public final class AltBeacon {
+    static final int BEACON_CODE = 0xBEAC;
+    // Manufacturer identifier, beacon code, 20 byte beacon identifier, reference RSSI, reserved.
+    static final int LENGTH = 2 + 2 + 20 + 1 + 1;
+
+    int manufacturerId;
+    long id1Msb;
+    long id1Lsb;
+    int id2;
+    int id3;
+    int referenceRssi;
+    int reserved;
+
+    /**
+     * Decode the first AltBeacon frame in {@code record} into this instance.
+     *
+     * @return false, leaving this instance unchanged, if the record has no AltBeacon frame.
+     */
+    public boolean parse(ScanRecordView record) {
+        byte[] data = record.array();
+        for (int i = 0, count = record.fieldCount(); i < count; i++) {
+            if (record.fieldType(i) != ScanRecordView.DATA_TYPE_MANUFACTURER_SPECIFIC_DATA
+                    || record.fieldLength(i) < LENGTH) {
+                continue;
+            }
+            int offset = record.fieldOffset(i);
+            if (Frames.uint16(data, offset + 2) != BEACON_CODE) {
+                continue;
+            }
+            manufacturerId = (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+            id1Msb = Frames.int64(data, offset + 4);
+            id1Lsb = Frames.int64(data, offset + 12);
+            id2 = Frames.uint16(data, offset + 20);
+            id3 = Frames.uint16(data, offset + 22);
+            referenceRssi = data[offset + 24];
+            reserved = data[offset + 25] & 0xFF;
+            return true;
+        }
+        return false;
+    }
+
+    public int manufacturerId() {
+        return manufacturerId;
+    }
+
+    public long id1MostSignificantBits() {
+        return id1Msb;
+    }
+
+    public long id1LeastSignificantBits() {
+        return id1Lsb;
+    }
+
+    /**
+     * The first 16 bytes of the beacon identifier, conventionally a UUID, interned by
+     * {@link UuidRegistry}.
+     */
+    public UUID id1() {
+        return UuidRegistry.get(id1Msb, id1Lsb);
+    }
+
+    public int id2() {
+        return id2;
+    }
+
+    public int id3() {
+        return id3;
+    }
+
+    /**
+     * The average RSSI in dBm received at 1 meter.
+     */
+    public int referenceRssi() {
+        return referenceRssi;
+    }
+
+    /**
+     * The byte reserved for use by the manufacturer.
+     */
+    public int reserved() {
+        return reserved;
+    }
+
+    @Override
+    public String toString() {
+        return "AltBeacon{manufacturerId=" + manufacturerId + ", id1=" + id1() + ", id2=" + id2
+                + ", id3=" + id3 + ", referenceRssi=" + referenceRssi + "}";
+    }
+}
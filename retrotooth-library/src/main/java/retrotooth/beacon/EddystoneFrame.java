@@ -0,0 +1,244 @@
+package retrotooth.beacon;
+
+import retrotooth.model.ScanRecordView;
+
+/**
+ * A decoded Eddystone frame: service data for the 0xFEAA service of type UID, URL, TLM or EID.
+ * Only the fields of the current {@link #frameType()} are meaningful.
+ * <p/>
+ * Instances are mutable and reused: {@link #parse} decodes straight from the advertisement bytes
+ * into this instance without allocating, so its values are only valid until the next parse.
+ */
+public final class EddystoneFrame {
+    public static final int SERVICE_UUID = 0xFEAA;
+
+    public static final int TYPE_UID = 0x00;
+    public static final int TYPE_URL = 0x10;
+    public static final int TYPE_TLM = 0x20;
+    public static final int TYPE_EID = 0x30;
+
+    /**
+     * The TLM temperature when the beacon does not support it.
+     */
+    public static final double TEMPERATURE_UNSUPPORTED = -128d;
+
+    static final int MAX_URL_LENGTH = 17;
+
+    private static final String[] URL_SCHEMES = {
+            "http://www.", "https://www.", "http://", "https://"
+    };
+    private static final String[] URL_EXPANSIONS = {
+            ".com/", ".org/", ".edu/", ".net/", ".info/", ".biz/", ".gov/",
+            ".com", ".org", ".edu", ".net", ".info", ".biz", ".gov"
+    };
+
+    int frameType = -1;
+    int txPower;
+
+    // UID: a 10 byte namespace, split into its first 2 and last 8 bytes, and a 6 byte instance.
+    int namespaceHigh;
+    long namespaceLow;
+    long instance;
+
+    // URL, still encoded.
+    int urlScheme;
+    final byte[] url = new byte[MAX_URL_LENGTH];
+    int urlLength;
+
+    // TLM.
+    int tlmVersion;
+    int batteryVoltage;
+    int temperature;
+    long advertisementCount;
+    long uptime;
+
+    // EID.
+    long ephemeralId;
+
+    /**
+     * Decode the Eddystone frame in {@code record} into this instance.
+     *
+     * @return false, leaving this instance unchanged, if the record has no valid Eddystone
+     * frame.
+     */
+    public boolean parse(ScanRecordView record) {
+        int index = record.serviceDataIndex(SERVICE_UUID);
+        if (index == -1) {
+            return false;
+        }
+        byte[] data = record.array();
+        int offset = record.fieldOffset(index) + 2;
+        int length = record.fieldLength(index) - 2;
+        if (length < 1) {
+            return false;
+        }
+        int type = data[offset] & 0xF0;
+        switch (type) {
+            case TYPE_UID:
+                if (length < 18) {
+                    return false;
+                }
+                txPower = data[offset + 1];
+                namespaceHigh = Frames.uint16(data, offset + 2);
+                namespaceLow = Frames.int64(data, offset + 4);
+                instance = Frames.unsigned(data, offset + 12, 6);
+                break;
+            case TYPE_URL:
+                if (length < 3 || length > 3 + MAX_URL_LENGTH
+                        || (data[offset + 2] & 0xFF) >= URL_SCHEMES.length) {
+                    return false;
+                }
+                txPower = data[offset + 1];
+                urlScheme = data[offset + 2] & 0xFF;
+                urlLength = length - 3;
+                System.arraycopy(data, offset + 3, url, 0, urlLength);
+                break;
+            case TYPE_TLM:
+                if (length < 2) {
+                    return false;
+                }
+                int version = data[offset + 1] & 0xFF;
+                if (version == 0) {
+                    if (length < 14) {
+                        return false;
+                    }
+                    batteryVoltage = Frames.uint16(data, offset + 2);
+                    temperature = (short) Frames.uint16(data, offset + 4);
+                    advertisementCount = Frames.uint32(data, offset + 6);
+                    uptime = Frames.uint32(data, offset + 10);
+                }
+                tlmVersion = version;
+                break;
+            case TYPE_EID:
+                if (length < 10) {
+                    return false;
+                }
+                txPower = data[offset + 1];
+                ephemeralId = Frames.int64(data, offset + 2);
+                break;
+            default:
+                return false;
+        }
+        frameType = type;
+        return true;
+    }
+
+    /**
+     * One of the {@code TYPE_*} constants, or -1 before a frame has been parsed.
+     */
+    public int frameType() {
+        return frameType;
+    }
+
+    /**
+     * The calibrated transmission power in dBm at 0 meters, for UID, URL and EID frames.
+     */
+    public int txPower() {
+        return txPower;
+    }
+
+    /**
+     * The first 2 bytes of the 10 byte UID namespace.
+     */
+    public int namespaceIdHigh() {
+        return namespaceHigh;
+    }
+
+    /**
+     * The last 8 bytes of the 10 byte UID namespace.
+     */
+    public long namespaceIdLow() {
+        return namespaceLow;
+    }
+
+    /**
+     * The 6 byte UID instance.
+     */
+    public long instanceId() {
+        return instance;
+    }
+
+    /**
+     * Appends the decoded URL to {@code sink}, allocating nothing if it has the capacity.
+     */
+    public StringBuilder appendUrl(StringBuilder sink) {
+        sink.append(URL_SCHEMES[urlScheme]);
+        for (int i = 0; i < urlLength; i++) {
+            int b = url[i] & 0xFF;
+            if (b < URL_EXPANSIONS.length) {
+                sink.append(URL_EXPANSIONS[b]);
+            } else {
+                sink.append((char) b);
+            }
+        }
+        return sink;
+    }
+
+    public String url() {
+        return appendUrl(new StringBuilder(32)).toString();
+    }
+
+    /**
+     * The TLM version: 0 for plain telemetry, whose fields follow, or 1 for encrypted.
+     */
+    public int tlmVersion() {
+        return tlmVersion;
+    }
+
+    /**
+     * The battery voltage in millivolts, or 0 if the beacon is not battery powered.
+     */
+    public int batteryVoltage() {
+        return batteryVoltage;
+    }
+
+    /**
+     * The temperature in degrees Celsius, or {@link #TEMPERATURE_UNSUPPORTED}.
+     */
+    public double temperature() {
+        return temperature / 256d;
+    }
+
+    /**
+     * The number of advertisements sent since power on or reboot.
+     */
+    public long advertisementCount() {
+        return advertisementCount;
+    }
+
+    /**
+     * The time since power on or reboot, in units of 0.1 second.
+     */
+    public long uptime() {
+        return uptime;
+    }
+
+    /**
+     * The 8 byte ephemeral identifier of an EID frame.
+     */
+    public long ephemeralId() {
+        return ephemeralId;
+    }
+
+    @Override
+    public String toString() {
+        switch (frameType) {
+            case TYPE_UID:
+                return "EddystoneFrame{UID, namespace=" + String.format("%04x%016x",
+                        namespaceHigh, namespaceLow) + ", instance="
+                        + String.format("%012x", instance) + ", txPower=" + txPower + "}";
+            case TYPE_URL:
+                return "EddystoneFrame{URL, url=" + url() + ", txPower=" + txPower + "}";
+            case TYPE_TLM:
+                return "EddystoneFrame{TLM, version=" + tlmVersion + ", batteryVoltage="
+                        + batteryVoltage + ", temperature=" + temperature()
+                        + ", advertisementCount=" + advertisementCount + ", uptime=" + uptime
+                        + "}";
+            case TYPE_EID:
+                return "EddystoneFrame{EID, ephemeralId=" + String.format("%016x", ephemeralId)
+                        + ", txPower=" + txPower + "}";
+            default:
+                return "EddystoneFrame{}";
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package retrotooth.beacon;
+
+/**
+ * Big-endian field access. Beacon formats, unlike the rest of Bluetooth LE, are big-endian.
+ */
+final class Frames {
+    private Frames() {
+        // No instances.
+    }
+
+    static int uint16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) << 8 | (data[offset + 1] & 0xFF);
+    }
+
+    static long uint32(byte[] data, int offset) {
+        return int32(data, offset) & 0xFFFFFFFFL;
+    }
+
+    static int int32(byte[] data, int offset) {
+        return data[offset] << 24 | (data[offset + 1] & 0xFF) << 16
+                | (data[offset + 2] & 0xFF) << 8 | (data[offset + 3] & 0xFF);
+    }
+
+    static long int64(byte[] data, int offset) {
+        return (long) int32(data, offset) << 32 | (int32(data, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Reads {@code length} bytes, at most 8, as an unsigned value.
+     */
+    static long unsigned(byte[] data, int offset, int length) {
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
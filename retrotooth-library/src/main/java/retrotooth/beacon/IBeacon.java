@@ -0,0 +1,84 @@
+package retrotooth.beacon;
+
+import java.util.UUID;
+
+import retrotooth.model.ScanRecordView;
+import retrotooth.model.UuidRegistry;
+
+/**
+ * A decoded iBeacon advertisement: Apple manufacturer specific data of type 0x02, length 0x15.
+ * <p/>
+ * Instances are mutable and reused: {@link #parse} decodes straight from the advertisement bytes
+ * into this instance without allocating, so its values are only valid until the next parse.
+ */
+public final class IBeacon {
+    public static final int MANUFACTURER_ID = 0x004C;
+
+    static final int TYPE = 0x02;
+    static final int LENGTH = 0x15;
+
+    long proximityUuidMsb;
+    long proximityUuidLsb;
+    int major;
+    int minor;
+    int measuredPower;
+
+    /**
+     * Decode the iBeacon frame in {@code record} into this instance.
+     *
+     * @return false, leaving this instance unchanged, if the record has no iBeacon frame.
+     */
+    public boolean parse(ScanRecordView record) {
+        int index = record.manufacturerDataIndex(MANUFACTURER_ID);
+        if (index == -1 || record.fieldLength(index) < 2 + 2 + LENGTH) {
+            return false;
+        }
+        byte[] data = record.array();
+        int offset = record.fieldOffset(index) + 2;
+        if (data[offset] != TYPE || data[offset + 1] != LENGTH) {
+            return false;
+        }
+        proximityUuidMsb = Frames.int64(data, offset + 2);
+        proximityUuidLsb = Frames.int64(data, offset + 10);
+        major = Frames.uint16(data, offset + 18);
+        minor = Frames.uint16(data, offset + 20);
+        measuredPower = data[offset + 22];
+        return true;
+    }
+
+    public long proximityUuidMostSignificantBits() {
+        return proximityUuidMsb;
+    }
+
+    public long proximityUuidLeastSignificantBits() {
+        return proximityUuidLsb;
+    }
+
+    /**
+     * The proximity UUID, interned by {@link UuidRegistry}.
+     */
+    public UUID proximityUuid() {
+        return UuidRegistry.get(proximityUuidMsb, proximityUuidLsb);
+    }
+
+    public int major() {
+        return major;
+    }
+
+    public int minor() {
+        return minor;
+    }
+
+    /**
+     * The calibrated RSSI in dBm at 1 meter.
+     */
+    public int measuredPower() {
+        return measuredPower;
+    }
+
+    @Override
+    public String toString() {
+        return "IBeacon{proximityUuid=" + proximityUuid() + ", major=" + major + ", minor=" + minor
+                + ", measuredPower=" + measuredPower + "}";
+    }
+}
@@ -0,0 +1,429 @@
+package retrotooth.model;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static retrotooth.model.UuidRegistry.BASE_UUID_LSB;
+import static retrotooth.model.UuidRegistry.BASE_UUID_MSB;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_LOCAL_NAME_COMPLETE;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_LOCAL_NAME_SHORT;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_MANUFACTURER_SPECIFIC_DATA;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_DATA;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE;
+import static retrotooth.model.ScanRecordView.DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL;
+
+/**
+ * A filter evaluated directly on raw advertising data, so that only the advertisements which are
+ * wanted need to be parsed into a {@link ScanRecord}:
+ * <pre>
+ * AdvertisementFilter filter = new AdvertisementFilter.Builder()
+ *     .manufacturerData(0x004C, new byte[] { 0x02, 0x15 })
+ *     .minRssi(-90)
+ *     .or()
+ *     .serviceUuid(0xFEAA)
+ *     .build();
+ *
+ * if (filter.matches(scanRecord, rssi)) {
+ *     ScanRecord record = ScanRecord.parseFromBytes(scanRecord);
+ * }
+ * </pre>
+ * Conditions added to the builder must all hold; {@link Builder#or()} starts an alternative.
+ * Building compiles the conditions into flat arrays indexed by AD type, so matching is a single
+ * walk over the AD structures which allocates nothing. Filters are immutable and thread safe.
+ */
+public final class AdvertisementFilter {
+    /**
+     * The most conditions, across all alternatives, that a filter can hold.
+     */
+    public static final int MAX_CONDITIONS = 64;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int KIND_SERVICE_UUID = 0;
+    private static final int KIND_MANUFACTURER_DATA = 1;
+    private static final int KIND_SERVICE_DATA = 2;
+    private static final int KIND_NAME_PREFIX = 3;
+
+    private final int[] kinds;
+    // The manufacturer identifier or 16-bit service UUID, or for service UUIDs the 16 or 32-bit
+    // short form, or -1 if the UUID has none.
+    private final long[] keys;
+    private final long[] uuidMsbs;
+    private final long[] uuidLsbs;
+    private final int[] patternOffsets;
+    private final int[] patternLengths;
+    private final byte[] patterns;
+    private final byte[] masks;
+
+    // The conditions which may be satisfied by an AD structure of each type.
+    private final long[] conditionsByType = new long[256];
+    private final long[] alternatives;
+    private final int[] minRssis;
+
+    private AdvertisementFilter(Builder builder) {
+        int count = builder.kinds.size();
+        kinds = new int[count];
+        keys = new long[count];
+        uuidMsbs = new long[count];
+        uuidLsbs = new long[count];
+        patternOffsets = new int[count];
+        patternLengths = new int[count];
+
+        int patternSize = 0;
+        for (byte[] pattern : builder.patterns) {
+            patternSize += pattern != null ? pattern.length : 0;
+        }
+        patterns = new byte[patternSize];
+        masks = new byte[patternSize];
+
+        int patternOffset = 0;
+        for (int i = 0; i < count; i++) {
+            int kind = builder.kinds.get(i);
+            kinds[i] = kind;
+            keys[i] = builder.keys.get(i);
+            uuidMsbs[i] = builder.uuidMsbs.get(i);
+            uuidLsbs[i] = builder.uuidLsbs.get(i);
+
+            byte[] pattern = builder.patterns.get(i);
+            if (pattern != null) {
+                byte[] mask = builder.masks.get(i);
+                for (int j = 0; j < pattern.length; j++) {
+                    byte m = mask != null ? mask[j] : (byte) 0xFF;
+                    masks[patternOffset + j] = m;
+                    patterns[patternOffset + j] = (byte) (pattern[j] & m);
+                }
+                patternOffsets[i] = patternOffset;
+                patternLengths[i] = pattern.length;
+                patternOffset += pattern.length;
+            }
+
+            long bit = 1L << i;
+            switch (kind) {
+                case KIND_SERVICE_UUID:
+                    if (keys[i] != -1) {
+                        conditionsByType[DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL] |= bit;
+                        conditionsByType[DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE] |= bit;
+                        conditionsByType[DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL] |= bit;
+                        conditionsByType[DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE] |= bit;
+                    }
+                    conditionsByType[DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL] |= bit;
+                    conditionsByType[DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE] |= bit;
+                    break;
+                case KIND_MANUFACTURER_DATA:
+                    conditionsByType[DATA_TYPE_MANUFACTURER_SPECIFIC_DATA] |= bit;
+                    break;
+                case KIND_SERVICE_DATA:
+                    conditionsByType[DATA_TYPE_SERVICE_DATA] |= bit;
+                    break;
+                case KIND_NAME_PREFIX:
+                    conditionsByType[DATA_TYPE_LOCAL_NAME_SHORT] |= bit;
+                    conditionsByType[DATA_TYPE_LOCAL_NAME_COMPLETE] |= bit;
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+        }
+
+        int alternativeCount = builder.alternatives.size();
+        alternatives = new long[alternativeCount];
+        minRssis = new int[alternativeCount];
+        for (int i = 0; i < alternativeCount; i++) {
+            alternatives[i] = builder.alternatives.get(i);
+            minRssis[i] = builder.minRssis.get(i);
+        }
+    }
+
+    /**
+     * Returns true if the advertisement in {@code scanRecord}, received at {@code rssi} dBm,
+     * satisfies every condition of at least one alternative.
+     */
+    public boolean matches(byte[] scanRecord, int rssi) {
+        return matches(scanRecord, 0, scanRecord.length, rssi);
+    }
+
+    /**
+     * Returns true if the advertisement in {@code length} bytes of {@code scanRecord} at
+     * {@code offset}, received at {@code rssi} dBm, satisfies every condition of at least one
+     * alternative. A malformed record is matched on the AD structures before the malformed one.
+     */
+    public boolean matches(byte[] scanRecord, int offset, int length, int rssi) {
+        // Only conditions of alternatives the signal is strong enough for are worth evaluating.
+        long wanted = 0;
+        for (int i = 0; i < alternatives.length; i++) {
+            if (rssi >= minRssis[i]) {
+                if (alternatives[i] == 0) {
+                    return true;
+                }
+                wanted |= alternatives[i];
+            }
+        }
+        if (wanted == 0) {
+            return false;
+        }
+
+        long satisfied = 0;
+        int end = offset + length;
+        int pos = offset;
+        while (pos < end) {
+            int fieldLength = scanRecord[pos] & 0xFF;
+            if (fieldLength == 0 || pos + 1 + fieldLength > end) {
+                break;
+            }
+            int type = scanRecord[pos + 1] & 0xFF;
+            long candidates = conditionsByType[type] & wanted & ~satisfied;
+            if (candidates != 0) {
+                long matched = evaluate(candidates, type, scanRecord, pos + 2, fieldLength - 1);
+                if (matched != 0) {
+                    satisfied |= matched;
+                    if (anySatisfied(satisfied, rssi)) {
+                        return true;
+                    }
+                }
+            }
+            pos += 1 + fieldLength;
+        }
+        return false;
+    }
+
+    private boolean anySatisfied(long satisfied, int rssi) {
+        for (int i = 0; i < alternatives.length; i++) {
+            if ((satisfied & alternatives[i]) == alternatives[i] && rssi >= minRssis[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns those of {@code candidates} satisfied by one AD structure.
+     */
+    private long evaluate(long candidates, int type, byte[] data, int offset, int length) {
+        long matched = 0;
+        while (candidates != 0) {
+            int i = Long.numberOfTrailingZeros(candidates);
+            long bit = 1L << i;
+            candidates &= ~bit;
+            boolean match;
+            switch (kinds[i]) {
+                case KIND_SERVICE_UUID:
+                    match = containsUuid(i, type, data, offset, length);
+                    break;
+                case KIND_MANUFACTURER_DATA:
+                case KIND_SERVICE_DATA:
+                    match = length >= 2 + patternLengths[i]
+                            && uint16(data, offset) == keys[i]
+                            && patternMatches(i, data, offset + 2);
+                    break;
+                case KIND_NAME_PREFIX:
+                    match = length >= patternLengths[i] && patternMatches(i, data, offset);
+                    break;
+                default:
+                    throw new AssertionError();
+            }
+            if (match) {
+                matched |= bit;
+            }
+        }
+        return matched;
+    }
+
+    private boolean containsUuid(int i, int type, byte[] data, int offset, int length) {
+        int end = offset + length;
+        switch (type) {
+            case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+                for (int pos = offset; pos + 2 <= end; pos += 2) {
+                    if (uint16(data, pos) == keys[i]) {
+                        return true;
+                    }
+                }
+                return false;
+            case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+                for (int pos = offset; pos + 4 <= end; pos += 4) {
+                    if (uint32(data, pos) == keys[i]) {
+                        return true;
+                    }
+                }
+                return false;
+            default:
+                for (int pos = offset; pos + 16 <= end; pos += 16) {
+                    if (littleEndianLong(data, pos) == uuidLsbs[i]
+                            && littleEndianLong(data, pos + 8) == uuidMsbs[i]) {
+                        return true;
+                    }
+                }
+                return false;
+        }
+    }
+
+    private boolean patternMatches(int i, byte[] data, int offset) {
+        int patternOffset = patternOffsets[i];
+        for (int j = 0, n = patternLengths[i]; j < n; j++) {
+            if ((data[offset + j] & masks[patternOffset + j]) != patterns[patternOffset + j]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int uint16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static long uint32(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (long) (data[offset + 3] & 0xFF) << 24);
+    }
+
+    private static long littleEndianLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    public static final class Builder {
+        private final List<Integer> kinds = new ArrayList<>();
+        private final List<Long> keys = new ArrayList<>();
+        private final List<Long> uuidMsbs = new ArrayList<>();
+        private final List<Long> uuidLsbs = new ArrayList<>();
+        private final List<byte[]> patterns = new ArrayList<>();
+        private final List<byte[]> masks = new ArrayList<>();
+        private final List<Long> alternatives = new ArrayList<>();
+        private final List<Integer> minRssis = new ArrayList<>();
+
+        public Builder() {
+            alternatives.add(0L);
+            minRssis.add(Integer.MIN_VALUE);
+        }
+
+        /**
+         * Require the 16-bit service UUID {@code uuid16} to be advertised, in any of its forms.
+         */
+        public Builder serviceUuid(int uuid16) {
+            checkUint16(uuid16, "uuid16");
+            return serviceUuid(new UUID(BASE_UUID_MSB | (long) uuid16 << 32, BASE_UUID_LSB));
+        }
+
+        /**
+         * Require the service UUID {@code uuid} to be advertised, in any of its forms.
+         */
+        public Builder serviceUuid(UUID uuid) {
+            if (uuid == null) throw new NullPointerException("uuid == null");
+            long msb = uuid.getMostSignificantBits();
+            long lsb = uuid.getLeastSignificantBits();
+            boolean shortForm = lsb == BASE_UUID_LSB && (msb & 0xFFFFFFFFL) == BASE_UUID_MSB;
+            return add(KIND_SERVICE_UUID, shortForm ? msb >>> 32 : -1, msb, lsb, null, null);
+        }
+
+        /**
+         * Require manufacturer specific data from {@code manufacturerId}.
+         */
+        public Builder manufacturerId(int manufacturerId) {
+            return manufacturerData(manufacturerId, new byte[0], null);
+        }
+
+        /**
+         * Require manufacturer specific data from {@code manufacturerId} which starts with
+         * {@code prefix}.
+         */
+        public Builder manufacturerData(int manufacturerId, byte[] prefix) {
+            return manufacturerData(manufacturerId, prefix, null);
+        }
+
+        /**
+         * Require manufacturer specific data from {@code manufacturerId} which starts with
+         * {@code prefix}, comparing only the bits set in {@code mask}.
+         */
+        public Builder manufacturerData(int manufacturerId, byte[] prefix, byte[] mask) {
+            checkUint16(manufacturerId, "manufacturerId");
+            checkPattern(prefix, mask);
+            return add(KIND_MANUFACTURER_DATA, manufacturerId, 0, 0, prefix, mask);
+        }
+
+        /**
+         * Require service data for the 16-bit service {@code uuid16} which starts with
+         * {@code prefix}.
+         */
+        public Builder serviceData(int uuid16, byte[] prefix) {
+            return serviceData(uuid16, prefix, null);
+        }
+
+        /**
+         * Require service data for the 16-bit service {@code uuid16} which starts with
+         * {@code prefix}, comparing only the bits set in {@code mask}.
+         */
+        public Builder serviceData(int uuid16, byte[] prefix, byte[] mask) {
+            checkUint16(uuid16, "uuid16");
+            checkPattern(prefix, mask);
+            return add(KIND_SERVICE_DATA, uuid16, 0, 0, prefix, mask);
+        }
+
+        /**
+         * Require a complete or shortened local name starting with {@code prefix}.
+         */
+        public Builder namePrefix(String prefix) {
+            if (prefix == null) throw new NullPointerException("prefix == null");
+            return add(KIND_NAME_PREFIX, 0, 0, 0, prefix.getBytes(UTF_8), null);
+        }
+
+        /**
+         * Require the advertisement to be received at {@code rssi} dBm or stronger.
+         */
+        public Builder minRssi(int rssi) {
+            minRssis.set(minRssis.size() - 1, rssi);
+            return this;
+        }
+
+        /**
+         * Start an alternative set of conditions. The filter matches if any alternative does.
+         */
+        public Builder or() {
+            alternatives.add(0L);
+            minRssis.add(Integer.MIN_VALUE);
+            return this;
+        }
+
+        public AdvertisementFilter build() {
+            return new AdvertisementFilter(this);
+        }
+
+        private Builder add(int kind, long key, long msb, long lsb, byte[] pattern, byte[] mask) {
+            int index = kinds.size();
+            if (index == MAX_CONDITIONS) {
+                throw new IllegalStateException("Too many conditions; max is " + MAX_CONDITIONS);
+            }
+            kinds.add(kind);
+            keys.add(key);
+            uuidMsbs.add(msb);
+            uuidLsbs.add(lsb);
+            patterns.add(pattern != null ? pattern.clone() : null);
+            masks.add(mask != null ? mask.clone() : null);
+            int last = alternatives.size() - 1;
+            alternatives.set(last, alternatives.get(last) | 1L << index);
+            return this;
+        }
+
+        private static void checkUint16(int value, String name) {
+            if (value < 0 || value > 0xFFFF) {
+                throw new IllegalArgumentException(name + " out of range: " + value);
+            }
+        }
+
+        private static void checkPattern(byte[] prefix, byte[] mask) {
+            if (prefix == null) throw new NullPointerException("prefix == null");
+            if (mask != null && mask.length != prefix.length) {
+                throw new IllegalArgumentException(
+                        "mask length " + mask.length + " != prefix length " + prefix.length);
+            }
+        }
+    }
+}
@@ -18,8 +18,6 @@ package retrotooth.model;
 
 import android.os.ParcelUuid;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.UUID;
@@ -92,35 +90,17 @@ public final class BluetoothUuid {
         if (uuidBytes == null) {
             throw new IllegalArgumentException("uuidBytes cannot be null");
         }
-        int length = uuidBytes.length;
-        if (length != UUID_BYTES_16_BIT && length != UUID_BYTES_32_BIT &&
-                length != UUID_BYTES_128_BIT) {
-            throw new IllegalArgumentException("uuidBytes length invalid - " + length);
-        }
-
-        // Construct a 128 bit UUID.
-        if (length == UUID_BYTES_128_BIT) {
-            ByteBuffer buf = ByteBuffer.wrap(uuidBytes).order(ByteOrder.LITTLE_ENDIAN);
-            long msb = buf.getLong(8);
-            long lsb = buf.getLong(0);
-            return new ParcelUuid(new UUID(msb, lsb));
-        }
+        return parseUuidFrom(uuidBytes, 0, uuidBytes.length);
+    }
 
-        // For 16 bit and 32 bit UUID we need to convert them to 128 bit value.
-        // 128_bit_value = characteristic * 2^96 + BASE_UUID
-        long shortUuid;
-        if (length == UUID_BYTES_16_BIT) {
-            shortUuid = uuidBytes[0] & 0xFF;
-            shortUuid += (uuidBytes[1] & 0xFF) << 8;
-        } else {
-            shortUuid = uuidBytes[0] & 0xFF;
-            shortUuid += (uuidBytes[1] & 0xFF) << 8;
-            shortUuid += (uuidBytes[2] & 0xFF) << 16;
-            shortUuid += (uuidBytes[3] & 0xFF) << 24;
-        }
-        long msb = BASE_UUID.getUuid().getMostSignificantBits() + (shortUuid << 32);
-        long lsb = BASE_UUID.getUuid().getLeastSignificantBits();
-        return new ParcelUuid(new UUID(msb, lsb));
+    /**
+     * Parse UUID from {@code length} bytes of {@code data} at {@code offset}, without copying
+     * them. The UUID and its wrapper are interned by {@link UuidRegistry}.
+     *
+     * @throws IllegalArgumentException If the bytes cannot be parsed.
+     */
+    public static ParcelUuid parseUuidFrom(byte[] data, int offset, int length) {
+        return UuidRegistry.parcelUuid(UuidRegistry.fromBytes(data, offset, length));
     }
 
     /**
@@ -131,10 +111,10 @@ public final class BluetoothUuid {
      */
     public static boolean is16BitUuid(ParcelUuid parcelUuid) {
         UUID uuid = parcelUuid.getUuid();
-        if (uuid.getLeastSignificantBits() != BASE_UUID.getUuid().getLeastSignificantBits()) {
+        if (uuid.getLeastSignificantBits() != UuidRegistry.BASE_UUID_LSB) {
             return false;
         }
-        return ((uuid.getMostSignificantBits() & 0xFFFF0000FFFFFFFFL) == 0x1000L);
+        return ((uuid.getMostSignificantBits() & 0xFFFF0000FFFFFFFFL) == UuidRegistry.BASE_UUID_MSB);
     }
 
 
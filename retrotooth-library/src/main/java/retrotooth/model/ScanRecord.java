@@ -163,6 +163,14 @@ public final class ScanRecord {
         mBytes = bytes;
     }
 
+    /**
+     * Parse the bytes viewed by {@code view} to {@link ScanRecord}.
+     */
+    public static ScanRecord parseFromView(ScanRecordView view) {
+        int offset = view.offset();
+        return parseFromBytes(Arrays.copyOfRange(view.array(), offset, offset + view.length()));
+    }
+
     /**
      * Parse scan record bytes to {@link ScanRecord}.
      * <p/>
@@ -230,10 +238,8 @@ public final class ScanRecord {
                         // The first two bytes of the service data are service data UUID in little
                         // endian. The rest bytes are service data.
                         int serviceUuidLength = BluetoothUuid.UUID_BYTES_16_BIT;
-                        byte[] serviceDataUuidBytes = extractBytes(scanRecord, currentPos,
-                                serviceUuidLength);
                         ParcelUuid serviceDataUuid = BluetoothUuid.parseUuidFrom(
-                                serviceDataUuidBytes);
+                                scanRecord, currentPos, serviceUuidLength);
                         byte[] serviceDataArray = extractBytes(scanRecord,
                                 currentPos + serviceUuidLength, dataLength - serviceUuidLength);
                         serviceData.put(serviceDataUuid, serviceDataArray);
@@ -279,9 +285,8 @@ public final class ScanRecord {
     private static int parseServiceUuid(byte[] scanRecord, int currentPos, int dataLength,
                                         int uuidLength, List<ParcelUuid> serviceUuids) {
         while (dataLength > 0) {
-            byte[] uuidBytes = extractBytes(scanRecord, currentPos,
+            ParcelUuid parcelUuid = BluetoothUuid.parseUuidFrom(scanRecord, currentPos,
                     uuidLength);
-            ParcelUuid parcelUuid = BluetoothUuid.parseUuidFrom(uuidBytes);
             serviceUuids.add(parcelUuid);
             dataLength -= uuidLength;
             currentPos += uuidLength;
@@ -0,0 +1,361 @@
+package retrotooth.model;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.UUID;
+
+import static retrotooth.model.UuidRegistry.BASE_UUID_LSB;
+import static retrotooth.model.UuidRegistry.BASE_UUID_MSB;
+
+/**
+ * A reusable, allocation-free view of the advertising data in a scan record. Unlike
+ * {@link ScanRecord#parseFromBytes}, wrapping a record copies nothing: only the position, length
+ * and type of each AD structure is recorded, in a small primitive index over the original array.
+ * UUIDs, names and manufacturer or service data are decoded only when asked for.
+ * <p/>
+ * Handles both legacy (31 byte) and extended (up to 255 byte) advertising payloads, plus a scan
+ * response appended to either. The wrapped array must not be modified while it is viewed.
+ * {@link ScanRecord#parseFromView} converts a view for APIs which need a {@code ScanRecord}.
+ * Instances are not thread safe.
+ */
+public final class ScanRecordView {
+    public static final int DATA_TYPE_FLAGS = 0x01;
+    public static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL = 0x02;
+    public static final int DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE = 0x03;
+    public static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL = 0x04;
+    public static final int DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE = 0x05;
+    public static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL = 0x06;
+    public static final int DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE = 0x07;
+    public static final int DATA_TYPE_LOCAL_NAME_SHORT = 0x08;
+    public static final int DATA_TYPE_LOCAL_NAME_COMPLETE = 0x09;
+    public static final int DATA_TYPE_TX_POWER_LEVEL = 0x0A;
+    public static final int DATA_TYPE_SERVICE_DATA = 0x16;
+    public static final int DATA_TYPE_MANUFACTURER_SPECIFIC_DATA = 0xFF;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private byte[] bytes;
+    private int offset;
+    private int length;
+    private boolean valid;
+
+    // Per AD structure: the absolute offset of its data, and its type << 16 | data length.
+    private int[] fieldOffsets = new int[32];
+    private int[] fieldTypeLengths = new int[32];
+    private int fieldCount;
+
+    /**
+     * View {@code scanRecord}, replacing whatever was viewed before.
+     *
+     * @return false if the record is malformed. Structures before the malformed one are still
+     * available.
+     */
+    public boolean wrap(byte[] scanRecord) {
+        return wrap(scanRecord, 0, scanRecord.length);
+    }
+
+    /**
+     * View {@code length} bytes of {@code scanRecord} at {@code offset}, replacing whatever was
+     * viewed before.
+     *
+     * @return false if the record is malformed. Structures before the malformed one are still
+     * available.
+     */
+    public boolean wrap(byte[] scanRecord, int offset, int length) {
+        if (scanRecord == null) throw new NullPointerException("scanRecord == null");
+        if ((offset | length) < 0 || offset > scanRecord.length - length) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "offset=" + offset + " length=" + length + " size=" + scanRecord.length);
+        }
+        this.bytes = scanRecord;
+        this.offset = offset;
+        this.length = length;
+        this.fieldCount = 0;
+
+        int end = offset + length;
+        int pos = offset;
+        while (pos < end) {
+            int fieldLength = scanRecord[pos] & 0xFF;
+            if (fieldLength == 0) {
+                // Zero padding follows the significant part.
+                break;
+            }
+            if (pos + 1 + fieldLength > end) {
+                valid = false;
+                return false;
+            }
+            if (fieldCount == fieldOffsets.length) {
+                fieldOffsets = Arrays.copyOf(fieldOffsets, fieldCount * 2);
+                fieldTypeLengths = Arrays.copyOf(fieldTypeLengths, fieldCount * 2);
+            }
+            fieldOffsets[fieldCount] = pos + 2;
+            fieldTypeLengths[fieldCount] = (scanRecord[pos + 1] & 0xFF) << 16 | (fieldLength - 1);
+            fieldCount++;
+            pos += 1 + fieldLength;
+        }
+        valid = true;
+        return true;
+    }
+
+    /**
+     * Returns false if the record was malformed.
+     */
+    public boolean isValid() {
+        return valid;
+    }
+
+    public byte[] array() {
+        return bytes;
+    }
+
+    public int offset() {
+        return offset;
+    }
+
+    public int length() {
+        return length;
+    }
+
+    /**
+     * The number of AD structures in the record.
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    public int fieldType(int index) {
+        checkIndex(index);
+        return fieldTypeLengths[index] >>> 16;
+    }
+
+    /**
+     * The offset of a structure's data, after its length and type, within {@link #array()}.
+     */
+    public int fieldOffset(int index) {
+        checkIndex(index);
+        return fieldOffsets[index];
+    }
+
+    /**
+     * The length of a structure's data, excluding its length and type.
+     */
+    public int fieldLength(int index) {
+        checkIndex(index);
+        return fieldTypeLengths[index] & 0xFFFF;
+    }
+
+    /**
+     * Returns the index of the first structure of {@code type}, or -1 if there is none.
+     */
+    public int indexOf(int type) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldTypeLengths[i] >>> 16 == type) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the advertising flags, or -1 if the flags field is not set.
+     */
+    public int advertiseFlags() {
+        int i = indexOf(DATA_TYPE_FLAGS);
+        return i != -1 && fieldLength(i) > 0 ? bytes[fieldOffsets[i]] & 0xFF : -1;
+    }
+
+    /**
+     * Returns the transmission power level in dBm, or {@link Integer#MIN_VALUE} if it is not set.
+     */
+    public int txPowerLevel() {
+        int i = indexOf(DATA_TYPE_TX_POWER_LEVEL);
+        return i != -1 && fieldLength(i) > 0 ? bytes[fieldOffsets[i]] : Integer.MIN_VALUE;
+    }
+
+    /**
+     * Returns the index of the complete or else shortened local name, or -1 if there is none.
+     */
+    public int deviceNameIndex() {
+        int i = indexOf(DATA_TYPE_LOCAL_NAME_COMPLETE);
+        return i != -1 ? i : indexOf(DATA_TYPE_LOCAL_NAME_SHORT);
+    }
+
+    /**
+     * Decodes the local name, or returns null if there is none.
+     */
+    public String deviceName() {
+        int i = deviceNameIndex();
+        return i != -1 ? new String(bytes, fieldOffsets[i], fieldLength(i), UTF_8) : null;
+    }
+
+    /**
+     * The number of service UUIDs of any size advertised in the record.
+     */
+    public int serviceUuidCount() {
+        int count = 0;
+        for (int i = 0; i < fieldCount; i++) {
+            int size = uuidSize(fieldTypeLengths[i] >>> 16);
+            if (size != 0) {
+                count += fieldLength(i) / size;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * The most significant bits of the {@code n}th service UUID, expanded to 128 bits.
+     */
+    public long serviceUuidMostSignificantBits(int n) {
+        int position = serviceUuidPosition(n);
+        int size = position >>> 24;
+        int at = position & 0xFFFFFF;
+        if (size == 16) {
+            return littleEndianLong(bytes, at + 8);
+        }
+        long shortUuid = size == 2 ? uint16(bytes, at) : uint32(bytes, at);
+        return BASE_UUID_MSB | shortUuid << 32;
+    }
+
+    /**
+     * The least significant bits of the {@code n}th service UUID, expanded to 128 bits.
+     */
+    public long serviceUuidLeastSignificantBits(int n) {
+        int position = serviceUuidPosition(n);
+        return position >>> 24 == 16 ? littleEndianLong(bytes, position & 0xFFFFFF) : BASE_UUID_LSB;
+    }
+
+    /**
+     * Returns the {@code n}th service UUID, interned by {@link UuidRegistry}.
+     */
+    public UUID serviceUuid(int n) {
+        return UuidRegistry.get(serviceUuidMostSignificantBits(n),
+                serviceUuidLeastSignificantBits(n));
+    }
+
+    /**
+     * Returns true if the record advertises the service UUID with the given bits.
+     */
+    public boolean hasServiceUuid(long mostSignificantBits, long leastSignificantBits) {
+        for (int n = 0, count = serviceUuidCount(); n < count; n++) {
+            if (serviceUuidLeastSignificantBits(n) == leastSignificantBits
+                    && serviceUuidMostSignificantBits(n) == mostSignificantBits) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the index of the manufacturer specific data for {@code manufacturerId}, or -1 if
+     * there is none. The data, after the 2 byte identifier, starts at
+     * {@code fieldOffset(index) + 2}.
+     */
+    public int manufacturerDataIndex(int manufacturerId) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldTypeLengths[i] >>> 16 == DATA_TYPE_MANUFACTURER_SPECIFIC_DATA
+                    && fieldLength(i) >= 2 && uint16(bytes, fieldOffsets[i]) == manufacturerId) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the manufacturer specific data for {@code manufacturerId}, or returns null if there
+     * is none.
+     */
+    public byte[] manufacturerData(int manufacturerId) {
+        int i = manufacturerDataIndex(manufacturerId);
+        if (i == -1) {
+            return null;
+        }
+        int start = fieldOffsets[i] + 2;
+        return Arrays.copyOfRange(bytes, start, start + fieldLength(i) - 2);
+    }
+
+    /**
+     * Returns the index of the service data for the 16-bit service {@code uuid16}, or -1 if there
+     * is none. The data, after the 2 byte UUID, starts at {@code fieldOffset(index) + 2}.
+     */
+    public int serviceDataIndex(int uuid16) {
+        for (int i = 0; i < fieldCount; i++) {
+            if (fieldTypeLengths[i] >>> 16 == DATA_TYPE_SERVICE_DATA
+                    && fieldLength(i) >= 2 && uint16(bytes, fieldOffsets[i]) == uuid16) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the service data for the 16-bit service {@code uuid16}, or returns null if there is
+     * none.
+     */
+    public byte[] serviceData(int uuid16) {
+        int i = serviceDataIndex(uuid16);
+        if (i == -1) {
+            return null;
+        }
+        int start = fieldOffsets[i] + 2;
+        return Arrays.copyOfRange(bytes, start, start + fieldLength(i) - 2);
+    }
+
+    /**
+     * Returns the UUID size << 24 | absolute position of the {@code n}th service UUID.
+     */
+    private int serviceUuidPosition(int n) {
+        if (n >= 0) {
+            for (int i = 0; i < fieldCount; i++) {
+                int size = uuidSize(fieldTypeLengths[i] >>> 16);
+                if (size == 0) {
+                    continue;
+                }
+                int count = fieldLength(i) / size;
+                if (n < count) {
+                    return size << 24 | (fieldOffsets[i] + n * size);
+                }
+                n -= count;
+            }
+        }
+        throw new IndexOutOfBoundsException("service UUID " + n);
+    }
+
+    private static int uuidSize(int type) {
+        switch (type) {
+            case DATA_TYPE_SERVICE_UUIDS_16_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_16_BIT_COMPLETE:
+                return 2;
+            case DATA_TYPE_SERVICE_UUIDS_32_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_32_BIT_COMPLETE:
+                return 4;
+            case DATA_TYPE_SERVICE_UUIDS_128_BIT_PARTIAL:
+            case DATA_TYPE_SERVICE_UUIDS_128_BIT_COMPLETE:
+                return 16;
+            default:
+                return 0;
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("index=" + index + " fieldCount=" + fieldCount);
+        }
+    }
+
+    private static int uint16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    private static long uint32(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | (long) (data[offset + 3] & 0xFF) << 24);
+    }
+
+    private static long littleEndianLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,205 @@
+package retrotooth.model;
+
+import android.os.ParcelUuid;
+
+import java.util.UUID;
+
+/**
+ * Shared, interned {@link UUID} instances for Bluetooth attributes. UUIDs are handled as a pair of
+ * longs until an instance is needed, and parsing them from advertisements or annotation strings
+ * allocates nothing once a value has been seen:
+ * <ul>
+ * <li>UUIDs in the 16-bit space of the Bluetooth Base UUID, which covers every SIG assigned
+ * number, are kept in a table indexed by their short value, filled in pages of 256 as they are
+ * first used.</li>
+ * <li>Other UUIDs, including vendor 128-bit UUIDs, are kept in a direct-mapped cache keyed by
+ * their bits: a UUID evicts whichever entry shared its slot.</li>
+ * </ul>
+ * {@link ParcelUuid} wrappers, as the framework's scan APIs use, are cached the same way.
+ * Safe for use by multiple threads.
+ */
+public final class UuidRegistry {
+    /**
+     * The most significant bits of the Bluetooth Base UUID, 00000000-0000-1000-8000-00805F9B34FB.
+     */
+    public static final long BASE_UUID_MSB = 0x0000000000001000L;
+    /**
+     * The least significant bits of the Bluetooth Base UUID.
+     */
+    public static final long BASE_UUID_LSB = 0x800000805F9B34FBL;
+
+    private static final int CACHE_SIZE = 1024;
+
+    private static final UUID[][] SHORT_UUID_PAGES = new UUID[256][];
+    private static final UUID[] CACHE = new UUID[CACHE_SIZE];
+    private static final ParcelUuid[] PARCEL_CACHE = new ParcelUuid[CACHE_SIZE];
+
+    private UuidRegistry() {
+        // No instances.
+    }
+
+    /**
+     * Returns the 128-bit UUID for the 16-bit value {@code uuid16}.
+     */
+    public static UUID uuid16(int uuid16) {
+        if (uuid16 < 0 || uuid16 > 0xFFFF) {
+            throw new IllegalArgumentException("uuid16 out of range: " + uuid16);
+        }
+        UUID[] page = SHORT_UUID_PAGES[uuid16 >>> 8];
+        if (page == null) {
+            // Racing threads may each fill a page; UUIDs are immutable so either result is fine.
+            page = new UUID[256];
+            int base = uuid16 & ~0xFF;
+            for (int i = 0; i < 256; i++) {
+                page[i] = new UUID(BASE_UUID_MSB | (long) (base + i) << 32, BASE_UUID_LSB);
+            }
+            SHORT_UUID_PAGES[uuid16 >>> 8] = page;
+        }
+        UUID uuid = page[uuid16 & 0xFF];
+        // A page published by another thread may not have its entries visible yet.
+        return uuid != null
+                ? uuid
+                : new UUID(BASE_UUID_MSB | (long) uuid16 << 32, BASE_UUID_LSB);
+    }
+
+    /**
+     * Returns the 128-bit UUID for the 32-bit value {@code uuid32}.
+     */
+    public static UUID uuid32(long uuid32) {
+        if (uuid32 < 0 || uuid32 > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("uuid32 out of range: " + uuid32);
+        }
+        return uuid32 <= 0xFFFF
+                ? uuid16((int) uuid32)
+                : get(BASE_UUID_MSB | uuid32 << 32, BASE_UUID_LSB);
+    }
+
+    /**
+     * Returns the UUID with the given bits.
+     */
+    public static UUID get(long mostSignificantBits, long leastSignificantBits) {
+        if (leastSignificantBits == BASE_UUID_LSB
+                && (mostSignificantBits & 0xFFFF0000FFFFFFFFL) == BASE_UUID_MSB) {
+            return uuid16((int) (mostSignificantBits >>> 32));
+        }
+        int slot = slot(mostSignificantBits, leastSignificantBits);
+        UUID cached = CACHE[slot];
+        if (cached != null && cached.getLeastSignificantBits() == leastSignificantBits
+                && cached.getMostSignificantBits() == mostSignificantBits) {
+            return cached;
+        }
+        UUID uuid = new UUID(mostSignificantBits, leastSignificantBits);
+        CACHE[slot] = uuid;
+        return uuid;
+    }
+
+    /**
+     * Returns a shared {@link ParcelUuid} wrapping {@code uuid}.
+     */
+    public static ParcelUuid parcelUuid(UUID uuid) {
+        int slot = slot(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits());
+        ParcelUuid cached = PARCEL_CACHE[slot];
+        if (cached != null && cached.getUuid().equals(uuid)) {
+            return cached;
+        }
+        ParcelUuid parcelUuid = new ParcelUuid(uuid);
+        PARCEL_CACHE[slot] = parcelUuid;
+        return parcelUuid;
+    }
+
+    /**
+     * Returns the UUID encoded little endian in {@code length} bytes of {@code data} at
+     * {@code offset}, where length is 2, 4 or 16 as in advertisements and attribute protocol
+     * PDUs.
+     *
+     * @throws IllegalArgumentException if length is not a valid UUID size.
+     */
+    public static UUID fromBytes(byte[] data, int offset, int length) {
+        switch (length) {
+            case 2:
+                return uuid16((data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8);
+            case 4:
+                return uuid32((data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                        | (data[offset + 2] & 0xFF) << 16 | (long) (data[offset + 3] & 0xFF) << 24);
+            case 16:
+                return get(littleEndianLong(data, offset + 8), littleEndianLong(data, offset));
+            default:
+                throw new IllegalArgumentException("uuidBytes length invalid - " + length);
+        }
+    }
+
+    /**
+     * Parses a UUID in its canonical 36 character form, or a 16 or 32-bit UUID as 4 or 8 hex
+     * digits. Returns null if {@code uuid} is in none of these forms.
+     */
+    public static UUID parse(String uuid) {
+        switch (uuid.length()) {
+            case 4: {
+                long value = parseHex(uuid, 0, 4);
+                return value != -1 ? uuid16((int) value) : null;
+            }
+            case 8: {
+                long value = parseHex(uuid, 0, 8);
+                return value != -1 ? uuid32(value) : null;
+            }
+            case 36: {
+                if (uuid.charAt(8) != '-' || uuid.charAt(13) != '-' || uuid.charAt(18) != '-'
+                        || uuid.charAt(23) != '-') {
+                    return null;
+                }
+                long a = parseHex(uuid, 0, 8);
+                long b = parseHex(uuid, 9, 13);
+                long c = parseHex(uuid, 14, 18);
+                long d = parseHex(uuid, 19, 23);
+                long e = parseHex(uuid, 24, 36);
+                if ((a | b | c | d | e) < 0) {
+                    return null;
+                }
+                return get(a << 32 | b << 16 | c, d << 48 | e);
+            }
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Returns the 16 or 32-bit value of {@code uuid}, or -1 if it is not derived from the
+     * Bluetooth Base UUID.
+     */
+    public static long shortValue(UUID uuid) {
+        if (uuid.getLeastSignificantBits() != BASE_UUID_LSB
+                || (uuid.getMostSignificantBits() & 0xFFFFFFFFL) != BASE_UUID_MSB) {
+            return -1;
+        }
+        return uuid.getMostSignificantBits() >>> 32;
+    }
+
+    /**
+     * Returns the value of the hex digits in {@code s} from {@code start} to {@code end}, or -1
+     * if any character is not a hex digit.
+     */
+    private static long parseHex(String s, int start, int end) {
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = Character.digit(s.charAt(i), 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    private static int slot(long mostSignificantBits, long leastSignificantBits) {
+        long h = (mostSignificantBits ^ leastSignificantBits) * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (CACHE_SIZE - 1);
+    }
+
+    private static long littleEndianLong(byte[] data, int offset) {
+        long value = 0;
+        for (int i = 7; i >= 0; i--) {
+            value = value << 8 | (data[offset + i] & 0xFF);
+        }
+        return value;
+    }
+}
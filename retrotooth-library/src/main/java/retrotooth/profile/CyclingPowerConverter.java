@@ -0,0 +1,93 @@
+package retrotooth.profile;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+import retrotooth.ResponseData;
+import retrotooth.StatefulConverter;
+
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_ACCUMULATED_ENERGY;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_ACCUMULATED_TORQUE;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_BOTTOM_DEAD_SPOT;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_CRANK_DATA;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_EXTREME_ANGLES;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_EXTREME_FORCES;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_EXTREME_TORQUES;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_PEDAL_POWER_BALANCE;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_TOP_DEAD_SPOT;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_WHEEL_DATA;
+
+/**
+ * Decodes Cycling Power Measurement notifications into a single reused
+ * {@link CyclingPowerMeasurement}, reading straight from the response source.
+ * <p/>
+ * Decoding is synchronized, as every call of the service method shares the instance and the
+ * previous values it derives from: calls made concurrently are decoded one at a time and cannot
+ * corrupt it, but each returns the same instance, which holds whichever was decoded last.
+ */
+final class CyclingPowerConverter
+        implements StatefulConverter<ResponseData, CyclingPowerMeasurement> {
+    private final CyclingPowerMeasurement measurement;
+
+    CyclingPowerConverter(CyclingPowerMeasurement measurement) {
+        this.measurement = measurement;
+    }
+
+    @Override
+    public synchronized CyclingPowerMeasurement convert(ResponseData value) throws IOException {
+        try {
+            decode(value.source(), measurement);
+            return measurement;
+        } finally {
+            value.close();
+        }
+    }
+
+    static void decode(BufferedSource source, CyclingPowerMeasurement target) throws IOException {
+        int flags = source.readShortLe() & 0xFFFF;
+        target.flags = flags;
+        target.instantaneousPower = source.readShortLe();
+        if ((flags & FLAG_PEDAL_POWER_BALANCE) != 0) {
+            target.pedalPowerBalance = source.readByte() & 0xFF;
+        }
+        if ((flags & FLAG_ACCUMULATED_TORQUE) != 0) {
+            target.accumulatedTorque = source.readShortLe() & 0xFFFF;
+        }
+        if ((flags & FLAG_WHEEL_DATA) != 0) {
+            target.cumulativeWheelRevolutions = source.readIntLe() & 0xFFFFFFFFL;
+            target.lastWheelEventTime = source.readShortLe() & 0xFFFF;
+            target.wheel.update(target.cumulativeWheelRevolutions, target.lastWheelEventTime);
+        }
+        if ((flags & FLAG_CRANK_DATA) != 0) {
+            target.cumulativeCrankRevolutions = source.readShortLe() & 0xFFFF;
+            target.lastCrankEventTime = source.readShortLe() & 0xFFFF;
+            target.crank.update(target.cumulativeCrankRevolutions, target.lastCrankEventTime);
+        }
+        if ((flags & FLAG_EXTREME_FORCES) != 0) {
+            target.maximumForce = source.readShortLe();
+            target.minimumForce = source.readShortLe();
+        }
+        if ((flags & FLAG_EXTREME_TORQUES) != 0) {
+            target.maximumTorque = source.readShortLe();
+            target.minimumTorque = source.readShortLe();
+        }
+        if ((flags & FLAG_EXTREME_ANGLES) != 0) {
+            // Two 12-bit angles packed into three bytes, maximum first.
+            int angles = (source.readByte() & 0xFF) | (source.readShortLe() & 0xFFFF) << 8;
+            target.maximumAngle = angles & 0x0FFF;
+            target.minimumAngle = angles >>> 12;
+        }
+        if ((flags & FLAG_TOP_DEAD_SPOT) != 0) {
+            target.topDeadSpotAngle = source.readShortLe() & 0xFFFF;
+        }
+        if ((flags & FLAG_BOTTOM_DEAD_SPOT) != 0) {
+            target.bottomDeadSpotAngle = source.readShortLe() & 0xFFFF;
+        }
+        if ((flags & FLAG_ACCUMULATED_ENERGY) != 0) {
+            target.accumulatedEnergy = source.readShortLe() & 0xFFFF;
+        }
+        if ((flags & FLAG_ACCUMULATED_TORQUE) != 0) {
+            target.updateAveragePower();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package retrotooth.profile;
+
+/**
+ * A decoded Cycling Power Measurement (0x2A63) notification together with the speed, cadence,
+ * distance and average power derived from the previous notifications of the same subscription.
+ * <p/>
+ * Instances are mutable and reused: values are only valid until the next notification.
+ */
+public final class CyclingPowerMeasurement {
+    public static final int FLAG_PEDAL_POWER_BALANCE = 0x0001;
+    public static final int FLAG_PEDAL_POWER_BALANCE_LEFT = 0x0002;
+    public static final int FLAG_ACCUMULATED_TORQUE = 0x0004;
+    public static final int FLAG_TORQUE_FROM_CRANK = 0x0008;
+    public static final int FLAG_WHEEL_DATA = 0x0010;
+    public static final int FLAG_CRANK_DATA = 0x0020;
+    public static final int FLAG_EXTREME_FORCES = 0x0040;
+    public static final int FLAG_EXTREME_TORQUES = 0x0080;
+    public static final int FLAG_EXTREME_ANGLES = 0x0100;
+    public static final int FLAG_TOP_DEAD_SPOT = 0x0200;
+    public static final int FLAG_BOTTOM_DEAD_SPOT = 0x0400;
+    public static final int FLAG_ACCUMULATED_ENERGY = 0x0800;
+
+    private final double wheelCircumference;
+    // Wheel event times are in 1/2048 second for this characteristic, crank times in 1/1024.
+    final RevolutionRate wheel = new RevolutionRate(32, 2048);
+    final RevolutionRate crank = new RevolutionRate(16, 1024);
+
+    int flags;
+    int instantaneousPower;
+    int pedalPowerBalance;
+    int accumulatedTorque;
+    long cumulativeWheelRevolutions;
+    int lastWheelEventTime;
+    int cumulativeCrankRevolutions;
+    int lastCrankEventTime;
+    int maximumForce;
+    int minimumForce;
+    int maximumTorque;
+    int minimumTorque;
+    int maximumAngle;
+    int minimumAngle;
+    int topDeadSpotAngle;
+    int bottomDeadSpotAngle;
+    int accumulatedEnergy;
+
+    private boolean hasPreviousTorque;
+    private int previousTorque;
+    private int previousTorqueTime;
+    double averagePower;
+
+    public CyclingPowerMeasurement() {
+        this(CyclingSpeedCadenceMeasurement.DEFAULT_WHEEL_CIRCUMFERENCE);
+    }
+
+    /**
+     * @param wheelCircumference wheel circumference in meters, used to derive speed and distance.
+     */
+    public CyclingPowerMeasurement(double wheelCircumference) {
+        if (wheelCircumference <= 0d) {
+            throw new IllegalArgumentException("wheelCircumference <= 0");
+        }
+        this.wheelCircumference = wheelCircumference;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    /**
+     * Returns true if the notification carried the field for {@code flag}, one of the
+     * {@code FLAG_} constants.
+     */
+    public boolean has(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    /**
+     * Instantaneous power in watts.
+     */
+    public int instantaneousPower() {
+        return instantaneousPower;
+    }
+
+    /**
+     * Pedal power balance in percent.
+     */
+    public double pedalPowerBalance() {
+        return pedalPowerBalance / 2d;
+    }
+
+    /**
+     * Accumulated torque in newton meters. Wraps after 2048 Nm.
+     */
+    public double accumulatedTorque() {
+        return accumulatedTorque / 32d;
+    }
+
+    public long cumulativeWheelRevolutions() {
+        return cumulativeWheelRevolutions;
+    }
+
+    /**
+     * Time of the last wheel event in units of 1/2048 second.
+     */
+    public int lastWheelEventTime() {
+        return lastWheelEventTime;
+    }
+
+    public int cumulativeCrankRevolutions() {
+        return cumulativeCrankRevolutions;
+    }
+
+    /**
+     * Time of the last crank event in units of 1/1024 second.
+     */
+    public int lastCrankEventTime() {
+        return lastCrankEventTime;
+    }
+
+    /**
+     * Maximum force magnitude in newtons.
+     */
+    public int maximumForce() {
+        return maximumForce;
+    }
+
+    /**
+     * Minimum force magnitude in newtons.
+     */
+    public int minimumForce() {
+        return minimumForce;
+    }
+
+    /**
+     * Maximum torque magnitude in newton meters.
+     */
+    public double maximumTorque() {
+        return maximumTorque / 32d;
+    }
+
+    /**
+     * Minimum torque magnitude in newton meters.
+     */
+    public double minimumTorque() {
+        return minimumTorque / 32d;
+    }
+
+    /**
+     * Crank angle of the maximum force in degrees.
+     */
+    public int maximumAngle() {
+        return maximumAngle;
+    }
+
+    /**
+     * Crank angle of the minimum force in degrees.
+     */
+    public int minimumAngle() {
+        return minimumAngle;
+    }
+
+    public int topDeadSpotAngle() {
+        return topDeadSpotAngle;
+    }
+
+    public int bottomDeadSpotAngle() {
+        return bottomDeadSpotAngle;
+    }
+
+    /**
+     * Accumulated energy in kilojoules.
+     */
+    public int accumulatedEnergy() {
+        return accumulatedEnergy;
+    }
+
+    /**
+     * Speed in meters per second, from wheel revolution data.
+     */
+    public double speed() {
+        return wheel.revolutionsPerSecond * wheelCircumference;
+    }
+
+    /**
+     * Cadence in crank revolutions per minute, from crank revolution data.
+     */
+    public double cadence() {
+        return crank.revolutionsPerSecond * 60d;
+    }
+
+    /**
+     * Distance in meters since the first notification of the subscription.
+     */
+    public double distance() {
+        return wheel.totalRevolutions * wheelCircumference;
+    }
+
+    /**
+     * Average power in watts over the last torque event, from accumulated torque and the event time
+     * of its source (crank or wheel). {@code 2 * pi * (torque delta) / (time delta)}.
+     */
+    public double averagePower() {
+        return averagePower;
+    }
+
+    void updateAveragePower() {
+        boolean fromCrank = (flags & FLAG_TORQUE_FROM_CRANK) != 0;
+        int eventTime = fromCrank ? lastCrankEventTime : lastWheelEventTime;
+        if (hasPreviousTorque) {
+            int deltaTicks = (eventTime - previousTorqueTime) & 0xFFFF;
+            if (deltaTicks != 0) {
+                int deltaTorque = (accumulatedTorque - previousTorque) & 0xFFFF;
+                double seconds = deltaTicks / (fromCrank ? 1024d : 2048d);
+                averagePower = 2d * Math.PI * (deltaTorque / 32d) / seconds;
+            }
+        }
+        hasPreviousTorque = true;
+        previousTorque = accumulatedTorque;
+        previousTorqueTime = eventTime;
+    }
+
+    /**
+     * Forgets the previous values, e.g. after reconnecting to a different sensor.
+     */
+    public void reset() {
+        wheel.reset();
+        crank.reset();
+        hasPreviousTorque = false;
+        averagePower = 0d;
+    }
+
+    @Override
+    public String toString() {
+        return "CyclingPowerMeasurement{instantaneousPower=" + instantaneousPower
+                + ", averagePower=" + averagePower + ", speed=" + speed() + ", cadence=" + cadence()
+                + ", flags=0x" + Integer.toHexString(flags) + '}';
+    }
+}
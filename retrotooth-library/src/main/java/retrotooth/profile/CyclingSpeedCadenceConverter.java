@@ -0,0 +1,49 @@
+package retrotooth.profile;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+import retrotooth.ResponseData;
+import retrotooth.StatefulConverter;
+
+/**
+ * Decodes CSC Measurement notifications into a single reused
+ * {@link CyclingSpeedCadenceMeasurement}, reading straight from the response source. * <p/>
+ * Decoding is synchronized, as every call of the service method shares the instance and the
+ * previous values it derives from: calls made concurrently are decoded one at a time and cannot
+ * corrupt it, but each returns the same instance, which holds whichever was decoded last.
+ */
+final class CyclingSpeedCadenceConverter
+        implements StatefulConverter<ResponseData, CyclingSpeedCadenceMeasurement> {
+    private final CyclingSpeedCadenceMeasurement measurement;
+
+    CyclingSpeedCadenceConverter(CyclingSpeedCadenceMeasurement measurement) {
+        this.measurement = measurement;
+    }
+
+    @Override
+    public synchronized CyclingSpeedCadenceMeasurement convert(ResponseData value) throws IOException {
+        try {
+            decode(value.source(), measurement);
+            return measurement;
+        } finally {
+            value.close();
+        }
+    }
+
+    static void decode(BufferedSource source, CyclingSpeedCadenceMeasurement target)
+            throws IOException {
+        int flags = source.readByte() & 0xFF;
+        if ((flags & CyclingSpeedCadenceMeasurement.FLAG_WHEEL_DATA) != 0) {
+            target.cumulativeWheelRevolutions = source.readIntLe() & 0xFFFFFFFFL;
+            target.lastWheelEventTime = source.readShortLe() & 0xFFFF;
+            target.wheel.update(target.cumulativeWheelRevolutions, target.lastWheelEventTime);
+        }
+        if ((flags & CyclingSpeedCadenceMeasurement.FLAG_CRANK_DATA) != 0) {
+            target.cumulativeCrankRevolutions = source.readShortLe() & 0xFFFF;
+            target.lastCrankEventTime = source.readShortLe() & 0xFFFF;
+            target.crank.update(target.cumulativeCrankRevolutions, target.lastCrankEventTime);
+        }
+        target.flags = flags;
+    }
+}
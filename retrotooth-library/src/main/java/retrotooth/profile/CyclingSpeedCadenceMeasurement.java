@@ -0,0 +1,108 @@
+package retrotooth.profile;
+
+/**
+ * A decoded CSC Measurement (0x2A5B) notification together with the speed, cadence and distance
+ * derived from the previous notifications of the same subscription.
+ * <p/>
+ * Instances are mutable and reused: values are only valid until the next notification.
+ */
+public final class CyclingSpeedCadenceMeasurement {
+    static final int FLAG_WHEEL_DATA = 0x01;
+    static final int FLAG_CRANK_DATA = 0x02;
+
+    /** Circumference of a 700x23c road wheel. */
+    public static final double DEFAULT_WHEEL_CIRCUMFERENCE = 2.096d;
+
+    private final double wheelCircumference;
+    final RevolutionRate wheel = new RevolutionRate(32, 1024);
+    final RevolutionRate crank = new RevolutionRate(16, 1024);
+
+    int flags;
+    long cumulativeWheelRevolutions;
+    int lastWheelEventTime;
+    int cumulativeCrankRevolutions;
+    int lastCrankEventTime;
+
+    public CyclingSpeedCadenceMeasurement() {
+        this(DEFAULT_WHEEL_CIRCUMFERENCE);
+    }
+
+    /**
+     * @param wheelCircumference wheel circumference in meters, used to derive speed and distance.
+     */
+    public CyclingSpeedCadenceMeasurement(double wheelCircumference) {
+        if (wheelCircumference <= 0d) {
+            throw new IllegalArgumentException("wheelCircumference <= 0");
+        }
+        this.wheelCircumference = wheelCircumference;
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    public boolean hasWheelData() {
+        return (flags & FLAG_WHEEL_DATA) != 0;
+    }
+
+    public boolean hasCrankData() {
+        return (flags & FLAG_CRANK_DATA) != 0;
+    }
+
+    public long cumulativeWheelRevolutions() {
+        return cumulativeWheelRevolutions;
+    }
+
+    /**
+     * Time of the last wheel event in units of 1/1024 second, wrapping every 64 seconds.
+     */
+    public int lastWheelEventTime() {
+        return lastWheelEventTime;
+    }
+
+    public int cumulativeCrankRevolutions() {
+        return cumulativeCrankRevolutions;
+    }
+
+    /**
+     * Time of the last crank event in units of 1/1024 second, wrapping every 64 seconds.
+     */
+    public int lastCrankEventTime() {
+        return lastCrankEventTime;
+    }
+
+    /**
+     * Speed in meters per second.
+     */
+    public double speed() {
+        return wheel.revolutionsPerSecond * wheelCircumference;
+    }
+
+    /**
+     * Cadence in crank revolutions per minute.
+     */
+    public double cadence() {
+        return crank.revolutionsPerSecond * 60d;
+    }
+
+    /**
+     * Distance in meters since the first notification of the subscription.
+     */
+    public double distance() {
+        return wheel.totalRevolutions * wheelCircumference;
+    }
+
+    /**
+     * Forgets the previous values, e.g. after reconnecting to a different sensor.
+     */
+    public void reset() {
+        wheel.reset();
+        crank.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "CyclingSpeedCadenceMeasurement{speed=" + speed() + ", cadence=" + cadence()
+                + ", distance=" + distance() + ", flags=0x" + Integer.toHexString(flags) + '}';
+    }
+}
@@ -0,0 +1,118 @@
+package retrotooth.profile;
+
+import retrotooth.util.IntRingBuffer;
+
+/**
+ * A decoded Heart Rate Measurement (0x2A37) notification.
+ * <p/>
+ * Instances are mutable and reused: the converter returned by {@link ProfileConverterFactory}
+ * decodes every notification of a subscription into the same instance, so its values are only
+ * valid until the next notification. Copy what you need to keep.
+ * <p/>
+ * The RR-interval history is the exception: it accumulates across notifications and may be
+ * read or drained from any thread, under the lock the decoder holds while adding to it.
+ */
+public final class HeartRateMeasurement {
+    static final int FLAG_UINT16 = 0x01;
+    static final int FLAG_CONTACT_DETECTED = 0x02;
+    static final int FLAG_CONTACT_SUPPORTED = 0x04;
+    static final int FLAG_ENERGY_EXPENDED = 0x08;
+    static final int FLAG_RR_INTERVALS = 0x10;
+
+    /** The default number of RR-intervals retained by {@link #rrHistory()}. */
+    public static final int DEFAULT_RR_HISTORY = 256;
+
+    int flags;
+    int heartRate;
+    int energyExpended;
+    int[] rrIntervals = new int[9]; // A 20 byte ATT payload carries at most 9 intervals.
+    int rrIntervalCount;
+    final IntRingBuffer rrHistory; // Guarded by this.
+
+    public HeartRateMeasurement() {
+        this(DEFAULT_RR_HISTORY);
+    }
+
+    public HeartRateMeasurement(int rrHistoryCapacity) {
+        this.rrHistory = new IntRingBuffer(rrHistoryCapacity);
+    }
+
+    public int flags() {
+        return flags;
+    }
+
+    /**
+     * Beats per minute.
+     */
+    public int heartRate() {
+        return heartRate;
+    }
+
+    public boolean isSensorContactSupported() {
+        return (flags & FLAG_CONTACT_SUPPORTED) != 0;
+    }
+
+    public boolean isSensorContactDetected() {
+        return (flags & FLAG_CONTACT_DETECTED) != 0;
+    }
+
+    public boolean hasEnergyExpended() {
+        return (flags & FLAG_ENERGY_EXPENDED) != 0;
+    }
+
+    /**
+     * Accumulated energy in kilojoules, or -1 if not present.
+     */
+    public int energyExpended() {
+        return energyExpended;
+    }
+
+    /**
+     * The number of RR-intervals in this notification.
+     */
+    public int rrIntervalCount() {
+        return rrIntervalCount;
+    }
+
+    /**
+     * Returns an RR-interval of this notification in units of 1/1024 second.
+     */
+    public int rrInterval(int index) {
+        if (index < 0 || index >= rrIntervalCount) {
+            throw new IndexOutOfBoundsException("index=" + index + ", count=" + rrIntervalCount);
+        }
+        return rrIntervals[index];
+    }
+
+    public int rrIntervalMillis(int index) {
+        return (int) ((rrInterval(index) * 1000L) >> 10);
+    }
+
+    /**
+     * Returns a copy of the most recent RR-intervals across notifications, oldest first, in units
+     * of 1/1024 second. The decoder never clears them; see {@link #drainRrHistory}.
+     */
+    public synchronized int[] rrHistory() {
+        int[] copy = new int[rrHistory.size()];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = rrHistory.get(i);
+        }
+        return copy;
+    }
+
+    /**
+     * Removes up to {@code dst.length} of the oldest RR-intervals in the history into
+     * {@code dst}, returning the number copied.
+     */
+    public synchronized int drainRrHistory(int[] dst) {
+        if (dst == null) throw new NullPointerException("dst == null");
+        return rrHistory.drainTo(dst, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "HeartRateMeasurement{heartRate=" + heartRate + ", energyExpended=" + energyExpended
+                + ", rrIntervalCount=" + rrIntervalCount + ", flags=0x" + Integer.toHexString(flags)
+                + '}';
+    }
+}
@@ -0,0 +1,79 @@
+package retrotooth.profile;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import okio.BufferedSource;
+import retrotooth.ResponseData;
+import retrotooth.StatefulConverter;
+
+/**
+ * Decodes Heart Rate Measurement notifications into a single reused {@link HeartRateMeasurement},
+ * reading straight from the response source without allocating.
+ * <p/>
+ * Decoding holds the instance's lock, as every call of the service method shares the instance
+ * and its history: calls made concurrently are decoded one at a time and cannot corrupt it, and
+ * readers of the history see whole notifications. Each call returns the same instance, which
+ * holds whichever was decoded last.
+ */
+final class HeartRateMeasurementConverter
+        implements StatefulConverter<ResponseData, HeartRateMeasurement> {
+    private final HeartRateMeasurement measurement;
+
+    HeartRateMeasurementConverter(HeartRateMeasurement measurement) {
+        this.measurement = measurement;
+    }
+
+    @Override
+    public HeartRateMeasurement convert(ResponseData value) throws IOException {
+        try {
+            synchronized (measurement) {
+                decode(value.source(), value.contentLength(), measurement);
+            }
+            return measurement;
+        } finally {
+            value.close();
+        }
+    }
+
+    /**
+     * Decodes into {@code target}, whose lock the caller holds.
+     */
+    static void decode(BufferedSource source, long length, HeartRateMeasurement target)
+            throws IOException {
+        if (length < 2) {
+            throw new EOFException("Heart Rate Measurement too short: " + length);
+        }
+        int flags = source.readByte() & 0xFF;
+        long remaining = length - 1;
+        if ((flags & HeartRateMeasurement.FLAG_UINT16) != 0) {
+            target.heartRate = source.readShortLe() & 0xFFFF;
+            remaining -= 2;
+        } else {
+            target.heartRate = source.readByte() & 0xFF;
+            remaining -= 1;
+        }
+        if ((flags & HeartRateMeasurement.FLAG_ENERGY_EXPENDED) != 0) {
+            target.energyExpended = source.readShortLe() & 0xFFFF;
+            remaining -= 2;
+        } else {
+            target.energyExpended = -1;
+        }
+        int count = 0;
+        if ((flags & HeartRateMeasurement.FLAG_RR_INTERVALS) != 0 && remaining > 0) {
+            count = (int) (remaining >> 1);
+            if (count > target.rrIntervals.length) {
+                // Only reached with a larger MTU, and only once per size.
+                target.rrIntervals = new int[count];
+            }
+            int[] rrIntervals = target.rrIntervals;
+            for (int i = 0; i < count; i++) {
+                int rr = source.readShortLe() & 0xFFFF;
+                rrIntervals[i] = rr;
+                target.rrHistory.add(rr);
+            }
+        }
+        target.flags = flags;
+        target.rrIntervalCount = count;
+    }
+}
@@ -0,0 +1,58 @@
+package retrotooth.profile;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+
+import retrotooth.Converter;
+import retrotooth.ResponseData;
+
+/**
+ * A {@linkplain Converter.Factory converter} for standard GATT profile characteristics which
+ * decodes without per-notification allocation.
+ * <p/>
+ * Each service method gets its own converter, and with it its own reused result instance, so
+ * calls for different subscriptions never share state. Calls of the same method do: their
+ * converter decodes one response at a time, but a result read on one thread may be overwritten
+ * by a call completing on another. Make concurrent calls through separate methods or separate
+ * {@code Retrotooth} instances, or copy results out from a single thread.
+ */
+public final class ProfileConverterFactory extends Converter.Factory {
+    public static ProfileConverterFactory create() {
+        return create(CyclingSpeedCadenceMeasurement.DEFAULT_WHEEL_CIRCUMFERENCE);
+    }
+
+    /**
+     * Create an instance deriving cycling speed and distance from a wheel of
+     * {@code wheelCircumference} meters.
+     */
+    public static ProfileConverterFactory create(double wheelCircumference) {
+        return new ProfileConverterFactory(wheelCircumference);
+    }
+
+    private final double wheelCircumference;
+
+    private ProfileConverterFactory(double wheelCircumference) {
+        if (wheelCircumference <= 0d) {
+            throw new IllegalArgumentException("wheelCircumference <= 0");
+        }
+        this.wheelCircumference = wheelCircumference;
+    }
+
+    @Override
+    public Converter<ResponseData, ?> fromResponseBody(Type type, Annotation[] annotations) {
+        if (type == HeartRateMeasurement.class) {
+            return new HeartRateMeasurementConverter(new HeartRateMeasurement());
+        }
+        if (type == CyclingSpeedCadenceMeasurement.class) {
+            return new CyclingSpeedCadenceConverter(
+                    new CyclingSpeedCadenceMeasurement(wheelCircumference));
+        }
+        if (type == RunningSpeedCadenceMeasurement.class) {
+            return new RunningSpeedCadenceConverter(new RunningSpeedCadenceMeasurement());
+        }
+        if (type == CyclingPowerMeasurement.class) {
+            return new CyclingPowerConverter(new CyclingPowerMeasurement(wheelCircumference));
+        }
+        return null;
+    }
+}
@@ -0,0 +1,60 @@
+package retrotooth.profile;
+
+/**
+ * Derives a revolution rate from a cumulative revolution counter and the 16-bit time of the last
+ * revolution event, both of which wrap around. Holds the previous values of one subscription.
+ */
+final class RevolutionRate {
+    /**
+     * The number of notifications without a new revolution event after which the rate drops to 0.
+     */
+    static final int STOPPED_AFTER = 3;
+
+    private final long revolutionMask;
+    private final int ticksPerSecond;
+
+    private boolean initialized;
+    private long revolutions;
+    private int eventTime;
+    private int unchanged;
+
+    long totalRevolutions;
+    double revolutionsPerSecond;
+
+    /**
+     * @param revolutionBits width of the revolution counter, 16 or 32.
+     * @param ticksPerSecond resolution of the event time, 1024 or 2048.
+     */
+    RevolutionRate(int revolutionBits, int ticksPerSecond) {
+        this.revolutionMask = (1L << revolutionBits) - 1;
+        this.ticksPerSecond = ticksPerSecond;
+    }
+
+    void update(long cumulativeRevolutions, int lastEventTime) {
+        if (!initialized) {
+            initialized = true;
+        } else {
+            long deltaRevolutions = (cumulativeRevolutions - revolutions) & revolutionMask;
+            int deltaTicks = (lastEventTime - eventTime) & 0xFFFF;
+            if (deltaTicks == 0) {
+                // No revolution since the last notification.
+                if (++unchanged >= STOPPED_AFTER) {
+                    revolutionsPerSecond = 0d;
+                }
+            } else {
+                unchanged = 0;
+                revolutionsPerSecond = deltaRevolutions * (double) ticksPerSecond / deltaTicks;
+            }
+            totalRevolutions += deltaRevolutions;
+        }
+        revolutions = cumulativeRevolutions;
+        eventTime = lastEventTime;
+    }
+
+    void reset() {
+        initialized = false;
+        unchanged = 0;
+        totalRevolutions = 0L;
+        revolutionsPerSecond = 0d;
+    }
+}
@@ -0,0 +1,47 @@
+package retrotooth.profile;
+
+import java.io.IOException;
+
+import okio.BufferedSource;
+import retrotooth.ResponseData;
+import retrotooth.StatefulConverter;
+
+/**
+ * Decodes RSC Measurement notifications into a single reused
+ * {@link RunningSpeedCadenceMeasurement}, reading straight from the response source. * <p/>
+ * Decoding is synchronized, as every call of the service method shares the instance and the
+ * previous values it derives from: calls made concurrently are decoded one at a time and cannot
+ * corrupt it, but each returns the same instance, which holds whichever was decoded last.
+ */
+final class RunningSpeedCadenceConverter
+        implements StatefulConverter<ResponseData, RunningSpeedCadenceMeasurement> {
+    private final RunningSpeedCadenceMeasurement measurement;
+
+    RunningSpeedCadenceConverter(RunningSpeedCadenceMeasurement measurement) {
+        this.measurement = measurement;
+    }
+
+    @Override
+    public synchronized RunningSpeedCadenceMeasurement convert(ResponseData value) throws IOException {
+        try {
+            decode(value.source(), measurement);
+            return measurement;
+        } finally {
+            value.close();
+        }
+    }
+
+    static void decode(BufferedSource source, RunningSpeedCadenceMeasurement target)
+            throws IOException {
+        int flags = source.readByte() & 0xFF;
+        target.speed = source.readShortLe() & 0xFFFF;
+        target.cadence = source.readByte() & 0xFF;
+        if ((flags & RunningSpeedCadenceMeasurement.FLAG_STRIDE_LENGTH) != 0) {
+            target.strideLength = source.readShortLe() & 0xFFFF;
+        }
+        if ((flags & RunningSpeedCadenceMeasurement.FLAG_TOTAL_DISTANCE) != 0) {
+            target.updateDistance(source.readIntLe() & 0xFFFFFFFFL);
+        }
+        target.flags = flags;
+    }
+}
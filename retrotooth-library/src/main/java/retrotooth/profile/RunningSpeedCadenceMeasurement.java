@@ -0,0 +1,96 @@
+package retrotooth.profile;
+
+/**
+ * A decoded RSC Measurement (0x2A53) notification together with the distance covered since the
+ * first notification of the same subscription.
+ * <p/>
+ * Instances are mutable and reused: values are only valid until the next notification.
+ */
+public final class RunningSpeedCadenceMeasurement {
+    static final int FLAG_STRIDE_LENGTH = 0x01;
+    static final int FLAG_TOTAL_DISTANCE = 0x02;
+    static final int FLAG_RUNNING = 0x04;
+
+    int flags;
+    int speed;
+    int cadence;
+    int strideLength;
+    long totalDistance;
+
+    private boolean hasPreviousDistance;
+    long distance;
+
+    public int flags() {
+        return flags;
+    }
+
+    public boolean isRunning() {
+        return (flags & FLAG_RUNNING) != 0;
+    }
+
+    /**
+     * Instantaneous speed in meters per second.
+     */
+    public double speed() {
+        return speed / 256d;
+    }
+
+    /**
+     * Instantaneous cadence in steps per minute.
+     */
+    public int cadence() {
+        return cadence;
+    }
+
+    public boolean hasStrideLength() {
+        return (flags & FLAG_STRIDE_LENGTH) != 0;
+    }
+
+    /**
+     * Instantaneous stride length in meters.
+     */
+    public double strideLength() {
+        return strideLength / 100d;
+    }
+
+    public boolean hasTotalDistance() {
+        return (flags & FLAG_TOTAL_DISTANCE) != 0;
+    }
+
+    /**
+     * Total distance reported by the sensor in meters. Wraps after 429,496,729.5 meters.
+     */
+    public double totalDistance() {
+        return totalDistance / 10d;
+    }
+
+    /**
+     * Distance in meters since the first notification of the subscription that carried a total
+     * distance, accounting for wrap around of the sensor's counter.
+     */
+    public double distance() {
+        return distance / 10d;
+    }
+
+    void updateDistance(long totalDistance) {
+        if (hasPreviousDistance) {
+            distance += (totalDistance - this.totalDistance) & 0xFFFFFFFFL;
+        }
+        hasPreviousDistance = true;
+        this.totalDistance = totalDistance;
+    }
+
+    /**
+     * Forgets the previous values, e.g. after reconnecting to a different sensor.
+     */
+    public void reset() {
+        hasPreviousDistance = false;
+        distance = 0L;
+    }
+
+    @Override
+    public String toString() {
+        return "RunningSpeedCadenceMeasurement{speed=" + speed() + ", cadence=" + cadence
+                + ", distance=" + distance() + ", flags=0x" + Integer.toHexString(flags) + '}';
+    }
+}
@@ -0,0 +1,230 @@
+package retrotooth.scan;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+
+import okio.BufferedSource;
+import okio.ByteString;
+
+/**
+ * Reads the advertising reports out of a btsnoop HCI log, such as the one Android writes when
+ * "Enable Bluetooth HCI snoop log" is on, so that real captures can be replayed off device or
+ * converted to {@link ScanBatchWriter batches}:
+ * <pre>
+ * BtsnoopReader reader = new BtsnoopReader(Okio.buffer(Okio.source(log)));
+ * while (reader.next()) {
+ *     writer.add(reader.timeMillis(), reader.address(), reader.rssi(),
+ *             reader.dataArray(), reader.dataOffset(), reader.dataLength());
+ * }
+ * </pre>
+ * Both H4 (UART) and unencapsulated HCI logs are supported. Legacy and extended LE advertising
+ * report events are decoded; every other packet is skipped. Each report's data is read into a
+ * buffer reused from report to report. Instances are not thread safe.
+ */
+public final class BtsnoopReader {
+    static final ByteString MAGIC = ByteString.encodeUtf8("btsnoop\0");
+    static final int DATALINK_HCI_UNENCAPSULATED = 1001;
+    static final int DATALINK_HCI_UART = 1002;
+
+    /**
+     * Microseconds from midnight, January 1st, 0 AD, which btsnoop timestamps count from, to the
+     * Unix epoch.
+     */
+    static final long EPOCH_OFFSET_MICROS = 0x00DCDDB30F2F8000L;
+
+    private static final int H4_EVENT = 0x04;
+    private static final int FLAG_COMMAND_OR_EVENT = 0x02;
+    private static final int EVENT_LE_META = 0x3E;
+    private static final int SUBEVENT_ADVERTISING_REPORT = 0x02;
+    private static final int SUBEVENT_EXTENDED_ADVERTISING_REPORT = 0x0D;
+
+    private final BufferedSource source;
+    private int datalink = -1;
+
+    // The current packet, and the position of its next report.
+    private final byte[] packet = new byte[0x10000];
+    private int packetLength;
+    private int reportsLeft;
+    private boolean extended;
+    private int pos;
+    private long packetTimeMillis;
+
+    private long timeMillis;
+    private long address;
+    private int rssi;
+    private int dataOffset;
+    private int dataLength;
+
+    public BtsnoopReader(BufferedSource source) {
+        if (source == null) throw new NullPointerException("source == null");
+        this.source = source;
+    }
+
+    /**
+     * Read the next advertising report.
+     *
+     * @return false at the end of the log.
+     * @throws ProtocolException if the log is not a btsnoop log of a supported datalink or a
+     * packet is malformed.
+     */
+    public boolean next() throws IOException {
+        if (datalink == -1) {
+            readHeader();
+        }
+        while (reportsLeft == 0) {
+            if (!readPacket()) {
+                return false;
+            }
+        }
+        reportsLeft--;
+        if (extended) {
+            readExtendedReport();
+        } else {
+            readReport();
+        }
+        timeMillis = packetTimeMillis;
+        return true;
+    }
+
+    /**
+     * The time the report was logged, in milliseconds since the epoch.
+     */
+    public long timeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * The advertiser's address, packed as by {@link DeviceTable#packAddress}.
+     */
+    public long address() {
+        return address;
+    }
+
+    public int rssi() {
+        return rssi;
+    }
+
+    /**
+     * The array holding the report's advertising data, valid until the next report is read.
+     */
+    public byte[] dataArray() {
+        return packet;
+    }
+
+    public int dataOffset() {
+        return dataOffset;
+    }
+
+    public int dataLength() {
+        return dataLength;
+    }
+
+    private void readHeader() throws IOException {
+        // Required first, as a Buffer throws rather than EOFException when it runs out.
+        source.require(MAGIC.size() + 8);
+        if (!source.readByteString(MAGIC.size()).equals(MAGIC)) {
+            throw new ProtocolException("Not a btsnoop log");
+        }
+        int version = source.readInt();
+        if (version != 1) {
+            throw new ProtocolException("Unsupported btsnoop version " + version);
+        }
+        datalink = source.readInt();
+        if (datalink != DATALINK_HCI_UNENCAPSULATED && datalink != DATALINK_HCI_UART) {
+            throw new ProtocolException("Unsupported btsnoop datalink " + datalink);
+        }
+    }
+
+    /**
+     * Read packets until one holds advertising reports, returning false at the end of the log.
+     */
+    private boolean readPacket() throws IOException {
+        if (source.exhausted()) {
+            return false;
+        }
+        source.require(24);
+        source.readInt(); // Original length.
+        int includedLength = source.readInt();
+        int flags = source.readInt();
+        source.readInt(); // Cumulative drops.
+        long timestamp = source.readLong();
+        if (includedLength < 0 || includedLength > packet.length) {
+            throw new ProtocolException("Packet length out of range: " + includedLength);
+        }
+        for (int read = 0; read < includedLength; ) {
+            int n = source.read(packet, read, includedLength - read);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        packetLength = includedLength;
+        packetTimeMillis = (timestamp - EPOCH_OFFSET_MICROS) / 1000;
+
+        int event = 0;
+        if (datalink == DATALINK_HCI_UART) {
+            if (includedLength == 0 || packet[0] != H4_EVENT) {
+                return true;
+            }
+            event = 1;
+        } else if ((flags & FLAG_COMMAND_OR_EVENT) == 0) {
+            return true;
+        }
+        // Event code, parameter length, subevent code, number of reports.
+        if (packetLength - event < 4 || (packet[event] & 0xFF) != EVENT_LE_META) {
+            return true;
+        }
+        int subevent = packet[event + 2] & 0xFF;
+        if (subevent != SUBEVENT_ADVERTISING_REPORT
+                && subevent != SUBEVENT_EXTENDED_ADVERTISING_REPORT) {
+            return true;
+        }
+        extended = subevent == SUBEVENT_EXTENDED_ADVERTISING_REPORT;
+        reportsLeft = packet[event + 3] & 0xFF;
+        pos = event + 4;
+        return true;
+    }
+
+    private void readReport() throws ProtocolException {
+        // Event type, address type, address, data length, data, RSSI.
+        require(9);
+        address = readAddress(pos + 2);
+        dataLength = packet[pos + 8] & 0xFF;
+        dataOffset = pos + 9;
+        require(9 + dataLength + 1);
+        rssi = packet[dataOffset + dataLength];
+        pos = dataOffset + dataLength + 1;
+    }
+
+    private void readExtendedReport() throws ProtocolException {
+        // Event type (2), address type, address, primary PHY, secondary PHY, SID, TX power,
+        // RSSI, periodic advertising interval (2), direct address type, direct address, data
+        // length, data.
+        require(24);
+        address = readAddress(pos + 3);
+        rssi = packet[pos + 13];
+        dataLength = packet[pos + 23] & 0xFF;
+        dataOffset = pos + 24;
+        require(24 + dataLength);
+        pos = dataOffset + dataLength;
+    }
+
+    private void require(int length) throws ProtocolException {
+        if (packetLength - pos < length) {
+            reportsLeft = 0;
+            throw new ProtocolException("Truncated advertising report");
+        }
+    }
+
+    /**
+     * Reads the little-endian address at {@code offset} into the packed form.
+     */
+    private long readAddress(int offset) {
+        long address = 0;
+        for (int i = 5; i >= 0; i--) {
+            address = address << 8 | (packet[offset + i] & 0xFF);
+        }
+        return address;
+    }
+}
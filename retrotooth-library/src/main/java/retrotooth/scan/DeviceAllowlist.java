@@ -0,0 +1,243 @@
+package retrotooth.scan;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import okio.BufferedSource;
+import okio.Okio;
+
+/**
+ * A large, immutable set of device addresses, such as a fleet list, checked against each
+ * advertisement before anything is parsed. Register it with the consumer, so the scan manager
+ * drops other devices before evaluating the registration's {@link
+ * retrotooth.model.AdvertisementFilter AdvertisementFilter}:
+ * <pre>
+ * DeviceAllowlist fleet = DeviceAllowlist.load(new File(dir, "fleet.txt"));
+ * scanManager.register(fleet, filter, ScanManager.Mode.BALANCED, consumer);
+ * </pre>
+ * Addresses are packed into longs as by {@link DeviceTable#packAddress}. A Bloom filter rejects
+ * most addresses which are not members after touching a few words; the rest are confirmed by a
+ * binary search of a sorted {@code long[]}, so membership is exact. 200,000 addresses take
+ * about 1.8 MB, where a {@code HashSet<String>} of them takes over 20 MB.
+ * <p/>
+ * Safe for use by multiple threads. The statistics counters are updated without
+ * synchronization, so they are approximate when several threads check at once.
+ */
+public final class DeviceAllowlist {
+    public static final double DEFAULT_FALSE_POSITIVE_RATE = 0.01d;
+
+    private final long[] addresses;
+    private final long[] bits;
+    private final int bitMask;
+    private final int hashCount;
+    private final double expectedFalsePositiveRate;
+
+    private long checks;
+    private long bloomHits;
+    private long members;
+
+    private DeviceAllowlist(long[] sortedAddresses, double falsePositiveRate) {
+        addresses = sortedAddresses;
+        int n = Math.max(1, sortedAddresses.length);
+        double ln2 = Math.log(2d);
+        // Optimal bits m = -n ln p / (ln 2)^2, rounded up to a power of two for masking.
+        long optimalBits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (ln2 * ln2));
+        long roundedBits = Long.highestOneBit(optimalBits - 1) << 1;
+        int bitCount = (int) Math.min(1L << 30, Math.max(64L, roundedBits));
+        bits = new long[bitCount >>> 6];
+        bitMask = bitCount - 1;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / n * ln2));
+        expectedFalsePositiveRate = Math.pow(1d - Math.exp(-(double) hashCount * n / bitCount),
+                hashCount);
+
+        for (long address : sortedAddresses) {
+            long h = mix(address);
+            int h1 = (int) h;
+            int h2 = (int) (h >>> 32) | 1;
+            for (int i = 0; i < hashCount; i++) {
+                int bit = (h1 + i * h2) & bitMask;
+                bits[bit >>> 6] |= 1L << bit;
+            }
+        }
+    }
+
+    /**
+     * Returns an allowlist of {@code addresses}, sizing its Bloom filter for
+     * {@link #DEFAULT_FALSE_POSITIVE_RATE}.
+     */
+    public static DeviceAllowlist create(long... addresses) {
+        return create(addresses, DEFAULT_FALSE_POSITIVE_RATE);
+    }
+
+    /**
+     * Returns an allowlist of {@code addresses}, sizing its Bloom filter so that about
+     * {@code falsePositiveRate} of non-members need the exact check.
+     */
+    public static DeviceAllowlist create(long[] addresses, double falsePositiveRate) {
+        if (addresses == null) throw new NullPointerException("addresses == null");
+        if (!(falsePositiveRate > 0d && falsePositiveRate < 1d)) {
+            throw new IllegalArgumentException(
+                    "falsePositiveRate out of range: " + falsePositiveRate);
+        }
+        long[] sorted = addresses.clone();
+        Arrays.sort(sorted);
+        int count = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[count++] = sorted[i];
+            }
+        }
+        return new DeviceAllowlist(Arrays.copyOf(sorted, count), falsePositiveRate);
+    }
+
+    /**
+     * Loads an allowlist from {@code file}, which lists one address such as
+     * {@code 00:11:22:AA:BB:CC} per line. Blank lines and lines starting with {@code #} are
+     * ignored.
+     */
+    public static DeviceAllowlist load(File file) throws IOException {
+        BufferedSource source = Okio.buffer(Okio.source(file));
+        try {
+            return read(source, DEFAULT_FALSE_POSITIVE_RATE);
+        } finally {
+            source.close();
+        }
+    }
+
+    /**
+     * Reads an allowlist in the format of {@link #load} from {@code source}.
+     *
+     * @throws IOException if a line is not an address.
+     */
+    public static DeviceAllowlist read(BufferedSource source, double falsePositiveRate)
+            throws IOException {
+        long[] addresses = new long[1024];
+        int count = 0;
+        int lineNumber = 0;
+        for (String line; (line = source.readUtf8Line()) != null; ) {
+            lineNumber++;
+            line = line.trim();
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            if (count == addresses.length) {
+                addresses = Arrays.copyOf(addresses, count * 2);
+            }
+            try {
+                addresses[count++] = DeviceTable.packAddress(line);
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed address on line " + lineNumber + ": " + line);
+            }
+        }
+        return create(Arrays.copyOf(addresses, count), falsePositiveRate);
+    }
+
+    /**
+     * Returns true if {@code address} is in the allowlist.
+     */
+    public boolean contains(long address) {
+        checks++;
+        long h = mix(address);
+        int h1 = (int) h;
+        int h2 = (int) (h >>> 32) | 1;
+        for (int i = 0; i < hashCount; i++) {
+            int bit = (h1 + i * h2) & bitMask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        bloomHits++;
+        if (Arrays.binarySearch(addresses, address) < 0) {
+            return false;
+        }
+        members++;
+        return true;
+    }
+
+    /**
+     * Returns a consumer which passes only advertisements from allowed devices to
+     * {@code delegate}, for use outside a {@link ScanManager}. Registered with one, the
+     * registration's filter runs before this; pass the allowlist to
+     * {@link ScanManager#register(DeviceAllowlist, retrotooth.model.AdvertisementFilter,
+     * ScanManager.Mode, ScanManager.Consumer) register} instead.
+     */
+    public ScanManager.Consumer filter(final ScanManager.Consumer delegate) {
+        if (delegate == null) throw new NullPointerException("delegate == null");
+        return new ScanManager.Consumer() {
+            @Override
+            public void onScanResult(long address, int rssi, byte[] scanRecord) {
+                if (contains(address)) {
+                    delegate.onScanResult(address, rssi, scanRecord);
+                }
+            }
+        };
+    }
+
+    /**
+     * The number of addresses in the allowlist.
+     */
+    public int size() {
+        return addresses.length;
+    }
+
+    /**
+     * The bytes held by the Bloom filter and the sorted addresses.
+     */
+    public long memoryBytes() {
+        return bits.length * 8L + addresses.length * 8L;
+    }
+
+    public long bloomFilterBytes() {
+        return bits.length * 8L;
+    }
+
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * The fraction of non-members the Bloom filter is expected to pass to the exact check, from
+     * its size and load.
+     */
+    public double expectedFalsePositiveRate() {
+        return expectedFalsePositiveRate;
+    }
+
+    /**
+     * The fraction of non-members checked so far which the Bloom filter passed to the exact
+     * check, or NaN before any non-member has been checked.
+     */
+    public double observedFalsePositiveRate() {
+        long nonMembers = checks - members;
+        return nonMembers > 0 ? (double) (bloomHits - members) / nonMembers : Double.NaN;
+    }
+
+    /**
+     * The number of addresses checked so far.
+     */
+    public long checkCount() {
+        return checks;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceAllowlist{size=" + addresses.length
+                + ", memoryBytes=" + memoryBytes()
+                + ", bloomFilterBytes=" + bloomFilterBytes()
+                + ", hashCount=" + hashCount
+                + ", expectedFalsePositiveRate=" + expectedFalsePositiveRate
+                + ", observedFalsePositiveRate=" + observedFalsePositiveRate() + "}";
+    }
+
+    private static long mix(long address) {
+        // The 64-bit finalizer of MurmurHash3.
+        long h = address;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
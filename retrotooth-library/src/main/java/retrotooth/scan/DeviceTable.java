@@ -0,0 +1,421 @@
+package retrotooth.scan;
+
+import java.util.Arrays;
+
+/**
+ * Aggregates scan results by device, for scans which see thousands of devices. Devices are keyed
+ * by their 48-bit address packed into a {@code long} (see {@link #packAddress}) and stored in
+ * parallel primitive arrays, found through an open addressing index, so recording an
+ * advertisement is constant time and allocates nothing.
+ * <p/>
+ * Each device keeps the time it was last seen, its RSSI smoothed by an exponentially weighted
+ * moving average, the number of advertisements seen and a hash of the last payload.
+ * {@link #update} reports whether the device is new, its payload changed or its smoothed RSSI
+ * moved to another bucket, so a UI need only refresh when something visible changed. When the
+ * table is full the least recently seen device is evicted.
+ * <p/>
+ * Devices are identified by a slot, which is stable until the device is evicted or removed.
+ * Instances are not thread safe.
+ */
+public final class DeviceTable {
+    public static final int CHANGE_NONE = 0;
+    public static final int CHANGE_NEW = 1;
+    public static final int CHANGE_PAYLOAD = 1 << 1;
+    public static final int CHANGE_RSSI = 1 << 2;
+
+    public static final float DEFAULT_RSSI_ALPHA = 0.25f;
+    public static final int DEFAULT_RSSI_BUCKET = 5;
+
+    private static final int NIL = -1;
+
+    private final int capacity;
+    private final float rssiAlpha;
+    private final int rssiBucket;
+
+    // Open addressing index of slot + 1, or 0 if the cell is empty. Linear probing with
+    // backward shift deletion, so there are no tombstones.
+    private final int[] index;
+    private final int indexMask;
+
+    private final long[] addresses;
+    private final long[] lastSeen;
+    private final float[] rssis;
+    private final int[] rssiBuckets;
+    private final int[] advertCounts;
+    private final int[] payloadHashes;
+
+    // Occupied slots form a list from least to most recently seen. Free slots are chained
+    // through next.
+    private final int[] previous;
+    private final int[] next;
+    private int eldest = NIL;
+    private int youngest = NIL;
+    private int free;
+    private int size;
+
+    public DeviceTable(int capacity) {
+        this(capacity, DEFAULT_RSSI_ALPHA, DEFAULT_RSSI_BUCKET);
+    }
+
+    /**
+     * @param rssiAlpha the weight of each new RSSI sample, from 0 exclusive to 1 inclusive.
+     * @param rssiBucket the width in dB of the RSSI buckets which changes are reported for.
+     */
+    public DeviceTable(int capacity, float rssiAlpha, int rssiBucket) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        if (!(rssiAlpha > 0f && rssiAlpha <= 1f)) {
+            throw new IllegalArgumentException("rssiAlpha out of range: " + rssiAlpha);
+        }
+        if (rssiBucket <= 0) {
+            throw new IllegalArgumentException("rssiBucket <= 0");
+        }
+        this.capacity = capacity;
+        this.rssiAlpha = rssiAlpha;
+        this.rssiBucket = rssiBucket;
+
+        int indexSize = Integer.highestOneBit(capacity) << 2;
+        index = new int[indexSize];
+        indexMask = indexSize - 1;
+
+        addresses = new long[capacity];
+        lastSeen = new long[capacity];
+        rssis = new float[capacity];
+        rssiBuckets = new int[capacity];
+        advertCounts = new int[capacity];
+        payloadHashes = new int[capacity];
+        previous = new int[capacity];
+        next = new int[capacity];
+        clear();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Record an advertisement of {@code scanRecord} from {@code address}.
+     *
+     * @return the {@code CHANGE_*} flags describing what changed.
+     */
+    public int update(long address, int rssi, byte[] scanRecord, long nowMillis) {
+        return update(address, rssi, hash(scanRecord, 0, scanRecord.length), nowMillis);
+    }
+
+    /**
+     * Record an advertisement with a payload hashing to {@code payloadHash} from
+     * {@code address}.
+     *
+     * @return the {@code CHANGE_*} flags describing what changed.
+     */
+    public int update(long address, int rssi, int payloadHash, long nowMillis) {
+        int slot = indexOf(address);
+        if (slot == NIL) {
+            if (size == capacity) {
+                remove(addresses[eldest]);
+            }
+            slot = free;
+            free = next[slot];
+            addresses[slot] = address;
+            lastSeen[slot] = nowMillis;
+            rssis[slot] = rssi;
+            rssiBuckets[slot] = bucket(rssi);
+            advertCounts[slot] = 1;
+            payloadHashes[slot] = payloadHash;
+            link(slot);
+            insert(address, slot);
+            size++;
+            return CHANGE_NEW;
+        }
+
+        int changes = CHANGE_NONE;
+        lastSeen[slot] = nowMillis;
+        advertCounts[slot]++;
+        if (payloadHashes[slot] != payloadHash) {
+            payloadHashes[slot] = payloadHash;
+            changes |= CHANGE_PAYLOAD;
+        }
+        float smoothed = rssis[slot] + rssiAlpha * (rssi - rssis[slot]);
+        rssis[slot] = smoothed;
+        int bucket = bucket(smoothed);
+        if (rssiBuckets[slot] != bucket) {
+            rssiBuckets[slot] = bucket;
+            changes |= CHANGE_RSSI;
+        }
+        if (slot != youngest) {
+            unlink(slot);
+            link(slot);
+        }
+        return changes;
+    }
+
+    /**
+     * Returns the slot holding {@code address}, or -1 if it is not in the table.
+     */
+    public int indexOf(long address) {
+        for (int i = hashIndex(address); ; i = (i + 1) & indexMask) {
+            int cell = index[i];
+            if (cell == 0) {
+                return NIL;
+            }
+            if (addresses[cell - 1] == address) {
+                return cell - 1;
+            }
+        }
+    }
+
+    public long address(int slot) {
+        checkSlot(slot);
+        return addresses[slot];
+    }
+
+    public long lastSeen(int slot) {
+        checkSlot(slot);
+        return lastSeen[slot];
+    }
+
+    /**
+     * The smoothed RSSI in dBm.
+     */
+    public float rssi(int slot) {
+        checkSlot(slot);
+        return rssis[slot];
+    }
+
+    public int advertCount(int slot) {
+        checkSlot(slot);
+        return advertCounts[slot];
+    }
+
+    public int payloadHash(int slot) {
+        checkSlot(slot);
+        return payloadHashes[slot];
+    }
+
+    /**
+     * Returns the slot of the least recently seen device, or -1 if the table is empty.
+     */
+    public int eldest() {
+        return eldest;
+    }
+
+    /**
+     * Remove {@code address}, returning true if it was in the table.
+     */
+    public boolean remove(long address) {
+        int i = hashIndex(address);
+        while (true) {
+            int cell = index[i];
+            if (cell == 0) {
+                return false;
+            }
+            if (addresses[cell - 1] == address) {
+                break;
+            }
+            i = (i + 1) & indexMask;
+        }
+
+        int slot = index[i] - 1;
+        // Shift later cells of the probe sequence back over the hole.
+        for (int j = (i + 1) & indexMask; index[j] != 0; j = (j + 1) & indexMask) {
+            int home = hashIndex(addresses[index[j] - 1]);
+            if (((j - home) & indexMask) >= ((j - i) & indexMask)) {
+                index[i] = index[j];
+                i = j;
+            }
+        }
+        index[i] = 0;
+
+        unlink(slot);
+        next[slot] = free;
+        free = slot;
+        size--;
+        return true;
+    }
+
+    /**
+     * Remove devices last seen before {@code cutoffMillis}, returning how many were removed.
+     */
+    public int evictOlderThan(long cutoffMillis) {
+        int evicted = 0;
+        while (eldest != NIL && lastSeen[eldest] < cutoffMillis) {
+            remove(addresses[eldest]);
+            evicted++;
+        }
+        return evicted;
+    }
+
+    public void clear() {
+        Arrays.fill(index, 0);
+        for (int i = 0; i < capacity; i++) {
+            next[i] = i + 1 < capacity ? i + 1 : NIL;
+        }
+        free = 0;
+        eldest = NIL;
+        youngest = NIL;
+        size = 0;
+    }
+
+    /**
+     * Fill {@code slots} with the slots of the devices with the strongest smoothed RSSI,
+     * strongest first, returning how many were filled. At most {@code slots.length} are.
+     */
+    public int topByRssi(int[] slots) {
+        int k = Math.min(slots.length, size);
+        if (k == 0) {
+            return 0;
+        }
+        // Keep a min-heap of the strongest k seen so far in slots[0, count).
+        int count = 0;
+        for (int slot = eldest; slot != NIL; slot = next[slot]) {
+            if (count < k) {
+                slots[count] = slot;
+                siftUp(slots, count++);
+            } else if (rssis[slot] > rssis[slots[0]]) {
+                slots[0] = slot;
+                siftDown(slots, 0, k);
+            }
+        }
+        // Heap sort in place, which leaves the strongest first.
+        for (int end = k - 1; end > 0; end--) {
+            int weakest = slots[0];
+            slots[0] = slots[end];
+            slots[end] = weakest;
+            siftDown(slots, 0, end);
+        }
+        return k;
+    }
+
+    private void siftUp(int[] heap, int i) {
+        int slot = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (rssis[heap[parent]] <= rssis[slot]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = slot;
+    }
+
+    private void siftDown(int[] heap, int i, int size) {
+        int slot = heap[i];
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && rssis[heap[child + 1]] < rssis[heap[child]]) {
+                child++;
+            }
+            if (rssis[slot] <= rssis[heap[child]]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = slot;
+    }
+
+    private void insert(long address, int slot) {
+        int i = hashIndex(address);
+        while (index[i] != 0) {
+            i = (i + 1) & indexMask;
+        }
+        index[i] = slot + 1;
+    }
+
+    private void link(int slot) {
+        previous[slot] = youngest;
+        next[slot] = NIL;
+        if (youngest != NIL) {
+            next[youngest] = slot;
+        } else {
+            eldest = slot;
+        }
+        youngest = slot;
+    }
+
+    private void unlink(int slot) {
+        int before = previous[slot];
+        int after = next[slot];
+        if (before != NIL) {
+            next[before] = after;
+        } else {
+            eldest = after;
+        }
+        if (after != NIL) {
+            previous[after] = before;
+        } else {
+            youngest = before;
+        }
+    }
+
+    private int bucket(float rssi) {
+        return (int) Math.floor(rssi / rssiBucket);
+    }
+
+    private int hashIndex(long address) {
+        long h = address * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & indexMask;
+    }
+
+    private void checkSlot(int slot) {
+        if (slot < 0 || slot >= capacity) {
+            throw new IndexOutOfBoundsException("slot=" + slot + ", capacity=" + capacity);
+        }
+    }
+
+    /**
+     * A 32-bit FNV-1a hash of {@code length} bytes of {@code data} at {@code offset}.
+     */
+    public static int hash(byte[] data, int offset, int length) {
+        int hash = 0x811C9DC5;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash = (hash ^ (data[i] & 0xFF)) * 0x01000193;
+        }
+        return hash;
+    }
+
+    /**
+     * Packs an address formatted as {@code 00:11:22:AA:BB:CC} into the low 48 bits of a long.
+     */
+    public static long packAddress(String address) {
+        if (address == null) throw new NullPointerException("address == null");
+        if (address.length() != 17) {
+            throw new IllegalArgumentException("Malformed address: " + address);
+        }
+        long packed = 0;
+        for (int i = 0; i < 17; i += 3) {
+            int high = Character.digit(address.charAt(i), 16);
+            int low = Character.digit(address.charAt(i + 1), 16);
+            if (high < 0 || low < 0 || (i < 15 && address.charAt(i + 2) != ':')) {
+                throw new IllegalArgumentException("Malformed address: " + address);
+            }
+            packed = packed << 8 | high << 4 | low;
+        }
+        return packed;
+    }
+
+    /**
+     * Formats an address packed by {@link #packAddress} as {@code 00:11:22:AA:BB:CC}.
+     */
+    public static String formatAddress(long address) {
+        char[] chars = new char[17];
+        for (int i = 5, c = 0; i >= 0; i--) {
+            int b = (int) (address >>> (8 * i)) & 0xFF;
+            chars[c++] = Character.toUpperCase(Character.forDigit(b >>> 4, 16));
+            chars[c++] = Character.toUpperCase(Character.forDigit(b & 0xF, 16));
+            if (i > 0) {
+                chars[c++] = ':';
+            }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,324 @@
+package retrotooth.scan;
+
+import java.util.Arrays;
+
+import retrotooth.model.ScanRecordView;
+
+/**
+ * Turns a stream of advertisements into stable per-device distance estimates and zone
+ * transitions. Register it with a {@link ScanManager}, or call {@link #update} directly, and
+ * subscribe a {@link Listener} which hears only when a device moves between zones, enters or
+ * leaves.
+ * <p/>
+ * Each device's RSSI is smoothed by a one-dimensional Kalman filter, then converted to a
+ * distance with the log-distance path loss model, calibrated by the advertised TX power level
+ * when there is one. Zones are bounded by distance thresholds; a device only crosses a
+ * threshold once it is beyond it by the hysteresis fraction, so a device hovering at a boundary
+ * does not flap between zones.
+ * <p/>
+ * State lives in a {@link DeviceTable} and parallel primitive arrays, so an update is constant
+ * time and allocates nothing. Instances are not thread safe: feed them from one thread, such as
+ * the scan callback thread.
+ */
+public final class ProximityEstimator implements ScanManager.Consumer {
+    /**
+     * The zone of a device which is not present.
+     */
+    public static final int ZONE_ABSENT = -1;
+
+    /**
+     * The typical difference between the power at 0 meters, which TX power level advertises, and
+     * at 1 meter, which the path loss model is calibrated by.
+     */
+    static final int ONE_METER_LOSS = 41;
+
+    public interface Listener {
+        /**
+         * {@code address} moved from {@code previousZone} to {@code zone}, either of which may be
+         * {@link #ZONE_ABSENT}.
+         *
+         * @param distance the estimated distance in meters, or NaN when the device left.
+         */
+        void onZoneChanged(long address, int previousZone, int zone, float distance);
+    }
+
+    private final DeviceTable devices;
+    private final float[] thresholds;
+    private final float hysteresis;
+    private final float pathLossExponent;
+    private final int measuredPower;
+    private final float processNoise;
+    private final float measurementNoise;
+    private final long exitTimeoutMillis;
+    private final Listener listener;
+
+    // Per device slot: Kalman estimate and error covariance, 1 meter power, zone.
+    private final float[] estimates;
+    private final float[] covariances;
+    private final int[] referencePowers;
+    private final int[] zones;
+
+    private final ScanRecordView view = new ScanRecordView();
+
+    private ProximityEstimator(Builder builder) {
+        devices = new DeviceTable(builder.capacity);
+        thresholds = builder.thresholds;
+        hysteresis = builder.hysteresis;
+        pathLossExponent = builder.pathLossExponent;
+        measuredPower = builder.measuredPower;
+        processNoise = builder.processNoise;
+        measurementNoise = builder.measurementNoise;
+        exitTimeoutMillis = builder.exitTimeoutMillis;
+        listener = builder.listener;
+
+        estimates = new float[builder.capacity];
+        covariances = new float[builder.capacity];
+        referencePowers = new int[builder.capacity];
+        zones = new int[builder.capacity];
+    }
+
+    /**
+     * Reads the TX power level from the advertisement, if any, and records it now.
+     */
+    @Override
+    public void onScanResult(long address, int rssi, byte[] scanRecord) {
+        view.wrap(scanRecord);
+        update(address, rssi, view.txPowerLevel(), System.currentTimeMillis());
+    }
+
+    /**
+     * Record an advertisement received from {@code address} at {@code rssi} dBm.
+     *
+     * @param txPowerLevel the advertised TX power level in dBm, or {@link Integer#MIN_VALUE} to
+     * use the builder's measured power.
+     * @return the device's zone.
+     */
+    public int update(long address, int rssi, int txPowerLevel, long nowMillis) {
+        if (devices.indexOf(address) == -1 && devices.size() == devices.capacity()) {
+            // Make room ourselves so the evicted device's listeners hear it leave.
+            leave(devices.eldest());
+        }
+        int changes = devices.update(address, rssi, 0, nowMillis);
+        int slot = devices.indexOf(address);
+        int referencePower = txPowerLevel != Integer.MIN_VALUE
+                ? txPowerLevel - ONE_METER_LOSS
+                : measuredPower;
+
+        float estimate;
+        if ((changes & DeviceTable.CHANGE_NEW) != 0) {
+            estimate = rssi;
+            covariances[slot] = measurementNoise;
+            zones[slot] = ZONE_ABSENT;
+        } else {
+            float covariance = covariances[slot] + processNoise;
+            float gain = covariance / (covariance + measurementNoise);
+            estimate = estimates[slot] + gain * (rssi - estimates[slot]);
+            covariances[slot] = (1f - gain) * covariance;
+        }
+        estimates[slot] = estimate;
+        referencePowers[slot] = referencePower;
+
+        float distance = distance(estimate, referencePower);
+        int previous = zones[slot];
+        int zone = zone(previous, distance);
+        if (zone != previous) {
+            zones[slot] = zone;
+            if (listener != null) {
+                listener.onZoneChanged(address, previous, zone, distance);
+            }
+        }
+        return zone;
+    }
+
+    /**
+     * Remove devices not seen for the exit timeout, notifying the listener that they left.
+     * Call this periodically.
+     *
+     * @return the number of devices which left.
+     */
+    public int expire(long nowMillis) {
+        long cutoff = nowMillis - exitTimeoutMillis;
+        int expired = 0;
+        for (int slot; (slot = devices.eldest()) != -1 && devices.lastSeen(slot) < cutoff; ) {
+            leave(slot);
+            expired++;
+        }
+        return expired;
+    }
+
+    /**
+     * Returns the zone of {@code address}, or {@link #ZONE_ABSENT}.
+     */
+    public int zone(long address) {
+        int slot = devices.indexOf(address);
+        return slot != -1 ? zones[slot] : ZONE_ABSENT;
+    }
+
+    /**
+     * Returns the estimated distance in meters to {@code address}, or NaN if it is absent.
+     */
+    public float distance(long address) {
+        int slot = devices.indexOf(address);
+        return slot != -1 ? distance(estimates[slot], referencePowers[slot]) : Float.NaN;
+    }
+
+    /**
+     * Returns the filtered RSSI in dBm of {@code address}, or NaN if it is absent.
+     */
+    public float rssi(long address) {
+        int slot = devices.indexOf(address);
+        return slot != -1 ? estimates[slot] : Float.NaN;
+    }
+
+    /**
+     * The number of devices present.
+     */
+    public int size() {
+        return devices.size();
+    }
+
+    private void leave(int slot) {
+        long address = devices.address(slot);
+        int previous = zones[slot];
+        devices.remove(address);
+        if (previous != ZONE_ABSENT && listener != null) {
+            listener.onZoneChanged(address, previous, ZONE_ABSENT, Float.NaN);
+        }
+    }
+
+    private float distance(float rssi, int referencePower) {
+        return (float) Math.pow(10d, (referencePower - rssi) / (10d * pathLossExponent));
+    }
+
+    /**
+     * Returns the zone for {@code distance}, staying in {@code current} unless the distance is
+     * past the threshold by the hysteresis margin.
+     */
+    private int zone(int current, float distance) {
+        int zone = 0;
+        while (zone < thresholds.length && distance > thresholds[zone]) {
+            zone++;
+        }
+        if (current == ZONE_ABSENT || zone == current) {
+            return zone;
+        }
+        if (zone < current) {
+            // Closer: move in only as far as the margin inside each threshold allows.
+            while (zone < current && distance > thresholds[zone] * (1f - hysteresis)) {
+                zone++;
+            }
+        } else {
+            // Farther: move out only as far as the margin outside each threshold allows.
+            while (zone > current && distance < thresholds[zone - 1] * (1f + hysteresis)) {
+                zone--;
+            }
+        }
+        return zone;
+    }
+
+    public static final class Builder {
+        private static final float[] DEFAULT_THRESHOLDS = {0.5f, 3f, 10f};
+
+        int capacity = 1024;
+        float[] thresholds = DEFAULT_THRESHOLDS;
+        float hysteresis = 0.2f;
+        float pathLossExponent = 2f;
+        int measuredPower = -59;
+        float processNoise = 0.05f;
+        float measurementNoise = 9f;
+        long exitTimeoutMillis = 10000;
+        Listener listener;
+
+        /**
+         * The most devices tracked at once. The least recently seen device leaves to make room.
+         */
+        public Builder capacity(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("capacity <= 0");
+            }
+            this.capacity = capacity;
+            return this;
+        }
+
+        /**
+         * The outer bound in meters of each zone, nearest first. A device beyond the last
+         * threshold is in zone {@code thresholds.length}.
+         */
+        public Builder zoneThresholds(float... thresholds) {
+            if (thresholds == null) throw new NullPointerException("thresholds == null");
+            for (int i = 0; i < thresholds.length; i++) {
+                if (!(thresholds[i] > 0f) || (i > 0 && thresholds[i] <= thresholds[i - 1])) {
+                    throw new IllegalArgumentException(
+                            "thresholds must be positive and ascending: "
+                                    + Arrays.toString(thresholds));
+                }
+            }
+            this.thresholds = thresholds.clone();
+            return this;
+        }
+
+        /**
+         * The fraction of a threshold by which a device must cross it to change zone.
+         */
+        public Builder hysteresis(float hysteresis) {
+            if (!(hysteresis >= 0f && hysteresis < 1f)) {
+                throw new IllegalArgumentException("hysteresis out of range: " + hysteresis);
+            }
+            this.hysteresis = hysteresis;
+            return this;
+        }
+
+        /**
+         * The path loss exponent: 2 in free space, 2.7 to 4 indoors.
+         */
+        public Builder pathLossExponent(float pathLossExponent) {
+            if (!(pathLossExponent > 0f)) {
+                throw new IllegalArgumentException(
+                        "pathLossExponent out of range: " + pathLossExponent);
+            }
+            this.pathLossExponent = pathLossExponent;
+            return this;
+        }
+
+        /**
+         * The RSSI in dBm at 1 meter of devices which do not advertise their TX power level.
+         */
+        public Builder measuredPower(int measuredPower) {
+            this.measuredPower = measuredPower;
+            return this;
+        }
+
+        /**
+         * The Kalman filter's process and measurement noise variances. A higher ratio of process
+         * to measurement noise follows changes faster but smooths less.
+         */
+        public Builder noise(float processNoise, float measurementNoise) {
+            if (!(processNoise > 0f) || !(measurementNoise > 0f)) {
+                throw new IllegalArgumentException("noise must be positive");
+            }
+            this.processNoise = processNoise;
+            this.measurementNoise = measurementNoise;
+            return this;
+        }
+
+        /**
+         * How long a device may go unseen before {@link #expire} reports it left.
+         */
+        public Builder exitTimeoutMillis(long exitTimeoutMillis) {
+            if (exitTimeoutMillis <= 0) {
+                throw new IllegalArgumentException("exitTimeoutMillis <= 0");
+            }
+            this.exitTimeoutMillis = exitTimeoutMillis;
+            return this;
+        }
+
+        public Builder listener(Listener listener) {
+            this.listener = listener;
+            return this;
+        }
+
+        public ProximityEstimator build() {
+            return new ProximityEstimator(this);
+        }
+    }
+}
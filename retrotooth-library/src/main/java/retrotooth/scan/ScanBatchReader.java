@@ -0,0 +1,270 @@
+package retrotooth.scan;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import okio.BufferedSource;
+
+/**
+ * Decodes a stream of batches written by {@link ScanBatchWriter}, such as a spool file or a
+ * socket, one batch at a time:
+ * <pre>
+ * ScanBatchReader reader = new ScanBatchReader(source);
+ * while (reader.next()) {
+ *     for (int i = 0; i &lt; reader.count(); i++) {
+ *         upload(reader.timeMillis(i), reader.address(i), reader.rssi(i),
+ *                 reader.payloadArray(), reader.payloadOffset(i), reader.payloadLength(i));
+ *     }
+ * }
+ * </pre>
+ * Only the current batch is held in memory, in buffers reused from batch to batch. Payloads are
+ * read in place from the batch rather than copied out. Instances are not thread safe.
+ */
+public final class ScanBatchReader {
+    public static final int DEFAULT_MAX_BATCH_SIZE = 16 * 1024 * 1024;
+
+    private final BufferedSource source;
+    private final int maxBatchSize;
+    private final CRC32 crc = new CRC32();
+
+    private byte[] body = new byte[1024];
+    private int bodySize;
+    private int pos;
+
+    private int count;
+    private long[] times = new long[64];
+    private long[] addresses = new long[64];
+    private int rssiOffset;
+    private int[] payloadOffsets = new int[64];
+    private int[] payloadLengths = new int[64];
+
+    private long[] addressDictionary = new long[64];
+    private int[] payloadDictionaryOffsets = new int[64];
+    private int[] payloadDictionaryLengths = new int[64];
+
+    public ScanBatchReader(BufferedSource source) {
+        this(source, DEFAULT_MAX_BATCH_SIZE);
+    }
+
+    public ScanBatchReader(BufferedSource source, int maxBatchSize) {
+        if (source == null) throw new NullPointerException("source == null");
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("maxBatchSize < 1: " + maxBatchSize);
+        }
+        this.source = source;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    /**
+     * Read the next batch, replacing the current one.
+     *
+     * @return false if the stream ended cleanly between batches.
+     * @throws EOFException if the stream ended part way through a batch.
+     * @throws ProtocolException if the batch is corrupt or exceeds the maximum batch size.
+     */
+    public boolean next() throws IOException {
+        count = 0;
+        if (source.exhausted()) {
+            return false;
+        }
+        long length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (shift > 28) {
+                throw new ProtocolException("Malformed batch length");
+            }
+            // Required first, as a Buffer throws IllegalStateException rather than EOFException.
+            source.require(1);
+            byte b = source.readByte();
+            length |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        if (length > maxBatchSize) {
+            throw new ProtocolException(
+                    "Batch of " + length + " bytes exceeds maximum of " + maxBatchSize);
+        }
+        bodySize = (int) length;
+        if (body.length < bodySize) {
+            body = new byte[Math.max(bodySize, Math.min(maxBatchSize, body.length * 2))];
+        }
+        for (int read = 0; read < bodySize; ) {
+            int n = source.read(body, read, bodySize - read);
+            if (n == -1) {
+                throw new EOFException();
+            }
+            read += n;
+        }
+        source.require(4);
+        int checksum = source.readInt();
+        crc.reset();
+        crc.update(body, 0, bodySize);
+        if ((int) crc.getValue() != checksum) {
+            throw new ProtocolException("Batch checksum mismatch");
+        }
+        decode();
+        return true;
+    }
+
+    /**
+     * The number of observations in the current batch.
+     */
+    public int count() {
+        return count;
+    }
+
+    public long timeMillis(int i) {
+        checkIndex(i);
+        return times[i];
+    }
+
+    /**
+     * The advertiser's address, packed as by {@link DeviceTable#packAddress}.
+     */
+    public long address(int i) {
+        checkIndex(i);
+        return addresses[i];
+    }
+
+    public int rssi(int i) {
+        checkIndex(i);
+        return body[rssiOffset + i];
+    }
+
+    /**
+     * The array holding every payload of the current batch, valid until the next batch is read.
+     */
+    public byte[] payloadArray() {
+        return body;
+    }
+
+    public int payloadOffset(int i) {
+        checkIndex(i);
+        return payloadOffsets[i];
+    }
+
+    public int payloadLength(int i) {
+        checkIndex(i);
+        return payloadLengths[i];
+    }
+
+    /**
+     * Returns a copy of the scan record of observation {@code i}.
+     */
+    public byte[] payload(int i) {
+        checkIndex(i);
+        return Arrays.copyOfRange(body, payloadOffsets[i], payloadOffsets[i] + payloadLengths[i]);
+    }
+
+    private void decode() throws ProtocolException {
+        pos = 0;
+        int version = readByte() & 0xFF;
+        if (version != ScanBatchWriter.VERSION) {
+            throw new ProtocolException("Unsupported batch version " + version);
+        }
+        int count = readCount(1);
+
+        int addressCount = readCount(6);
+        if (addressDictionary.length < addressCount) {
+            addressDictionary = new long[addressCount];
+        }
+        for (int i = 0; i < addressCount; i++) {
+            long address = 0;
+            for (int j = 0; j < 6; j++) {
+                address = address << 8 | (body[pos++] & 0xFF);
+            }
+            addressDictionary[i] = address;
+        }
+
+        int payloadCount = readCount(1);
+        if (payloadDictionaryOffsets.length < payloadCount) {
+            payloadDictionaryOffsets = new int[payloadCount];
+            payloadDictionaryLengths = new int[payloadCount];
+        }
+        for (int i = 0; i < payloadCount; i++) {
+            int length = readCount(1);
+            payloadDictionaryOffsets[i] = pos;
+            payloadDictionaryLengths[i] = length;
+            pos += length;
+        }
+
+        if (times.length < count) {
+            int capacity = Math.max(count, times.length * 2);
+            times = new long[capacity];
+            addresses = new long[capacity];
+            payloadOffsets = new int[capacity];
+            payloadLengths = new int[capacity];
+        }
+        long time = 0;
+        for (int i = 0; i < count; i++) {
+            long zigZag = readVarint();
+            time += (zigZag >>> 1) ^ -(zigZag & 1);
+            times[i] = time;
+        }
+        for (int i = 0; i < count; i++) {
+            addresses[i] = addressDictionary[readId(addressCount)];
+        }
+        if (bodySize - pos < count) {
+            throw new ProtocolException("Truncated batch");
+        }
+        rssiOffset = pos;
+        pos += count;
+        for (int i = 0; i < count; i++) {
+            int id = readId(payloadCount);
+            payloadOffsets[i] = payloadDictionaryOffsets[id];
+            payloadLengths[i] = payloadDictionaryLengths[id];
+        }
+        if (pos != bodySize) {
+            throw new ProtocolException("Trailing bytes in batch");
+        }
+        this.count = count;
+    }
+
+    /**
+     * Reads a count of items at least {@code minItemSize} bytes each, which must fit in what is
+     * left of the body.
+     */
+    private int readCount(int minItemSize) throws ProtocolException {
+        long value = readVarint();
+        if (value > (bodySize - pos) / minItemSize) {
+            throw new ProtocolException("Truncated batch");
+        }
+        return (int) value;
+    }
+
+    private int readId(int limit) throws ProtocolException {
+        long id = readVarint();
+        if (id >= limit) {
+            throw new ProtocolException("Dictionary index " + id + " out of range");
+        }
+        return (int) id;
+    }
+
+    private long readVarint() throws ProtocolException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+
+    private byte readByte() throws ProtocolException {
+        if (pos == bodySize) {
+            throw new ProtocolException("Truncated batch");
+        }
+        return body[pos++];
+    }
+
+    private void checkIndex(int i) {
+        if (i < 0 || i >= count) {
+            throw new IndexOutOfBoundsException("index=" + i + ", count=" + count);
+        }
+    }
+}
@@ -0,0 +1,310 @@
+package retrotooth.scan;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import okio.BufferedSink;
+
+/**
+ * Packs scan results into compact columnar batches for forwarding upstream. Observations are
+ * {@linkplain #add added} one at a time, then {@linkplain #writeTo written} as one frame, which
+ * {@link ScanBatchReader} decodes.
+ * <p/>
+ * Each column is stored contiguously: timestamps as deltas from the previous observation,
+ * addresses as indexes into a dictionary of the batch's distinct addresses, RSSI as one signed
+ * byte and advertisements as indexes into a dictionary of the batch's distinct payloads. Devices
+ * advertise the same payload many times over, so a batch is typically a small fraction of the
+ * size of its observations written out one by one.
+ * <p/>
+ * A frame is a varint body length, the body, then the CRC-32 of the body in 4 bytes. The body is:
+ * <pre>
+ * version        1 byte, {@link #VERSION}
+ * count          varint
+ * addressCount   varint
+ * addresses      addressCount * 6 bytes, big-endian
+ * payloadCount   varint
+ * payloads       payloadCount * (varint length, bytes)
+ * times          count * zig-zag varint milliseconds, the first absolute, the rest deltas
+ * addressIds     count * varint
+ * rssis          count * 1 signed byte
+ * payloadIds     count * varint
+ * </pre>
+ * Adding an observation allocates only when a column or dictionary grows. Instances are not
+ * thread safe.
+ */
+public final class ScanBatchWriter {
+    public static final int VERSION = 1;
+
+    private int count;
+    private long[] times = new long[64];
+    private int[] addressIds = new int[64];
+    private byte[] rssis = new byte[64];
+    private int[] payloadIds = new int[64];
+
+    // Distinct addresses, found through an open addressing index of id + 1, or 0 if empty.
+    private int addressCount;
+    private long[] addresses = new long[64];
+    private int[] addressIndex = new int[128];
+
+    // Distinct payloads, concatenated in payloadBytes, found through an index like addresses'.
+    private int payloadCount;
+    private byte[] payloadBytes = new byte[4096];
+    private int payloadSize;
+    private int[] payloadOffsets = new int[64];
+    private int[] payloadLengths = new int[64];
+    private int[] payloadHashes = new int[64];
+    private int[] payloadIndex = new int[128];
+
+    // The exact size of the body's dictionaries and columns, maintained as observations are
+    // added.
+    private long columnsSize;
+
+    private final byte[] header = new byte[5];
+    private byte[] body = new byte[1024];
+    private final CRC32 crc = new CRC32();
+
+    /**
+     * Add an observation of {@code scanRecord} from {@code address}.
+     */
+    public void add(long timeMillis, long address, int rssi, byte[] scanRecord) {
+        add(timeMillis, address, rssi, scanRecord, 0, scanRecord.length);
+    }
+
+    /**
+     * Add an observation of the {@code length} bytes of {@code scanRecord} at {@code offset}.
+     */
+    public void add(long timeMillis, long address, int rssi, byte[] scanRecord, int offset,
+            int length) {
+        if (scanRecord == null) throw new NullPointerException("scanRecord == null");
+        if (offset < 0 || length < 0 || offset + length > scanRecord.length) {
+            throw new ArrayIndexOutOfBoundsException(
+                    "length=" + scanRecord.length + ", offset=" + offset + ", count=" + length);
+        }
+        if (count == times.length) {
+            int capacity = count * 2;
+            times = Arrays.copyOf(times, capacity);
+            addressIds = Arrays.copyOf(addressIds, capacity);
+            rssis = Arrays.copyOf(rssis, capacity);
+            payloadIds = Arrays.copyOf(payloadIds, capacity);
+        }
+        long time = count == 0 ? timeMillis : timeMillis - times[count - 1];
+        int addressId = addressId(address);
+        int payloadId = payloadId(scanRecord, offset, length);
+        times[count] = timeMillis;
+        addressIds[count] = addressId;
+        rssis[count] = (byte) Math.max(Byte.MIN_VALUE, Math.min(Byte.MAX_VALUE, rssi));
+        payloadIds[count] = payloadId;
+        count++;
+        columnsSize += varintSize(zigZag(time)) + varintSize(addressId) + 1
+                + varintSize(payloadId);
+    }
+
+    /**
+     * The number of observations added since the last write.
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * The time of the first observation added since the last write.
+     *
+     * @throws IllegalStateException if there are no observations.
+     */
+    public long firstTimeMillis() {
+        if (count == 0) {
+            throw new IllegalStateException("No observations");
+        }
+        return times[0];
+    }
+
+    /**
+     * The exact number of bytes {@link #writeTo} would write now.
+     */
+    public long frameSize() {
+        long bodySize = bodySize();
+        return varintSize(bodySize) + bodySize + 4;
+    }
+
+    /**
+     * Write the observations as one frame to {@code sink} and reset, ready for the next batch.
+     * Does nothing if there are no observations.
+     */
+    public void writeTo(BufferedSink sink) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        long bodySize = bodySize();
+        if (bodySize > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("Batch too large: " + bodySize + " bytes");
+        }
+        if (body.length < bodySize) {
+            body = new byte[(int) Math.max(bodySize, body.length * 2L)];
+        }
+        byte[] body = this.body;
+        int pos = 0;
+        body[pos++] = VERSION;
+        pos = writeVarint(body, pos, count);
+
+        pos = writeVarint(body, pos, addressCount);
+        for (int i = 0; i < addressCount; i++) {
+            long address = addresses[i];
+            for (int shift = 40; shift >= 0; shift -= 8) {
+                body[pos++] = (byte) (address >>> shift);
+            }
+        }
+        pos = writeVarint(body, pos, payloadCount);
+        for (int i = 0; i < payloadCount; i++) {
+            pos = writeVarint(body, pos, payloadLengths[i]);
+            System.arraycopy(payloadBytes, payloadOffsets[i], body, pos, payloadLengths[i]);
+            pos += payloadLengths[i];
+        }
+
+        long previous = 0;
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(body, pos, zigZag(times[i] - previous));
+            previous = times[i];
+        }
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(body, pos, addressIds[i]);
+        }
+        System.arraycopy(rssis, 0, body, pos, count);
+        pos += count;
+        for (int i = 0; i < count; i++) {
+            pos = writeVarint(body, pos, payloadIds[i]);
+        }
+
+        crc.reset();
+        crc.update(body, 0, pos);
+        sink.write(header, 0, writeVarint(header, 0, pos));
+        sink.write(body, 0, pos);
+        sink.writeInt((int) crc.getValue());
+        reset();
+    }
+
+    /**
+     * Discard the observations added since the last write.
+     */
+    public void reset() {
+        count = 0;
+        addressCount = 0;
+        Arrays.fill(addressIndex, 0);
+        payloadCount = 0;
+        payloadSize = 0;
+        Arrays.fill(payloadIndex, 0);
+        columnsSize = 0;
+    }
+
+    private long bodySize() {
+        return 1 + varintSize(count) + varintSize(addressCount) + varintSize(payloadCount)
+                + columnsSize;
+    }
+
+    private int addressId(long address) {
+        int mask = addressIndex.length - 1;
+        int i = mix(address) & mask;
+        for (int cell; (cell = addressIndex[i]) != 0; i = (i + 1) & mask) {
+            if (addresses[cell - 1] == address) {
+                return cell - 1;
+            }
+        }
+        int id = addressCount++;
+        if (id == addresses.length) {
+            addresses = Arrays.copyOf(addresses, id * 2);
+        }
+        addresses[id] = address;
+        addressIndex[i] = id + 1;
+        if (addressCount * 2 > addressIndex.length) {
+            addressIndex = new int[addressIndex.length * 2];
+            mask = addressIndex.length - 1;
+            for (int j = 0; j < addressCount; j++) {
+                int k = mix(addresses[j]) & mask;
+                while (addressIndex[k] != 0) {
+                    k = (k + 1) & mask;
+                }
+                addressIndex[k] = j + 1;
+            }
+        }
+        columnsSize += 6;
+        return id;
+    }
+
+    private int payloadId(byte[] data, int offset, int length) {
+        int hash = DeviceTable.hash(data, offset, length);
+        int mask = payloadIndex.length - 1;
+        int i = mix(hash) & mask;
+        for (int cell; (cell = payloadIndex[i]) != 0; i = (i + 1) & mask) {
+            int id = cell - 1;
+            if (payloadHashes[id] == hash && payloadLengths[id] == length
+                    && equals(payloadBytes, payloadOffsets[id], data, offset, length)) {
+                return id;
+            }
+        }
+        int id = payloadCount++;
+        if (id == payloadOffsets.length) {
+            payloadOffsets = Arrays.copyOf(payloadOffsets, id * 2);
+            payloadLengths = Arrays.copyOf(payloadLengths, id * 2);
+            payloadHashes = Arrays.copyOf(payloadHashes, id * 2);
+        }
+        if (payloadSize + length > payloadBytes.length) {
+            payloadBytes = Arrays.copyOf(payloadBytes,
+                    Math.max(payloadSize + length, payloadBytes.length * 2));
+        }
+        System.arraycopy(data, offset, payloadBytes, payloadSize, length);
+        payloadOffsets[id] = payloadSize;
+        payloadLengths[id] = length;
+        payloadHashes[id] = hash;
+        payloadSize += length;
+        payloadIndex[i] = id + 1;
+        if (payloadCount * 2 > payloadIndex.length) {
+            payloadIndex = new int[payloadIndex.length * 2];
+            mask = payloadIndex.length - 1;
+            for (int j = 0; j < payloadCount; j++) {
+                int k = mix(payloadHashes[j]) & mask;
+                while (payloadIndex[k] != 0) {
+                    k = (k + 1) & mask;
+                }
+                payloadIndex[k] = j + 1;
+            }
+        }
+        columnsSize += varintSize(length) + length;
+        return id;
+    }
+
+    private static boolean equals(byte[] a, int aOffset, byte[] b, int bOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[aOffset + i] != b[bOffset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(long value) {
+        long h = value * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static int varintSize(long value) {
+        int size = 1;
+        while ((value & ~0x7FL) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static int writeVarint(byte[] data, int pos, long value) {
+        while ((value & ~0x7FL) != 0) {
+            data[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        data[pos++] = (byte) value;
+        return pos;
+    }
+}
@@ -0,0 +1,498 @@
+package retrotooth.scan;
+
+import android.annotation.TargetApi;
+import android.bluetooth.BluetoothAdapter;
+import android.bluetooth.BluetoothDevice;
+import android.bluetooth.le.BluetoothLeScanner;
+import android.bluetooth.le.ScanCallback;
+import android.bluetooth.le.ScanRecord;
+import android.bluetooth.le.ScanResult;
+import android.bluetooth.le.ScanSettings;
+import android.os.Build;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+
+import retrotooth.Internal;
+import retrotooth.model.AdvertisementFilter;
+
+/**
+ * Runs a single physical scan on behalf of any number of consumers. Each consumer registers with
+ * an {@link AdvertisementFilter}, evaluated on the raw advertisement before it is delivered,
+ * optionally a {@link DeviceAllowlist} checked before that, and a {@link Mode}. The scan runs in
+ * the duty cycle of the most demanding mode registered and stops once the last consumer
+ * unregisters.
+ * <p/>
+ * Android silently stops delivering results to apps which start scans more than
+ * {@link #MAX_STARTS} times in {@link #START_WINDOW_MILLIS}. Starts are counted, and rather than
+ * exceed the budget the next window is delayed until a start is allowed, lowering the duty cycle
+ * of modes whose interval is shorter than the budget permits.
+ * <p/>
+ * Results are delivered on the thread the scanner calls back on, so consumers must be quick. A
+ * consumer which throws is logged and skipped; the others still receive the result.
+ */
+public final class ScanManager {
+    public static final int MAX_STARTS = 5;
+    public static final long START_WINDOW_MILLIS = 30000;
+
+    /**
+     * How long to scan for in each interval. The predefined modes match the duty cycles of
+     * Android's own scan modes; {@link #create} makes others.
+     */
+    public static final class Mode {
+        public static final Mode LOW_POWER = new Mode(512, 5120);
+        public static final Mode BALANCED = new Mode(1024, 4096);
+        public static final Mode LOW_LATENCY = new Mode(4096, 4096);
+
+        /**
+         * Scan for {@code windowMillis} out of every {@code intervalMillis}. A window as long as
+         * the interval scans continuously.
+         */
+        public static Mode create(long windowMillis, long intervalMillis) {
+            if (windowMillis <= 0) {
+                throw new IllegalArgumentException("windowMillis <= 0: " + windowMillis);
+            }
+            if (intervalMillis < windowMillis) {
+                throw new IllegalArgumentException("intervalMillis < windowMillis: "
+                        + intervalMillis + " < " + windowMillis);
+            }
+            return new Mode(windowMillis, intervalMillis);
+        }
+
+        final long windowMillis;
+        final long intervalMillis;
+
+        private Mode(long windowMillis, long intervalMillis) {
+            this.windowMillis = windowMillis;
+            this.intervalMillis = intervalMillis;
+        }
+
+        public long windowMillis() {
+            return windowMillis;
+        }
+
+        public long intervalMillis() {
+            return intervalMillis;
+        }
+
+        /**
+         * The fraction of the time spent scanning.
+         */
+        public double dutyCycle() {
+            return (double) windowMillis / intervalMillis;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Mode)) {
+                return false;
+            }
+            Mode other = (Mode) o;
+            return windowMillis == other.windowMillis && intervalMillis == other.intervalMillis;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (int) (windowMillis ^ (windowMillis >>> 32))
+                    + (int) (intervalMillis ^ (intervalMillis >>> 32));
+        }
+
+        @Override
+        public String toString() {
+            return "Mode{window=" + windowMillis + "ms, interval=" + intervalMillis + "ms}";
+        }
+    }
+
+    /**
+     * The physical scanner.
+     */
+    public interface Scanner {
+        /**
+         * Start scanning, delivering each advertisement to {@code callback}. Returns false if the
+         * scan could not be started.
+         */
+        boolean start(Consumer callback);
+
+        void stop();
+    }
+
+    /**
+     * Receives the advertisements which matched its filter.
+     */
+    public interface Consumer {
+        /**
+         * @param address the advertiser's address, packed as by {@link DeviceTable#packAddress}.
+         */
+        void onScanResult(long address, int rssi, byte[] scanRecord);
+    }
+
+    public final class Registration {
+        final DeviceAllowlist allowlist;
+        final AdvertisementFilter filter;
+        final Mode mode;
+        final Consumer consumer;
+
+        Registration(DeviceAllowlist allowlist, AdvertisementFilter filter, Mode mode,
+                Consumer consumer) {
+            this.allowlist = allowlist;
+            this.filter = filter;
+            this.mode = mode;
+            this.consumer = consumer;
+        }
+
+        public void unregister() {
+            ScanManager.this.unregister(this);
+        }
+    }
+
+    private final Scanner scanner;
+    private final ScheduledExecutorService scheduler;
+
+    // Copied on write, so results are delivered without locking.
+    private volatile Registration[] registrations = new Registration[0];
+
+    // Confined to the scheduler. The most recent start times, oldest at startIndex once full.
+    private final long[] starts = new long[MAX_STARTS];
+    private int startIndex;
+    private int startCount;
+    private boolean scanning;
+    private long windowMillis;
+    private long intervalMillis;
+    private ScheduledFuture<?> next;
+
+    // Fans each advertisement from the scanner out to the registrations it matches.
+    private final Consumer dispatcher = new Consumer() {
+        @Override
+        public void onScanResult(long address, int rssi, byte[] scanRecord) {
+            for (Registration registration : registrations) {
+                try {
+                    // The address check is far cheaper than parsing the record for the filter.
+                    if (registration.allowlist != null
+                            && !registration.allowlist.contains(address)) {
+                        continue;
+                    }
+                    if (registration.filter == null
+                            || registration.filter.matches(scanRecord, rssi)) {
+                        registration.consumer.onScanResult(address, rssi, scanRecord);
+                    }
+                } catch (RuntimeException e) {
+                    // One failing consumer must not starve the others of results.
+                    Internal.logger.log(Level.WARNING, "Scan consumer " + registration.consumer
+                            + " failed", e);
+                }
+            }
+        }
+    };
+    private final Runnable windowStart = new Runnable() {
+        @Override
+        public void run() {
+            windowStart();
+        }
+    };
+    private final Runnable windowEnd = new Runnable() {
+        @Override
+        public void run() {
+            windowEnd();
+        }
+    };
+
+    /**
+     * Scan with {@code adapter}: through its {@link BluetoothLeScanner} on API 21 and later, where
+     * the API 18 scan methods are deprecated, and with those methods before.
+     */
+    public static ScanManager create(BluetoothAdapter adapter) {
+        if (adapter == null) throw new NullPointerException("adapter == null");
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Retrotooth Scan Manager");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        Scanner scanner = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                ? new LollipopScanner(adapter)
+                : new LeScanner(adapter);
+        return new ScanManager(scanner, scheduler);
+    }
+
+    /**
+     * @param scheduler must run one task at a time; all scanner calls are made from it.
+     */
+    public ScanManager(Scanner scanner, ScheduledExecutorService scheduler) {
+        if (scanner == null) throw new NullPointerException("scanner == null");
+        if (scheduler == null) throw new NullPointerException("scheduler == null");
+        this.scanner = scanner;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Deliver advertisements matching {@code filter}, or all of them if it is null, to
+     * {@code consumer}, scanning at least as often as {@code mode}.
+     */
+    public Registration register(AdvertisementFilter filter, Mode mode, Consumer consumer) {
+        return register(null, filter, mode, consumer);
+    }
+
+    /**
+     * Deliver advertisements from devices in {@code allowlist} which match {@code filter} to
+     * {@code consumer}, scanning at least as often as {@code mode}. Advertisements from other
+     * devices are dropped by address before the filter parses them. Either may be null to accept
+     * everything it would check.
+     */
+    public Registration register(DeviceAllowlist allowlist, AdvertisementFilter filter, Mode mode,
+            Consumer consumer) {
+        if (mode == null) throw new NullPointerException("mode == null");
+        if (consumer == null) throw new NullPointerException("consumer == null");
+        final Registration registration = new Registration(allowlist, filter, mode, consumer);
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                Registration[] current = registrations;
+                Registration[] updated = Arrays.copyOf(current, current.length + 1);
+                updated[current.length] = registration;
+                registrations = updated;
+                reschedule();
+            }
+        });
+        return registration;
+    }
+
+    void unregister(final Registration registration) {
+        scheduler.execute(new Runnable() {
+            @Override
+            public void run() {
+                Registration[] current = registrations;
+                for (int i = 0; i < current.length; i++) {
+                    if (current[i] == registration) {
+                        Registration[] updated = new Registration[current.length - 1];
+                        System.arraycopy(current, 0, updated, 0, i);
+                        System.arraycopy(current, i + 1, updated, i, updated.length - i);
+                        registrations = updated;
+                        reschedule();
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Merge the modes of all registrations and restart the duty cycle with the result.
+     */
+    private void reschedule() {
+        if (next != null) {
+            next.cancel(false);
+            next = null;
+        }
+        Registration[] current = registrations;
+        if (current.length == 0) {
+            stop();
+            return;
+        }
+        // The most demanding requirement wins: the longest window, then the shortest interval.
+        long window = 0;
+        long interval = Long.MAX_VALUE;
+        for (Registration registration : current) {
+            window = Math.max(window, registration.mode.windowMillis);
+            interval = Math.min(interval, registration.mode.intervalMillis);
+        }
+        windowMillis = window;
+        intervalMillis = Math.max(window, interval);
+        if (scanning) {
+            scheduleWindowEnd(windowMillis);
+        } else {
+            windowStart();
+        }
+    }
+
+    private void windowStart() {
+        long now = now();
+        long allowedAt = nextStartAllowedAt(now);
+        if (allowedAt > now) {
+            schedule(windowStart, allowedAt - now);
+            return;
+        }
+        starts[startIndex] = now;
+        startIndex = (startIndex + 1) % MAX_STARTS;
+        if (startCount < MAX_STARTS) {
+            startCount++;
+        }
+        scanning = scanner.start(dispatcher);
+        if (!scanning) {
+            // Try again next interval rather than spin against a failing radio.
+            schedule(windowStart, intervalMillis);
+            return;
+        }
+        scheduleWindowEnd(windowMillis);
+    }
+
+    private void windowEnd() {
+        if (windowMillis >= intervalMillis) {
+            // Continuous: nothing to do until the requirements change.
+            return;
+        }
+        stop();
+        schedule(windowStart, intervalMillis - windowMillis);
+    }
+
+    private void scheduleWindowEnd(long delayMillis) {
+        if (windowMillis < intervalMillis) {
+            schedule(windowEnd, delayMillis);
+        }
+    }
+
+    private void stop() {
+        if (scanning) {
+            scanner.stop();
+            scanning = false;
+        }
+    }
+
+    /**
+     * Returns the earliest time at or after {@code time} that a start stays within the budget.
+     */
+    long nextStartAllowedAt(long time) {
+        if (startCount < MAX_STARTS) {
+            return time;
+        }
+        return Math.max(time, starts[startIndex] + START_WINDOW_MILLIS);
+    }
+
+    /**
+     * Returns true while the physical scan is running.
+     */
+    boolean isScanning() {
+        return scanning;
+    }
+
+    private void schedule(Runnable task, long delayMillis) {
+        next = scheduler.schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private long now() {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+    }
+
+    /**
+     * Scans with {@link BluetoothAdapter#startLeScan}, for devices older than API 21.
+     */
+    static final class LeScanner implements Scanner, BluetoothAdapter.LeScanCallback {
+        private final BluetoothAdapter adapter;
+        private volatile Consumer callback;
+
+        LeScanner(BluetoothAdapter adapter) {
+            this.adapter = adapter;
+        }
+
+        @SuppressWarnings("deprecation") // Only used where BluetoothLeScanner is unavailable.
+        @Override
+        public boolean start(Consumer callback) {
+            this.callback = callback;
+            return adapter.startLeScan(this);
+        }
+
+        @SuppressWarnings("deprecation") // Only used where BluetoothLeScanner is unavailable.
+        @Override
+        public void stop() {
+            adapter.stopLeScan(this);
+        }
+
+        @Override
+        public void onLeScan(BluetoothDevice device, int rssi, byte[] scanRecord) {
+            Consumer consumer = callback;
+            if (consumer != null) {
+                consumer.onScanResult(DeviceTable.packAddress(device.getAddress()), rssi,
+                        scanRecord);
+            }
+        }
+    }
+
+    /**
+     * Scans with {@link BluetoothLeScanner}. It always scans at low latency: the duty cycle is the
+     * manager's, which starts and stops the scan around each window.
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    static final class LollipopScanner extends ScanCallback implements Scanner {
+        private final BluetoothAdapter adapter;
+        private final ScanSettings settings;
+        private volatile Consumer callback;
+        // Confined to the scheduler. The scanner the scan was started with, while it runs.
+        private BluetoothLeScanner scanner;
+
+        LollipopScanner(BluetoothAdapter adapter) {
+            this.adapter = adapter;
+            this.settings = new ScanSettings.Builder()
+                    .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+                    .build();
+        }
+
+        @Override
+        public boolean start(Consumer callback) {
+            // Null while Bluetooth is off.
+            BluetoothLeScanner scanner = adapter.getBluetoothLeScanner();
+            if (scanner == null) {
+                return false;
+            }
+            this.callback = callback;
+            try {
+                scanner.startScan(null, settings, this);
+            } catch (IllegalStateException e) {
+                // Bluetooth was turned off since the scanner was fetched.
+                return false;
+            }
+            this.scanner = scanner;
+            return true;
+        }
+
+        @Override
+        public void stop() {
+            BluetoothLeScanner scanner = this.scanner;
+            this.scanner = null;
+            if (scanner == null) {
+                return;
+            }
+            try {
+                scanner.stopScan(this);
+            } catch (IllegalStateException ignored) {
+                // Bluetooth is off, which already stopped the scan.
+            }
+        }
+
+        @Override
+        public void onScanResult(int callbackType, ScanResult result) {
+            deliver(result);
+        }
+
+        @Override
+        public void onBatchScanResults(List<ScanResult> results) {
+            for (ScanResult result : results) {
+                deliver(result);
+            }
+        }
+
+        @Override
+        public void onScanFailed(int errorCode) {
+            Internal.logger.log(Level.WARNING, "Scan failed with error " + errorCode);
+        }
+
+        private void deliver(ScanResult result) {
+            Consumer consumer = callback;
+            ScanRecord record = result.getScanRecord();
+            if (consumer != null && record != null) {
+                consumer.onScanResult(DeviceTable.packAddress(result.getDevice().getAddress()),
+                        result.getRssi(), record.getBytes());
+            }
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package retrotooth.scan;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Sink;
+
+/**
+ * Collects scan results into {@link ScanBatchWriter batches} and appends each batch to a sink
+ * once it reaches a size in bytes or an age, whichever comes first. Register it with a
+ * {@link ScanManager} and read the spool back with a {@link ScanBatchReader}:
+ * <pre>
+ * ScanSpool spool = ScanSpool.open(new File(dir, "scans.spool"), 16 * 1024, 5000);
+ * scanManager.register(null, ScanManager.Mode.LOW_POWER, spool);
+ * </pre>
+ * Only whole batches are written, each flushed to the sink as it is completed. Age is checked as
+ * observations arrive; call {@link #poll} periodically so that a batch is not held back when the
+ * scan goes quiet.
+ * <p/>
+ * Safe for use by multiple threads. Write failures while recording from the scan callback are
+ * thrown by the next call to {@link #poll}, {@link #flush} or {@link #close}, and the spool
+ * drops observations until then.
+ */
+public final class ScanSpool implements ScanManager.Consumer, Closeable {
+    private final BufferedSink sink;
+    private final long maxBatchBytes;
+    private final long maxAgeMillis;
+    private final ScanBatchWriter writer = new ScanBatchWriter();
+
+    private long batchCount;
+    private IOException failure;
+    private boolean closed;
+
+    /**
+     * Append batches to {@code file}, creating it if necessary.
+     */
+    public static ScanSpool open(File file, long maxBatchBytes, long maxAgeMillis)
+            throws IOException {
+        if (file == null) throw new NullPointerException("file == null");
+        return new ScanSpool(Okio.appendingSink(file), maxBatchBytes, maxAgeMillis);
+    }
+
+    /**
+     * @param maxBatchBytes the frame size at which a batch is written.
+     * @param maxAgeMillis the age of its first observation at which a batch is written.
+     */
+    public ScanSpool(Sink sink, long maxBatchBytes, long maxAgeMillis) {
+        if (sink == null) throw new NullPointerException("sink == null");
+        if (maxBatchBytes <= 0) {
+            throw new IllegalArgumentException("maxBatchBytes <= 0");
+        }
+        if (maxAgeMillis <= 0) {
+            throw new IllegalArgumentException("maxAgeMillis <= 0");
+        }
+        this.sink = Okio.buffer(sink);
+        this.maxBatchBytes = maxBatchBytes;
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /**
+     * Records the advertisement now.
+     */
+    @Override
+    public void onScanResult(long address, int rssi, byte[] scanRecord) {
+        synchronized (this) {
+            if (failure != null || closed) {
+                return;
+            }
+            try {
+                record(System.currentTimeMillis(), address, rssi, scanRecord);
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Record an observation of {@code scanRecord}, writing the batch if it is now due.
+     */
+    public synchronized void record(long timeMillis, long address, int rssi, byte[] scanRecord)
+            throws IOException {
+        checkOpen();
+        writer.add(timeMillis, address, rssi, scanRecord);
+        if (writer.frameSize() >= maxBatchBytes
+                || timeMillis - writer.firstTimeMillis() >= maxAgeMillis) {
+            write();
+        }
+    }
+
+    /**
+     * Write the current batch if it has reached the maximum age by {@code nowMillis}.
+     */
+    public synchronized void poll(long nowMillis) throws IOException {
+        checkOpen();
+        if (writer.count() > 0 && nowMillis - writer.firstTimeMillis() >= maxAgeMillis) {
+            write();
+        }
+    }
+
+    /**
+     * Write the current batch, however small.
+     */
+    public synchronized void flush() throws IOException {
+        checkOpen();
+        write();
+    }
+
+    /**
+     * The number of batches written.
+     */
+    public synchronized long batchCount() {
+        return batchCount;
+    }
+
+    /**
+     * The number of observations waiting in the current batch.
+     */
+    public synchronized int pendingCount() {
+        return writer.count();
+    }
+
+    /**
+     * Write the current batch and close the sink.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failure == null) {
+                write();
+            }
+        } finally {
+            sink.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void write() throws IOException {
+        if (writer.count() == 0) {
+            return;
+        }
+        writer.writeTo(sink);
+        sink.flush();
+        batchCount++;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IllegalStateException("closed");
+        }
+        if (failure != null) {
+            IOException e = failure;
+            failure = null;
+            writer.reset();
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package retrotooth.sim;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time a simulated peripheral takes to handle an operation, beyond the connection events
+ * spent carrying it: flash writes, sensor sampling, a busy controller.
+ */
+public abstract class LatencyDistribution {
+    private static final LatencyDistribution NONE = constant(0, TimeUnit.NANOSECONDS);
+
+    /**
+     * Returns a latency in nanoseconds, never negative.
+     */
+    public abstract long sampleNanos(Random random);
+
+    public static LatencyDistribution none() {
+        return NONE;
+    }
+
+    public static LatencyDistribution constant(long latency, TimeUnit unit) {
+        if (latency < 0) {
+            throw new IllegalArgumentException("latency < 0");
+        }
+        final long nanos = unit.toNanos(latency);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return nanos;
+            }
+        };
+    }
+
+    /**
+     * Latencies spread evenly between {@code min} and {@code max}, inclusive.
+     */
+    public static LatencyDistribution uniform(long min, long max, TimeUnit unit) {
+        if (min < 0) {
+            throw new IllegalArgumentException("min < 0");
+        }
+        if (max < min) {
+            throw new IllegalArgumentException("max < min");
+        }
+        final long minNanos = unit.toNanos(min);
+        final long range = unit.toNanos(max) - minNanos + 1;
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return minNanos + (long) (random.nextDouble() * range);
+            }
+        };
+    }
+
+    /**
+     * Latencies normally distributed about {@code mean}; the rare negative sample is taken as
+     * zero.
+     */
+    public static LatencyDistribution normal(long mean, long standardDeviation, TimeUnit unit) {
+        if (mean < 0) {
+            throw new IllegalArgumentException("mean < 0");
+        }
+        if (standardDeviation < 0) {
+            throw new IllegalArgumentException("standardDeviation < 0");
+        }
+        final long meanNanos = unit.toNanos(mean);
+        final long deviationNanos = unit.toNanos(standardDeviation);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return Math.max(0, meanNanos + (long) (random.nextGaussian() * deviationNanos));
+            }
+        };
+    }
+
+    /**
+     * Latencies exponentially distributed with {@code mean}: mostly quick, with a long tail.
+     */
+    public static LatencyDistribution exponential(long mean, TimeUnit unit) {
+        if (mean < 0) {
+            throw new IllegalArgumentException("mean < 0");
+        }
+        final double meanNanos = unit.toNanos(mean);
+        return new LatencyDistribution() {
+            @Override
+            public long sampleNanos(Random random) {
+                return (long) (-meanNanos * Math.log(1 - random.nextDouble()));
+            }
+        };
+    }
+}
@@ -0,0 +1,611 @@
+package retrotooth.sim;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import retrotooth.OperationQueue;
+import retrotooth.Transport;
+
+/**
+ * A peripheral on the JVM, for exercising the library end to end without a device. Its GATT
+ * database is declared up front:
+ * <pre>
+ * SimulatedPeripheral peripheral = new SimulatedPeripheral.Builder()
+ *         .characteristic(SERVICE, TEMPERATURE, PROPERTY_READ, new byte[] { 0x2A, 0x01 })
+ *         .characteristic(SERVICE, SETPOINT, PROPERTY_READ | PROPERTY_WRITE, new byte[2])
+ *         .connectionInterval(30, TimeUnit.MILLISECONDS)
+ *         .readLatency(LatencyDistribution.exponential(5, TimeUnit.MILLISECONDS))
+ *         .packetLoss(0.02)
+ *         .build();
+ * Retrotooth retrotooth = new Retrotooth.Builder().transport(peripheral).build();
+ * </pre>
+ * Operations are carried out one at a time, as a GATT client must, through the same
+ * {@link OperationQueue} as a real connection's, and complete before the method returns unless
+ * their response is {@linkplain #setDropResponses dropped}. Time is simulated: each operation
+ * advances the {@link #clock() clock} by the connection events spent carrying it, one per ATT
+ * request and response, and by its sampled latency. Values longer than fit in one packet at
+ * the {@linkplain Builder#mtu MTU} take several requests, as read blob or prepared write
+ * requests. Lost packets are retransmitted at the next connection event.
+ * <p/>
+ * Faults are injected by probability, drawn from a seeded {@link Random} so a run can be
+ * repeated exactly, or set per characteristic. Failures reach callers as {@link IOException}s
+ * like those of a real connection. An operation whose response is dropped times out after the
+ * {@linkplain Builder#operationTimeout operation timeout}, which unlike the clock is real time.
+ * Once disconnected, operations fail until {@link #reconnect}.
+ * <p/>
+ * Safe for use by multiple threads.
+ */
+public final class SimulatedPeripheral implements Transport {
+    public static final int PROPERTY_READ = 0x02;
+    public static final int PROPERTY_WRITE = 0x08;
+
+    // Status codes as reported by android.bluetooth.BluetoothGatt.
+    public static final int GATT_SUCCESS = 0;
+    public static final int GATT_READ_NOT_PERMITTED = 0x02;
+    public static final int GATT_WRITE_NOT_PERMITTED = 0x03;
+    public static final int GATT_INSUFFICIENT_AUTHENTICATION = 0x05;
+    public static final int GATT_REQUEST_NOT_SUPPORTED = 0x06;
+    public static final int GATT_INVALID_ATTRIBUTE_LENGTH = 0x0D;
+    public static final int GATT_INSUFFICIENT_ENCRYPTION = 0x0F;
+    public static final int GATT_FAILURE = 0x101;
+
+    private static final int MAX_ATTRIBUTE_LENGTH = 512;
+
+    private static final int READ = 0;
+    private static final int WRITE = 1;
+    private static final int READ_DESCRIPTOR = 2;
+
+    // The result of an operation whose response is dropped.
+    private static final byte[] NO_RESPONSE = new byte[0];
+
+    private final String model;
+    private final VirtualClock clock;
+    private final Random random;
+    private final long connectionIntervalNanos;
+    private final long supervisionTimeoutNanos;
+    private final int mtu;
+    private final LatencyDistribution readLatency;
+    private final LatencyDistribution writeLatency;
+    private final double packetLoss;
+    private final double disconnectProbability;
+    private final double errorProbability;
+    private final int errorStatus;
+    // Characteristics by service, then characteristic UUID.
+    private final Map<UUID, Map<UUID, Characteristic>> services;
+    private final OperationQueue operations;
+
+    // Guarded by this.
+    private boolean connected = true;
+    private long operationCount;
+    private long roundTripCount;
+    private long lostPacketCount;
+    private long errorCount;
+    private long disconnectCount;
+    private long droppedResponseCount;
+
+    private SimulatedPeripheral(Builder builder) {
+        model = builder.model;
+        clock = builder.clock != null ? builder.clock : new VirtualClock();
+        random = new Random(builder.seed);
+        connectionIntervalNanos = builder.connectionIntervalNanos;
+        supervisionTimeoutNanos = builder.supervisionTimeoutNanos;
+        mtu = builder.mtu;
+        readLatency = builder.readLatency;
+        writeLatency = builder.writeLatency;
+        packetLoss = builder.packetLoss;
+        disconnectProbability = builder.disconnectProbability;
+        errorProbability = builder.errorProbability;
+        errorStatus = builder.errorStatus;
+        services = new LinkedHashMap<>();
+        for (Map.Entry<UUID, Map<UUID, Characteristic>> service : builder.services.entrySet()) {
+            Map<UUID, Characteristic> characteristics = new LinkedHashMap<>();
+            for (Characteristic c : service.getValue().values()) {
+                characteristics.put(c.uuid, new Characteristic(c));
+            }
+            services.put(service.getKey(), characteristics);
+        }
+        operations = new OperationQueue(builder.operationTimeoutNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void read(UUID service, UUID characteristic, Callback callback) {
+        run(READ, service, characteristic, null, null, callback);
+    }
+
+    @Override
+    public void write(UUID service, UUID characteristic, byte[] value, Callback callback) {
+        run(WRITE, service, characteristic, null, value, callback);
+    }
+
+    @Override
+    public void readDescriptor(UUID service, UUID characteristic, UUID descriptor,
+            Callback callback) {
+        run(READ_DESCRIPTOR, service, characteristic, descriptor, null, callback);
+    }
+
+    @Override
+    public String model() {
+        return model;
+    }
+
+    public VirtualClock clock() {
+        return clock;
+    }
+
+    public int mtu() {
+        return mtu;
+    }
+
+    /**
+     * Returns a copy of the characteristic's current value.
+     */
+    public synchronized byte[] value(UUID service, UUID characteristic) {
+        return require(service, characteristic).value.clone();
+    }
+
+    /**
+     * Change the characteristic's value, as the peripheral would on taking a new measurement.
+     */
+    public synchronized void setValue(UUID service, UUID characteristic, byte[] value) {
+        if (value == null) throw new NullPointerException("value == null");
+        require(service, characteristic).value = value.clone();
+    }
+
+    /**
+     * Fail every operation on the characteristic with {@code status}, or stop doing so if it is
+     * {@link #GATT_SUCCESS}.
+     */
+    public synchronized void setError(UUID service, UUID characteristic, int status) {
+        require(service, characteristic).errorStatus = status;
+    }
+
+    /**
+     * Leave requests on the characteristic unanswered, as if their responses were lost, or
+     * answer them again if {@code drop} is false. Each such operation times out.
+     */
+    public synchronized void setDropResponses(UUID service, UUID characteristic, boolean drop) {
+        require(service, characteristic).dropResponses = drop;
+    }
+
+    public synchronized boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Drop the connection, as if the peripheral went out of range. Operations waiting for a
+     * response fail.
+     */
+    public void disconnect() {
+        synchronized (this) {
+            if (!connected) {
+                return;
+            }
+            connected = false;
+            disconnectCount++;
+        }
+        operations.failAll(new IOException("Disconnected"));
+    }
+
+    /**
+     * Restore the connection, spending a connection interval to establish it.
+     */
+    public synchronized void reconnect() {
+        if (!connected) {
+            clock.advance(connectionIntervalNanos, TimeUnit.NANOSECONDS);
+            connected = true;
+        }
+    }
+
+    /**
+     * Returns the number of operations attempted, whether or not they succeeded.
+     */
+    public synchronized long operationCount() {
+        return operationCount;
+    }
+
+    /**
+     * Returns the number of ATT request and response exchanges, excluding retransmissions.
+     */
+    public synchronized long roundTripCount() {
+        return roundTripCount;
+    }
+
+    public synchronized long lostPacketCount() {
+        return lostPacketCount;
+    }
+
+    /**
+     * Returns the number of operations which failed with a GATT status.
+     */
+    public synchronized long errorCount() {
+        return errorCount;
+    }
+
+    public synchronized long disconnectCount() {
+        return disconnectCount;
+    }
+
+    /**
+     * Returns the number of requests left unanswered.
+     */
+    public synchronized long droppedResponseCount() {
+        return droppedResponseCount;
+    }
+
+    private void run(final int operation, final UUID service, final UUID characteristic,
+            final UUID descriptor, final byte[] value, Callback callback) {
+        operations.enqueue(new OperationQueue.Operation(callback) {
+            @Override
+            protected void start() {
+                byte[] result;
+                try {
+                    result = execute(operation, service, characteristic, descriptor, value);
+                } catch (IOException e) {
+                    onFailure(e);
+                    return;
+                }
+                if (result != NO_RESPONSE) {
+                    onSuccess(result);
+                }
+            }
+        });
+    }
+
+    private synchronized byte[] execute(int operation, UUID service, UUID characteristic,
+            UUID descriptor, byte[] value) throws IOException {
+        operationCount++;
+        if (!connected) {
+            throw new IOException("Not connected");
+        }
+        Map<UUID, Characteristic> characteristics = services.get(service);
+        if (characteristics == null) {
+            throw new IOException("service(" + service + ") not found");
+        }
+        Characteristic c = characteristics.get(characteristic);
+        if (c == null) {
+            throw new IOException("characteristic(" + characteristic
+                    + ") not found on service(" + service + ")");
+        }
+        if (disconnectProbability > 0 && random.nextDouble() < disconnectProbability) {
+            // The link drops mid-operation; the client learns of it when supervision times out.
+            connected = false;
+            disconnectCount++;
+            clock.advance(supervisionTimeoutNanos, TimeUnit.NANOSECONDS);
+            throw new IOException("Disconnected");
+        }
+        if (c.dropResponses) {
+            droppedResponseCount++;
+            return NO_RESPONSE;
+        }
+
+        int status = status(operation, c, value);
+        if (status != GATT_SUCCESS) {
+            // The error response takes a single exchange.
+            advance(1, operation == WRITE ? writeLatency : readLatency);
+            errorCount++;
+            throw new IOException("GATT status " + status);
+        }
+
+        switch (operation) {
+            case READ:
+                advance(readRoundTrips(c.value.length), readLatency);
+                return c.value.clone();
+            case WRITE:
+                if (value != null) {
+                    c.value = value.clone();
+                }
+                advance(writeRoundTrips(c.value.length), writeLatency);
+                return c.value.clone();
+            case READ_DESCRIPTOR:
+                byte[] descriptorValue = c.descriptors.get(descriptor);
+                if (descriptorValue == null) {
+                    // Already known from service discovery.
+                    return null;
+                }
+                advance(readRoundTrips(descriptorValue.length), readLatency);
+                return descriptorValue.clone();
+            default:
+                throw new AssertionError();
+        }
+    }
+
+    private int status(int operation, Characteristic c, byte[] value) {
+        if (c.errorStatus != GATT_SUCCESS) {
+            return c.errorStatus;
+        }
+        if (operation == READ && (c.properties & PROPERTY_READ) == 0) {
+            return GATT_READ_NOT_PERMITTED;
+        }
+        if (operation == WRITE) {
+            if ((c.properties & PROPERTY_WRITE) == 0) {
+                return GATT_WRITE_NOT_PERMITTED;
+            }
+            if (value != null && value.length > MAX_ATTRIBUTE_LENGTH) {
+                return GATT_INVALID_ATTRIBUTE_LENGTH;
+            }
+        }
+        if (errorProbability > 0 && random.nextDouble() < errorProbability) {
+            return errorStatus;
+        }
+        return GATT_SUCCESS;
+    }
+
+    /**
+     * Returns the exchanges needed to read {@code length} bytes: a read request, then read blob
+     * requests while the response fills the packet.
+     */
+    private int readRoundTrips(int length) {
+        return length / (mtu - 1) + 1;
+    }
+
+    /**
+     * Returns the exchanges needed to write {@code length} bytes: one write request if it fits,
+     * else prepare write requests and an execute write request.
+     */
+    private int writeRoundTrips(int length) {
+        if (length <= mtu - 3) {
+            return 1;
+        }
+        int perPacket = mtu - 5;
+        return (length + perPacket - 1) / perPacket + 1;
+    }
+
+    private void advance(int roundTrips, LatencyDistribution latency) {
+        roundTripCount += roundTrips;
+        long events = roundTrips;
+        if (packetLoss > 0) {
+            for (int i = 0; i < roundTrips; i++) {
+                while (random.nextDouble() < packetLoss) {
+                    lostPacketCount++;
+                    events++;
+                }
+            }
+        }
+        clock.advance(events * connectionIntervalNanos + latency.sampleNanos(random),
+                TimeUnit.NANOSECONDS);
+    }
+
+    private Characteristic require(UUID service, UUID characteristic) {
+        Map<UUID, Characteristic> characteristics = services.get(service);
+        Characteristic c = characteristics != null ? characteristics.get(characteristic) : null;
+        if (c == null) {
+            throw new IllegalArgumentException("No characteristic(" + characteristic
+                    + ") on service(" + service + ")");
+        }
+        return c;
+    }
+
+    private static final class Characteristic {
+        final UUID uuid;
+        final int properties;
+        final Map<UUID, byte[]> descriptors;
+        byte[] value;
+        int errorStatus;
+        boolean dropResponses;
+
+        Characteristic(UUID uuid, int properties, byte[] value) {
+            this.uuid = uuid;
+            this.properties = properties;
+            this.descriptors = new LinkedHashMap<>();
+            this.value = value;
+        }
+
+        Characteristic(Characteristic c) {
+            this.uuid = c.uuid;
+            this.properties = c.properties;
+            this.descriptors = new LinkedHashMap<>(c.descriptors);
+            this.value = c.value;
+            this.errorStatus = c.errorStatus;
+        }
+    }
+
+    /**
+     * Build a new {@link SimulatedPeripheral}. Declare its characteristics; everything else is
+     * optional and defaults to a fault-free peripheral that answers within the connection
+     * events each operation needs.
+     */
+    public static final class Builder {
+        private final Map<UUID, Map<UUID, Characteristic>> services = new LinkedHashMap<>();
+        private String model = "Simulated peripheral";
+        private VirtualClock clock;
+        private long seed;
+        private long connectionIntervalNanos = TimeUnit.MILLISECONDS.toNanos(30);
+        private long supervisionTimeoutNanos = TimeUnit.SECONDS.toNanos(4);
+        private int mtu = 23;
+        private LatencyDistribution readLatency = LatencyDistribution.none();
+        private LatencyDistribution writeLatency = LatencyDistribution.none();
+        private double packetLoss;
+        private double disconnectProbability;
+        private double errorProbability;
+        private int errorStatus = GATT_FAILURE;
+        private long operationTimeoutNanos =
+                TimeUnit.MILLISECONDS.toNanos(OperationQueue.DEFAULT_TIMEOUT_MILLIS);
+
+        /**
+         * Declare a characteristic of {@code service} and its initial value.
+         *
+         * @param properties {@link #PROPERTY_READ}, {@link #PROPERTY_WRITE} or both.
+         */
+        public Builder characteristic(UUID service, UUID characteristic, int properties,
+                byte[] value) {
+            if (service == null) throw new NullPointerException("service == null");
+            if (characteristic == null) {
+                throw new NullPointerException("characteristic == null");
+            }
+            if (value == null) throw new NullPointerException("value == null");
+            if (value.length > MAX_ATTRIBUTE_LENGTH) {
+                throw new IllegalArgumentException("value longer than " + MAX_ATTRIBUTE_LENGTH);
+            }
+            Map<UUID, Characteristic> characteristics = services.get(service);
+            if (characteristics == null) {
+                characteristics = new LinkedHashMap<>();
+                services.put(service, characteristics);
+            }
+            characteristics.put(characteristic,
+                    new Characteristic(characteristic, properties, value.clone()));
+            return this;
+        }
+
+        /**
+         * Declare a descriptor of a characteristic declared earlier, such as its presentation
+         * format.
+         */
+        public Builder descriptor(UUID service, UUID characteristic, UUID descriptor,
+                byte[] value) {
+            if (descriptor == null) throw new NullPointerException("descriptor == null");
+            if (value == null) throw new NullPointerException("value == null");
+            declared(service, characteristic).descriptors.put(descriptor, value.clone());
+            return this;
+        }
+
+        /**
+         * Fail every operation on a characteristic declared earlier with {@code status}.
+         */
+        public Builder error(UUID service, UUID characteristic, int status) {
+            declared(service, characteristic).errorStatus = status;
+            return this;
+        }
+
+        /**
+         * Fail operations at random with {@code status}, each with the given probability.
+         */
+        public Builder errorProbability(double probability, int status) {
+            this.errorProbability = checkProbability(probability);
+            this.errorStatus = status;
+            return this;
+        }
+
+        /**
+         * The name returned by {@link SimulatedPeripheral#model()}.
+         */
+        public Builder model(String model) {
+            if (model == null) throw new NullPointerException("model == null");
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * The clock the peripheral advances. Share one to simulate several peripherals on the
+         * same timeline.
+         */
+        public Builder clock(VirtualClock clock) {
+            if (clock == null) throw new NullPointerException("clock == null");
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Seeds the random faults and latencies. Peripherals built alike with the same seed
+         * behave identically for the same sequence of operations.
+         */
+        public Builder seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * The time between connection events, 7.5 ms to 4 s. Defaults to 30 ms. Zero makes
+         * exchanges free, leaving only the sampled latencies.
+         */
+        public Builder connectionInterval(long interval, TimeUnit unit) {
+            long nanos = unit.toNanos(interval);
+            if (nanos != 0 && (nanos < 7500000L || nanos > TimeUnit.SECONDS.toNanos(4))) {
+                throw new IllegalArgumentException("interval out of range: " + interval);
+            }
+            this.connectionIntervalNanos = nanos;
+            return this;
+        }
+
+        /**
+         * How long it takes to notice that the link dropped. Defaults to 4 s.
+         */
+        public Builder supervisionTimeout(long timeout, TimeUnit unit) {
+            if (timeout < 0) {
+                throw new IllegalArgumentException("timeout < 0");
+            }
+            this.supervisionTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * How long, in real time, an operation waits for its response before it fails and the
+         * next one starts. Defaults to {@link OperationQueue#DEFAULT_TIMEOUT_MILLIS}.
+         */
+        public Builder operationTimeout(long timeout, TimeUnit unit) {
+            if (unit == null) throw new NullPointerException("unit == null");
+            if (timeout <= 0) {
+                throw new IllegalArgumentException("timeout <= 0: " + timeout);
+            }
+            this.operationTimeoutNanos = unit.toNanos(timeout);
+            return this;
+        }
+
+        /**
+         * The negotiated ATT MTU, 23 to 517 bytes. Defaults to 23.
+         */
+        public Builder mtu(int mtu) {
+            if (mtu < 23 || mtu > 517) {
+                throw new IllegalArgumentException("mtu out of range: " + mtu);
+            }
+            this.mtu = mtu;
+            return this;
+        }
+
+        public Builder readLatency(LatencyDistribution latency) {
+            if (latency == null) throw new NullPointerException("latency == null");
+            this.readLatency = latency;
+            return this;
+        }
+
+        public Builder writeLatency(LatencyDistribution latency) {
+            if (latency == null) throw new NullPointerException("latency == null");
+            this.writeLatency = latency;
+            return this;
+        }
+
+        /**
+         * The probability that a packet is lost and must be sent again at the next connection
+         * event.
+         */
+        public Builder packetLoss(double probability) {
+            if (checkProbability(probability) == 1) {
+                throw new IllegalArgumentException("probability == 1");
+            }
+            this.packetLoss = probability;
+            return this;
+        }
+
+        /**
+         * The probability that the link drops during an operation.
+         */
+        public Builder disconnectProbability(double probability) {
+            this.disconnectProbability = checkProbability(probability);
+            return this;
+        }
+
+        public SimulatedPeripheral build() {
+            return new SimulatedPeripheral(this);
+        }
+
+        private Characteristic declared(UUID service, UUID characteristic) {
+            Map<UUID, Characteristic> characteristics = services.get(service);
+            Characteristic c = characteristics != null ? characteristics.get(characteristic) : null;
+            if (c == null) {
+                throw new IllegalStateException("characteristic(" + characteristic
+                        + ") of service(" + service + ") not declared");
+            }
+            return c;
+        }
+
+        private static double checkProbability(double probability) {
+            if (!(probability >= 0 && probability <= 1)) {
+                throw new IllegalArgumentException("probability out of range: " + probability);
+            }
+            return probability;
+        }
+    }
+}
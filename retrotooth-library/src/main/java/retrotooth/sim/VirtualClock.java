@@ -0,0 +1,31 @@
+package retrotooth.sim;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Simulated time, which moves only when {@link #advance advanced}. A {@link SimulatedPeripheral}
+ * advances it by the duration of each operation, so a run takes the same simulated time however
+ * fast the machine is. Several peripherals may share a clock. Safe for use by multiple threads.
+ */
+public final class VirtualClock {
+    private final AtomicLong nanos = new AtomicLong();
+
+    public long nanoTime() {
+        return nanos.get();
+    }
+
+    public long millis() {
+        return TimeUnit.NANOSECONDS.toMillis(nanos.get());
+    }
+
+    /**
+     * Move the clock forward by {@code duration} and return the new time in nanoseconds.
+     */
+    public long advance(long duration, TimeUnit unit) {
+        if (duration < 0) {
+            throw new IllegalArgumentException("duration < 0");
+        }
+        return nanos.addAndGet(unit.toNanos(duration));
+    }
+}
@@ -2,12 +2,13 @@ package retrotooth.util;
 
 import android.util.SparseArray;
 
-import java.math.BigInteger;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.UUID;
 
+import retrotooth.model.UuidRegistry;
+
 
 public class BleUtils {
 
@@ -33,10 +34,174 @@ public class BleUtils {
         return "0x" + new String(hexChars);
     }
 
+    /**
+     * Interprets {@code bytes} as a big-endian two's complement integer and returns its low 32
+     * bits, matching {@code new BigInteger(bytes).intValue()} without the intermediate objects.
+     */
     public static int byteArrayToInt(byte[] bytes) {
-        return new BigInteger(bytes).intValue();
+        if (bytes.length == 0) {
+            throw new NumberFormatException("Zero length BigInteger");
+        }
+        int value = bytes[0]; // Sign-extends the most significant byte.
+        for (int i = 1; i < bytes.length; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    //region Little-endian GATT value decoding
+
+    public static int uint8(byte[] data, int offset) {
+        return data[offset] & 0xFF;
+    }
+
+    public static int uint16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8;
+    }
+
+    public static int uint24(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16;
+    }
+
+    public static long uint32(byte[] data, int offset) {
+        return sint32(data, offset) & 0xFFFFFFFFL;
+    }
+
+    public static int sint8(byte[] data, int offset) {
+        return data[offset];
+    }
+
+    public static int sint16(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | data[offset + 1] << 8;
+    }
+
+    public static int sint24(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8 | data[offset + 2] << 16;
+    }
+
+    public static int sint32(byte[] data, int offset) {
+        return (data[offset] & 0xFF) | (data[offset + 1] & 0xFF) << 8
+                | (data[offset + 2] & 0xFF) << 16 | data[offset + 3] << 24;
+    }
+
+    public static long sint64(byte[] data, int offset) {
+        return (sint32(data, offset) & 0xFFFFFFFFL) | (long) sint32(data, offset + 4) << 32;
+    }
+
+    // Exact powers of ten for the IEEE-11073 exponent range; 10^n is exact as a double up to 10^22,
+    // so dividing by a positive power keeps results such as 365 * 10^-1 at 36.5 rather than 36.50001.
+    private static final double[] POW10 = new double[129];
+
+    static {
+        POW10[0] = 1d;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10d;
+        }
+    }
+
+    /**
+     * Returns {@code mantissa * 10^exponent} for exponents in the range [-128, 128].
+     */
+    public static double scale(long mantissa, int exponent) {
+        return exponent >= 0 ? mantissa * POW10[exponent] : mantissa / POW10[-exponent];
+    }
+
+    /**
+     * Returns {@code value * 10^exponent} for exponents in the range [-128, 128].
+     */
+    public static double scale(double value, int exponent) {
+        return exponent >= 0 ? value * POW10[exponent] : value / POW10[-exponent];
+    }
+
+    /**
+     * Decodes a raw IEEE-11073 16-bit SFLOAT (4-bit exponent, 12-bit mantissa).
+     */
+    public static double sfloat(int raw) {
+        int mantissa = raw & 0x0FFF;
+        switch (mantissa) {
+            case 0x07FF: // NaN
+            case 0x0800: // NRes
+            case 0x0801: // Reserved
+                return Double.NaN;
+            case 0x07FE:
+                return Double.POSITIVE_INFINITY;
+            case 0x0802:
+                return Double.NEGATIVE_INFINITY;
+            default:
+                break;
+        }
+        return scale((mantissa << 20) >> 20, (raw << 16) >> 28);
+    }
+
+    /**
+     * Decodes a raw IEEE-11073 32-bit FLOAT (8-bit exponent, 24-bit mantissa).
+     */
+    public static double ieeeFloat(int raw) {
+        int mantissa = raw & 0x00FFFFFF;
+        switch (mantissa) {
+            case 0x007FFFFF: // NaN
+            case 0x00800000: // NRes
+            case 0x00800001: // Reserved
+                return Double.NaN;
+            case 0x007FFFFE:
+                return Double.POSITIVE_INFINITY;
+            case 0x00800002:
+                return Double.NEGATIVE_INFINITY;
+            default:
+                break;
+        }
+        return scale((mantissa << 8) >> 8, raw >> 24);
+    }
+
+    /**
+     * Encodes {@code value} as an IEEE-11073 16-bit SFLOAT.
+     */
+    public static int toSfloat(double value) {
+        return toIeee11073(value, 0x07FF, 0x07FE, 0x0802, 2045, -8, 7, 12) & 0xFFFF;
+    }
+
+    /**
+     * Encodes {@code value} as an IEEE-11073 32-bit FLOAT.
+     */
+    public static int toIeeeFloat(double value) {
+        return toIeee11073(value, 0x007FFFFF, 0x007FFFFE, 0x00800002, 8388605, -128, 127, 24);
     }
 
+    private static int toIeee11073(double value, int nan, int positiveInfinity,
+                                   int negativeInfinity, int maxMantissa, int minExponent,
+                                   int maxExponent, int mantissaBits) {
+        if (Double.isNaN(value)) {
+            return nan;
+        }
+        if (value == Double.POSITIVE_INFINITY) {
+            return positiveInfinity;
+        }
+        if (value == Double.NEGATIVE_INFINITY) {
+            return negativeInfinity;
+        }
+        int exponent = 0;
+        double mantissa = value;
+        while (Math.abs(mantissa) > maxMantissa && exponent < maxExponent) {
+            mantissa /= 10d;
+            exponent++;
+        }
+        // Move precision into the mantissa while it still fits.
+        while (mantissa != Math.rint(mantissa) && exponent > minExponent
+                && Math.abs(mantissa * 10d) <= maxMantissa) {
+            mantissa *= 10d;
+            exponent--;
+        }
+        long rounded = Math.round(mantissa);
+        if (Math.abs(rounded) > maxMantissa) {
+            return rounded > 0 ? positiveInfinity : negativeInfinity;
+        }
+        int mantissaMask = (1 << mantissaBits) - 1;
+        return (exponent << mantissaBits) | ((int) rounded & mantissaMask);
+    }
+
+    //endregion
+
 
     /**
      * Returns a string composed from a {@link SparseArray}.
@@ -82,16 +247,22 @@ public class BleUtils {
         return buffer.toString();
     }
 
-    private static final String BASE_UUID_FORMAT = "0000%s-0000-1000-8000-00805F9B34FB";
-
+    /**
+     * Parses a UUID, or a 16 or 32-bit UUID given as hex digits, returning the interned instance
+     * from {@link UuidRegistry}. Returns null if {@code uuid} cannot be parsed.
+     */
     public static UUID getUUID(String uuid) {
+        UUID parsed = UuidRegistry.parse(uuid);
+        if (parsed != null) {
+            return parsed;
+        }
+        // Non-canonical forms, such as unpadded groups, are still accepted.
         try {
-            return UUID.fromString(uuid);
+            UUID fallback = UUID.fromString(uuid);
+            return UuidRegistry.get(fallback.getMostSignificantBits(),
+                    fallback.getLeastSignificantBits());
         } catch (IllegalArgumentException iae) {
-            if (uuid.matches("[0-9a-fA-F]{4}")) {
-                return UUID.fromString(String.format(BASE_UUID_FORMAT, uuid.toUpperCase()));
-            }
+            return null;
         }
-        return null;
     }
 }
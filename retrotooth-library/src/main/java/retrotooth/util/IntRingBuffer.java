@@ -0,0 +1,86 @@
+package retrotooth.util;
+
+/**
+ * A fixed capacity FIFO of primitive ints. Once full, adding a value overwrites the oldest one.
+ * Not thread safe.
+ */
+public final class IntRingBuffer {
+    private final int[] values;
+    private int head; // Index of the oldest value.
+    private int size;
+
+    public IntRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity <= 0");
+        }
+        values = new int[capacity];
+    }
+
+    public int capacity() {
+        return values.length;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void add(int value) {
+        int tail = head + size;
+        if (tail >= values.length) {
+            tail -= values.length;
+        }
+        values[tail] = value;
+        if (size == values.length) {
+            head = head + 1 == values.length ? 0 : head + 1;
+        } else {
+            size++;
+        }
+    }
+
+    /**
+     * Returns the value at {@code index}, where 0 is the oldest value.
+     */
+    public int get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + size);
+        }
+        int i = head + index;
+        return values[i >= values.length ? i - values.length : i];
+    }
+
+    /**
+     * Removes and returns the oldest value.
+     */
+    public int remove() {
+        if (size == 0) {
+            throw new IllegalStateException("empty");
+        }
+        int value = values[head];
+        head = head + 1 == values.length ? 0 : head + 1;
+        size--;
+        return value;
+    }
+
+    /**
+     * Removes up to {@code dst.length - offset} of the oldest values into {@code dst}, returning
+     * the number copied.
+     */
+    public int drainTo(int[] dst, int offset) {
+        int count = Math.min(size, dst.length - offset);
+        int first = Math.min(count, values.length - head);
+        System.arraycopy(values, head, dst, offset, first);
+        System.arraycopy(values, 0, dst, offset + first, count - first);
+        head = (head + count) % values.length;
+        size -= count;
+        return count;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
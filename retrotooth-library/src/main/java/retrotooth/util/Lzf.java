@@ -0,0 +1,152 @@
+package retrotooth.util;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Block compression in the LZF format: a byte-oriented LZ77 variant with an 8 KiB window that
+ * trades ratio for very little CPU. Blocks are compatible with liblzf.
+ */
+public final class Lzf {
+    public static final int MAX_BLOCK_SIZE = 8192;
+
+    private static final int HASH_BITS = 13;
+    private static final int MAX_LITERAL = 32;
+    private static final int MAX_OFFSET = 1 << 13;
+    private static final int MAX_MATCH = 7 + 255 + 2;
+
+    private Lzf() {
+        // No instances.
+    }
+
+    /**
+     * Returns a hash table to pass to {@link #compress}. Tables can be reused between calls.
+     */
+    public static int[] newHashTable() {
+        return new int[1 << HASH_BITS];
+    }
+
+    /**
+     * Compresses {@code length} bytes of {@code in} into {@code out}, returning the compressed
+     * length, or -1 if the result would be longer than {@code outLimit}. The check is made before
+     * each match is written, so a result which would fit with no more than 3 bytes to spare may
+     * be rejected too. A limit below {@code length} therefore rejects blocks that do not
+     * compress.
+     */
+    public static int compress(byte[] in, int length, byte[] out, int outLimit, int[] hashTable) {
+        Arrays.fill(hashTable, -1);
+        int ip = 0;
+        int op = 1; // Reserve the first literal run's control byte.
+        int literals = 0;
+
+        while (ip < length - 2) {
+            int hash = hash(in, ip);
+            int ref = hashTable[hash];
+            hashTable[hash] = ip;
+            int offset = ip - ref - 1;
+            if (ref >= 0 && offset < MAX_OFFSET
+                    && in[ref] == in[ip] && in[ref + 1] == in[ip + 1] && in[ref + 2] == in[ip + 2]) {
+                int maxMatch = Math.min(MAX_MATCH, length - ip);
+                int match = 3;
+                while (match < maxMatch && in[ref + match] == in[ip + match]) {
+                    match++;
+                }
+                if (op + 3 + 1 > outLimit) {
+                    return -1;
+                }
+                if (literals > 0) {
+                    out[op - literals - 1] = (byte) (literals - 1);
+                } else {
+                    op--; // Drop the unused control byte.
+                }
+                int encoded = match - 2;
+                if (encoded < 7) {
+                    out[op++] = (byte) ((offset >> 8) + (encoded << 5));
+                } else {
+                    out[op++] = (byte) ((offset >> 8) + (7 << 5));
+                    out[op++] = (byte) (encoded - 7);
+                }
+                out[op++] = (byte) offset;
+                literals = 0;
+                op++;
+                ip += match;
+            } else {
+                if (op >= outLimit) {
+                    return -1;
+                }
+                out[op++] = in[ip++];
+                if (++literals == MAX_LITERAL) {
+                    out[op - literals - 1] = (byte) (literals - 1);
+                    literals = 0;
+                    op++;
+                }
+            }
+        }
+        while (ip < length) {
+            if (op >= outLimit) {
+                return -1;
+            }
+            out[op++] = in[ip++];
+            if (++literals == MAX_LITERAL) {
+                out[op - literals - 1] = (byte) (literals - 1);
+                literals = 0;
+                op++;
+            }
+        }
+        if (literals > 0) {
+            out[op - literals - 1] = (byte) (literals - 1);
+        } else {
+            op--;
+        }
+        return op;
+    }
+
+    /**
+     * Decompresses {@code length} bytes of {@code in} into {@code out}, returning the
+     * decompressed length.
+     *
+     * @throws IOException if the block is corrupt or does not fit in {@code out}.
+     */
+    public static int decompress(byte[] in, int length, byte[] out) throws IOException {
+        int ip = 0;
+        int op = 0;
+        while (ip < length) {
+            int control = in[ip++] & 0xFF;
+            if (control < MAX_LITERAL) {
+                int run = control + 1;
+                if (ip + run > length || op + run > out.length) {
+                    throw new IOException("Corrupt LZF block");
+                }
+                System.arraycopy(in, ip, out, op, run);
+                ip += run;
+                op += run;
+            } else {
+                int match = control >> 5;
+                if (match == 7) {
+                    if (ip >= length) {
+                        throw new IOException("Corrupt LZF block");
+                    }
+                    match += in[ip++] & 0xFF;
+                }
+                if (ip >= length) {
+                    throw new IOException("Corrupt LZF block");
+                }
+                int ref = op - ((control & 0x1F) << 8) - (in[ip++] & 0xFF) - 1;
+                match += 2;
+                if (ref < 0 || op + match > out.length) {
+                    throw new IOException("Corrupt LZF block");
+                }
+                // Byte by byte, as the match may overlap the bytes it produces.
+                for (int i = 0; i < match; i++) {
+                    out[op++] = out[ref++];
+                }
+            }
+        }
+        return op;
+    }
+
+    private static int hash(byte[] in, int i) {
+        int v = (in[i] & 0xFF) << 16 | (in[i + 1] & 0xFF) << 8 | (in[i + 2] & 0xFF);
+        return (v * 0x9E3779B1) >>> (32 - HASH_BITS);
+    }
+}
@@ -0,0 +1,92 @@
+package retrotooth.util;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+/**
+ * Decodes short UTF-8 strings, returning the same instance for values seen recently. Device
+ * names, manufacturer and model strings are read over and over; a hit is compared directly
+ * against the source's buffered bytes, so it allocates nothing.
+ * <p/>
+ * Entries live in a direct-mapped table: a value evicts whichever entry shared its slot. Safe for
+ * use by multiple threads.
+ */
+public final class Utf8StringCache {
+    public static final int MAX_LENGTH = 64;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final Entry[] entries;
+    private final int mask;
+
+    /**
+     * @param size the number of entries, rounded up to a power of two.
+     */
+    public Utf8StringCache(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size <= 0");
+        }
+        int capacity = Integer.highestOneBit(size);
+        if (capacity < size) {
+            capacity <<= 1;
+        }
+        entries = new Entry[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Reads {@code byteCount} bytes of UTF-8 from {@code source}. Values longer than
+     * {@link #MAX_LENGTH} are decoded but not cached.
+     */
+    public String readUtf8(BufferedSource source, long byteCount) throws IOException {
+        if (byteCount > MAX_LENGTH) {
+            return source.readUtf8(byteCount);
+        }
+        source.require(byteCount);
+        Buffer buffer = source.buffer();
+        int length = (int) byteCount;
+
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer.getByte(i);
+        }
+        int slot = (hash ^ (hash >>> 16)) & mask;
+        Entry entry = entries[slot];
+        if (entry != null && entry.hash == hash && entry.matches(buffer, length)) {
+            buffer.skip(length);
+            return entry.value;
+        }
+
+        byte[] bytes = buffer.readByteArray(length);
+        String value = new String(bytes, UTF_8);
+        entries[slot] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final String value;
+
+        Entry(int hash, byte[] bytes, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+
+        boolean matches(Buffer buffer, int length) {
+            if (bytes.length != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (bytes[i] != buffer.getByte(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import okio.Buffer;
+import okio.ByteString;
+import retrotooth.annotations.Compressed;
+import retrotooth.annotations.READ;
+import retrotooth.annotations.WRITE;
+import retrotooth.ok.MediaType;
+import retrotooth.sim.SimulatedPeripheral;
+import retrotooth.util.BleUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+import static retrotooth.sim.SimulatedPeripheral.PROPERTY_READ;
+import static retrotooth.sim.SimulatedPeripheral.PROPERTY_WRITE;
+
+public final class CompressionTest {
+    private static final String TEXT = repeat("temperature=21.5;humidity=40;", 20);
+
+    interface Service {
+        @READ(service = "181a", characteristic = "2a6e")
+        @Compressed
+        Call<String> log();
+
+        @WRITE(service = "181a", characteristic = "2a6e")
+        Call<Void> setLog(@Compressed String log);
+
+        @WRITE(service = "181a", characteristic = "2a6e")
+        Call<Void> setLogLzf(@Compressed(Compression.LZF) String log);
+    }
+
+    @Test
+    public void requestReadBackThroughResponse() throws IOException {
+        for (Compression compression : Compression.values()) {
+            byte[] body = bytes(compressing(compression, 64L).convert(TEXT));
+            assertEquals(compression.code(), body[0]);
+            assertTrue(body.length < TEXT.length());
+            assertEquals(TEXT, decompressing(Compression.DEFAULT_MAX_SIZE).convert(response(body)));
+        }
+    }
+
+    @Test
+    public void smallBodyStored() throws IOException {
+        byte[] body = bytes(compressing(Compression.DEFLATE, 64L).convert("short"));
+        assertEquals(ByteString.encodeUtf8("\u0000short"), ByteString.of(body));
+        assertEquals("short", decompressing(Compression.DEFAULT_MAX_SIZE).convert(response(body)));
+    }
+
+    @Test
+    public void incompressibleBodyStored() throws IOException {
+        byte[] random = new byte[256];
+        new Random(1L).nextBytes(random);
+        Converter<byte[], RequestData> converter =
+                Compression.LZF.compressing(ByteArrayRequestDataConverter.INSTANCE, 0L);
+        byte[] body = bytes(converter.convert(random));
+        assertEquals(Compression.STORED, body[0]);
+        assertEquals(random.length + 1, body.length);
+    }
+
+    @Test
+    public void contentTypeKept() throws IOException {
+        final MediaType mediaType = MediaType.parse("text/plain; charset=utf-8");
+        Converter<String, RequestData> converter = Compression.DEFLATE.compressing(
+                new Converter<String, RequestData>() {
+                    @Override
+                    public RequestData convert(String value) {
+                        return RequestData.create(mediaType, value);
+                    }
+                }, 0L);
+        assertEquals(mediaType, converter.convert(TEXT).contentType());
+    }
+
+    @Test
+    public void unknownCodecFails() throws IOException {
+        try {
+            decompressing(Compression.DEFAULT_MAX_SIZE).convert(response(new byte[]{0x7F, 0x00}));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void oversizedBodiesFail() throws IOException {
+        long maxSize = TEXT.length() - 1;
+        for (Compression compression : Compression.values()) {
+            byte[] body = bytes(compressing(compression, 0L).convert(TEXT));
+            assertOversized(decompressing(maxSize), body);
+            assertEquals(TEXT, decompressing(TEXT.length()).convert(response(body)));
+        }
+        byte[] stored = new Buffer().writeByte(Compression.STORED).writeUtf8(TEXT)
+                .readByteArray();
+        assertOversized(decompressing(maxSize), stored);
+        assertEquals(TEXT, decompressing(TEXT.length()).convert(response(stored)));
+    }
+
+    @Test
+    public void decompressionStopsAtLimit() throws IOException {
+        // 1 MiB of zeros deflates to about a kilobyte.
+        byte[] bomb = deflate(new byte[1024 * 1024]);
+        Buffer sink = new Buffer();
+        try {
+            Compression.DEFLATE.decompress(new Buffer().write(bomb), sink, 64 * 1024);
+            fail();
+        } catch (IOException expected) {
+        }
+        assertTrue(sink.size() <= 64 * 1024);
+    }
+
+    @Test
+    public void oversizedBodyNotAllocated() throws IOException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+        assumeTrue(allocations.isThreadAllocatedMemorySupported()
+                && allocations.isThreadAllocatedMemoryEnabled());
+
+        // 64 MiB of zeros against the default limit of 1 MiB.
+        byte[] bomb = new Buffer().writeByte(Compression.DEFLATE.code())
+                .write(deflate(new byte[64 * 1024 * 1024])).readByteArray();
+        Converter<ResponseData, String> converter = decompressing(Compression.DEFAULT_MAX_SIZE);
+        long thread = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(thread);
+        assertOversized(converter, bomb);
+        long allocated = allocations.getThreadAllocatedBytes(thread) - before;
+        // Without the limit this would allocate at least the whole 64 MiB.
+        assertTrue("Allocated " + allocated + " bytes",
+                allocated < 4 * Compression.DEFAULT_MAX_SIZE);
+    }
+
+    @Test
+    public void serviceWritesAndReadsCompressedValue() throws IOException {
+        SimulatedPeripheral peripheral = new SimulatedPeripheral.Builder()
+                .characteristic(BleUtils.getUUID("181a"), BleUtils.getUUID("2a6e"),
+                        PROPERTY_READ | PROPERTY_WRITE, new byte[1])
+                .build();
+        Service service =
+                new Retrotooth.Builder().transport(peripheral).build().create(Service.class);
+
+        service.setLog(TEXT).execute();
+        byte[] written = peripheral.value(BleUtils.getUUID("181a"), BleUtils.getUUID("2a6e"));
+        assertEquals(Compression.DEFLATE.code(), written[0]);
+        assertTrue(written.length < TEXT.length());
+        assertEquals(TEXT, service.log().execute().data());
+
+        service.setLogLzf(TEXT).execute();
+        written = peripheral.value(BleUtils.getUUID("181a"), BleUtils.getUUID("2a6e"));
+        assertEquals(Compression.LZF.code(), written[0]);
+        assertEquals(TEXT, service.log().execute().data());
+    }
+
+    private static void assertOversized(Converter<ResponseData, String> converter, byte[] body) {
+        try {
+            converter.convert(response(body));
+            fail();
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().startsWith(
+                    "Decompressed body exceeds"));
+        }
+    }
+
+    private static Converter<String, RequestData> compressing(Compression compression,
+            long threshold) {
+        return compression.compressing(StringRequestDataConverter.INSTANCE, threshold);
+    }
+
+    private static Converter<ResponseData, String> decompressing(long maxSize) {
+        return Compression.decompressing(StringConverter.INSTANCE, maxSize);
+    }
+
+    private static ResponseData response(byte[] body) {
+        return ResponseData.create(null, body);
+    }
+
+    private static byte[] bytes(RequestData data) throws IOException {
+        Buffer buffer = new Buffer();
+        data.writeTo(buffer);
+        return buffer.readByteArray();
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        Buffer buffer = new Buffer();
+        byte[] output = new byte[8192];
+        while (!deflater.finished()) {
+            buffer.write(output, 0, deflater.deflate(output));
+        }
+        deflater.end();
+        return buffer.readByteArray();
+    }
+
+    private static String repeat(String s, int count) {
+        StringBuilder result = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            result.append(s);
+        }
+        return result.toString();
+    }
+}
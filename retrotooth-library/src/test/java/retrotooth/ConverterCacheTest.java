@@ -0,0 +1,238 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.annotation.Retention;
+import java.lang.reflect.Type;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import retrotooth.annotations.NOTIFY;
+import retrotooth.annotations.READ;
+import retrotooth.annotations.WRITE;
+
+import static java.lang.annotation.RetentionPolicy.RUNTIME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+public final class ConverterCacheTest {
+    @Retention(RUNTIME)
+    @interface Tag {
+    }
+
+    interface Annotated {
+        @READ(service = "180d", characteristic = "2a38")
+        void read();
+
+        @NOTIFY(service = "180d", characteristic = "2a37")
+        void notifyOnly();
+
+        @READ(service = "180d", characteristic = "2a38")
+        @Tag
+        void tagged();
+    }
+
+    static final class Widget {
+    }
+
+    interface WidgetService {
+        @READ(service = "180d", characteristic = "2a38")
+        Call<Widget> widget();
+
+        @WRITE(service = "180d", characteristic = "2a39")
+        Call<Void> setWidget(Widget widget);
+    }
+
+    private final CountingFactory factory = new CountingFactory();
+    private final List<Converter.Factory> factories =
+            Collections.<Converter.Factory>singletonList(factory);
+
+    @Test
+    public void responseConverterHitAndMiss() {
+        ConverterCache cache = new ConverterCache();
+        Annotation[] none = new Annotation[0];
+        Converter<ResponseData, ?> widget =
+                cache.responseBodyConverter(factories, Widget.class, none);
+        assertSame(widget, cache.responseBodyConverter(factories, Widget.class, none));
+        assertEquals(1, factory.responseCount);
+
+        assertNotSame(widget, cache.responseBodyConverter(factories, String.class, none));
+        assertEquals(2, factory.responseCount);
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void requestConverterHitAndMiss() {
+        ConverterCache cache = new ConverterCache();
+        Annotation[] none = new Annotation[0];
+        Converter<?, RequestData> widget =
+                cache.requestBodyConverter(factories, Widget.class, none);
+        assertSame(widget, cache.requestBodyConverter(factories, Widget.class, none));
+        assertEquals(1, factory.requestCount);
+
+        assertNotSame(widget, cache.requestBodyConverter(factories, String.class, none));
+        assertEquals(2, factory.requestCount);
+        assertEquals(2, cache.requestSize());
+        // Response and request converters are cached apart.
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void operationAnnotationsLeftOutOfKey() throws NoSuchMethodException {
+        ConverterCache cache = new ConverterCache();
+        Converter<ResponseData, ?> read =
+                cache.responseBodyConverter(factories, Widget.class, annotations("read"));
+        assertSame(read, cache.responseBodyConverter(factories, Widget.class,
+                annotations("notifyOnly")));
+        assertSame(read, cache.responseBodyConverter(factories, Widget.class, new Annotation[0]));
+        assertEquals(1, factory.responseCount);
+
+        // Other annotations may change how a value converts, so they stay in the key.
+        assertNotSame(read, cache.responseBodyConverter(factories, Widget.class,
+                annotations("tagged")));
+        assertEquals(2, factory.responseCount);
+    }
+
+    @Test
+    public void statefulConvertersBypassCache() {
+        ConverterCache cache = new ConverterCache();
+        factory.stateful = true;
+        Annotation[] none = new Annotation[0];
+        assertNotSame(cache.responseBodyConverter(factories, Widget.class, none),
+                cache.responseBodyConverter(factories, Widget.class, none));
+        assertNotSame(cache.requestBodyConverter(factories, Widget.class, none),
+                cache.requestBodyConverter(factories, Widget.class, none));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.requestSize());
+    }
+
+    @Test
+    public void evictsOldestAtMaxSize() {
+        ConverterCache cache = new ConverterCache(2);
+        Annotation[] none = new Annotation[0];
+        Converter<ResponseData, ?> first =
+                cache.responseBodyConverter(factories, Widget.class, none);
+        Converter<?, RequestData> firstRequest =
+                cache.requestBodyConverter(factories, Widget.class, none);
+        for (Type type : new Type[]{String.class, Integer.class}) {
+            cache.responseBodyConverter(factories, type, none);
+            cache.requestBodyConverter(factories, type, none);
+        }
+        assertEquals(2, cache.size());
+        assertEquals(2, cache.requestSize());
+
+        assertNotSame(first, cache.responseBodyConverter(factories, Widget.class, none));
+        assertNotSame(firstRequest, cache.requestBodyConverter(factories, Widget.class, none));
+        assertEquals(4, factory.responseCount);
+        assertEquals(4, factory.requestCount);
+    }
+
+    @Test
+    public void sharedAcrossNewBuilder() {
+        Retrotooth retrotooth = new Retrotooth.Builder()
+                .transport(new NoTransport())
+                .addConverterFactory(factory)
+                .build();
+        WidgetService service = retrotooth.create(WidgetService.class);
+        service.widget();
+        service.setWidget(new Widget());
+        assertEquals(1, factory.responseCount);
+        assertEquals(1, factory.requestCount);
+
+        WidgetService derived = retrotooth.newBuilder()
+                .transport(new NoTransport())
+                .build()
+                .create(WidgetService.class);
+        derived.widget();
+        derived.setWidget(new Widget());
+        assertEquals(1, factory.responseCount);
+        assertEquals(1, factory.requestCount);
+
+        // Another converter factory may resolve differently, so the cache is not shared.
+        WidgetService extended = retrotooth.newBuilder()
+                .transport(new NoTransport())
+                .addConverterFactory(new Converter.Factory() {
+                })
+                .build()
+                .create(WidgetService.class);
+        extended.widget();
+        extended.setWidget(new Widget());
+        assertEquals(2, factory.responseCount);
+        assertEquals(2, factory.requestCount);
+    }
+
+    private static Annotation[] annotations(String method) throws NoSuchMethodException {
+        return Annotated.class.getMethod(method).getAnnotations();
+    }
+
+    /**
+     * Creates a new converter for every type on each call, counting them.
+     */
+    static final class CountingFactory extends Converter.Factory {
+        int responseCount;
+        int requestCount;
+        boolean stateful;
+
+        @Override
+        public Converter<ResponseData, ?> fromResponseBody(Type type, Annotation[] annotations) {
+            responseCount++;
+            return stateful ? new StatefulConverter<ResponseData, Object>() {
+                @Override
+                public Object convert(ResponseData value) {
+                    return null;
+                }
+            } : new Converter<ResponseData, Object>() {
+                @Override
+                public Object convert(ResponseData value) {
+                    return null;
+                }
+            };
+        }
+
+        @Override
+        public Converter<?, RequestData> toRequestBody(Type type, Annotation[] annotations) {
+            requestCount++;
+            return stateful ? new StatefulConverter<Object, RequestData>() {
+                @Override
+                public RequestData convert(Object value) {
+                    return null;
+                }
+            } : new Converter<Object, RequestData>() {
+                @Override
+                public RequestData convert(Object value) {
+                    return null;
+                }
+            };
+        }
+    }
+
+    /**
+     * Calls are created but never executed.
+     */
+    static final class NoTransport implements Transport {
+        @Override
+        public void read(UUID service, UUID characteristic, Callback callback) {
+            callback.onFailure(new IOException("Not connected"));
+        }
+
+        @Override
+        public void write(UUID service, UUID characteristic, byte[] value, Callback callback) {
+            callback.onFailure(new IOException("Not connected"));
+        }
+
+        @Override
+        public void readDescriptor(UUID service, UUID characteristic, UUID descriptor,
+                Callback callback) {
+            callback.onFailure(new IOException("Not connected"));
+        }
+
+        @Override
+        public String model() {
+            return null;
+        }
+    }
+}
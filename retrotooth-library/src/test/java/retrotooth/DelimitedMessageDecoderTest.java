@@ -0,0 +1,141 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.Charset;
+
+import okio.Buffer;
+import okio.BufferedSource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public final class DelimitedMessageDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final StringDecoder decoder =
+            new StringDecoder(DelimitedMessageDecoder.DEFAULT_MAX_MESSAGE_SIZE);
+
+    @Test
+    public void messageSplitAcrossFragments() throws IOException {
+        byte[] stream = frame("hello");
+        for (int i = 0; i < stream.length - 1; i++) {
+            decoder.feed(new byte[]{stream[i]});
+            assertNull(decoder.next());
+        }
+        decoder.feed(new byte[]{stream[stream.length - 1]});
+        assertEquals("hello", decoder.next());
+        assertNull(decoder.next());
+        assertEquals(0L, decoder.buffered());
+    }
+
+    @Test
+    public void lengthPrefixSplitAcrossFragments() throws IOException {
+        String message = repeat('x', 300);
+        byte[] stream = frame(message);
+        // 300 needs a two byte prefix; feed it one byte at a time.
+        decoder.feed(slice(stream, 0, 1));
+        assertNull(decoder.next());
+        decoder.feed(slice(stream, 1, 150));
+        assertNull(decoder.next());
+        decoder.feed(slice(stream, 151, stream.length - 151));
+        assertEquals(message, decoder.next());
+    }
+
+    @Test
+    public void severalMessagesInOneFragment() throws IOException {
+        Buffer stream = new Buffer()
+                .write(frame("one"))
+                .write(frame(""))
+                .write(frame("three"))
+                .write(frame("fo"));
+        byte[] bytes = stream.readByteArray();
+        // Cut the last message short.
+        decoder.feed(slice(bytes, 0, bytes.length - 1));
+        assertEquals("one", decoder.next());
+        assertEquals("", decoder.next());
+        assertEquals("three", decoder.next());
+        assertNull(decoder.next());
+        assertEquals(2L, decoder.buffered());
+        decoder.feed(slice(bytes, bytes.length - 1, 1));
+        assertEquals("fo", decoder.next());
+    }
+
+    @Test
+    public void feedResponseData() throws IOException {
+        byte[] stream = frame("response");
+        decoder.feed(ResponseData.create(null, slice(stream, 0, 4)));
+        assertNull(decoder.next());
+        decoder.feed(ResponseData.create(null, slice(stream, 4, stream.length - 4)));
+        assertEquals("response", decoder.next());
+    }
+
+    @Test
+    public void messageTooLarge() throws IOException {
+        StringDecoder decoder = new StringDecoder(4);
+        decoder.feed(frame("four"));
+        assertEquals("four", decoder.next());
+        // Rejected on the prefix alone, before the message arrives.
+        decoder.feed(new byte[]{5});
+        try {
+            decoder.next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+        decoder.reset();
+        assertEquals(0L, decoder.buffered());
+        decoder.feed(frame("ok"));
+        assertEquals("ok", decoder.next());
+    }
+
+    @Test
+    public void malformedLengthPrefix() throws IOException {
+        decoder.feed(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80});
+        try {
+            decoder.next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+    }
+
+    private static byte[] frame(String message) {
+        byte[] bytes = message.getBytes(UTF_8);
+        Buffer buffer = new Buffer();
+        for (int length = bytes.length; ; length >>>= 7) {
+            if (length < 0x80) {
+                buffer.writeByte(length);
+                break;
+            }
+            buffer.writeByte(length & 0x7F | 0x80);
+        }
+        return buffer.write(bytes).readByteArray();
+    }
+
+    private static byte[] slice(byte[] data, int offset, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(data, offset, slice, 0, length);
+        return slice;
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder builder = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            builder.append(c);
+        }
+        return builder.toString();
+    }
+
+    static final class StringDecoder extends DelimitedMessageDecoder<String> {
+        StringDecoder(long maxMessageSize) {
+            super(maxMessageSize);
+        }
+
+        @Override
+        protected String decode(BufferedSource frame) throws IOException {
+            return frame.readUtf8();
+        }
+    }
+}
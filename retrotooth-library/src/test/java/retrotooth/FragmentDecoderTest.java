@@ -0,0 +1,245 @@
+package retrotooth;
+
+import com.google.gson.stream.MalformedJsonException;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class FragmentDecoderTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final Object COMPLETE = new Object();
+
+    static final class Point {
+        int x;
+        int y;
+        String label;
+    }
+
+    private final ExecutorService parser = Executors.newSingleThreadExecutor();
+    private final ExecutorService producer = Executors.newSingleThreadExecutor();
+    private final BlockingQueue<Object> events = new LinkedBlockingQueue<>();
+    private final FragmentDecoder.Listener<Point> listener =
+            new FragmentDecoder.Listener<Point>() {
+                @Override
+                public void onDocument(Point document) {
+                    events.add(document);
+                }
+
+                @Override
+                public void onComplete() {
+                    events.add(COMPLETE);
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    events.add(t);
+                }
+            };
+
+    @After
+    public void tearDown() {
+        parser.shutdownNow();
+        producer.shutdownNow();
+    }
+
+    @Test
+    public void documentSplitAcrossFragments() throws Exception {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        decoder.feed(utf8("{\"x\":1,"));
+        decoder.feed(utf8("\"y\""));
+        assertNull(events.poll(50, TimeUnit.MILLISECONDS));
+
+        decoder.feed(utf8(":2}"));
+        Point point = (Point) nextEvent();
+        assertEquals(1, point.x);
+        assertEquals(2, point.y);
+
+        decoder.close();
+        assertEquals(COMPLETE, nextEvent());
+    }
+
+    @Test
+    public void multiByteCharacterSplitAcrossFragments() throws Exception {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        // U+20AC is E2 82 AC; its bytes arrive in two fragments.
+        byte[] document = utf8("{\"label\":\"\u20ac\"}");
+        int split = 11;
+        assertEquals((byte) 0xE2, document[split - 1]);
+        decoder.feed(slice(document, 0, split));
+        decoder.feed(slice(document, split, document.length - split));
+        decoder.close();
+
+        assertEquals("\u20ac", ((Point) nextEvent()).label);
+        assertEquals(COMPLETE, nextEvent());
+    }
+
+    @Test
+    public void severalDocumentsPerFragment() throws Exception {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        decoder.feed(utf8("{\"x\":1}{\"x\":2}\n{\"x\":3}{\"x\""));
+        decoder.feed(utf8(":4}"));
+        decoder.close();
+
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ((Point) nextEvent()).x);
+        }
+        assertEquals(COMPLETE, nextEvent());
+    }
+
+    @Test
+    public void producerBlocksWhilePipeIsFull() throws Exception {
+        final FragmentDecoder<Point> decoder = decoder(4L);
+        Future<Void> feed = producer.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                decoder.feed(utf8("{\"x\":1}{\"x\":2}"));
+                return null;
+            }
+        });
+        // Nothing is parsing yet, so the feed fills the pipe and waits.
+        assertBlocked(feed);
+
+        decoder.start(parser, listener);
+        feed.get(5, TimeUnit.SECONDS);
+        decoder.close();
+        assertEquals(1, ((Point) nextEvent()).x);
+        assertEquals(2, ((Point) nextEvent()).x);
+        assertEquals(COMPLETE, nextEvent());
+    }
+
+    @Test
+    public void cancelReleasesBlockedProducer() throws Exception {
+        final FragmentDecoder<Point> decoder = decoder(4L);
+        Future<Void> feed = producer.submit(new Callable<Void>() {
+            @Override
+            public Void call() throws IOException {
+                decoder.feed(utf8("{\"x\":1}"));
+                return null;
+            }
+        });
+        assertBlocked(feed);
+
+        decoder.cancel();
+        try {
+            feed.get(5, TimeUnit.SECONDS);
+            fail();
+        } catch (ExecutionException expected) {
+            assertTrue(expected.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void parserErrorReachesCaller() throws Exception {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        decoder.feed(utf8("{\"x\":1}{\"x\":}"));
+
+        assertEquals(1, ((Point) nextEvent()).x);
+        assertTrue(nextEvent() instanceof MalformedJsonException);
+        assertParserReleased();
+        assertNull(events.poll(50, TimeUnit.MILLISECONDS));
+
+        // The parser is gone, so later fragments are refused rather than left to fill the pipe.
+        try {
+            decoder.feed(utf8("{\"x\":2}"));
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void closeMidDocumentFails() throws Exception {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        decoder.feed(utf8("{\"x\":1"));
+        decoder.close();
+
+        assertTrue(nextEvent() instanceof EOFException);
+        assertParserReleased();
+    }
+
+    @Test
+    public void cancelReleasesParserThread() throws Exception {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        decoder.feed(utf8("{\"x\":1}{\"x\""));
+        assertEquals(1, ((Point) nextEvent()).x);
+
+        // The parser is blocked waiting for the rest of the second document.
+        decoder.cancel();
+        Object failure = nextEvent();
+        assertTrue(failure instanceof IOException);
+        assertEquals("canceled", ((IOException) failure).getMessage());
+        assertParserReleased();
+    }
+
+    @Test
+    public void startTwiceFails() {
+        FragmentDecoder<Point> decoder = decoder(FragmentDecoder.DEFAULT_MAX_BUFFER_SIZE);
+        decoder.start(parser, listener);
+        try {
+            decoder.start(parser, listener);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        decoder.cancel();
+    }
+
+    private static FragmentDecoder<Point> decoder(long maxBufferSize) {
+        return GsonConverterFactory.create().newFragmentDecoder(Point.class, maxBufferSize);
+    }
+
+    private Object nextEvent() throws InterruptedException {
+        Object event = events.poll(5, TimeUnit.SECONDS);
+        if (event == null) throw new AssertionError("No event from the decoder.");
+        return event;
+    }
+
+    /**
+     * Asserts that the parsing executor's only thread is free to run another task.
+     */
+    private void assertParserReleased() throws Exception {
+        assertTrue(parser.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return true;
+            }
+        }).get(5, TimeUnit.SECONDS));
+    }
+
+    private static void assertBlocked(Future<?> feed) throws InterruptedException {
+        Thread.sleep(100);
+        assertFalse(feed.isDone());
+    }
+
+    private static byte[] utf8(String s) {
+        return s.getBytes(UTF_8);
+    }
+
+    private static byte[] slice(byte[] bytes, int offset, int length) {
+        byte[] slice = new byte[length];
+        System.arraycopy(bytes, offset, slice, 0, length);
+        return slice;
+    }
+}
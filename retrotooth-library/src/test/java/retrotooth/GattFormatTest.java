@@ -0,0 +1,106 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public final class GattFormatTest {
+    @Test
+    public void sfloatSpecialValues() throws IOException {
+        assertTrue(Double.isNaN(readSfloat(0x07FF)));
+        assertTrue(Double.isNaN(readSfloat(0x0800))); // NRes
+        assertTrue(Double.isNaN(readSfloat(0x0801))); // Reserved
+        assertEquals(Double.POSITIVE_INFINITY, readSfloat(0x07FE), 0d);
+        assertEquals(Double.NEGATIVE_INFINITY, readSfloat(0x0802), 0d);
+    }
+
+    @Test
+    public void sfloatValues() throws IOException {
+        // Exponent -1, mantissa 114.
+        assertEquals(11.4d, readSfloat(0xF072), 1e-9);
+        // Exponent 2, mantissa -1.
+        assertEquals(-100d, readSfloat(0x2FFF), 1e-9);
+        assertEquals(11.4d, GattFormat.SFLOAT.getDouble(new byte[]{0x00, 0x72, (byte) 0xF0}, 1),
+                1e-9);
+    }
+
+    @Test
+    public void sfloatWritesSpecialValues() throws IOException {
+        assertEquals(0x07FF, writeSfloat(Double.NaN));
+        assertEquals(0x07FE, writeSfloat(Double.POSITIVE_INFINITY));
+        assertEquals(0x0802, writeSfloat(Double.NEGATIVE_INFINITY));
+        // Too large for a 12-bit mantissa even at the largest exponent.
+        assertEquals(0x07FE, writeSfloat(1e12));
+        assertEquals(0x0802, writeSfloat(-1e12));
+    }
+
+    @Test
+    public void sfloatRoundTrip() throws IOException {
+        for (double value : new double[]{0d, 1d, -1d, 11.4d, 36.9d, -204.5d, 2045d, 0.0001d}) {
+            assertEquals(value, readSfloat(writeSfloat(value)), Math.abs(value) * 1e-9);
+        }
+    }
+
+    @Test
+    public void floatSpecialValues() throws IOException {
+        assertTrue(Double.isNaN(readFloat(0x007FFFFF)));
+        assertTrue(Double.isNaN(readFloat(0x00800000))); // NRes
+        assertTrue(Double.isNaN(readFloat(0x00800001))); // Reserved
+        assertEquals(Double.POSITIVE_INFINITY, readFloat(0x007FFFFE), 0d);
+        assertEquals(Double.NEGATIVE_INFINITY, readFloat(0x00800002), 0d);
+    }
+
+    @Test
+    public void floatValues() throws IOException {
+        // Exponent -2, mantissa 366.
+        assertEquals(3.66d, readFloat(0xFE00016E), 1e-9);
+        // Exponent 3, mantissa -5.
+        assertEquals(-5000d, readFloat(0x03FFFFFB), 1e-9);
+    }
+
+    @Test
+    public void floatWritesSpecialValues() throws IOException {
+        assertEquals(0x007FFFFF, writeFloat(Double.NaN));
+        assertEquals(0x007FFFFE, writeFloat(Double.POSITIVE_INFINITY));
+        assertEquals(0x00800002, writeFloat(Double.NEGATIVE_INFINITY));
+    }
+
+    @Test
+    public void floatRoundTrip() throws IOException {
+        for (double value : new double[]{0d, 1d, -1d, 3.66d, 98.6d, -40.25d, 8388605d}) {
+            assertEquals(value, readFloat(writeFloat(value)), Math.abs(value) * 1e-9);
+        }
+    }
+
+    @Test
+    public void integerFormatsTruncateFloatingPointFormats() {
+        assertEquals(11L, GattFormat.SFLOAT.getLong(new byte[]{0x72, (byte) 0xF0}, 0));
+    }
+
+    private static double readSfloat(int raw) throws IOException {
+        return GattFormat.SFLOAT.readDouble(new Buffer().writeShortLe(raw));
+    }
+
+    private static int writeSfloat(double value) throws IOException {
+        Buffer buffer = new Buffer();
+        GattFormat.SFLOAT.write(buffer, value);
+        assertEquals(2L, buffer.size());
+        return buffer.readShortLe() & 0xFFFF;
+    }
+
+    private static double readFloat(int raw) throws IOException {
+        return GattFormat.FLOAT.readDouble(new Buffer().writeIntLe(raw));
+    }
+
+    private static int writeFloat(double value) throws IOException {
+        Buffer buffer = new Buffer();
+        GattFormat.FLOAT.write(buffer, value);
+        assertEquals(4L, buffer.size());
+        return buffer.readIntLe();
+    }
+}
@@ -0,0 +1,135 @@
+package retrotooth;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Arrays;
+import java.util.List;
+
+import okio.Buffer;
+import retrotooth.ok.MediaType;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public final class JacksonConverterFactoryTest {
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    public static final class SensorConfig {
+        public String name;
+        public boolean enabled;
+        public int sampleRateHz;
+        public double threshold;
+        public List<String> channels;
+        public byte[] calibration;
+    }
+
+    @Test
+    public void json() throws IOException {
+        JacksonConverterFactory factory = JacksonConverterFactory.create();
+        RequestData body = encode(factory, config());
+        assertEquals(MediaType.parse("application/json; charset=UTF-8"), body.contentType());
+        assertEquals('{', bytes(body)[0]);
+        assertConfig(decode(factory, bytes(body)));
+    }
+
+    @Test
+    public void cbor() throws IOException {
+        JacksonConverterFactory factory =
+                JacksonConverterFactory.create(new ObjectMapper(new CBORFactory()));
+        RequestData body = encode(factory, config());
+        assertEquals(MediaType.parse("application/cbor"), body.contentType());
+        byte[] bytes = bytes(body);
+        // A CBOR map, major type 5.
+        assertEquals(5, (bytes[0] & 0xFF) >>> 5);
+        assertConfig(decode(factory, bytes));
+    }
+
+    @Test
+    public void smile() throws IOException {
+        JacksonConverterFactory factory =
+                JacksonConverterFactory.create(new ObjectMapper(new SmileFactory()));
+        RequestData body = encode(factory, config());
+        assertEquals(MediaType.parse("application/x-jackson-smile"), body.contentType());
+        byte[] bytes = bytes(body);
+        assertArrayEquals(new byte[]{':', ')', '\n'}, Arrays.copyOf(bytes, 3));
+        assertConfig(decode(factory, bytes));
+    }
+
+    @Test
+    public void binaryFormatsAreSmallerThanJson() throws IOException {
+        int json = bytes(encode(JacksonConverterFactory.create(), config())).length;
+        int cbor = bytes(encode(JacksonConverterFactory.create(
+                new ObjectMapper(new CBORFactory())), config())).length;
+        int smile = bytes(encode(JacksonConverterFactory.create(
+                new ObjectMapper(new SmileFactory())), config())).length;
+        assertTrue(cbor < json);
+        assertTrue(smile < json);
+    }
+
+    @Test
+    public void explicitMediaType() throws IOException {
+        MediaType mediaType = MediaType.parse("application/vnd.example+cbor");
+        JacksonConverterFactory factory =
+                JacksonConverterFactory.create(new ObjectMapper(new CBORFactory()), mediaType);
+        assertEquals(mediaType, encode(factory, config()).contentType());
+    }
+
+    @Test
+    public void convertersCachedPerType() {
+        JacksonConverterFactory factory = JacksonConverterFactory.create();
+        assertSame(factory.fromResponseBody(SensorConfig.class, NO_ANNOTATIONS),
+                factory.fromResponseBody(SensorConfig.class, NO_ANNOTATIONS));
+        assertSame(factory.toRequestBody(SensorConfig.class, NO_ANNOTATIONS),
+                factory.toRequestBody(SensorConfig.class, NO_ANNOTATIONS));
+    }
+
+    private static SensorConfig config() {
+        SensorConfig config = new SensorConfig();
+        config.name = "Thermometer \u00b0C";
+        config.enabled = true;
+        config.sampleRateHz = 50;
+        config.threshold = -12.5d;
+        config.channels = Arrays.asList("ambient", "probe");
+        // Bytes that are not valid UTF-8, which binary formats carry as they are.
+        config.calibration = new byte[]{(byte) 0xFF, (byte) 0xC0, 0x00, 0x7F};
+        return config;
+    }
+
+    private static void assertConfig(SensorConfig config) {
+        assertEquals("Thermometer \u00b0C", config.name);
+        assertTrue(config.enabled);
+        assertEquals(50, config.sampleRateHz);
+        assertEquals(-12.5d, config.threshold, 0d);
+        assertEquals(Arrays.asList("ambient", "probe"), config.channels);
+        assertArrayEquals(new byte[]{(byte) 0xFF, (byte) 0xC0, 0x00, 0x7F}, config.calibration);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static RequestData encode(JacksonConverterFactory factory, SensorConfig config)
+            throws IOException {
+        Converter<SensorConfig, RequestData> converter = (Converter<SensorConfig, RequestData>)
+                factory.toRequestBody(SensorConfig.class, NO_ANNOTATIONS);
+        return converter.convert(config);
+    }
+
+    private static SensorConfig decode(JacksonConverterFactory factory, byte[] bytes)
+            throws IOException {
+        Converter<ResponseData, ?> converter =
+                factory.fromResponseBody(SensorConfig.class, NO_ANNOTATIONS);
+        return (SensorConfig) converter.convert(ResponseData.create(null, bytes));
+    }
+
+    private static byte[] bytes(RequestData body) throws IOException {
+        Buffer buffer = new Buffer();
+        body.writeTo(buffer);
+        return buffer.readByteArray();
+    }
+}
@@ -0,0 +1,177 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class KeyedSerialExecutorTest {
+    /** Runs submitted drains only when the test asks, so interleavings are deterministic. */
+    private final Deque<Runnable> scheduled = new ArrayDeque<>();
+    private final KeyedSerialExecutor executor = new KeyedSerialExecutor(new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            scheduled.add(command);
+        }
+    });
+    private final List<String> log = new ArrayList<>();
+
+    @Test
+    public void tasksForOneKeyShareOneDrain() {
+        executor.execute("a", record("a1"));
+        executor.execute("a", record("a2"));
+        executor.execute("b", record("b1"));
+        executor.execute("a", record("a3"));
+        assertEquals(2, scheduled.size());
+
+        scheduled.poll().run();
+        assertEquals(Arrays.asList("a1", "a2", "a3"), log);
+        scheduled.poll().run();
+        assertEquals(Arrays.asList("a1", "a2", "a3", "b1"), log);
+        assertTrue(scheduled.isEmpty());
+
+        // The drained queue retired; the next task schedules a new one.
+        executor.execute("a", record("a4"));
+        assertEquals(1, scheduled.size());
+        scheduled.poll().run();
+        assertEquals("a4", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void runtimeExceptionDoesNotStopLaterTasks() {
+        Logger logger = Internal.logger;
+        Level level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+        try {
+            executor.execute("a", record("a1"));
+            executor.execute("a", new Runnable() {
+                @Override
+                public void run() {
+                    throw new IllegalStateException("boom");
+                }
+            });
+            executor.execute("a", record("a3"));
+            scheduled.poll().run();
+        } finally {
+            logger.setLevel(level);
+        }
+        assertEquals(Arrays.asList("a1", "a3"), log);
+        assertTrue(scheduled.isEmpty());
+    }
+
+    @Test
+    public void errorHandsLaterTasksToNewDrain() {
+        final Error error = new AssertionError("boom");
+        executor.execute("a", record("a1"));
+        executor.execute("a", new Runnable() {
+            @Override
+            public void run() {
+                throw error;
+            }
+        });
+        executor.execute("a", record("a3"));
+        try {
+            scheduled.poll().run();
+            fail();
+        } catch (Error e) {
+            assertSame(error, e);
+        }
+        assertEquals(Collections.singletonList("a1"), log);
+
+        // The tasks behind the failed one were rescheduled rather than stranded.
+        assertEquals(1, scheduled.size());
+        executor.execute("a", record("a4"));
+        assertEquals(1, scheduled.size());
+        scheduled.poll().run();
+        assertEquals(Arrays.asList("a1", "a3", "a4"), log);
+    }
+
+    @Test
+    public void errorOnLastTaskRetiresQueue() {
+        executor.execute("a", new Runnable() {
+            @Override
+            public void run() {
+                throw new AssertionError("boom");
+            }
+        });
+        try {
+            scheduled.poll().run();
+            fail();
+        } catch (AssertionError expected) {
+        }
+        assertTrue(scheduled.isEmpty());
+
+        executor.execute("a", record("a2"));
+        assertEquals(1, scheduled.size());
+        scheduled.poll().run();
+        assertEquals(Collections.singletonList("a2"), log);
+    }
+
+    @Test
+    public void concurrentTasksRunInOrderPerKey() throws InterruptedException {
+        final int keys = 8;
+        final int tasksPerKey = 2000;
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        KeyedSerialExecutor executor = new KeyedSerialExecutor(pool);
+        final int[] next = new int[keys];
+        final AtomicInteger[] running = new AtomicInteger[keys];
+        final AtomicInteger violations = new AtomicInteger();
+        for (int k = 0; k < keys; k++) {
+            running[k] = new AtomicInteger();
+        }
+        try {
+            for (int i = 0; i < tasksPerKey; i++) {
+                for (int k = 0; k < keys; k++) {
+                    final int key = k;
+                    final int sequence = i;
+                    executor.execute(key, new Runnable() {
+                        @Override
+                        public void run() {
+                            if (running[key].incrementAndGet() != 1) {
+                                violations.incrementAndGet();
+                            }
+                            // Tasks of one key never overlap, so plain access is safe.
+                            if (next[key] != sequence) {
+                                violations.incrementAndGet();
+                            }
+                            next[key] = sequence + 1;
+                            running[key].decrementAndGet();
+                        }
+                    });
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+        assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, violations.get());
+        for (int k = 0; k < keys; k++) {
+            assertEquals(tasksPerKey, next[k]);
+        }
+    }
+
+    private Runnable record(final String name) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                log.add(name);
+            }
+        };
+    }
+}
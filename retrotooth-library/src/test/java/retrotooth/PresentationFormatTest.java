@@ -0,0 +1,220 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+
+import okio.Buffer;
+import retrotooth.annotations.Compressed;
+import retrotooth.annotations.Presentation;
+import retrotooth.annotations.READ;
+import retrotooth.sim.SimulatedPeripheral;
+import retrotooth.util.BleUtils;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static retrotooth.sim.SimulatedPeripheral.PROPERTY_READ;
+
+public final class PresentationFormatTest {
+    private static final UUID ENVIRONMENTAL_SENSING = BleUtils.getUUID("181a");
+    private static final UUID TEMPERATURE = BleUtils.getUUID("2a6e");
+    private static final UUID HUMIDITY = BleUtils.getUUID("2a6f");
+    // SINT16 with exponent -2, in degrees Celsius.
+    private static final byte[] TEMPERATURE_FORMAT =
+            new byte[]{0x0E, (byte) 0xFE, 0x2F, 0x27, 0x01, 0x00, 0x00};
+
+    interface Service {
+        @Presentation
+        @READ(service = "181a", characteristic = "2a6e")
+        Call<Double> temperature();
+
+        @Presentation
+        @READ(service = "181a", characteristic = "2a6e")
+        Call<Integer> roundedTemperature();
+
+        @Presentation
+        @Compressed
+        @READ(service = "181a", characteristic = "2a6e")
+        Call<Double> compressedTemperature();
+
+        @Presentation
+        @READ(service = "181a", characteristic = "2a6f")
+        Call<Double> humidity();
+    }
+
+    @Test
+    public void descriptorReadOncePerModel() throws IOException {
+        SimulatedPeripheral first = thermometer("Thermometer", new byte[]{0x6D, 0x0E});
+        SimulatedPeripheral second = thermometer("Thermometer", new byte[]{(byte) 0xF6, 0x00});
+        SimulatedPeripheral other = thermometer("Other thermometer", new byte[]{0x01, 0x00});
+        Retrotooth retrotooth = new Retrotooth.Builder().transport(first).build();
+
+        assertEquals(36.93d, retrotooth.create(Service.class).temperature().execute().data(), 0d);
+        assertEquals(2L, first.operationCount());
+        assertEquals(36.93d, retrotooth.create(Service.class).temperature().execute().data(), 0d);
+        assertEquals(3L, first.operationCount());
+
+        // Instances made with newBuilder() share the cache, so a device of the same model skips
+        // the descriptor.
+        Service sameModel = retrotooth.newBuilder().transport(second).build().create(Service.class);
+        assertEquals(2.46d, sameModel.temperature().execute().data(), 0d);
+        assertEquals(1L, second.operationCount());
+
+        Service otherModel = retrotooth.newBuilder().transport(other).build().create(Service.class);
+        assertEquals(0.01d, otherModel.temperature().execute().data(), 0d);
+        assertEquals(2L, other.operationCount());
+    }
+
+    @Test
+    public void enqueuedCallReadsDescriptorOnce() throws Exception {
+        SimulatedPeripheral peripheral = thermometer("Thermometer", new byte[]{0x6D, 0x0E});
+        Service service = new Retrotooth.Builder().transport(peripheral).build()
+                .create(Service.class);
+
+        assertEquals(36.93d, (Double) enqueue(service.temperature()), 0d);
+        assertEquals(2L, peripheral.operationCount());
+        assertEquals(36.93d, (Double) enqueue(service.temperature()), 0d);
+        assertEquals(3L, peripheral.operationCount());
+        assertEquals(36.93d, service.temperature().execute().data(), 0d);
+        assertEquals(4L, peripheral.operationCount());
+    }
+
+    @Test
+    public void absentDescriptorCached() throws IOException {
+        SimulatedPeripheral peripheral = thermometer("Thermometer", new byte[]{0x6D, 0x0E});
+        Service service = new Retrotooth.Builder().transport(peripheral).build()
+                .create(Service.class);
+
+        for (int i = 1; i <= 2; i++) {
+            long operations = peripheral.operationCount();
+            try {
+                service.humidity().execute();
+                fail();
+            } catch (IOException expected) {
+            }
+            // The descriptor is looked for on the first call only.
+            assertEquals(i == 1 ? 2L : 1L, peripheral.operationCount() - operations);
+        }
+    }
+
+    @Test
+    public void unsupportedDescriptorCachedAsAbsent() {
+        PresentationFormatCache cache = new PresentationFormatCache();
+        // A UTF-8 string format has no numeric decoding.
+        byte[] value = new byte[]{0x19, 0x00, 0x00, 0x27, 0x01, 0x00, 0x00};
+        assertNull(PresentationFormat.parse(value));
+        assertNull(PresentationFormat.parse(new byte[]{0x0E, 0x00}));
+
+        assertFalse(cache.contains("Thermometer", TEMPERATURE));
+        cache.put("Thermometer", TEMPERATURE, PresentationFormat.parse(value));
+        assertTrue(cache.contains("Thermometer", TEMPERATURE));
+        assertNull(cache.get("Thermometer", TEMPERATURE));
+        assertFalse(cache.contains("Other thermometer", TEMPERATURE));
+
+        // Devices without a name share one entry.
+        cache.put(null, HUMIDITY, PresentationFormat.parse(TEMPERATURE_FORMAT));
+        assertEquals(GattFormat.SINT16, cache.get(null, HUMIDITY).format());
+    }
+
+    @Test
+    public void negativeExponentsScaleExactly() throws IOException {
+        assertEquals(36.93d, format(0x0E, -2).decode(new byte[]{0x6D, 0x0E}, 0), 0d);
+        assertEquals(36.5d, format(0x0E, -1).decode(new byte[]{0x6D, 0x01}, 0), 0d);
+        assertEquals(-0.07d, format(0x0E, -2).decode(new byte[]{(byte) 0xF9, (byte) 0xFF}, 0),
+                0d);
+        // 123456789 * 10^-3
+        assertEquals(123456.789d, format(0x10, -3)
+                .decode(new Buffer().writeIntLe(123456789)), 0d);
+        assertEquals(1.1d, format(0x06, -1).decode(new byte[]{0x0B, 0x00}, 0), 0d);
+
+        // Whole numbers round; a non-negative exponent scales exactly.
+        assertEquals(37L, format(0x0E, -1).decodeLong(new Buffer().writeShortLe(365)));
+        assertEquals(-37L, format(0x0E, -1).decodeLong(new Buffer().writeShortLe(-366)));
+        assertEquals(2147483647L * 1000000000L,
+                format(0x10, 9).decodeLong(new Buffer().writeIntLe(Integer.MAX_VALUE)));
+        assertEquals(Long.MAX_VALUE,
+                format(0x10, 10).decodeLong(new Buffer().writeIntLe(Integer.MAX_VALUE)));
+        assertEquals(Long.MIN_VALUE,
+                format(0x10, 10).decodeLong(new Buffer().writeIntLe(Integer.MIN_VALUE)));
+    }
+
+    @Test
+    public void roundedResultUsesFormat() throws IOException {
+        SimulatedPeripheral peripheral = thermometer("Thermometer", new byte[]{0x6D, 0x0E});
+        Service service = new Retrotooth.Builder().transport(peripheral).build()
+                .create(Service.class);
+        assertEquals(37, (int) service.roundedTemperature().execute().data());
+    }
+
+    @Test
+    public void compressedBodyKeepsFormat() throws IOException {
+        byte[] value = new byte[]{0x6D, 0x0E};
+        SimulatedPeripheral peripheral = thermometer("Thermometer", stored(value));
+        Service service = new Retrotooth.Builder().transport(peripheral).build()
+                .create(Service.class);
+        assertEquals(36.93d, service.compressedTemperature().execute().data(), 0d);
+
+        peripheral.setValue(ENVIRONMENTAL_SENSING, TEMPERATURE, deflated(value));
+        assertEquals(36.93d, service.compressedTemperature().execute().data(), 0d);
+    }
+
+    private static SimulatedPeripheral thermometer(String model, byte[] temperature) {
+        return new SimulatedPeripheral.Builder()
+                .model(model)
+                .characteristic(ENVIRONMENTAL_SENSING, TEMPERATURE, PROPERTY_READ, temperature)
+                .descriptor(ENVIRONMENTAL_SENSING, TEMPERATURE, PresentationFormat.DESCRIPTOR_UUID,
+                        TEMPERATURE_FORMAT)
+                .characteristic(ENVIRONMENTAL_SENSING, HUMIDITY, PROPERTY_READ, new byte[2])
+                .build();
+    }
+
+    private static PresentationFormat format(int format, int exponent) {
+        return PresentationFormat.parse(
+                new byte[]{(byte) format, (byte) exponent, 0x00, 0x27, 0x01, 0x00, 0x00});
+    }
+
+    private static Object enqueue(Call<?> call) throws InterruptedException {
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        @SuppressWarnings("unchecked")
+        Call<Object> objectCall = (Call<Object>) call;
+        objectCall.enqueue(new Callback<Object>() {
+            @Override
+            public void onResponse(Response<Object> response) {
+                result.set(response.data());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.set(t);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private static byte[] stored(byte[] value) {
+        return new Buffer().writeByte(Compression.STORED).write(value).readByteArray();
+    }
+
+    private static byte[] deflated(byte[] value) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION, true);
+        deflater.setInput(value);
+        deflater.finish();
+        byte[] output = new byte[64];
+        int count = deflater.deflate(output);
+        deflater.end();
+        return new Buffer().writeByte(Compression.DEFLATE.code()).write(output, 0, count)
+                .readByteArray();
+    }
+}
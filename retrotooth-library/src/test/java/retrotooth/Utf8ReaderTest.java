@@ -0,0 +1,132 @@
+package retrotooth;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.Okio;
+import okio.Source;
+import okio.Timeout;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class Utf8ReaderTest {
+    @Test
+    public void singleAndMultiByte() throws IOException {
+        Utf8Reader reader = new Utf8Reader(new Buffer().writeUtf8("a\u00e9\u20ac\ud83d\ude00z"));
+        assertEquals("a\u00e9\u20ac\ud83d\ude00z", readAll(reader, 64));
+    }
+
+    @Test
+    public void sequencesSplitAcrossSegments() throws IOException {
+        // U+20AC is E2 82 AC and U+1F600 is F0 9F 98 80.
+        Utf8Reader reader = new Utf8Reader(chunks(
+                bytes(0xE2), bytes(0x82, 0xAC, 0xF0, 0x9F), bytes(0x98), bytes(0x80, 'x')));
+        assertEquals("\u20ac\ud83d\ude00x", readAll(reader, 64));
+    }
+
+    @Test
+    public void readStopsShortOfIncompleteSequence() throws IOException {
+        ChunkedSource source = new ChunkedSource(bytes('a', 0xE2), bytes(0x82, 0xAC));
+        Utf8Reader reader = new Utf8Reader(Okio.buffer(source));
+        char[] buffer = new char[16];
+        // The character already decoded is returned without waiting for the next segment.
+        assertEquals(1, reader.read(buffer, 0, buffer.length));
+        assertEquals('a', buffer[0]);
+        assertEquals(1, source.chunks.size());
+        assertFalse(reader.ready());
+
+        assertEquals(1, reader.read(buffer, 0, buffer.length));
+        assertEquals('\u20ac', buffer[0]);
+        assertEquals(-1, reader.read(buffer, 0, buffer.length));
+    }
+
+    @Test
+    public void surrogatePairSplitAcrossReads() throws IOException {
+        Utf8Reader reader = new Utf8Reader(new Buffer().writeUtf8("\ud83d\ude00!"));
+        char[] buffer = new char[1];
+        assertEquals(1, reader.read(buffer, 0, 1));
+        assertEquals('\ud83d', buffer[0]);
+        assertTrue(reader.ready());
+        assertEquals(1, reader.read(buffer, 0, 1));
+        assertEquals('\ude00', buffer[0]);
+        assertEquals("!", readAll(reader, 1));
+    }
+
+    @Test
+    public void malformedInputDecodesToReplacementCharacter() throws IOException {
+        // A lone continuation byte, an overlong encoding, a bad continuation and an invalid lead.
+        Utf8Reader reader = new Utf8Reader(new Buffer().write(
+                bytes(0x80, 'a', 0xC0, 0x80, 'b', 0xE2, 'c', 'd', 0xF8, 'e')));
+        assertEquals("\ufffda\ufffdb\ufffdcd\ufffde", readAll(reader, 64));
+    }
+
+    @Test
+    public void sequenceTruncatedByEndOfStream() throws IOException {
+        Utf8Reader reader = new Utf8Reader(chunks(bytes('a', 0xF0, 0x9F), bytes(0x98)));
+        assertEquals("a\ufffd", readAll(reader, 64));
+
+        // Bytes after the lead which cannot continue it are decoded on their own.
+        reader = new Utf8Reader(new Buffer().write(bytes(0xE2, 'a')));
+        assertEquals("\ufffda", readAll(reader, 64));
+    }
+
+    private static String readAll(Utf8Reader reader, int bufferSize) throws IOException {
+        StringBuilder result = new StringBuilder();
+        char[] buffer = new char[bufferSize];
+        for (int count; (count = reader.read(buffer, 0, buffer.length)) != -1; ) {
+            result.append(buffer, 0, count);
+        }
+        return result.toString();
+    }
+
+    private static BufferedSource chunks(byte[]... chunks) {
+        return Okio.buffer(new ChunkedSource(chunks));
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            bytes[i] = (byte) values[i];
+        }
+        return bytes;
+    }
+
+    /**
+     * Returns one chunk per read, as segments arriving one at a time.
+     */
+    static final class ChunkedSource implements Source {
+        final Deque<byte[]> chunks = new ArrayDeque<>();
+
+        ChunkedSource(byte[]... chunks) {
+            for (byte[] chunk : chunks) {
+                this.chunks.add(chunk);
+            }
+        }
+
+        @Override
+        public long read(Buffer sink, long byteCount) {
+            byte[] chunk = chunks.poll();
+            if (chunk == null) {
+                return -1;
+            }
+            sink.write(chunk);
+            return chunk.length;
+        }
+
+        @Override
+        public Timeout timeout() {
+            return Timeout.NONE;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package retrotooth.beacon;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import okio.Buffer;
+import okio.ByteString;
+import retrotooth.model.ScanRecordView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static retrotooth.beacon.IBeaconTest.record;
+
+public final class AltBeaconTest {
+    private static final int RADIUS_NETWORKS = 0x0118;
+    private static final UUID ID1 = UUID.fromString("2f234454-cf6d-4a0f-adf2-f4911ba9ffa6");
+    private static final byte[] FLAGS = {0x01, 0x06};
+
+    private final ScanRecordView view = new ScanRecordView();
+    private final AltBeacon beacon = new AltBeacon();
+
+    @Test
+    public void parse() {
+        assertTrue(view.wrap(record(FLAGS, altBeacon(RADIUS_NETWORKS, 0xBEAC, 0xFFFF, 2))));
+        assertTrue(beacon.parse(view));
+        assertEquals(RADIUS_NETWORKS, beacon.manufacturerId());
+        assertEquals(ID1, beacon.id1());
+        assertEquals(ID1.getMostSignificantBits(), beacon.id1MostSignificantBits());
+        assertEquals(ID1.getLeastSignificantBits(), beacon.id1LeastSignificantBits());
+        assertEquals(0xFFFF, beacon.id2());
+        assertEquals(2, beacon.id3());
+        assertEquals(-59, beacon.referenceRssi());
+        assertEquals(0xA5, beacon.reserved());
+    }
+
+    @Test
+    public void skipsOtherManufacturerData() {
+        // The first structure lacks the beacon code, so the second is decoded.
+        byte[] other = altBeacon(0x004C, 0xBEAD, 9, 9);
+        assertTrue(view.wrap(record(FLAGS, other, altBeacon(0x0059, 0xBEAC, 3, 4))));
+        assertTrue(beacon.parse(view));
+        assertEquals(0x0059, beacon.manufacturerId());
+        assertEquals(3, beacon.id2());
+        assertEquals(4, beacon.id3());
+    }
+
+    @Test
+    public void otherFramesLeaveInstanceUnchanged() {
+        assertTrue(view.wrap(record(FLAGS, altBeacon(RADIUS_NETWORKS, 0xBEAC, 1, 2))));
+        assertTrue(beacon.parse(view));
+
+        view.wrap(record(FLAGS, altBeacon(RADIUS_NETWORKS, 0xBEAD, 3, 4)));
+        assertFalse(beacon.parse(view));
+        // Service data, not manufacturer data, in the same layout.
+        byte[] serviceData = altBeacon(RADIUS_NETWORKS, 0xBEAC, 3, 4);
+        serviceData[0] = ScanRecordView.DATA_TYPE_SERVICE_DATA;
+        view.wrap(record(FLAGS, serviceData));
+        assertFalse(beacon.parse(view));
+
+        assertEquals(RADIUS_NETWORKS, beacon.manufacturerId());
+        assertEquals(1, beacon.id2());
+        assertEquals(2, beacon.id3());
+    }
+
+    @Test
+    public void shortPayloads() {
+        byte[] full = altBeacon(RADIUS_NETWORKS, 0xBEAC, 1, 2);
+        for (int length = 1; length < full.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(full, 0, truncated, 0, length);
+            view.wrap(record(FLAGS, truncated));
+            assertFalse("length " + length, beacon.parse(view));
+        }
+    }
+
+    /**
+     * Returns a manufacturer specific data structure, without its length, in the AltBeacon
+     * layout.
+     */
+    private static byte[] altBeacon(int manufacturerId, int code, int id2, int id3) {
+        return new Buffer()
+                .writeByte(ScanRecordView.DATA_TYPE_MANUFACTURER_SPECIFIC_DATA)
+                .writeShortLe(manufacturerId)
+                .writeShort(code)
+                .write(ByteString.decodeHex("2f234454cf6d4a0fadf2f4911ba9ffa6"))
+                .writeShort(id2)
+                .writeShort(id3)
+                .writeByte(0xC5)
+                .writeByte(0xA5)
+                .readByteArray();
+    }
+}
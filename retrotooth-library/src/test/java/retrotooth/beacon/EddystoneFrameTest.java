@@ -0,0 +1,159 @@
+package retrotooth.beacon;
+
+import org.junit.Test;
+
+import okio.Buffer;
+import okio.ByteString;
+import retrotooth.model.ScanRecordView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static retrotooth.beacon.IBeaconTest.record;
+
+public final class EddystoneFrameTest {
+    // Flags, then the complete list of 16-bit service UUIDs: 0xFEAA.
+    private static final byte[] FLAGS = {0x01, 0x06};
+    private static final byte[] SERVICE = {0x03, (byte) 0xAA, (byte) 0xFE};
+
+    private final ScanRecordView view = new ScanRecordView();
+    private final EddystoneFrame frame = new EddystoneFrame();
+
+    @Test
+    public void uid() {
+        assertTrue(parse("00ee8b0ca75009a8feaa3c12fffffffffffe0000"));
+        assertEquals(EddystoneFrame.TYPE_UID, frame.frameType());
+        assertEquals(-18, frame.txPower());
+        assertEquals(0x8B0C, frame.namespaceIdHigh());
+        assertEquals(0xA75009A8FEAA3C12L, frame.namespaceIdLow());
+        assertEquals(0xFFFFFFFFFFFEL, frame.instanceId());
+        assertEquals("EddystoneFrame{UID, namespace=8b0ca75009a8feaa3c12, instance=fffffffffffe,"
+                + " txPower=-18}", frame.toString());
+
+        // The two reserved bytes at the end are optional.
+        assertTrue(parse("00ee8b0ca75009a8feaa3c12000000000001"));
+        assertEquals(1L, frame.instanceId());
+    }
+
+    @Test
+    public void url() {
+        // "http://www." then "example" and ".com".
+        assertTrue(parse("10eb00" + hex("example") + "07"));
+        assertEquals(EddystoneFrame.TYPE_URL, frame.frameType());
+        assertEquals(-21, frame.txPower());
+        assertEquals("http://www.example.com", frame.url());
+
+        // "https://" then "goo.gl", "/" in the middle and ".org/".
+        assertTrue(parse("10eb03" + hex("goo.gl/a") + "01"));
+        assertEquals("https://goo.gl/a.org/", frame.url());
+        StringBuilder sink = new StringBuilder("url=");
+        assertEquals("url=https://goo.gl/a.org/", frame.appendUrl(sink).toString());
+
+        // Just a scheme, and the longest encoded URL there can be.
+        assertTrue(parse("10eb02"));
+        assertEquals("http://", frame.url());
+        assertTrue(parse("10eb01" + hex("abcdefghijklmnopq")));
+        assertEquals("https://www.abcdefghijklmnopq", frame.url());
+    }
+
+    @Test
+    public void invalidUrlsRejected() {
+        assertTrue(parse("10eb02" + hex("a")));
+        assertFalse(parse("10eb04" + hex("a")));
+        assertFalse(parse("10eb02" + hex("abcdefghijklmnopqr")));
+        assertEquals("http://a", frame.url());
+    }
+
+    @Test
+    public void tlm() {
+        // 3000 mV, 21.5 degrees, 256 advertisements, 360 seconds of uptime.
+        assertTrue(parse("2000" + "0bb8" + "1580" + "00000100" + "00000e10"));
+        assertEquals(EddystoneFrame.TYPE_TLM, frame.frameType());
+        assertEquals(0, frame.tlmVersion());
+        assertEquals(3000, frame.batteryVoltage());
+        assertEquals(21.5d, frame.temperature(), 0d);
+        assertEquals(256L, frame.advertisementCount());
+        assertEquals(3600L, frame.uptime());
+
+        // Temperature is signed 8.8 fixed point; counters are unsigned.
+        assertTrue(parse("2000" + "0000" + "ff80" + "ffffffff" + "ffffffff"));
+        assertEquals(-0.5d, frame.temperature(), 0d);
+        assertEquals(0xFFFFFFFFL, frame.advertisementCount());
+        assertEquals(0xFFFFFFFFL, frame.uptime());
+        assertTrue(parse("2000" + "0000" + "8000" + "00000000" + "00000000"));
+        assertEquals(EddystoneFrame.TEMPERATURE_UNSUPPORTED, frame.temperature(), 0d);
+    }
+
+    @Test
+    public void encryptedTlm() {
+        // Only the version of an encrypted frame is decoded; its telemetry keeps the last values.
+        assertTrue(parse("2000" + "0bb8" + "1580" + "00000100" + "00000e10"));
+        assertTrue(parse("2001" + "00112233445566778899aabbccddeeff"));
+        assertEquals(EddystoneFrame.TYPE_TLM, frame.frameType());
+        assertEquals(1, frame.tlmVersion());
+        assertEquals(3000, frame.batteryVoltage());
+
+        // A truncated plain frame keeps the encrypted one's version.
+        assertFalse(parse("2000" + "0bb8"));
+        assertEquals(1, frame.tlmVersion());
+    }
+
+    @Test
+    public void eid() {
+        assertTrue(parse("30f28000000000000001"));
+        assertEquals(EddystoneFrame.TYPE_EID, frame.frameType());
+        assertEquals(-14, frame.txPower());
+        assertEquals(0x8000000000000001L, frame.ephemeralId());
+    }
+
+    @Test
+    public void shortPayloads() {
+        String[] frames = {
+                "00ee8b0ca75009a8feaa3c12000000000001",
+                "10eb00",
+                "2000" + "0bb8" + "1580" + "00000100" + "00000e10",
+                "2001",
+                "30f28000000000000001"
+        };
+        for (String hex : frames) {
+            assertTrue(parse(hex));
+            int frameType = frame.frameType();
+            int tlmVersion = frame.tlmVersion();
+            for (int length = 0; length < hex.length() / 2; length++) {
+                assertFalse(hex + " cut to " + length, parse(hex.substring(0, length * 2)));
+                assertEquals(frameType, frame.frameType());
+                assertEquals(tlmVersion, frame.tlmVersion());
+            }
+        }
+    }
+
+    @Test
+    public void otherServiceDataIgnored() {
+        assertFalse(frame.parse(wrap(record(FLAGS,
+                serviceData(0xFEAB, "10eb00" + hex("example") + "07")))));
+        assertFalse(parse("40ee"));
+        assertEquals(-1, frame.frameType());
+    }
+
+    private boolean parse(String frameHex) {
+        return frame.parse(wrap(record(FLAGS, SERVICE, serviceData(EddystoneFrame.SERVICE_UUID,
+                frameHex))));
+    }
+
+    private ScanRecordView wrap(byte[] record) {
+        assertTrue(view.wrap(record));
+        return view;
+    }
+
+    private static byte[] serviceData(int uuid16, String frameHex) {
+        return new Buffer()
+                .writeByte(ScanRecordView.DATA_TYPE_SERVICE_DATA)
+                .writeShortLe(uuid16)
+                .write(ByteString.decodeHex(frameHex))
+                .readByteArray();
+    }
+
+    private static String hex(String ascii) {
+        return ByteString.encodeUtf8(ascii).hex();
+    }
+}
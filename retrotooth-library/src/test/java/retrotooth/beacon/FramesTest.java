@@ -0,0 +1,28 @@
+package retrotooth.beacon;
+
+import org.junit.Test;
+
+import okio.ByteString;
+
+import static org.junit.Assert.assertEquals;
+
+public final class FramesTest {
+    private static final byte[] DATA =
+            ByteString.decodeHex("00fedcba9876543210ff").toByteArray();
+
+    @Test
+    public void bigEndian() {
+        assertEquals(0xFEDC, Frames.uint16(DATA, 1));
+        assertEquals(0xFEDCBA98, Frames.int32(DATA, 1));
+        assertEquals(0xFEDCBA98L, Frames.uint32(DATA, 1));
+        assertEquals(0xFEDCBA9876543210L, Frames.int64(DATA, 1));
+    }
+
+    @Test
+    public void unsigned() {
+        assertEquals(0L, Frames.unsigned(DATA, 0, 0));
+        assertEquals(0xFEL, Frames.unsigned(DATA, 1, 1));
+        assertEquals(0x76543210FFL, Frames.unsigned(DATA, 5, 5));
+        assertEquals(0xFEDCBA9876543210L, Frames.unsigned(DATA, 1, 8));
+    }
+}
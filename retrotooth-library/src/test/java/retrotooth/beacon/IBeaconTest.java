@@ -0,0 +1,106 @@
+package retrotooth.beacon;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import okio.Buffer;
+import okio.ByteString;
+import retrotooth.model.ScanRecordView;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class IBeaconTest {
+    private static final UUID PROXIMITY_UUID =
+            UUID.fromString("e2c56db5-dffb-48d2-b060-d0f5a71096e0");
+    private static final byte[] FLAGS = {0x01, 0x06};
+
+    private final ScanRecordView view = new ScanRecordView();
+    private final IBeacon beacon = new IBeacon();
+
+    @Test
+    public void parse() {
+        // Minor 0xFFFE checks that it reads as unsigned; measured power 0xC5 is -59 dBm.
+        assertTrue(view.wrap(record(FLAGS, iBeacon(0x02, 0x15, 1, 0xFFFE, 0xC5))));
+        assertTrue(beacon.parse(view));
+        assertEquals(PROXIMITY_UUID, beacon.proximityUuid());
+        assertEquals(PROXIMITY_UUID.getMostSignificantBits(),
+                beacon.proximityUuidMostSignificantBits());
+        assertEquals(PROXIMITY_UUID.getLeastSignificantBits(),
+                beacon.proximityUuidLeastSignificantBits());
+        assertEquals(1, beacon.major());
+        assertEquals(0xFFFE, beacon.minor());
+        assertEquals(-59, beacon.measuredPower());
+    }
+
+    @Test
+    public void paddedLegacyRecord() {
+        byte[] record = new byte[31];
+        byte[] significant = record(FLAGS, iBeacon(0x02, 0x15, 7, 8, 0xC5));
+        System.arraycopy(significant, 0, record, 0, significant.length);
+        assertTrue(view.wrap(record));
+        assertTrue(beacon.parse(view));
+        assertEquals(7, beacon.major());
+        assertEquals(8, beacon.minor());
+    }
+
+    @Test
+    public void otherFramesLeaveInstanceUnchanged() {
+        assertTrue(view.wrap(record(FLAGS, iBeacon(0x02, 0x15, 1, 2, 0xC5))));
+        assertTrue(beacon.parse(view));
+
+        // Another Apple advertisement type.
+        view.wrap(record(FLAGS, iBeacon(0x10, 0x15, 3, 4, 0xC5)));
+        assertFalse(beacon.parse(view));
+        view.wrap(record(FLAGS, iBeacon(0x02, 0x14, 3, 4, 0xC5)));
+        assertFalse(beacon.parse(view));
+        // The same frame from another manufacturer.
+        byte[] other = iBeacon(0x02, 0x15, 3, 4, 0xC5);
+        other[1] = 0x59;
+        view.wrap(record(FLAGS, other));
+        assertFalse(beacon.parse(view));
+        view.wrap(record(FLAGS));
+        assertFalse(beacon.parse(view));
+
+        assertEquals(PROXIMITY_UUID, beacon.proximityUuid());
+        assertEquals(1, beacon.major());
+        assertEquals(2, beacon.minor());
+    }
+
+    @Test
+    public void shortPayloads() {
+        byte[] full = iBeacon(0x02, 0x15, 1, 2, 0xC5);
+        for (int length = 1; length < full.length; length++) {
+            byte[] truncated = new byte[length];
+            System.arraycopy(full, 0, truncated, 0, length);
+            view.wrap(record(FLAGS, truncated));
+            assertFalse("length " + length, beacon.parse(view));
+        }
+    }
+
+    /**
+     * Returns a manufacturer specific data structure, without its length, in the iBeacon layout.
+     */
+    private static byte[] iBeacon(int type, int length, int major, int minor, int power) {
+        return new Buffer()
+                .writeByte(ScanRecordView.DATA_TYPE_MANUFACTURER_SPECIFIC_DATA)
+                .writeShortLe(IBeacon.MANUFACTURER_ID)
+                .writeByte(type)
+                .writeByte(length)
+                .write(ByteString.decodeHex("e2c56db5dffb48d2b060d0f5a71096e0"))
+                .writeShort(major)
+                .writeShort(minor)
+                .writeByte(power)
+                .readByteArray();
+    }
+
+    static byte[] record(byte[]... structures) {
+        Buffer buffer = new Buffer();
+        for (byte[] structure : structures) {
+            buffer.writeByte(structure.length).write(structure);
+        }
+        return buffer.readByteArray();
+    }
+}
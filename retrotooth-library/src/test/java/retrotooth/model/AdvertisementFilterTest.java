@@ -0,0 +1,183 @@
+package retrotooth.model;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class AdvertisementFilterTest {
+    private static final byte[] FLAGS = {0x01, 0x06};
+    private static final byte[] IBEACON = {(byte) 0xFF, 0x4C, 0x00, 0x02, 0x15, 0x01, 0x02, 0x03};
+    private static final byte[] EDDYSTONE_UUIDS = {0x03, (byte) 0xAA, (byte) 0xFE};
+    private static final byte[] EDDYSTONE_TLM = {0x16, (byte) 0xAA, (byte) 0xFE, 0x20, 0x00};
+    private static final byte[] NAME = {0x09, 'S', 'e', 'n', 's', 'o', 'r'};
+    private static final byte[] SHORT_NAME = {0x08, 'S', 'e', 'n'};
+
+    @Test
+    public void emptyFilterMatchesEverything() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().build();
+        assertTrue(filter.matches(new byte[0], -100));
+        assertTrue(filter.matches(record(FLAGS), -100));
+    }
+
+    @Test
+    public void manufacturerData() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder()
+                .manufacturerData(0x004C, new byte[]{0x02, 0x15})
+                .build();
+        assertTrue(filter.matches(record(FLAGS, IBEACON), -70));
+        assertFalse(filter.matches(record(FLAGS), -70));
+        // Another company's data.
+        assertFalse(filter.matches(record(new byte[]{(byte) 0xFF, 0x4D, 0x00, 0x02, 0x15}), -70));
+        // Too short for the prefix.
+        assertFalse(filter.matches(record(new byte[]{(byte) 0xFF, 0x4C, 0x00, 0x02}), -70));
+
+        assertTrue(new AdvertisementFilter.Builder().manufacturerId(0x004C).build()
+                .matches(record(new byte[]{(byte) 0xFF, 0x4C, 0x00}), -70));
+    }
+
+    @Test
+    public void maskedData() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder()
+                .serviceData(0xFEAA, new byte[]{0x20, 0x00}, new byte[]{(byte) 0xF0, 0x00})
+                .build();
+        assertTrue(filter.matches(record(EDDYSTONE_TLM), -70));
+        assertTrue(filter.matches(record(new byte[]{0x16, (byte) 0xAA, (byte) 0xFE, 0x2F, 0x7F}),
+                -70));
+        assertFalse(filter.matches(record(new byte[]{0x16, (byte) 0xAA, (byte) 0xFE, 0x10, 0x00}),
+                -70));
+    }
+
+    @Test
+    public void serviceUuidInAnyForm() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().serviceUuid(0xFEAA).build();
+        assertTrue(filter.matches(record(EDDYSTONE_UUIDS), -70));
+        // Second in a partial 16-bit list.
+        assertTrue(filter.matches(record(new byte[]{0x02, 0x0D, 0x18, (byte) 0xAA, (byte) 0xFE}),
+                -70));
+        // 32-bit form.
+        assertTrue(filter.matches(
+                record(new byte[]{0x05, (byte) 0xAA, (byte) 0xFE, 0x00, 0x00}), -70));
+        // 128-bit form.
+        assertTrue(filter.matches(record(uuid128(UUID.fromString(
+                "0000feaa-0000-1000-8000-00805f9b34fb"))), -70));
+        assertFalse(filter.matches(record(new byte[]{0x03, 0x0D, 0x18}), -70));
+        // Service data for the UUID is not an advertised service UUID.
+        assertFalse(filter.matches(record(EDDYSTONE_TLM), -70));
+    }
+
+    @Test
+    public void serviceUuid128() {
+        UUID uuid = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().serviceUuid(uuid).build();
+        assertTrue(filter.matches(record(FLAGS, uuid128(uuid)), -70));
+        assertFalse(filter.matches(record(FLAGS, uuid128(
+                UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9f"))), -70));
+    }
+
+    @Test
+    public void namePrefix() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().namePrefix("Sen").build();
+        assertTrue(filter.matches(record(NAME), -70));
+        assertTrue(filter.matches(record(SHORT_NAME), -70));
+        assertFalse(filter.matches(record(new byte[]{0x09, 'S', 'e'}), -70));
+        assertFalse(filter.matches(record(new byte[]{0x09, 's', 'e', 'n'}), -70));
+    }
+
+    @Test
+    public void conditionsMustAllHold() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder()
+                .serviceUuid(0xFEAA)
+                .serviceData(0xFEAA, new byte[]{0x20})
+                .build();
+        assertTrue(filter.matches(record(EDDYSTONE_UUIDS, EDDYSTONE_TLM), -70));
+        assertTrue(filter.matches(record(EDDYSTONE_TLM, EDDYSTONE_UUIDS), -70));
+        assertFalse(filter.matches(record(EDDYSTONE_UUIDS), -70));
+        assertFalse(filter.matches(record(EDDYSTONE_TLM), -70));
+    }
+
+    @Test
+    public void alternativesAndMinRssi() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder()
+                .manufacturerData(0x004C, new byte[]{0x02, 0x15})
+                .minRssi(-60)
+                .or()
+                .namePrefix("Sensor")
+                .build();
+        assertTrue(filter.matches(record(IBEACON), -60));
+        assertFalse(filter.matches(record(IBEACON), -61));
+        assertTrue(filter.matches(record(NAME), -100));
+        assertTrue(filter.matches(record(IBEACON, NAME), -100));
+    }
+
+    @Test
+    public void minRssiAlone() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().minRssi(-80).build();
+        assertTrue(filter.matches(record(FLAGS), -80));
+        assertFalse(filter.matches(record(FLAGS), -81));
+    }
+
+    @Test
+    public void malformedRecordMatchesStructuresBeforeIt() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().namePrefix("Sen").build();
+        // A structure claiming more bytes than remain ends the walk.
+        byte[] truncated = new Buffer().write(record(NAME)).writeByte(0x20).writeByte(0x09)
+                .readByteArray();
+        assertTrue(filter.matches(truncated, -70));
+        byte[] nameAfter = new Buffer().writeByte(0x20).writeByte(0x09).write(record(NAME))
+                .readByteArray();
+        assertFalse(filter.matches(nameAfter, -70));
+        // A zero length structure ends the significant part.
+        byte[] padded = new Buffer().write(record(FLAGS)).writeByte(0).write(record(NAME))
+                .readByteArray();
+        assertFalse(filter.matches(padded, -70));
+    }
+
+    @Test
+    public void matchesWithinRange() {
+        AdvertisementFilter filter = new AdvertisementFilter.Builder().namePrefix("Sen").build();
+        byte[] name = record(NAME);
+        byte[] data = new Buffer().writeByte(0x55).write(name).write(record(FLAGS))
+                .readByteArray();
+        assertTrue(filter.matches(data, 1, name.length, -70));
+        // The range cuts the name short.
+        assertFalse(filter.matches(data, 1, 3, -70));
+    }
+
+    @Test
+    public void tooManyConditions() {
+        AdvertisementFilter.Builder builder = new AdvertisementFilter.Builder();
+        for (int i = 0; i < AdvertisementFilter.MAX_CONDITIONS; i++) {
+            builder.serviceUuid(i);
+        }
+        try {
+            builder.serviceUuid(0xFFFF);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    /**
+     * Returns AD structures of each of {@code structures}, which hold the AD type then data.
+     */
+    private static byte[] record(byte[]... structures) {
+        Buffer buffer = new Buffer();
+        for (byte[] structure : structures) {
+            buffer.writeByte(structure.length).write(structure);
+        }
+        return buffer.readByteArray();
+    }
+
+    private static byte[] uuid128(UUID uuid) {
+        return new Buffer()
+                .writeByte(0x07)
+                .writeLongLe(uuid.getLeastSignificantBits())
+                .writeLongLe(uuid.getMostSignificantBits())
+                .readByteArray();
+    }
+}
@@ -0,0 +1,180 @@
+package retrotooth.model;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class ScanRecordViewTest {
+    private static final byte[] FLAGS = {0x01, 0x06};
+    private static final byte[] NAME = {0x09, 'S', 'e', 'n', 's', 'o', 'r'};
+    private static final byte[] UUIDS_16 = {0x03, 0x0D, 0x18, 0x0F, 0x18};
+    private static final byte[] TX_POWER = {0x0A, (byte) 0xF4};
+    private static final byte[] MANUFACTURER = {(byte) 0xFF, 0x4C, 0x00, 0x02, 0x15};
+
+    private final ScanRecordView view = new ScanRecordView();
+
+    @Test
+    public void structures() {
+        byte[] record = record(FLAGS, NAME, UUIDS_16, TX_POWER, MANUFACTURER);
+        assertTrue(view.wrap(record));
+        assertTrue(view.isValid());
+        assertEquals(5, view.fieldCount());
+        assertEquals(ScanRecordView.DATA_TYPE_LOCAL_NAME_COMPLETE, view.fieldType(1));
+        assertEquals(5, view.fieldOffset(1));
+        assertEquals(6, view.fieldLength(1));
+        assertEquals(0x06, view.advertiseFlags());
+        assertEquals("Sensor", view.deviceName());
+        assertEquals(-12, view.txPowerLevel());
+        assertEquals(2, view.serviceUuidCount());
+        assertSame(UuidRegistry.uuid16(0x180D), view.serviceUuid(0));
+        assertSame(UuidRegistry.uuid16(0x180F), view.serviceUuid(1));
+        assertArrayEquals(new byte[]{0x02, 0x15}, view.manufacturerData(0x004C));
+        assertNull(view.manufacturerData(0x0059));
+    }
+
+    @Test
+    public void zeroLengthStructureEndsRecord() {
+        // Legacy payloads are padded to 31 bytes with zeros.
+        byte[] record = new byte[31];
+        byte[] significant = record(FLAGS, NAME);
+        System.arraycopy(significant, 0, record, 0, significant.length);
+        assertTrue(view.wrap(record));
+        assertEquals(2, view.fieldCount());
+
+        // Anything after the first zero length is ignored, even a well-formed structure.
+        record[significant.length + 1] = 0x02;
+        record[significant.length + 2] = 0x0A;
+        assertTrue(view.wrap(record));
+        assertEquals(2, view.fieldCount());
+        assertEquals(Integer.MIN_VALUE, view.txPowerLevel());
+
+        assertTrue(view.wrap(new byte[]{0x00, 0x02, 0x01, 0x06}));
+        assertEquals(0, view.fieldCount());
+        assertEquals(-1, view.advertiseFlags());
+    }
+
+    @Test
+    public void structureWithoutData() {
+        // A length of 1 covers the type alone.
+        assertTrue(view.wrap(record(new byte[]{0x01}, new byte[]{0x0A},
+                new byte[]{(byte) 0xFF}, new byte[]{0x03}, new byte[]{0x09})));
+        assertEquals(5, view.fieldCount());
+        assertEquals(0, view.fieldLength(0));
+        assertEquals(-1, view.advertiseFlags());
+        assertEquals(Integer.MIN_VALUE, view.txPowerLevel());
+        assertEquals(-1, view.manufacturerDataIndex(0x004C));
+        assertEquals(0, view.serviceUuidCount());
+        assertEquals("", view.deviceName());
+    }
+
+    @Test
+    public void truncatedStructure() {
+        byte[] record = record(FLAGS, NAME);
+        byte[] truncated = new Buffer().write(record).writeByte(0x05).writeByte(0xFF)
+                .writeByte(0x4C).readByteArray();
+        assertFalse(view.wrap(truncated));
+        assertFalse(view.isValid());
+        // Structures before the truncated one are still available.
+        assertEquals(2, view.fieldCount());
+        assertEquals("Sensor", view.deviceName());
+        assertEquals(-1, view.manufacturerDataIndex(0x004C));
+
+        // A length byte with nothing after it.
+        assertFalse(view.wrap(new Buffer().write(record).writeByte(0x02).readByteArray()));
+        assertEquals(2, view.fieldCount());
+
+        // Wrapping again resets the view.
+        assertTrue(view.wrap(record(FLAGS)));
+        assertTrue(view.isValid());
+        assertEquals(1, view.fieldCount());
+    }
+
+    @Test
+    public void truncatedUuidListIgnoresPartialUuid() {
+        // Three bytes of 16-bit UUIDs hold one whole UUID.
+        assertTrue(view.wrap(record(new byte[]{0x02, 0x0D, 0x18, 0x0F})));
+        assertEquals(1, view.serviceUuidCount());
+        assertSame(UuidRegistry.uuid16(0x180D), view.serviceUuid(0));
+        try {
+            view.serviceUuid(1);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void uuidSizes() {
+        UUID uuid128 = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+        byte[] uuids128 = new Buffer().writeByte(0x07)
+                .writeLongLe(uuid128.getLeastSignificantBits())
+                .writeLongLe(uuid128.getMostSignificantBits())
+                .readByteArray();
+        assertTrue(view.wrap(record(new byte[]{0x05, 0x78, 0x56, 0x34, 0x12}, uuids128)));
+        assertEquals(2, view.serviceUuidCount());
+        assertEquals(UuidRegistry.uuid32(0x12345678L), view.serviceUuid(0));
+        assertEquals(uuid128, view.serviceUuid(1));
+        assertTrue(view.hasServiceUuid(uuid128.getMostSignificantBits(),
+                uuid128.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void offsetAndLength() {
+        byte[] record = record(FLAGS, NAME, TX_POWER);
+        // View the name alone, which starts after the 3 byte flags structure.
+        assertTrue(view.wrap(record, 3, NAME.length + 1));
+        assertEquals(1, view.fieldCount());
+        assertEquals("Sensor", view.deviceName());
+        assertEquals(-1, view.advertiseFlags());
+
+        // Cutting the name short makes it truncated.
+        assertFalse(view.wrap(record, 3, NAME.length));
+        assertEquals(0, view.fieldCount());
+
+        try {
+            view.wrap(record, 3, record.length);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void emptyRecord() {
+        assertTrue(view.wrap(new byte[0]));
+        assertEquals(0, view.fieldCount());
+        assertNull(view.deviceName());
+        try {
+            view.fieldType(0);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void manyStructuresGrowIndex() {
+        Buffer buffer = new Buffer();
+        for (int i = 0; i < 100; i++) {
+            buffer.writeByte(0x02).writeByte(0x0A).writeByte(i);
+        }
+        assertTrue(view.wrap(buffer.readByteArray()));
+        assertEquals(100, view.fieldCount());
+        assertEquals(99, view.array()[view.fieldOffset(99)]);
+    }
+
+    private static byte[] record(byte[]... structures) {
+        Buffer buffer = new Buffer();
+        for (byte[] structure : structures) {
+            buffer.writeByte(structure.length).write(structure);
+        }
+        return buffer.readByteArray();
+    }
+}
@@ -0,0 +1,149 @@
+package retrotooth.model;
+
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public final class UuidRegistryTest {
+    private static final UUID HEART_RATE =
+            UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb");
+    private static final UUID UART = UUID.fromString("6e400001-b5a3-f393-e0a9-e50e24dcca9e");
+
+    @Test
+    public void uuid16Interned() {
+        UUID uuid = UuidRegistry.uuid16(0x180D);
+        assertEquals(HEART_RATE, uuid);
+        assertSame(uuid, UuidRegistry.uuid16(0x180D));
+        assertEquals(UUID.fromString("00000000-0000-1000-8000-00805f9b34fb"),
+                UuidRegistry.uuid16(0));
+        assertEquals(UUID.fromString("0000ffff-0000-1000-8000-00805f9b34fb"),
+                UuidRegistry.uuid16(0xFFFF));
+        assertSame(UuidRegistry.uuid16(0xFFFF), UuidRegistry.uuid16(0xFFFF));
+    }
+
+    @Test
+    public void uuid16OutOfRange() {
+        for (int uuid16 : new int[]{-1, 0x10000}) {
+            try {
+                UuidRegistry.uuid16(uuid16);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void uuid32Interned() {
+        UUID uuid = UuidRegistry.uuid32(0x12345678L);
+        assertEquals(UUID.fromString("12345678-0000-1000-8000-00805f9b34fb"), uuid);
+        assertSame(uuid, UuidRegistry.uuid32(0x12345678L));
+        assertEquals(UUID.fromString("ffffffff-0000-1000-8000-00805f9b34fb"),
+                UuidRegistry.uuid32(0xFFFFFFFFL));
+
+        // 32-bit values in the 16-bit range are the 16-bit UUIDs.
+        assertSame(UuidRegistry.uuid16(0x180D), UuidRegistry.uuid32(0x180DL));
+    }
+
+    @Test
+    public void uuid32OutOfRange() {
+        for (long uuid32 : new long[]{-1L, 0x100000000L}) {
+            try {
+                UuidRegistry.uuid32(uuid32);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void getRoutesShortUuids() {
+        assertSame(UuidRegistry.uuid16(0x180D), UuidRegistry.get(
+                HEART_RATE.getMostSignificantBits(), HEART_RATE.getLeastSignificantBits()));
+        assertSame(UuidRegistry.uuid32(0x12345678L), UuidRegistry.get(
+                UuidRegistry.BASE_UUID_MSB | 0x12345678L << 32, UuidRegistry.BASE_UUID_LSB));
+    }
+
+    @Test
+    public void vendorUuidInterned() {
+        UUID uuid = UuidRegistry.get(UART.getMostSignificantBits(),
+                UART.getLeastSignificantBits());
+        assertEquals(UART, uuid);
+        assertSame(uuid, UuidRegistry.get(UART.getMostSignificantBits(),
+                UART.getLeastSignificantBits()));
+
+        // Base UUID bits with a different version or variant are not short UUIDs.
+        UUID almostBase = UuidRegistry.get(UuidRegistry.BASE_UUID_MSB | 1L,
+                UuidRegistry.BASE_UUID_LSB);
+        assertEquals(new UUID(UuidRegistry.BASE_UUID_MSB | 1L, UuidRegistry.BASE_UUID_LSB),
+                almostBase);
+        assertEquals(-1L, UuidRegistry.shortValue(UART));
+    }
+
+    @Test
+    public void evictedEntriesStillEqual() {
+        // More UUIDs than the cache has slots; each is correct even after being evicted.
+        for (int i = 0; i < 4096; i++) {
+            UUID expected = new UUID(0x6e40000000000000L | i, UART.getLeastSignificantBits());
+            assertEquals(expected, UuidRegistry.get(expected.getMostSignificantBits(),
+                    expected.getLeastSignificantBits()));
+        }
+        assertEquals(UART, UuidRegistry.get(UART.getMostSignificantBits(),
+                UART.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void fromBytes() {
+        assertSame(UuidRegistry.uuid16(0x180D),
+                UuidRegistry.fromBytes(new byte[]{0x00, 0x0D, 0x18}, 1, 2));
+        assertSame(UuidRegistry.uuid32(0x12345678L),
+                UuidRegistry.fromBytes(new byte[]{0x78, 0x56, 0x34, 0x12}, 0, 4));
+        assertSame(UuidRegistry.uuid16(0x180D),
+                UuidRegistry.fromBytes(new byte[]{0x0D, 0x18, 0x00, 0x00}, 0, 4));
+
+        byte[] uart = new byte[16];
+        long lsb = UART.getLeastSignificantBits();
+        long msb = UART.getMostSignificantBits();
+        for (int i = 0; i < 8; i++) {
+            uart[i] = (byte) (lsb >>> (8 * i));
+            uart[8 + i] = (byte) (msb >>> (8 * i));
+        }
+        UUID uuid = UuidRegistry.fromBytes(uart, 0, 16);
+        assertEquals(UART, uuid);
+        assertSame(uuid, UuidRegistry.fromBytes(uart, 0, 16));
+
+        try {
+            UuidRegistry.fromBytes(uart, 0, 3);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void parse() {
+        UUID heartRate = UuidRegistry.uuid16(0x180D);
+        assertSame(heartRate, UuidRegistry.parse("180d"));
+        assertSame(heartRate, UuidRegistry.parse("180D"));
+        assertSame(heartRate, UuidRegistry.parse("0000180d"));
+        assertSame(heartRate, UuidRegistry.parse("0000180D-0000-1000-8000-00805F9B34FB"));
+        assertSame(UuidRegistry.uuid32(0x12345678L), UuidRegistry.parse("12345678"));
+        assertEquals(UART, UuidRegistry.parse(UART.toString()));
+        assertSame(UuidRegistry.parse(UART.toString()), UuidRegistry.parse(UART.toString()));
+
+        assertNull(UuidRegistry.parse("18g0"));
+        assertNull(UuidRegistry.parse("180d0"));
+        assertNull(UuidRegistry.parse("6e400001+b5a3-f393-e0a9-e50e24dcca9e"));
+        assertNull(UuidRegistry.parse("6e400001-b5a3-f393-e0a9-e50e24dcca9g"));
+    }
+
+    @Test
+    public void shortValue() {
+        assertEquals(0x180DL, UuidRegistry.shortValue(HEART_RATE));
+        assertEquals(0x12345678L, UuidRegistry.shortValue(UuidRegistry.uuid32(0x12345678L)));
+        assertEquals(-1L, UuidRegistry.shortValue(UART));
+    }
+}
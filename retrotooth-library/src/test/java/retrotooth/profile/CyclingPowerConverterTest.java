@@ -0,0 +1,99 @@
+package retrotooth.profile;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_ACCUMULATED_TORQUE;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_CRANK_DATA;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_TORQUE_FROM_CRANK;
+import static retrotooth.profile.CyclingPowerMeasurement.FLAG_WHEEL_DATA;
+
+public final class CyclingPowerConverterTest {
+    private static final double DELTA = 1e-9;
+    private static final int CRANK_TORQUE =
+            FLAG_ACCUMULATED_TORQUE | FLAG_TORQUE_FROM_CRANK | FLAG_CRANK_DATA;
+    private static final int WHEEL_TORQUE = FLAG_ACCUMULATED_TORQUE | FLAG_WHEEL_DATA;
+
+    private final CyclingPowerMeasurement measurement = new CyclingPowerMeasurement(2d);
+
+    @Test
+    public void averagePowerFromCrankTicks() throws IOException {
+        decodeCrank(200, 0, 0, 0);
+        assertEquals(0d, measurement.averagePower(), DELTA);
+        assertEquals(200, measurement.instantaneousPower());
+
+        // 10 Nm over 1024 ticks of 1/1024 second.
+        decodeCrank(200, 10 * 32, 1, 1024);
+        assertTrue(measurement.has(FLAG_TORQUE_FROM_CRANK));
+        assertEquals(2d * Math.PI * 10d, measurement.averagePower(), DELTA);
+        assertEquals(60d, measurement.cadence(), DELTA);
+    }
+
+    @Test
+    public void averagePowerFromWheelTicks() throws IOException {
+        decodeWheel(0, 0, 0);
+        // 10 Nm over 2048 ticks of 1/2048 second.
+        decodeWheel(10 * 32, 2, 2048);
+        assertFalse(measurement.has(FLAG_TORQUE_FROM_CRANK));
+        assertEquals(2d * Math.PI * 10d, measurement.averagePower(), DELTA);
+        assertEquals(4d, measurement.speed(), DELTA);
+        assertEquals(4d, measurement.distance(), DELTA);
+    }
+
+    @Test
+    public void torqueAndEventTimeRollover() throws IOException {
+        decodeCrank(0, 0xFFF0, 65530, 65000);
+        // 320/32 Nm over half a second, across both wraps.
+        decodeCrank(0, 0x0130, 2, 65000 + 512 - 65536);
+        assertEquals(2d * Math.PI * 10d / 0.5d, measurement.averagePower(), DELTA);
+        assertEquals(8 * 120d, measurement.cadence(), DELTA);
+    }
+
+    @Test
+    public void zeroTimeDeltaKeepsAveragePower() throws IOException {
+        decodeCrank(0, 0, 0, 0);
+        decodeCrank(0, 64, 1, 1024);
+        double averagePower = measurement.averagePower();
+        decodeCrank(0, 96, 1, 1024);
+        assertEquals(averagePower, measurement.averagePower(), DELTA);
+    }
+
+    @Test
+    public void resetForgetsPreviousTorque() throws IOException {
+        decodeCrank(0, 0, 0, 0);
+        decodeCrank(0, 32, 1, 1024);
+        measurement.reset();
+        assertEquals(0d, measurement.averagePower(), DELTA);
+        assertEquals(0d, measurement.cadence(), DELTA);
+
+        decodeCrank(0, 30000, 100, 9000);
+        assertEquals(0d, measurement.averagePower(), DELTA);
+    }
+
+    private void decodeCrank(int power, int torque, int revolutions, int eventTime)
+            throws IOException {
+        Buffer buffer = new Buffer()
+                .writeShortLe(CRANK_TORQUE)
+                .writeShortLe(power)
+                .writeShortLe(torque)
+                .writeShortLe(revolutions)
+                .writeShortLe(eventTime);
+        CyclingPowerConverter.decode(buffer, measurement);
+    }
+
+    private void decodeWheel(int torque, long revolutions, int eventTime) throws IOException {
+        Buffer buffer = new Buffer()
+                .writeShortLe(WHEEL_TORQUE)
+                .writeShortLe(0)
+                .writeShortLe(torque)
+                .writeIntLe((int) revolutions)
+                .writeShortLe(eventTime);
+        CyclingPowerConverter.decode(buffer, measurement);
+    }
+}
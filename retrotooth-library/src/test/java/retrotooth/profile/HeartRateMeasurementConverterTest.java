@@ -0,0 +1,132 @@
+package retrotooth.profile;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class HeartRateMeasurementConverterTest {
+    private final HeartRateMeasurement measurement = new HeartRateMeasurement(4);
+
+    @Test
+    public void uint8HeartRate() throws IOException {
+        decode(0x00, 72);
+        assertEquals(72, measurement.heartRate());
+        assertFalse(measurement.isSensorContactSupported());
+        assertFalse(measurement.hasEnergyExpended());
+        assertEquals(-1, measurement.energyExpended());
+        assertEquals(0, measurement.rrIntervalCount());
+    }
+
+    @Test
+    public void uint16HeartRate() throws IOException {
+        decode(0x01, 0x2C, 0x01);
+        assertEquals(300, measurement.heartRate());
+    }
+
+    @Test
+    public void sensorContactFlags() throws IOException {
+        decode(0x04, 60);
+        assertTrue(measurement.isSensorContactSupported());
+        assertFalse(measurement.isSensorContactDetected());
+
+        decode(0x06, 60);
+        assertTrue(measurement.isSensorContactSupported());
+        assertTrue(measurement.isSensorContactDetected());
+        assertEquals(0x06, measurement.flags());
+    }
+
+    @Test
+    public void energyExpended() throws IOException {
+        decode(0x08, 80, 0x34, 0x12);
+        assertTrue(measurement.hasEnergyExpended());
+        assertEquals(0x1234, measurement.energyExpended());
+
+        // Absent again in the next notification.
+        decode(0x00, 80);
+        assertEquals(-1, measurement.energyExpended());
+    }
+
+    @Test
+    public void multipleRrIntervals() throws IOException {
+        // 16-bit heart rate and energy expended ahead of three RR-intervals.
+        decode(0x19, 0x50, 0x00, 0x10, 0x00, 0x00, 0x04, 0x00, 0x02, 0xFF, 0xFF);
+        assertEquals(80, measurement.heartRate());
+        assertEquals(16, measurement.energyExpended());
+        assertEquals(3, measurement.rrIntervalCount());
+        assertEquals(1024, measurement.rrInterval(0));
+        assertEquals(1000, measurement.rrIntervalMillis(0));
+        assertEquals(512, measurement.rrInterval(1));
+        assertEquals(0xFFFF, measurement.rrInterval(2));
+        try {
+            measurement.rrInterval(3);
+            fail();
+        } catch (IndexOutOfBoundsException expected) {
+        }
+        assertArrayEquals(new int[]{1024, 512, 0xFFFF}, measurement.rrHistory());
+    }
+
+    @Test
+    public void rrIntervalsBeyondOnePacket() throws IOException {
+        // Twelve intervals, as sent with a larger MTU.
+        int[] bytes = new int[2 + 24];
+        bytes[0] = 0x10;
+        bytes[1] = 60;
+        for (int i = 0; i < 12; i++) {
+            bytes[2 + 2 * i] = i + 1;
+        }
+        decode(bytes);
+        assertEquals(12, measurement.rrIntervalCount());
+        assertEquals(12, measurement.rrInterval(11));
+    }
+
+    @Test
+    public void rrHistoryOverflowKeepsNewest() throws IOException {
+        decode(0x10, 60, 1, 0, 2, 0, 3, 0);
+        decode(0x10, 60, 4, 0, 5, 0, 6, 0);
+        // A capacity of 4 retains the last four intervals, oldest first.
+        assertArrayEquals(new int[]{3, 4, 5, 6}, measurement.rrHistory());
+
+        int[] dst = new int[3];
+        assertEquals(3, measurement.drainRrHistory(dst));
+        assertArrayEquals(new int[]{3, 4, 5}, dst);
+        assertArrayEquals(new int[]{6}, measurement.rrHistory());
+        assertEquals(1, measurement.drainRrHistory(dst));
+        assertEquals(0, measurement.rrHistory().length);
+    }
+
+    @Test
+    public void notificationWithoutRrIntervalsKeepsHistory() throws IOException {
+        decode(0x10, 60, 1, 0);
+        decode(0x00, 60);
+        assertEquals(0, measurement.rrIntervalCount());
+        assertArrayEquals(new int[]{1}, measurement.rrHistory());
+    }
+
+    @Test
+    public void tooShort() throws IOException {
+        try {
+            decode(0x00);
+            fail();
+        } catch (EOFException expected) {
+        }
+    }
+
+    private void decode(int... bytes) throws IOException {
+        Buffer buffer = new Buffer();
+        for (int b : bytes) {
+            buffer.writeByte(b);
+        }
+        synchronized (measurement) {
+            HeartRateMeasurementConverter.decode(buffer, bytes.length, measurement);
+        }
+    }
+}
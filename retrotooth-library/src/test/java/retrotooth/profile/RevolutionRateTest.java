@@ -0,0 +1,84 @@
+package retrotooth.profile;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public final class RevolutionRateTest {
+    private static final double DELTA = 1e-9;
+
+    private final RevolutionRate crank = new RevolutionRate(16, 1024);
+    private final RevolutionRate wheel = new RevolutionRate(32, 2048);
+
+    @Test
+    public void firstUpdateOnlyInitializes() {
+        crank.update(100, 5000);
+        assertEquals(0d, crank.revolutionsPerSecond, DELTA);
+        assertEquals(0L, crank.totalRevolutions);
+
+        crank.update(102, 5000 + 512);
+        assertEquals(4d, crank.revolutionsPerSecond, DELTA);
+        assertEquals(2L, crank.totalRevolutions);
+    }
+
+    @Test
+    public void uint16CounterRollover() {
+        crank.update(65530, 1000);
+        crank.update(4, 1000 + 1024);
+        assertEquals(10d, crank.revolutionsPerSecond, DELTA);
+        assertEquals(10L, crank.totalRevolutions);
+    }
+
+    @Test
+    public void uint32CounterRollover() {
+        wheel.update(0xFFFFFFFEL, 0);
+        wheel.update(3, 2048);
+        assertEquals(5d, wheel.revolutionsPerSecond, DELTA);
+        assertEquals(5L, wheel.totalRevolutions);
+    }
+
+    @Test
+    public void eventTimeWrapsAt64Seconds() {
+        // 65536 ticks of 1/1024 second.
+        crank.update(0, 65000);
+        crank.update(2, 65000 + 1024 - 65536);
+        assertEquals(2d, crank.revolutionsPerSecond, DELTA);
+
+        // Wheel times tick twice as fast and wrap after 32 seconds.
+        wheel.update(0, 65535);
+        wheel.update(4, 1023);
+        assertEquals(8d, wheel.revolutionsPerSecond, DELTA);
+    }
+
+    @Test
+    public void zeroTimeDeltaHoldsRateUntilStopped() {
+        crank.update(10, 100);
+        crank.update(12, 100 + 1024);
+        assertEquals(2d, crank.revolutionsPerSecond, DELTA);
+
+        for (int i = 1; i < RevolutionRate.STOPPED_AFTER; i++) {
+            crank.update(12, 100 + 1024);
+            assertEquals(2d, crank.revolutionsPerSecond, DELTA);
+        }
+        crank.update(12, 100 + 1024);
+        assertEquals(0d, crank.revolutionsPerSecond, DELTA);
+        assertEquals(2L, crank.totalRevolutions);
+
+        // The next revolution event restarts the rate.
+        crank.update(13, 100 + 2048);
+        assertEquals(1d, crank.revolutionsPerSecond, DELTA);
+    }
+
+    @Test
+    public void resetForgetsPreviousValues() {
+        crank.update(0, 0);
+        crank.update(4, 1024);
+        crank.reset();
+        assertEquals(0d, crank.revolutionsPerSecond, DELTA);
+        assertEquals(0L, crank.totalRevolutions);
+
+        // A counter far from the last one is a new baseline, not a jump.
+        crank.update(40000, 30000);
+        assertEquals(0L, crank.totalRevolutions);
+    }
+}
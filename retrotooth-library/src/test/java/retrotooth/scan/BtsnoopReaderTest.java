@@ -0,0 +1,212 @@
+package retrotooth.scan;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.Arrays;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class BtsnoopReaderTest {
+    private static final long TIME = 1446000000000L;
+    private static final long ADDRESS_1 = 0x001122334455L;
+    private static final long ADDRESS_2 = 0x00AABBCCDDEEL;
+    private static final byte[] DATA_1 = {0x02, 0x01, 0x06, 0x03, 0x03, (byte) 0xAA, (byte) 0xFE};
+    private static final byte[] DATA_2 = {0x05, 0x09, 'T', 'e', 's', 't'};
+
+    @Test
+    public void uartLog() throws IOException {
+        Buffer log = header(BtsnoopReader.DATALINK_HCI_UART);
+        // LE Set Scan Enable command, then a Command Complete event: both skipped.
+        packet(log, 0, TIME, 0x01, 0x0C, 0x20, 0x02, 0x01, 0x00);
+        packet(log, 3, TIME + 1, 0x04, 0x0E, 0x04, 0x01, 0x0C, 0x20, 0x00);
+        // Two legacy reports in one event.
+        Buffer reports = new Buffer();
+        legacyReport(reports, ADDRESS_1, -60, DATA_1);
+        legacyReport(reports, ADDRESS_2, -75, DATA_2);
+        packet(log, 3, TIME + 10, leMeta(0x04, 0x02, 2, reports));
+        // A connection complete meta event: skipped.
+        packet(log, 3, TIME + 15, 0x04, 0x3E, 0x03, 0x01, 0x00, 0x00);
+        Buffer extended = new Buffer();
+        extendedReport(extended, ADDRESS_2, -80, DATA_1);
+        packet(log, 3, TIME + 20, leMeta(0x04, 0x0D, 1, extended));
+
+        BtsnoopReader reader = new BtsnoopReader(log);
+        assertReport(reader, TIME + 10, ADDRESS_1, -60, DATA_1);
+        assertReport(reader, TIME + 10, ADDRESS_2, -75, DATA_2);
+        assertReport(reader, TIME + 20, ADDRESS_2, -80, DATA_1);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void unencapsulatedLog() throws IOException {
+        Buffer log = header(BtsnoopReader.DATALINK_HCI_UNENCAPSULATED);
+        Buffer reports = new Buffer();
+        legacyReport(reports, ADDRESS_1, -42, DATA_2);
+        byte[] event = leMeta(-1, 0x02, 1, reports);
+        // The same bytes sent as data rather than an event are skipped.
+        packet(log, 0, TIME, event);
+        packet(log, 2, TIME + 5, event);
+
+        BtsnoopReader reader = new BtsnoopReader(log);
+        assertReport(reader, TIME + 5, ADDRESS_1, -42, DATA_2);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void emptyLog() throws IOException {
+        assertFalse(new BtsnoopReader(header(BtsnoopReader.DATALINK_HCI_UART)).next());
+    }
+
+    @Test
+    public void notBtsnoop() throws IOException {
+        Buffer log = new Buffer().writeUtf8("btsnoof\0").writeInt(1).writeInt(1002);
+        assertRejected(log);
+    }
+
+    @Test
+    public void unsupportedVersion() throws IOException {
+        assertRejected(new Buffer().write(BtsnoopReader.MAGIC).writeInt(2).writeInt(1002));
+    }
+
+    @Test
+    public void unsupportedDatalink() throws IOException {
+        // H1.
+        assertRejected(header(1000));
+    }
+
+    @Test
+    public void truncatedReport() throws IOException {
+        Buffer log = header(BtsnoopReader.DATALINK_HCI_UART);
+        Buffer reports = new Buffer();
+        legacyReport(reports, ADDRESS_1, -60, DATA_1);
+        // Claim a second report which is not there.
+        packet(log, 3, TIME, leMeta(0x04, 0x02, 2, reports));
+        Buffer more = new Buffer();
+        legacyReport(more, ADDRESS_2, -70, DATA_2);
+        packet(log, 3, TIME + 1, leMeta(0x04, 0x02, 1, more));
+
+        BtsnoopReader reader = new BtsnoopReader(log);
+        assertReport(reader, TIME, ADDRESS_1, -60, DATA_1);
+        try {
+            reader.next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+        // The rest of the packet is abandoned; reading carries on with the next.
+        assertReport(reader, TIME + 1, ADDRESS_2, -70, DATA_2);
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void truncatedLog() throws IOException {
+        Buffer log = header(BtsnoopReader.DATALINK_HCI_UART);
+        Buffer reports = new Buffer();
+        legacyReport(reports, ADDRESS_1, -60, DATA_1);
+        packet(log, 3, TIME, leMeta(0x04, 0x02, 1, reports));
+        byte[] bytes = log.readByteArray();
+        for (int length = 1; length < bytes.length; length++) {
+            if (length == 16) {
+                continue; // Just the header: an empty log.
+            }
+            try {
+                BtsnoopReader reader = new BtsnoopReader(new Buffer().write(bytes, 0, length));
+                reader.next();
+                fail("Truncated log of " + length + " bytes accepted");
+            } catch (EOFException expected) {
+            }
+        }
+    }
+
+    private static void assertReport(BtsnoopReader reader, long timeMillis, long address,
+            int rssi, byte[] data) throws IOException {
+        assertTrue(reader.next());
+        assertEquals(timeMillis, reader.timeMillis());
+        assertEquals(address, reader.address());
+        assertEquals(rssi, reader.rssi());
+        assertArrayEquals(data, Arrays.copyOfRange(reader.dataArray(), reader.dataOffset(),
+                reader.dataOffset() + reader.dataLength()));
+    }
+
+    private static void assertRejected(Buffer log) throws IOException {
+        try {
+            new BtsnoopReader(log).next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+    }
+
+    private static Buffer header(int datalink) {
+        return new Buffer().write(BtsnoopReader.MAGIC).writeInt(1).writeInt(datalink);
+    }
+
+    private static void packet(Buffer log, int flags, long timeMillis, int... bytes) {
+        byte[] packet = new byte[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            packet[i] = (byte) bytes[i];
+        }
+        packet(log, flags, timeMillis, packet);
+    }
+
+    private static void packet(Buffer log, int flags, long timeMillis, byte[] packet) {
+        log.writeInt(packet.length)
+                .writeInt(packet.length)
+                .writeInt(flags)
+                .writeInt(0)
+                .writeLong(BtsnoopReader.EPOCH_OFFSET_MICROS + timeMillis * 1000)
+                .write(packet);
+    }
+
+    /**
+     * Returns an LE Meta event holding {@code reports}, prefixed with the H4 packet type unless
+     * it is -1.
+     */
+    private static byte[] leMeta(int packetType, int subevent, int count, Buffer reports) {
+        Buffer event = new Buffer();
+        if (packetType != -1) {
+            event.writeByte(packetType);
+        }
+        event.writeByte(0x3E)
+                .writeByte(2 + (int) reports.size())
+                .writeByte(subevent)
+                .writeByte(count);
+        event.write(reports, reports.size());
+        return event.readByteArray();
+    }
+
+    private static void legacyReport(Buffer reports, long address, int rssi, byte[] data) {
+        reports.writeByte(0x00) // ADV_IND.
+                .writeByte(0x00); // Public address.
+        writeAddress(reports, address);
+        reports.writeByte(data.length).write(data).writeByte(rssi);
+    }
+
+    private static void extendedReport(Buffer reports, long address, int rssi, byte[] data) {
+        reports.writeShortLe(0x0013) // Connectable, scannable, legacy.
+                .writeByte(0x00);
+        writeAddress(reports, address);
+        reports.writeByte(0x01) // LE 1M primary PHY.
+                .writeByte(0x00) // No secondary PHY.
+                .writeByte(0xFF) // No SID.
+                .writeByte(0x7F) // TX power unavailable.
+                .writeByte(rssi)
+                .writeShortLe(0x0000) // No periodic advertising.
+                .writeByte(0x00);
+        writeAddress(reports, 0L);
+        reports.writeByte(data.length).write(data);
+    }
+
+    private static void writeAddress(Buffer buffer, long address) {
+        for (int i = 0; i < 6; i++) {
+            buffer.writeByte((int) (address >>> (8 * i)));
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package retrotooth.scan;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.Okio;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class DeviceAllowlistTest {
+    private static final long ADDRESS_MASK = 0xFFFFFFFFFFFFL;
+
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void noFalseNegatives() {
+        long[] addresses = randomAddresses(new Random(1L), 100000);
+        DeviceAllowlist allowlist = DeviceAllowlist.create(addresses);
+        assertEquals(addresses.length, allowlist.size());
+        for (long address : addresses) {
+            assertTrue(DeviceTable.formatAddress(address), allowlist.contains(address));
+        }
+        // Only members have been checked.
+        assertEquals(Double.NaN, allowlist.observedFalsePositiveRate(), 0d);
+    }
+
+    @Test
+    public void measuredFalsePositiveRate() {
+        double[] rates = {0.1d, DeviceAllowlist.DEFAULT_FALSE_POSITIVE_RATE, 0.001d};
+        for (double rate : rates) {
+            Random random = new Random(2L);
+            long[] addresses = randomAddresses(random, 10000);
+            DeviceAllowlist allowlist = DeviceAllowlist.create(addresses, rate);
+            Arrays.sort(addresses);
+            // The filter is rounded up to a power of two bits, so it does at least as well.
+            assertTrue(allowlist.expectedFalsePositiveRate() <= rate);
+
+            int trials = 200000;
+            for (int i = 0; i < trials; i++) {
+                // Membership is exact: a Bloom filter hit is confirmed by the sorted addresses.
+                assertFalse(allowlist.contains(nonMember(random, addresses)));
+            }
+            assertFalsePositiveRate(allowlist, rate, trials);
+        }
+    }
+
+    @Test
+    public void sequentialAddressesSpreadOverFilter() {
+        // Fleets are often provisioned with consecutive addresses.
+        long base = DeviceTable.packAddress("C0:98:E5:00:00:00");
+        long[] addresses = new long[10000];
+        for (int i = 0; i < addresses.length; i++) {
+            addresses[i] = base + i;
+        }
+        DeviceAllowlist allowlist = DeviceAllowlist.create(addresses);
+        for (long address : addresses) {
+            assertTrue(allowlist.contains(address));
+        }
+        int trials = 200000;
+        for (int i = 0; i < trials; i++) {
+            assertFalse(allowlist.contains(base + addresses.length + i));
+        }
+        assertFalsePositiveRate(allowlist, DeviceAllowlist.DEFAULT_FALSE_POSITIVE_RATE, trials);
+    }
+
+    @Test
+    public void duplicatesCollapse() {
+        DeviceAllowlist allowlist = DeviceAllowlist.create(3L, 1L, 3L, 2L, 1L);
+        assertEquals(3, allowlist.size());
+        assertTrue(allowlist.contains(1L));
+        assertTrue(allowlist.contains(2L));
+        assertTrue(allowlist.contains(3L));
+        assertFalse(allowlist.contains(4L));
+        assertEquals(4L, allowlist.checkCount());
+    }
+
+    @Test
+    public void empty() {
+        DeviceAllowlist allowlist = DeviceAllowlist.create();
+        assertEquals(0, allowlist.size());
+        assertFalse(allowlist.contains(0L));
+        assertFalse(allowlist.contains(ADDRESS_MASK));
+    }
+
+    @Test
+    public void memoryFarBelowStringSet() {
+        DeviceAllowlist allowlist = DeviceAllowlist.create(randomAddresses(new Random(3L), 200000));
+        // 8 bytes per address and about 10 bits per address of filter.
+        assertEquals(200000 * 8L, allowlist.memoryBytes() - allowlist.bloomFilterBytes());
+        assertTrue(allowlist.toString(), allowlist.memoryBytes() < 2 * 1024 * 1024);
+        assertEquals(7, allowlist.hashCount());
+    }
+
+    @Test
+    public void readSkipsBlankAndCommentLines() throws IOException {
+        Buffer source = new Buffer().writeUtf8(""
+                + "# Fleet\n"
+                + "00:11:22:AA:BB:CC\n"
+                + "\n"
+                + "  00:11:22:aa:bb:cd  \n"
+                + "# 00:11:22:AA:BB:CE\n");
+        DeviceAllowlist allowlist = DeviceAllowlist.read(source, 0.01d);
+        assertEquals(2, allowlist.size());
+        assertTrue(allowlist.contains(DeviceTable.packAddress("00:11:22:AA:BB:CC")));
+        assertTrue(allowlist.contains(DeviceTable.packAddress("00:11:22:AA:BB:CD")));
+        assertFalse(allowlist.contains(DeviceTable.packAddress("00:11:22:AA:BB:CE")));
+    }
+
+    @Test
+    public void readRejectsMalformedLine() {
+        Buffer source = new Buffer().writeUtf8("00:11:22:AA:BB:CC\n00-11-22-AA-BB-CD\n");
+        try {
+            DeviceAllowlist.read(source, 0.01d);
+            fail();
+        } catch (IOException expected) {
+            assertEquals("Malformed address on line 2: 00-11-22-AA-BB-CD", expected.getMessage());
+        }
+    }
+
+    @Test
+    public void loadFromFile() throws IOException {
+        long[] addresses = randomAddresses(new Random(4L), 3000);
+        File file = temporaryFolder.newFile("fleet.txt");
+        BufferedSink sink = Okio.buffer(Okio.sink(file));
+        for (long address : addresses) {
+            sink.writeUtf8(DeviceTable.formatAddress(address)).writeByte('\n');
+        }
+        sink.close();
+
+        // More than the reader's initial capacity.
+        DeviceAllowlist allowlist = DeviceAllowlist.load(file);
+        assertEquals(addresses.length, allowlist.size());
+        for (long address : addresses) {
+            assertTrue(allowlist.contains(address));
+        }
+    }
+
+    @Test
+    public void filterPassesMembersOnly() {
+        final long[] delivered = new long[2];
+        DeviceAllowlist allowlist = DeviceAllowlist.create(1L, 2L);
+        ScanManager.Consumer consumer = allowlist.filter(new ScanManager.Consumer() {
+            @Override
+            public void onScanResult(long address, int rssi, byte[] scanRecord) {
+                delivered[(int) address - 1]++;
+            }
+        });
+        consumer.onScanResult(1L, -60, new byte[0]);
+        consumer.onScanResult(3L, -60, new byte[0]);
+        consumer.onScanResult(2L, -60, new byte[0]);
+        consumer.onScanResult(1L, -60, new byte[0]);
+        assertEquals(2L, delivered[0]);
+        assertEquals(1L, delivered[1]);
+    }
+
+    @Test
+    public void invalidArguments() {
+        try {
+            DeviceAllowlist.create(null, 0.01d);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+        for (double rate : new double[]{0d, 1d, Double.NaN}) {
+            try {
+                DeviceAllowlist.create(new long[]{1L}, rate);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        try {
+            DeviceAllowlist.create(1L).filter(null);
+            fail();
+        } catch (NullPointerException expected) {
+        }
+    }
+
+    /**
+     * Asserts that the observed rate is close to the expected one, and within {@code rate}
+     * allowing for sampling error.
+     */
+    private static void assertFalsePositiveRate(DeviceAllowlist allowlist, double rate,
+            int trials) {
+        double expected = allowlist.expectedFalsePositiveRate();
+        double observed = allowlist.observedFalsePositiveRate();
+        // Four standard deviations of a binomial proportion.
+        double tolerance = 4 * Math.sqrt(expected * (1 - expected) / trials);
+        String message = "expected " + expected + ", observed " + observed;
+        assertEquals(message, expected, observed, Math.max(tolerance, expected * 0.1d));
+        assertTrue(message, observed < rate + tolerance);
+    }
+
+    private static long[] randomAddresses(Random random, int count) {
+        long[] addresses = new long[count];
+        for (int i = 0; i < count; i++) {
+            addresses[i] = random.nextLong() & ADDRESS_MASK;
+        }
+        return addresses;
+    }
+
+    /**
+     * Returns a random address which is not in {@code sortedMembers}.
+     */
+    private static long nonMember(Random random, long[] sortedMembers) {
+        while (true) {
+            long address = random.nextLong() & ADDRESS_MASK;
+            if (Arrays.binarySearch(sortedMembers, address) < 0) {
+                return address;
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package retrotooth.scan;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public final class DeviceTableTest {
+    private static final long A = DeviceTable.packAddress("00:11:22:33:44:0A");
+    private static final long B = DeviceTable.packAddress("00:11:22:33:44:0B");
+    private static final long C = DeviceTable.packAddress("00:11:22:33:44:0C");
+    private static final long D = DeviceTable.packAddress("00:11:22:33:44:0D");
+
+    @Test
+    public void changes() {
+        DeviceTable table = new DeviceTable(4, 1f, 5);
+        assertEquals(DeviceTable.CHANGE_NEW, table.update(A, -50, 1, 0L));
+        assertEquals(DeviceTable.CHANGE_NONE, table.update(A, -46, 1, 10L));
+        assertEquals(DeviceTable.CHANGE_PAYLOAD, table.update(A, -47, 2, 20L));
+        assertEquals(DeviceTable.CHANGE_RSSI, table.update(A, -70, 2, 30L));
+        assertEquals(DeviceTable.CHANGE_PAYLOAD | DeviceTable.CHANGE_RSSI,
+                table.update(A, -40, 3, 40L));
+
+        int slot = table.indexOf(A);
+        assertEquals(A, table.address(slot));
+        assertEquals(40L, table.lastSeen(slot));
+        assertEquals(5, table.advertCount(slot));
+        assertEquals(3, table.payloadHash(slot));
+        assertEquals(-40f, table.rssi(slot), 0f);
+    }
+
+    @Test
+    public void rssiIsSmoothed() {
+        DeviceTable table = new DeviceTable(4, 0.25f, 5);
+        table.update(A, -80, 0, 0L);
+        table.update(A, -40, 0, 1L);
+        assertEquals(-70f, table.rssi(table.indexOf(A)), 0f);
+    }
+
+    @Test
+    public void fullTableEvictsLeastRecentlySeen() {
+        DeviceTable table = new DeviceTable(3);
+        table.update(A, -50, 0, 1L);
+        table.update(B, -50, 0, 2L);
+        table.update(C, -50, 0, 3L);
+        // Seeing A again makes B the least recently seen.
+        table.update(A, -50, 0, 4L);
+
+        assertEquals(DeviceTable.CHANGE_NEW, table.update(D, -50, 0, 5L));
+        assertEquals(3, table.size());
+        assertEquals(-1, table.indexOf(B));
+        assertTrue(table.indexOf(A) >= 0);
+        assertTrue(table.indexOf(C) >= 0);
+        assertTrue(table.indexOf(D) >= 0);
+
+        // Then C.
+        assertEquals(DeviceTable.CHANGE_NEW, table.update(B, -50, 0, 6L));
+        assertEquals(-1, table.indexOf(C));
+        assertTrue(table.indexOf(A) >= 0);
+    }
+
+    @Test
+    public void evictOlderThan() {
+        DeviceTable table = new DeviceTable(8);
+        table.update(A, -50, 0, 1L);
+        table.update(B, -50, 0, 2L);
+        table.update(C, -50, 0, 3L);
+        table.update(A, -50, 0, 4L);
+
+        assertEquals(2, table.evictOlderThan(4L));
+        assertEquals(1, table.size());
+        assertTrue(table.indexOf(A) >= 0);
+        assertEquals(-1, table.indexOf(B));
+        assertEquals(-1, table.indexOf(C));
+        assertEquals(0, table.evictOlderThan(4L));
+        assertEquals(1, table.evictOlderThan(5L));
+        assertEquals(0, table.size());
+        assertEquals(-1, table.indexOf(A));
+    }
+
+    @Test
+    public void removeKeepsOtherDevicesReachable() {
+        // Enough devices in a small index that many share probe sequences, wrapping around its
+        // end. Removing each in turn shifts its successors back over the hole.
+        int capacity = 32;
+        DeviceTable table = new DeviceTable(capacity);
+        long[] addresses = new long[capacity];
+        for (int i = 0; i < capacity; i++) {
+            addresses[i] = 0xC0FFEE000000L + i * 0x10000L;
+            table.update(addresses[i], -50, i, i);
+        }
+        for (int removed = 0; removed < capacity; removed += 2) {
+            assertTrue(table.remove(addresses[removed]));
+            assertFalse(table.remove(addresses[removed]));
+            for (int i = 0; i < capacity; i++) {
+                boolean present = i > removed || i % 2 == 1;
+                int slot = table.indexOf(addresses[i]);
+                assertEquals(present, slot >= 0);
+                if (present) {
+                    assertEquals(addresses[i], table.address(slot));
+                    assertEquals(i, table.payloadHash(slot));
+                }
+            }
+        }
+        assertEquals(capacity / 2, table.size());
+    }
+
+    @Test
+    public void randomOperationsAgreeWithMap() {
+        int capacity = 24;
+        DeviceTable table = new DeviceTable(capacity);
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(4L);
+        for (int step = 0; step < 100000; step++) {
+            // Few enough addresses that the table fills, but removal keeps it below capacity.
+            long address = random.nextInt(40);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(address) != null, table.remove(address));
+            } else if (expected.containsKey(address) || expected.size() < capacity) {
+                int changes = table.update(address, -50, step, step);
+                assertEquals(!expected.containsKey(address),
+                        (changes & DeviceTable.CHANGE_NEW) != 0);
+                expected.put(address, step);
+            }
+            assertEquals(expected.size(), table.size());
+            if (step % 97 == 0) {
+                for (long a = 0; a < 40; a++) {
+                    int slot = table.indexOf(a);
+                    Integer payload = expected.get(a);
+                    assertEquals(payload != null, slot >= 0);
+                    if (payload != null) {
+                        assertEquals((int) payload, table.payloadHash(slot));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void slotsAreReusedAfterClear() {
+        DeviceTable table = new DeviceTable(2);
+        table.update(A, -50, 0, 1L);
+        table.update(B, -50, 0, 2L);
+        table.clear();
+        assertEquals(0, table.size());
+        assertEquals(-1, table.indexOf(A));
+        assertEquals(DeviceTable.CHANGE_NEW, table.update(C, -50, 0, 3L));
+        assertEquals(DeviceTable.CHANGE_NEW, table.update(D, -50, 0, 4L));
+        assertEquals(2, table.size());
+    }
+
+    @Test
+    public void topByRssi() {
+        DeviceTable table = new DeviceTable(8, 1f, 5);
+        table.update(A, -70, 0, 1L);
+        table.update(B, -40, 0, 2L);
+        table.update(C, -90, 0, 3L);
+        table.update(D, -55, 0, 4L);
+
+        int[] slots = new int[3];
+        assertEquals(3, table.topByRssi(slots));
+        assertEquals(B, table.address(slots[0]));
+        assertEquals(D, table.address(slots[1]));
+        assertEquals(A, table.address(slots[2]));
+
+        int[] all = new int[10];
+        assertEquals(4, table.topByRssi(all));
+        assertEquals(C, table.address(all[3]));
+    }
+
+    @Test
+    public void addresses() {
+        long address = DeviceTable.packAddress("00:1A:7d:DA:71:13");
+        assertEquals(0x001A7DDA7113L, address);
+        assertEquals("00:1A:7D:DA:71:13", DeviceTable.formatAddress(address));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void malformedAddress() {
+        DeviceTable.packAddress("00:1A:7D:DA:71-13");
+    }
+}
@@ -0,0 +1,219 @@
+package retrotooth.scan;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static retrotooth.scan.ProximityEstimator.ZONE_ABSENT;
+
+public final class ProximityEstimatorTest {
+    private static final long DEVICE = 0x001122334455L;
+    private static final long OTHER = 0x66778899AABBL;
+    private static final int NO_TX_POWER = Integer.MIN_VALUE;
+
+    private final List<String> changes = new ArrayList<>();
+    private final ProximityEstimator.Listener listener = new ProximityEstimator.Listener() {
+        @Override
+        public void onZoneChanged(long address, int previousZone, int zone, float distance) {
+            changes.add(Long.toHexString(address) + " " + previousZone + "->" + zone);
+        }
+    };
+
+    @Test
+    public void filterConvergesOnNoisySignal() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder().build();
+        Random random = new Random(1L);
+        double rawError = 0;
+        double filteredError = 0;
+        for (int i = 0; i < 400; i++) {
+            int rssi = (int) Math.round(-71 + 3 * random.nextGaussian());
+            estimator.update(DEVICE, rssi, NO_TX_POWER, i * 100L);
+            if (i >= 200) {
+                rawError += (rssi + 71) * (rssi + 71);
+                filteredError += (estimator.rssi(DEVICE) + 71) * (estimator.rssi(DEVICE) + 71);
+            }
+        }
+        assertEquals(-71f, estimator.rssi(DEVICE), 1f);
+        // Once settled, the estimate strays from the true value far less than the samples do.
+        assertTrue(rawError + " vs " + filteredError, filteredError * 10 < rawError);
+    }
+
+    @Test
+    public void filterFollowsStep() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder().build();
+        assertEquals(ZONE_ABSENT, estimator.zone(DEVICE));
+        estimator.update(DEVICE, -60, NO_TX_POWER, 0L);
+        // The first sample is taken as is.
+        assertEquals(-60f, estimator.rssi(DEVICE), 0f);
+
+        // Smoothed: the first sample is trusted as much as the estimate, so it moves halfway.
+        estimator.update(DEVICE, -80, NO_TX_POWER, 100L);
+        assertEquals(-70f, estimator.rssi(DEVICE), 0.5f);
+
+        for (int i = 2; i <= 100; i++) {
+            estimator.update(DEVICE, -80, NO_TX_POWER, i * 100L);
+        }
+        assertEquals(-80f, estimator.rssi(DEVICE), 0.1f);
+    }
+
+    @Test
+    public void distanceFromPathLoss() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder().measuredPower(-59).build();
+        estimator.update(DEVICE, -59, NO_TX_POWER, 0L);
+        assertEquals(1f, estimator.distance(DEVICE), 0.001f);
+        // 20 dB more loss is 10 times the distance with a path loss exponent of 2.
+        estimator.update(OTHER, -79, NO_TX_POWER, 0L);
+        assertEquals(10f, estimator.distance(OTHER), 0.001f);
+        assertEquals(Float.NaN, estimator.distance(0L), 0f);
+    }
+
+    @Test
+    public void advertisedTxPowerCalibrates() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder().measuredPower(-59).build();
+        // -8 dBm at 0 meters is -49 dBm at 1 meter.
+        estimator.update(DEVICE, -49, -8, 0L);
+        assertEquals(1f, estimator.distance(DEVICE), 0.001f);
+
+        // From a scan record: flags, then a TX power level of -8 dBm.
+        byte[] record = {0x02, 0x01, 0x06, 0x02, 0x0A, (byte) 0xF8};
+        estimator.onScanResult(OTHER, -49, record);
+        assertEquals(1f, estimator.distance(OTHER), 0.001f);
+    }
+
+    @Test
+    public void hysteresisHoldsZoneAtBoundary() {
+        ProximityEstimator estimator = unfiltered();
+        // Thresholds of 1 and 4 meters; -59 dBm is 1 meter and each dB about 12% farther.
+        assertEquals(0, estimator.update(DEVICE, -50, NO_TX_POWER, 0L));
+        assertEquals(Arrays.asList("1122334455 -1->0"), changes);
+
+        // 1.12 meters is past the threshold but inside the 25% margin.
+        assertEquals(0, estimator.update(DEVICE, -60, NO_TX_POWER, 1L));
+        // 1.26 meters is past the margin.
+        assertEquals(1, estimator.update(DEVICE, -61, NO_TX_POWER, 2L));
+        // 0.89 meters is inside the threshold but not its margin.
+        assertEquals(1, estimator.update(DEVICE, -58, NO_TX_POWER, 3L));
+        // 0.71 meters is.
+        assertEquals(0, estimator.update(DEVICE, -56, NO_TX_POWER, 4L));
+        assertEquals(Arrays.asList("1122334455 -1->0", "1122334455 0->1", "1122334455 1->0"),
+                changes);
+    }
+
+    @Test
+    public void hoveringDeviceDoesNotFlap() {
+        ProximityEstimator estimator = unfiltered();
+        estimator.update(DEVICE, -50, NO_TX_POWER, 0L);
+        changes.clear();
+        // Either side of 1 meter, within the margin.
+        for (int i = 1; i <= 100; i++) {
+            estimator.update(DEVICE, i % 2 == 0 ? -58 : -60, NO_TX_POWER, i);
+        }
+        assertEquals(0, estimator.zone(DEVICE));
+        assertTrue(changes.toString(), changes.isEmpty());
+    }
+
+    @Test
+    public void hysteresisOffFlapsAtBoundary() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder()
+                .zoneThresholds(1f, 4f)
+                .hysteresis(0f)
+                .noise(1000f, 0.001f)
+                .listener(listener)
+                .build();
+        estimator.update(DEVICE, -50, NO_TX_POWER, 0L);
+        changes.clear();
+        for (int i = 1; i <= 10; i++) {
+            estimator.update(DEVICE, i % 2 == 0 ? -58 : -60, NO_TX_POWER, i);
+        }
+        assertEquals(10, changes.size());
+    }
+
+    @Test
+    public void largeMoveCrossesSeveralZones() {
+        ProximityEstimator estimator = unfiltered();
+        estimator.update(DEVICE, -50, NO_TX_POWER, 0L);
+        // 6.3 meters is past both thresholds and their margins.
+        assertEquals(2, estimator.update(DEVICE, -75, NO_TX_POWER, 1L));
+        // 4.5 meters is inside the outer threshold but not its margin, so it stays out.
+        assertEquals(2, estimator.update(DEVICE, -72, NO_TX_POWER, 2L));
+        // 0.5 meters is well inside both.
+        assertEquals(0, estimator.update(DEVICE, -53, NO_TX_POWER, 3L));
+        assertEquals(Arrays.asList("1122334455 -1->0", "1122334455 0->2", "1122334455 2->0"),
+                changes);
+    }
+
+    @Test
+    public void expiredDevicesLeave() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder()
+                .exitTimeoutMillis(1000L)
+                .listener(listener)
+                .build();
+        estimator.update(DEVICE, -59, NO_TX_POWER, 0L);
+        estimator.update(OTHER, -59, NO_TX_POWER, 500L);
+        changes.clear();
+
+        assertEquals(0, estimator.expire(1000L));
+        assertEquals(1, estimator.expire(1001L));
+        assertEquals(Arrays.asList("1122334455 1->-1"), changes);
+        assertEquals(ZONE_ABSENT, estimator.zone(DEVICE));
+        assertEquals(Float.NaN, estimator.rssi(DEVICE), 0f);
+        assertEquals(1, estimator.size());
+    }
+
+    @Test
+    public void evictedDeviceLeaves() {
+        ProximityEstimator estimator = new ProximityEstimator.Builder()
+                .capacity(1)
+                .listener(listener)
+                .build();
+        estimator.update(DEVICE, -59, NO_TX_POWER, 0L);
+        estimator.update(OTHER, -59, NO_TX_POWER, 1L);
+        assertEquals(Arrays.asList("1122334455 -1->1", "1122334455 1->-1", "66778899aabb -1->1"),
+                changes);
+        assertEquals(1, estimator.size());
+    }
+
+    @Test
+    public void builderValidates() {
+        ProximityEstimator.Builder builder = new ProximityEstimator.Builder();
+        try {
+            builder.zoneThresholds(1f, 1f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            builder.zoneThresholds(0f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            builder.hysteresis(1f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        try {
+            builder.noise(0f, 1f);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    /**
+     * Returns an estimator whose filter passes samples almost unchanged, so zones follow RSSI.
+     */
+    private ProximityEstimator unfiltered() {
+        return new ProximityEstimator.Builder()
+                .zoneThresholds(1f, 4f)
+                .hysteresis(0.25f)
+                .measuredPower(-59)
+                .noise(1000f, 0.001f)
+                .listener(listener)
+                .build();
+    }
+}
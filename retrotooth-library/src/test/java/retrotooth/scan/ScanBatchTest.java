@@ -0,0 +1,192 @@
+package retrotooth.scan;
+
+import org.junit.Test;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.Arrays;
+import java.util.Random;
+
+import okio.Buffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class ScanBatchTest {
+    private static final byte[] IBEACON = {0x02, 0x01, 0x06, 0x05, (byte) 0xFF, 0x4C, 0x00, 0x02,
+            0x15};
+    private static final byte[] NAME = {0x05, 0x09, 'T', 'e', 's', 't'};
+
+    private final ScanBatchWriter writer = new ScanBatchWriter();
+    private final Buffer buffer = new Buffer();
+
+    @Test
+    public void roundTrip() throws IOException {
+        writer.add(1446000000000L, 0x001122334455L, -60, IBEACON);
+        writer.add(1446000000100L, 0x00AABBCCDDEEL, -75, NAME);
+        writer.add(1446000000100L, 0x001122334455L, -61, IBEACON);
+        // Out of order, and clamped to a signed byte.
+        writer.add(1445999999000L, 0x001122334455L, 200, new byte[0]);
+        byte[] padded = {0x7F, 0x03, 0x09, 'H', 'i', 0x7F};
+        writer.add(1446000000200L, 0x00AABBCCDDEEL, -200, padded, 1, 4);
+        assertEquals(5, writer.count());
+        assertEquals(1446000000000L, writer.firstTimeMillis());
+
+        long frameSize = writer.frameSize();
+        writer.writeTo(buffer);
+        assertEquals(frameSize, buffer.size());
+        assertEquals(0, writer.count());
+
+        ScanBatchReader reader = new ScanBatchReader(buffer);
+        assertTrue(reader.next());
+        assertEquals(5, reader.count());
+        assertObservation(reader, 0, 1446000000000L, 0x001122334455L, -60, IBEACON);
+        assertObservation(reader, 1, 1446000000100L, 0x00AABBCCDDEEL, -75, NAME);
+        assertObservation(reader, 2, 1446000000100L, 0x001122334455L, -61, IBEACON);
+        assertObservation(reader, 3, 1445999999000L, 0x001122334455L, 127, new byte[0]);
+        assertObservation(reader, 4, 1446000000200L, 0x00AABBCCDDEEL, -128,
+                new byte[]{0x03, 0x09, 'H', 'i'});
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void repeatedPayloadsAreStoredOnce() throws IOException {
+        writer.add(0L, 1L, -60, IBEACON);
+        long single = writer.frameSize();
+        for (int i = 1; i < 100; i++) {
+            writer.add(i * 10L, 1L, -60, IBEACON);
+        }
+        // Each repeat costs a time delta, an address id, an RSSI and a payload id, and the
+        // frame's length prefix grows to two bytes.
+        assertEquals(single + 99 * 4 + 1, writer.frameSize());
+    }
+
+    @Test
+    public void largeBatchesAndSeveralFrames() throws IOException {
+        Random random = new Random(5L);
+        int count = 5000;
+        long[] times = new long[count];
+        long[] addresses = new long[count];
+        int[] rssis = new int[count];
+        byte[][] payloads = new byte[count][];
+        long time = 1446000000000L;
+        for (int i = 0; i < count; i++) {
+            time += random.nextInt(50);
+            times[i] = time;
+            addresses[i] = random.nextInt(300) * 0x1000001L;
+            rssis[i] = -30 - random.nextInt(70);
+            payloads[i] = new byte[random.nextInt(31)];
+            // Enough distinct payloads to grow the dictionary, with plenty of repeats.
+            Arrays.fill(payloads[i], (byte) random.nextInt(200));
+        }
+        int split = 3000;
+        for (int i = 0; i < split; i++) {
+            writer.add(times[i], addresses[i], rssis[i], payloads[i]);
+        }
+        writer.writeTo(buffer);
+        // An empty writer writes nothing.
+        writer.writeTo(buffer);
+        for (int i = split; i < count; i++) {
+            writer.add(times[i], addresses[i], rssis[i], payloads[i]);
+        }
+        writer.writeTo(buffer);
+
+        ScanBatchReader reader = new ScanBatchReader(buffer);
+        assertTrue(reader.next());
+        assertEquals(split, reader.count());
+        for (int i = 0; i < split; i++) {
+            assertObservation(reader, i, times[i], addresses[i], rssis[i], payloads[i]);
+        }
+        assertTrue(reader.next());
+        assertEquals(count - split, reader.count());
+        for (int i = split; i < count; i++) {
+            assertObservation(reader, i - split, times[i], addresses[i], rssis[i], payloads[i]);
+        }
+        assertFalse(reader.next());
+    }
+
+    @Test
+    public void corruptBodyIsRejected() throws IOException {
+        writer.add(1000L, 1L, -60, IBEACON);
+        writer.add(2000L, 2L, -70, NAME);
+        writer.writeTo(buffer);
+        byte[] frame = buffer.readByteArray();
+        for (int i = 1; i < frame.length - 4; i++) {
+            byte[] corrupt = frame.clone();
+            corrupt[i] ^= 0x10;
+            try {
+                new ScanBatchReader(new Buffer().write(corrupt)).next();
+                fail("Corrupt byte " + i + " accepted");
+            } catch (ProtocolException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void corruptChecksumIsRejected() throws IOException {
+        writer.add(1000L, 1L, -60, IBEACON);
+        writer.writeTo(buffer);
+        byte[] frame = buffer.readByteArray();
+        frame[frame.length - 1] ^= 0x01;
+        try {
+            new ScanBatchReader(new Buffer().write(frame)).next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+    }
+
+    @Test
+    public void truncatedFrameIsRejected() throws IOException {
+        writer.add(1000L, 1L, -60, IBEACON);
+        writer.writeTo(buffer);
+        byte[] frame = buffer.readByteArray();
+        for (int length = 1; length < frame.length; length++) {
+            try {
+                new ScanBatchReader(new Buffer().write(frame, 0, length)).next();
+                fail("Truncated frame of " + length + " bytes accepted");
+            } catch (EOFException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void oversizedBatchIsRejected() throws IOException {
+        for (int i = 0; i < 10; i++) {
+            writer.add(i, i, -60, IBEACON);
+        }
+        long frameSize = writer.frameSize();
+        writer.writeTo(buffer);
+        try {
+            new ScanBatchReader(buffer, (int) frameSize / 2).next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+    }
+
+    @Test
+    public void malformedBatchLengthIsRejected() throws IOException {
+        buffer.write(new byte[]{(byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80,
+                0x01});
+        try {
+            new ScanBatchReader(buffer).next();
+            fail();
+        } catch (ProtocolException expected) {
+        }
+    }
+
+    private static void assertObservation(ScanBatchReader reader, int i, long timeMillis,
+            long address, int rssi, byte[] payload) {
+        assertEquals(timeMillis, reader.timeMillis(i));
+        assertEquals(address, reader.address(i));
+        assertEquals(rssi, reader.rssi(i));
+        assertArrayEquals(payload, reader.payload(i));
+        assertEquals(payload.length, reader.payloadLength(i));
+        byte[] inPlace = Arrays.copyOfRange(reader.payloadArray(), reader.payloadOffset(i),
+                reader.payloadOffset(i) + reader.payloadLength(i));
+        assertArrayEquals(payload, inPlace);
+    }
+}
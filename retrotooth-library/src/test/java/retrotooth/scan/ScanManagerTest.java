@@ -0,0 +1,231 @@
+package retrotooth.scan;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import retrotooth.Internal;
+import retrotooth.model.AdvertisementFilter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public final class ScanManagerTest {
+    private static final long FIRST = DeviceTable.packAddress("00:11:22:33:44:55");
+    private static final long SECOND = DeviceTable.packAddress("66:77:88:99:AA:BB");
+    // Flags, then manufacturer data from Apple (0x004C) and from Nordic (0x0059).
+    private static final byte[] APPLE =
+            new byte[]{0x02, 0x01, 0x06, 0x05, (byte) 0xFF, 0x4C, 0x00, 0x02, 0x15};
+    private static final byte[] NORDIC =
+            new byte[]{0x02, 0x01, 0x06, 0x05, (byte) 0xFF, 0x59, 0x00, 0x01, 0x02};
+
+    private final ScheduledExecutorService scheduler =
+            Executors.newSingleThreadScheduledExecutor();
+    private final FakeScanner scanner = new FakeScanner();
+    private final ScanManager manager = new ScanManager(scanner, scheduler);
+
+    @After
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void resultsFanOutToMatchingConsumers() throws Exception {
+        RecordingConsumer all = new RecordingConsumer();
+        RecordingConsumer apple = new RecordingConsumer();
+        RecordingConsumer allowed = new RecordingConsumer();
+        manager.register(null, ScanManager.Mode.LOW_LATENCY, all);
+        manager.register(new AdvertisementFilter.Builder().manufacturerId(0x004C).build(),
+                ScanManager.Mode.LOW_LATENCY, apple);
+        manager.register(DeviceAllowlist.create(SECOND), null, ScanManager.Mode.LOW_LATENCY,
+                allowed);
+        awaitScheduler();
+        assertEquals(1, scanner.startCount);
+
+        scanner.deliver(FIRST, -60, APPLE);
+        scanner.deliver(SECOND, -70, NORDIC);
+        assertEquals(2, all.count);
+        assertEquals(1, apple.count);
+        assertEquals(FIRST, apple.lastAddress);
+        assertEquals(-60, apple.lastRssi);
+        assertEquals(1, allowed.count);
+        assertEquals(SECOND, allowed.lastAddress);
+    }
+
+    @Test
+    public void throwingConsumerDoesNotStarveOthers() throws Exception {
+        RecordingConsumer before = new RecordingConsumer();
+        RecordingConsumer after = new RecordingConsumer();
+        manager.register(null, ScanManager.Mode.LOW_LATENCY, before);
+        manager.register(null, ScanManager.Mode.LOW_LATENCY, new ScanManager.Consumer() {
+            @Override
+            public void onScanResult(long address, int rssi, byte[] scanRecord) {
+                throw new IllegalStateException("broken consumer");
+            }
+        });
+        manager.register(null, ScanManager.Mode.LOW_LATENCY, after);
+        awaitScheduler();
+
+        Logger logger = Internal.logger;
+        Level level = logger.getLevel();
+        logger.setLevel(Level.OFF);
+        try {
+            scanner.deliver(FIRST, -60, APPLE);
+            scanner.deliver(SECOND, -70, NORDIC);
+        } finally {
+            logger.setLevel(level);
+        }
+        assertEquals(2, before.count);
+        assertEquals(2, after.count);
+    }
+
+    @Test
+    public void lastUnregisterStopsScan() throws Exception {
+        RecordingConsumer first = new RecordingConsumer();
+        RecordingConsumer second = new RecordingConsumer();
+        ScanManager.Registration firstRegistration =
+                manager.register(null, ScanManager.Mode.LOW_LATENCY, first);
+        ScanManager.Registration secondRegistration =
+                manager.register(null, ScanManager.Mode.LOW_LATENCY, second);
+        awaitScheduler();
+
+        firstRegistration.unregister();
+        awaitScheduler();
+        assertTrue(isScanning());
+        scanner.deliver(FIRST, -60, APPLE);
+        assertEquals(0, first.count);
+        assertEquals(1, second.count);
+
+        secondRegistration.unregister();
+        awaitScheduler();
+        assertFalse(isScanning());
+        assertEquals(1, scanner.startCount);
+        assertEquals(1, scanner.stopCount);
+    }
+
+    @Test
+    public void startsThrottledWithinWindow() throws Exception {
+        // A 1 ms window every 2 ms would start the scan 500 times a second.
+        manager.register(null, ScanManager.Mode.create(1, 2), new RecordingConsumer());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (startCount() < ScanManager.MAX_STARTS && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        long firstStart = TimeUnit.NANOSECONDS.toMillis(scanner.firstStartNanos);
+        Thread.sleep(200);
+
+        // The sixth start waits until the first leaves the window.
+        assertEquals(ScanManager.MAX_STARTS, startCount());
+        assertFalse(isScanning());
+        long allowedAt = scheduler.submit(new Callable<Long>() {
+            @Override
+            public Long call() {
+                return manager.nextStartAllowedAt(0L);
+            }
+        }).get(5, TimeUnit.SECONDS);
+        // The manager stamps each start just before calling the scanner.
+        assertTrue(allowedAt <= firstStart + ScanManager.START_WINDOW_MILLIS);
+        assertTrue(allowedAt >= firstStart + ScanManager.START_WINDOW_MILLIS - 100);
+    }
+
+    @Test
+    public void failedStartRetriedNextInterval() throws Exception {
+        scanner.available = false;
+        manager.register(null, ScanManager.Mode.create(50, 100), new RecordingConsumer());
+        awaitScheduler();
+        assertEquals(1, startCount());
+        assertFalse(isScanning());
+
+        scanner.available = true;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!isScanning() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(isScanning());
+        assertEquals(2, startCount());
+    }
+
+    /**
+     * Waits for the tasks already queued on the scheduler to run.
+     */
+    private void awaitScheduler() throws Exception {
+        scheduler.submit(new Runnable() {
+            @Override
+            public void run() {
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private boolean isScanning() throws Exception {
+        return scheduler.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                return manager.isScanning();
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    private int startCount() throws Exception {
+        return scheduler.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return scanner.startCount;
+            }
+        }).get(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Counts starts and stops, and hands results to the manager as a radio would. Called on the
+     * scheduler only.
+     */
+    static final class FakeScanner implements ScanManager.Scanner {
+        volatile boolean available = true;
+        volatile ScanManager.Consumer callback;
+        int startCount;
+        int stopCount;
+        long firstStartNanos;
+
+        @Override
+        public boolean start(ScanManager.Consumer callback) {
+            if (startCount++ == 0) {
+                firstStartNanos = System.nanoTime();
+            }
+            this.callback = callback;
+            return available;
+        }
+
+        @Override
+        public void stop() {
+            stopCount++;
+        }
+
+        void deliver(long address, int rssi, byte[] scanRecord) {
+            ScanManager.Consumer consumer = callback;
+            assertNotNull(consumer);
+            consumer.onScanResult(address, rssi, scanRecord);
+        }
+    }
+
+    static final class RecordingConsumer implements ScanManager.Consumer {
+        int count;
+        long lastAddress;
+        int lastRssi;
+
+        @Override
+        public void onScanResult(long address, int rssi, byte[] scanRecord) {
+            count++;
+            lastAddress = address;
+            lastRssi = rssi;
+        }
+    }
+}
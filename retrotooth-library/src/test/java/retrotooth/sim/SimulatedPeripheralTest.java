@@ -0,0 +1,211 @@
+package retrotooth.sim;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import retrotooth.Call;
+import retrotooth.Callback;
+import retrotooth.GattFormat;
+import retrotooth.PresentationFormat;
+import retrotooth.Response;
+import retrotooth.Retrotooth;
+import retrotooth.Transport;
+import retrotooth.annotations.Format;
+import retrotooth.annotations.Presentation;
+import retrotooth.annotations.READ;
+import retrotooth.annotations.WRITE;
+import retrotooth.util.BleUtils;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static retrotooth.sim.SimulatedPeripheral.PROPERTY_READ;
+import static retrotooth.sim.SimulatedPeripheral.PROPERTY_WRITE;
+
+public final class SimulatedPeripheralTest {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final UUID HEART_RATE = BleUtils.getUUID("180d");
+    private static final UUID BODY_SENSOR_LOCATION = BleUtils.getUUID("2a38");
+    private static final UUID CONTROL_POINT = BleUtils.getUUID("2a39");
+    private static final UUID ENVIRONMENTAL_SENSING = BleUtils.getUUID("181a");
+    private static final UUID TEMPERATURE = BleUtils.getUUID("2a6e");
+    private static final UUID DEVICE_INFORMATION = BleUtils.getUUID("180a");
+    private static final UUID MANUFACTURER_NAME = BleUtils.getUUID("2a29");
+
+    interface Service {
+        @READ(service = "180d", characteristic = "2a38")
+        Call<byte[]> bodySensorLocation();
+
+        @WRITE(service = "180d", characteristic = "2a38")
+        Call<Void> setBodySensorLocation(byte[] value);
+
+        @READ(service = "180d", characteristic = "2a39")
+        @Format(GattFormat.UINT16)
+        Call<Integer> controlPoint();
+
+        @WRITE(service = "180d", characteristic = "2a39")
+        Call<Void> setControlPoint(@Format(GattFormat.UINT16) int value);
+
+        @Presentation
+        @READ(service = "181a", characteristic = "2a6e")
+        Call<Double> temperature();
+
+        @READ(service = "180a", characteristic = "2a29")
+        Call<String> manufacturerName();
+    }
+
+    private final SimulatedPeripheral peripheral = new SimulatedPeripheral.Builder()
+            .characteristic(HEART_RATE, BODY_SENSOR_LOCATION, PROPERTY_READ, new byte[]{0x01})
+            .characteristic(HEART_RATE, CONTROL_POINT, PROPERTY_READ | PROPERTY_WRITE,
+                    new byte[2])
+            // 36.93 as a SINT16 with exponent -2, in degrees Celsius.
+            .characteristic(ENVIRONMENTAL_SENSING, TEMPERATURE, PROPERTY_READ,
+                    new byte[]{0x6D, 0x0E})
+            .descriptor(ENVIRONMENTAL_SENSING, TEMPERATURE, PresentationFormat.DESCRIPTOR_UUID,
+                    new byte[]{0x0E, (byte) 0xFE, 0x2F, 0x27, 0x01, 0x00, 0x00})
+            .characteristic(DEVICE_INFORMATION, MANUFACTURER_NAME, PROPERTY_READ,
+                    "A manufacturer name too long for one packet".getBytes(UTF_8))
+            .connectionInterval(30, TimeUnit.MILLISECONDS)
+            .build();
+    private final Service service =
+            new Retrotooth.Builder().transport(peripheral).build().create(Service.class);
+
+    @Test
+    public void read() throws IOException {
+        Response<byte[]> response = service.bodySensorLocation().execute();
+        assertTrue(response.isSuccess());
+        assertArrayEquals(new byte[]{0x01}, response.data());
+        assertEquals(1L, peripheral.roundTripCount());
+        assertEquals(30L, peripheral.clock().millis());
+    }
+
+    @Test
+    public void writeThenRead() throws IOException {
+        service.setControlPoint(0x1234).execute();
+        assertArrayEquals(new byte[]{0x34, 0x12}, peripheral.value(HEART_RATE, CONTROL_POINT));
+        assertEquals(0x1234, (int) service.controlPoint().execute().data());
+    }
+
+    @Test
+    public void readPresentationFormat() throws IOException {
+        assertEquals(36.93d, service.temperature().execute().data(), 1e-9);
+        // The descriptor is read once, then cached.
+        long operations = peripheral.operationCount();
+        peripheral.setValue(ENVIRONMENTAL_SENSING, TEMPERATURE, new byte[]{(byte) 0xF6, 0x00});
+        assertEquals(2.46d, service.temperature().execute().data(), 1e-9);
+        assertEquals(operations + 1, peripheral.operationCount());
+    }
+
+    @Test
+    public void longReadTakesSeveralRoundTrips() throws IOException {
+        assertEquals("A manufacturer name too long for one packet",
+                service.manufacturerName().execute().data());
+        // 43 bytes at the default MTU of 23: a read request and a read blob request.
+        assertEquals(2L, peripheral.roundTripCount());
+    }
+
+    @Test
+    public void enqueue() throws InterruptedException {
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        service.bodySensorLocation().enqueue(new Callback<byte[]>() {
+            @Override
+            public void onResponse(Response<byte[]> response) {
+                result.set(response.data());
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                result.set(t);
+                done.countDown();
+            }
+        });
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertArrayEquals(new byte[]{0x01}, (byte[]) result.get());
+    }
+
+    @Test
+    public void gattErrorFailsCall() throws IOException {
+        peripheral.setError(HEART_RATE, BODY_SENSOR_LOCATION,
+                SimulatedPeripheral.GATT_INSUFFICIENT_AUTHENTICATION);
+        try {
+            service.bodySensorLocation().execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertEquals(1L, peripheral.errorCount());
+
+        peripheral.setError(HEART_RATE, BODY_SENSOR_LOCATION, SimulatedPeripheral.GATT_SUCCESS);
+        assertArrayEquals(new byte[]{0x01}, service.bodySensorLocation().execute().data());
+    }
+
+    @Test
+    public void writeNotPermitted() throws IOException {
+        try {
+            service.setBodySensorLocation(new byte[]{0x02}).execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        assertArrayEquals(new byte[]{0x01}, peripheral.value(HEART_RATE, BODY_SENSOR_LOCATION));
+    }
+
+    @Test
+    public void disconnectFailsCallsUntilReconnect() throws IOException {
+        peripheral.disconnect();
+        assertFalse(peripheral.isConnected());
+        try {
+            service.bodySensorLocation().execute();
+            fail();
+        } catch (IOException expected) {
+        }
+        peripheral.reconnect();
+        assertArrayEquals(new byte[]{0x01}, service.bodySensorLocation().execute().data());
+        assertEquals(1L, peripheral.disconnectCount());
+    }
+
+    @Test
+    public void droppedResponseTimesOutAndNextOperationCompletes() throws Exception {
+        SimulatedPeripheral peripheral = new SimulatedPeripheral.Builder()
+                .characteristic(HEART_RATE, BODY_SENSOR_LOCATION, PROPERTY_READ, new byte[]{0x01})
+                .characteristic(HEART_RATE, CONTROL_POINT, PROPERTY_READ, new byte[2])
+                .operationTimeout(100, TimeUnit.MILLISECONDS)
+                .build();
+        Service service =
+                new Retrotooth.Builder().transport(peripheral).build().create(Service.class);
+        peripheral.setDropResponses(HEART_RATE, CONTROL_POINT, true);
+
+        final AtomicReference<Object> result = new AtomicReference<>();
+        final CountDownLatch done = new CountDownLatch(1);
+        peripheral.read(HEART_RATE, CONTROL_POINT, new Transport.Callback() {
+            @Override
+            public void onSuccess(byte[] value) {
+                result.set(value);
+                done.countDown();
+            }
+
+            @Override
+            public void onFailure(IOException e) {
+                result.set(e);
+                done.countDown();
+            }
+        });
+        assertEquals(1L, done.getCount());
+
+        // Queued behind the unanswered read, it starts once that times out.
+        assertArrayEquals(new byte[]{0x01}, service.bodySensorLocation().execute().data());
+        assertTrue(done.await(0, TimeUnit.SECONDS));
+        assertTrue(result.get() instanceof InterruptedIOException);
+        assertEquals(1L, peripheral.droppedResponseCount());
+        assertEquals(2L, peripheral.operationCount());
+    }
+}
@@ -0,0 +1,118 @@
+package retrotooth.util;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public final class LzfTest {
+    private final int[] hashTable = Lzf.newHashTable();
+
+    @Test
+    public void roundTripShortBlocks() throws IOException {
+        Random random = new Random(1L);
+        for (int length = 0; length <= 70; length++) {
+            byte[] data = new byte[length];
+            for (int i = 0; i < length; i++) {
+                // Few distinct values, so short blocks still contain matches.
+                data[i] = (byte) random.nextInt(3);
+            }
+            assertRoundTrip(data);
+        }
+    }
+
+    @Test
+    public void roundTripText() throws IOException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < Lzf.MAX_BLOCK_SIZE) {
+            text.append("{\"heartRate\":").append(60 + text.length() % 40)
+                    .append(",\"contact\":true,\"energy\":null},");
+        }
+        byte[] data = Arrays.copyOf(text.toString().getBytes(Charset.forName("UTF-8")),
+                Lzf.MAX_BLOCK_SIZE);
+        int compressed = assertRoundTrip(data);
+        assertTrue(compressed < data.length / 4);
+    }
+
+    @Test
+    public void roundTripRuns() throws IOException {
+        // Long runs are encoded as matches which overlap the bytes they produce.
+        byte[] data = new byte[Lzf.MAX_BLOCK_SIZE];
+        Arrays.fill(data, 0, 1000, (byte) 'a');
+        Arrays.fill(data, 1000, 5000, (byte) 'b');
+        for (int i = 5000; i < data.length; i++) {
+            data[i] = (byte) (i % 7);
+        }
+        assertRoundTrip(data);
+    }
+
+    @Test
+    public void roundTripRandom() throws IOException {
+        byte[] data = new byte[Lzf.MAX_BLOCK_SIZE];
+        new Random(2L).nextBytes(data);
+        assertRoundTrip(data);
+    }
+
+    @Test
+    public void incompressibleBlockExceedsLimit() {
+        byte[] data = new byte[1024];
+        new Random(3L).nextBytes(data);
+        byte[] out = new byte[data.length];
+        assertEquals(-1, Lzf.compress(data, data.length, out, data.length - 1, hashTable));
+    }
+
+    @Test
+    public void hashTableIsReusable() throws IOException {
+        byte[] a = "abcabcabcabcabcabc".getBytes(Charset.forName("UTF-8"));
+        byte[] b = "xyzxyzxyzxyzxyzxyz".getBytes(Charset.forName("UTF-8"));
+        assertRoundTrip(a);
+        assertRoundTrip(b);
+        assertRoundTrip(a);
+    }
+
+    @Test
+    public void corruptBlocks() {
+        // A literal run longer than the block.
+        assertCorrupt(new byte[]{0x05, 'a', 'b'}, 16);
+        // A back reference before the start of the output.
+        assertCorrupt(new byte[]{0x00, 'a', 0x20, 0x05}, 16);
+        // A back reference missing its offset.
+        assertCorrupt(new byte[]{0x00, 'a', 0x20}, 16);
+        // A long match missing its length.
+        assertCorrupt(new byte[]{0x00, 'a', (byte) 0xE0}, 16);
+        // Output which does not fit.
+        assertCorrupt(new byte[]{0x03, 'a', 'b', 'c', 'd'}, 3);
+        assertCorrupt(new byte[]{0x00, 'a', (byte) 0xE0, 0x10, 0x00}, 16);
+    }
+
+    /**
+     * Returns the compressed length of {@code data}.
+     */
+    private int assertRoundTrip(byte[] data) throws IOException {
+        // Incompressible data grows by one control byte per literal run, and compress wants
+        // room for a whole match and the next control byte before writing a match.
+        byte[] compressed = new byte[data.length + data.length / 32 + 4];
+        int compressedLength = Lzf.compress(data, data.length, compressed, compressed.length,
+                hashTable);
+        assertTrue(compressedLength >= 0);
+        byte[] decompressed = new byte[data.length];
+        assertEquals(data.length, Lzf.decompress(compressed, compressedLength, decompressed));
+        assertArrayEquals(data, decompressed);
+        return compressedLength;
+    }
+
+    private static void assertCorrupt(byte[] block, int outLength) {
+        try {
+            Lzf.decompress(block, block.length, new byte[outLength]);
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+}